@@ -0,0 +1,226 @@
+package rabun.oanda.rest.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fails the requests of an unhealthy route fast, per route template, e.g. "/v1/accounts/{account_id}/transactions".
+ *
+ * A route is healthy while less than the failure rate of its most recent requests failed, failure meaning no
+ * response or a 429 or 5xx. Once the rate is reached the circuit opens: requests of the route are rejected
+ * with a {@link RequestRejectedException} without being sent, so callers are not held up by a route that
+ * cannot answer and the route gets room to recover. After the open time a few probe requests are let through;
+ * if they succeed the circuit closes again, otherwise it stays open for another open time.
+ *
+ * <pre>
+ * OandaClient client = OandaClient.builder()
+ *         .circuitBreaker(CircuitBreaker.builder().failureRate(0.5, 20).openTime(5000).build())
+ *         .build();
+ * </pre>
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        closed,
+        open,
+        halfOpen
+    }
+
+    private final double failureRate;
+    private final int window;
+    private final int minRequests;
+    private final long openTime;
+    private final int probes;
+
+    private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    private CircuitBreaker(Builder builder) {
+        this.failureRate = builder.failureRate;
+        this.window = builder.window;
+        this.minRequests = builder.minRequests;
+        this.openTime = TimeUnit.MILLISECONDS.toNanos(builder.openTime);
+        this.probes = builder.probes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param route route the url was expanded from, null for requests without one
+     * @return whether a request of the route may be sent; if so its outcome must be passed to {@link #record}
+     */
+    public boolean allow(RouteTemplate route) {
+        boolean allowed = routeOf(OandaClient.routeName(route)).allow();
+        if (!allowed)
+            rejected.increment();
+        return allowed;
+    }
+
+    /**
+     * @param success the request was answered with a status below 500 other than 429
+     */
+    public void record(RouteTemplate route, boolean success) {
+        routeOf(OandaClient.routeName(route)).record(success);
+    }
+
+    /**
+     * @return state of the route, closed if it was not used yet
+     */
+    public State GetState(String route) {
+        Route state = routes.get(route);
+        return state == null ? State.closed : state.state();
+    }
+
+    /**
+     * @return requests rejected because the circuit of their route was open
+     */
+    public long GetRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return times a circuit opened
+     */
+    public long GetOpened() {
+        return opened.sum();
+    }
+
+    private Route routeOf(String name) {
+        return routes.computeIfAbsent(name, key -> new Route());
+    }
+
+    private final class Route {
+        final boolean[] outcomes = new boolean[window];
+
+        State state = State.closed;
+        int next;
+        int count;
+        int failures;
+
+        long changedAt;
+        int admitted;
+        int succeeded;
+
+        synchronized boolean allow() {
+            long now = System.nanoTime();
+
+            if (state == State.open) {
+                if (now - changedAt < openTime)
+                    return false;
+                halfOpen(now);
+            }
+
+            if (state == State.halfOpen) {
+                // probes that never report back are replaced after another open time
+                if (now - changedAt >= openTime)
+                    halfOpen(now);
+                if (admitted >= probes)
+                    return false;
+                admitted++;
+            }
+
+            return true;
+        }
+
+        synchronized void record(boolean success) {
+            if (state == State.halfOpen) {
+                if (!success) {
+                    open();
+                } else if (++succeeded >= probes) {
+                    state = State.closed;
+                    next = count = failures = 0;
+                }
+                return;
+            }
+
+            if (state == State.open)
+                return;
+
+            if (count == window) {
+                if (!outcomes[next])
+                    failures--;
+            } else {
+                count++;
+            }
+            outcomes[next] = success;
+            if (!success)
+                failures++;
+            next = (next + 1) % window;
+
+            if (count >= minRequests && failures >= failureRate * count)
+                open();
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        private void open() {
+            state = State.open;
+            changedAt = System.nanoTime();
+            opened.increment();
+        }
+
+        private void halfOpen(long now) {
+            state = State.halfOpen;
+            changedAt = now;
+            admitted = 0;
+            succeeded = 0;
+        }
+    }
+
+    public static final class Builder {
+        private double failureRate = 0.5;
+        private int window = 20;
+        private int minRequests = 10;
+        private long openTime = 5000;
+        private int probes = 3;
+
+        private Builder() {
+        }
+
+        /**
+         * @param failureRate share of failed requests that opens the circuit, default 0.5
+         * @param window number of most recent requests per route the rate is taken over, default 20;
+         *               the circuit does not open before half of them were seen
+         */
+        public Builder failureRate(double failureRate, int window) {
+            if (failureRate <= 0 || failureRate > 1)
+                throw new IllegalArgumentException("failureRate must be above 0 and at most 1");
+            if (window <= 0)
+                throw new IllegalArgumentException("window must be positive");
+            this.failureRate = failureRate;
+            this.window = window;
+            this.minRequests = Math.max(1, window / 2);
+            return this;
+        }
+
+        /**
+         * @param openTime milliseconds an open circuit rejects requests before it is probed, default 5000
+         */
+        public Builder openTime(long openTime) {
+            if (openTime <= 0)
+                throw new IllegalArgumentException("openTime must be positive");
+            this.openTime = openTime;
+            return this;
+        }
+
+        /**
+         * @param probes successful requests that close an open circuit again, default 3
+         */
+        public Builder probes(int probes) {
+            if (probes <= 0)
+                throw new IllegalArgumentException("probes must be positive");
+            this.probes = probes;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package rabun.oanda.rest.base;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on the requests in flight per route template, e.g. "/v1/candles".
+ *
+ * The limit of a route is found with AIMD from the observed response times: it grows by one for every limit's
+ * worth of responses while the route keeps up, and is cut by the backoff ratio, at most once per round trip,
+ * when a response takes longer than the tolerance times the route's minimum response time of the last half
+ * minute, or fails. Requests over the limit wait in a bounded queue per route and are rejected with a
+ * {@link RequestRejectedException} once it is full, so a slow route sheds its own load instead of tying up
+ * the connection pool, and order traffic on other routes keeps flowing.
+ *
+ * Waiting never holds a thread: {@link #acquire(RouteTemplate)} returns a future that is completed when the
+ * request may be sent, and {@link #release} must be called once it is answered.
+ *
+ * <pre>
+ * OandaClient client = OandaClient.builder()
+ *         .concurrencyLimiter(ConcurrencyLimiter.builder().limit(10, 1, 50).build())
+ *         .build();
+ * </pre>
+ */
+public final class ConcurrencyLimiter {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(30);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final double tolerance;
+    private final double backoffRatio;
+
+    private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    private ConcurrencyLimiter(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.maxQueue = builder.maxQueue;
+        this.tolerance = builder.tolerance;
+        this.backoffRatio = builder.backoffRatio;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param route route the url was expanded from, null for requests without one
+     * @return future completed when the request may be sent, or exceptionally with a
+     * {@link RequestRejectedException} if the queue of the route is full
+     */
+    public CompletableFuture<Void> acquire(RouteTemplate route) {
+        return routeOf(OandaClient.routeName(route)).acquire();
+    }
+
+    /**
+     * Give back the slot of an answered request
+     *
+     * @param nanos time from sending the request until its response
+     * @param failed there was no response, or the server was overloaded (429 or 5xx)
+     */
+    public void release(RouteTemplate route, long nanos, boolean failed) {
+        routeOf(OandaClient.routeName(route)).release(nanos, failed);
+    }
+
+    /**
+     * @return current limit of the route, the initial limit if it was not used yet
+     */
+    public int GetLimit(String route) {
+        Route state = routes.get(route);
+        return state == null ? initialLimit : state.limit();
+    }
+
+    public int GetInFlight(String route) {
+        Route state = routes.get(route);
+        return state == null ? 0 : state.inFlight();
+    }
+
+    public int GetQueueDepth(String route) {
+        Route state = routes.get(route);
+        return state == null ? 0 : state.queueDepth();
+    }
+
+    /**
+     * @return requests rejected because the queue of their route was full
+     */
+    public long GetRejected() {
+        return rejected.sum();
+    }
+
+    private Route routeOf(String name) {
+        return routes.computeIfAbsent(name, Route::new);
+    }
+
+    private final class Route {
+        final String name;
+        final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+        double limit = initialLimit;
+        int inFlight;
+        long decreasedAt = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+        long windowStart = System.nanoTime();
+        long minRtt = Long.MAX_VALUE;
+        long previousMinRtt = Long.MAX_VALUE;
+
+        Route(String name) {
+            this.name = name;
+        }
+
+        CompletableFuture<Void> acquire() {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    future.complete(null);
+                } else if (waiting.size() < maxQueue) {
+                    waiting.add(future);
+                } else {
+                    rejected.increment();
+                    future.completeExceptionally(new RequestRejectedException(
+                            "Too many requests queued for " + name + ", limit " + (int) limit));
+                }
+            }
+            return future;
+        }
+
+        void release(long nanos, boolean failed) {
+            List<CompletableFuture<Void>> ready = null;
+            synchronized (this) {
+                inFlight--;
+                adjust(nanos, failed);
+
+                while (inFlight < (int) limit && !waiting.isEmpty()) {
+                    if (ready == null)
+                        ready = new ArrayList<>();
+                    ready.add(waiting.poll());
+                    inFlight++;
+                }
+            }
+
+            if (ready != null) {
+                for (CompletableFuture<Void> future : ready)
+                    future.complete(null);
+            }
+        }
+
+        private void adjust(long nanos, boolean failed) {
+            long now = System.nanoTime();
+            if (now - windowStart > WINDOW) {
+                previousMinRtt = minRtt;
+                minRtt = Long.MAX_VALUE;
+                windowStart = now;
+            }
+
+            long baseline = Math.min(minRtt, previousMinRtt);
+            boolean slow = baseline != Long.MAX_VALUE && nanos > baseline * tolerance;
+
+            if (!failed)
+                minRtt = Math.min(minRtt, nanos);
+
+            if (failed || slow) {
+                // once per round trip, the responses of one overloaded moment cut the limit only once
+                if (now - decreasedAt > nanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    decreasedAt = now;
+                }
+            } else if (inFlight + 1 >= (int) limit / 2) {
+                // grow only while the limit is in use
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int queueDepth() {
+            return waiting.size();
+        }
+    }
+
+    public static final class Builder {
+        private int initialLimit = 10;
+        private int minLimit = 1;
+        private int maxLimit = 50;
+        private int maxQueue = 100;
+        private double tolerance = 2;
+        private double backoffRatio = 0.9;
+
+        private Builder() {
+        }
+
+        /**
+         * @param initialLimit requests in flight per route before any response was seen, default 10
+         * @param minLimit lowest limit, default 1
+         * @param maxLimit highest limit, default 50; more than the connections per route only queues in the pool
+         */
+        public Builder limit(int initialLimit, int minLimit, int maxLimit) {
+            if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit)
+                throw new IllegalArgumentException("limits must be positive and minLimit <= initialLimit <= maxLimit");
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param maxQueue requests per route waiting for a slot before further ones are rejected, default 100
+         */
+        public Builder maxQueue(int maxQueue) {
+            if (maxQueue < 0)
+                throw new IllegalArgumentException("maxQueue must not be negative");
+            this.maxQueue = maxQueue;
+            return this;
+        }
+
+        /**
+         * @param tolerance multiple of the minimum response time above which a response counts as slow, default 2
+         */
+        public Builder tolerance(double tolerance) {
+            if (tolerance < 1)
+                throw new IllegalArgumentException("tolerance must be at least 1");
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio factor the limit is multiplied with on a slow or failed response, default 0.9
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            if (backoffRatio <= 0 || backoffRatio >= 1)
+                throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
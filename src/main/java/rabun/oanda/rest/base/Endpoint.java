@@ -1,16 +1,23 @@
 package rabun.oanda.rest.base;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
-import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
-import com.mashape.unirest.request.GetRequest;
-import com.mashape.unirest.request.HttpRequest;
-import com.mashape.unirest.request.HttpRequestWithBody;
 
+import org.joda.time.DateTime;
+import rabun.oanda.rest.codec.Rfc3339;
+import rabun.oanda.rest.metrics.MetricsListener;
+import rabun.oanda.rest.models.OandaTypes;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 public abstract class Endpoint {
     public static enum AccountType {
@@ -20,12 +27,31 @@ public abstract class Endpoint {
 
     protected String key;
     protected AccountType accountType;
+    protected OandaTypes.DateFormat dateFormat = OandaTypes.DateFormat.rfc3339;
     protected final String realEndpoint = "https://api-fxtrade.oanda.com";
     protected final String practiceEndpoint = "https://api-fxpractice.oanda.com";
 
+    protected final OandaClient client;
+
+    private Map<String, String> headers;
+    private volatile String url;
+    private volatile RetryPolicy retryPolicy;
+
     public Endpoint(String key, AccountType accountType) {
+        this(key, accountType, OandaClient.shared());
+    }
+
+    /**
+     * @param client http client, and with it the connection pool, this endpoint sends its requests through
+     */
+    public Endpoint(String key, AccountType accountType, OandaClient client) {
+        if (client == null)
+            throw new IllegalArgumentException("client must not be null");
+
         this.key = key;
         this.accountType = accountType;
+        this.client = client;
+        this.headers = makeHeaders();
     }
 
     public String GetKey() {
@@ -36,82 +62,316 @@ public abstract class Endpoint {
         return this.accountType;
     }
 
+    public OandaClient GetClient() {
+        return this.client;
+    }
+
+    /**
+     * @return server the requests go to, null for the api of the account type
+     */
+    public String GetUrl() {
+        return this.url;
+    }
+
+    /**
+     * Send the requests to another server than the api of the account type,
+     * e.g. a {@link rabun.oanda.rest.mock.MockRestServer}
+     *
+     * @param url scheme, host and port, null for the api of the account type
+     */
+    public void SetUrl(String url) {
+        this.url = url != null && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public RetryPolicy GetRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Hedge and retry the GETs of this endpoint; orders, trades and positions are never changed twice
+     *
+     * @param retryPolicy policy, null to send every request once
+     */
+    public void SetRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public OandaTypes.DateFormat GetDateFormat() {
+        return this.dateFormat;
+    }
+
+    /**
+     * Choose the datetime format the API uses for this endpoint.
+     * With {@link OandaTypes.DateFormat#unix} timestamps are sent and received as microseconds since the epoch,
+     * which saves formatting and parsing on both sides. The models' timeMicros fields are filled either way.
+     *
+     * @param dateFormat datetime format
+     */
+    public void SetDateFormat(OandaTypes.DateFormat dateFormat) {
+        this.dateFormat = dateFormat == null ? OandaTypes.DateFormat.rfc3339 : dateFormat;
+        this.headers = makeHeaders();
+    }
+
+    /**
+     * Format a request timestamp in the selected datetime format
+     */
+    protected String formatTime(DateTime time) {
+        long micros = time.getMillis() * 1000L;
+
+        if (dateFormat == OandaTypes.DateFormat.unix)
+            return Rfc3339.formatUnix(micros);
+
+        return Rfc3339.format(micros);
+    }
+
+    /**
+     * @return timestamp of a response as microseconds since the epoch, 0 if it is missing
+     */
+    protected static long timeOf(String time) {
+        if (time == null || time.isEmpty())
+            return 0;
+
+        return Rfc3339.parseMicros(time);
+    }
+
     protected String makeEndpoint(AccountType accountType, String route) {
+        String base = baseUrl(accountType);
+
+        return base == null ? null : base + route;
+    }
+
+    /**
+     * @return scheme and host of the server set with {@link #SetUrl}, or of the api for this endpoint's account type,
+     * to expand a {@link RouteTemplate} against
+     */
+    protected String baseUrl() {
+        String url = this.url;
+        return url != null ? url : baseUrl(accountType);
+    }
 
+    private String baseUrl(AccountType accountType) {
         if (accountType == AccountType.practice)
-            return String.format("%s%s", practiceEndpoint, route);
+            return practiceEndpoint;
 
         if (accountType == AccountType.real)
-            return String.format("%s%s", realEndpoint, route);
+            return realEndpoint;
 
         else return null;
     }
 
-    private HttpRequest setRouteParams(String endpoint, HttpRequest request, Map<String, String> routeParams){
-        Pattern p = Pattern.compile("\\{\\w+}");
-        Matcher matcher = p.matcher(endpoint);
+    private Map<String, String> headers() {
+        return headers;
+    }
 
-        while(matcher.find()){
-            String tmp = matcher.group();
-            String spl = tmp.substring(1,tmp.length() -1);
+    private Map<String, String> makeHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Authorization", "Bearer " + this.key);
 
-            request.routeParam(spl, routeParams.get(spl));
-        }
+        if (dateFormat == OandaTypes.DateFormat.unix)
+            headers.put("X-Accept-Datetime-Format", "UNIX");
 
-        return request;
+        return Collections.unmodifiableMap(headers);
     }
 
     public HttpResponse<JsonNode> Get(Map<String, String> routeParams, Map<String, Object> fields,
                                       String endpoint) throws UnirestException {
 
-        GetRequest request = Unirest.get(endpoint);
-        if (routeParams != null && routeParams.size() > 0)
-            this.setRouteParams(endpoint, request, routeParams);
-
-
-        return request
-                .fields(fields)
-                .header("Authorization", String.format("Bearer %s", this.key))
-                .asJson();
+        return Futures.await(GetAsync(routeParams, fields, endpoint));
     }
 
     public HttpResponse<JsonNode> Post(Map<String, String> routeParams, Map<String, Object> fields,
                                       String endpoint) throws UnirestException {
 
-        HttpRequestWithBody request = Unirest.post(endpoint);
-        if (routeParams != null && routeParams.size() > 0)
-            this.setRouteParams(endpoint, request, routeParams);
-
-
-        return request
-                .header("Authorization", String.format("Bearer %s", this.key))
-                .fields(fields)
-                .asJson();
+        return Futures.await(PostAsync(routeParams, fields, endpoint));
     }
 
     public HttpResponse<JsonNode> Patch(Map<String, String> routeParams, Map<String, Object> fields,
                                        String endpoint) throws UnirestException {
 
-        HttpRequestWithBody request = Unirest.patch(endpoint);
-        if (routeParams != null && routeParams.size() > 0)
-            this.setRouteParams(endpoint, request, routeParams);
+        return Futures.await(PatchAsync(routeParams, fields, endpoint));
+    }
 
+    public HttpResponse<JsonNode> Delete(Map<String, String> routeParams, String endpoint) throws UnirestException {
 
-        return request
-                .header("Authorization", String.format("Bearer %s", this.key))
-                .fields(fields)
-                .asJson();
+        return Futures.await(DeleteAsync(routeParams, endpoint));
     }
 
-    public HttpResponse<JsonNode> Delete(Map<String, String> routeParams, String endpoint) throws UnirestException {
+    /**
+     * Same as {@link #Get(Map, Map, String)}, but the body is handed back as raw bytes
+     * so it can be decoded without building a JSON tree first.
+     */
+    public HttpResponse<InputStream> GetStream(Map<String, String> routeParams, Map<String, Object> fields,
+                                               String endpoint) throws UnirestException {
+
+        return Futures.await(GetStreamAsync(routeParams, fields, endpoint));
+    }
+
+    /**
+     * Non-blocking variant of {@link #Get(Map, Map, String)}.
+     * The request is executed by the asynchronous (NIO) http client, so no caller thread is held while waiting.
+     *
+     * @return future completed with the response, or exceptionally with an {@link UnirestException}
+     */
+    public CompletableFuture<HttpResponse<JsonNode>> GetAsync(Map<String, String> routeParams, Map<String, Object> fields,
+                                                            String endpoint) {
+
+        return GetAsync(Priority.normal, null, fields, withRouteParams(endpoint, routeParams));
+    }
+
+    /**
+     * Non-blocking variant of {@link #GetStream(Map, Map, String)}.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> GetStreamAsync(Map<String, String> routeParams,
+                                                                     Map<String, Object> fields, String endpoint) {
+
+        return GetStreamAsync(Priority.normal, null, fields, withRouteParams(endpoint, routeParams));
+    }
+
+    /**
+     * Non-blocking variant of {@link #Post(Map, Map, String)}.
+     */
+    public CompletableFuture<HttpResponse<JsonNode>> PostAsync(Map<String, String> routeParams, Map<String, Object> fields,
+                                                             String endpoint) {
 
-        HttpRequestWithBody request = Unirest.delete(endpoint);
-        if (routeParams != null && routeParams.size() > 0)
-            this.setRouteParams(endpoint, request, routeParams);
+        return PostAsync(Priority.high, null, fields, withRouteParams(endpoint, routeParams));
+    }
+
+    /**
+     * Non-blocking variant of {@link #Patch(Map, Map, String)}.
+     */
+    public CompletableFuture<HttpResponse<JsonNode>> PatchAsync(Map<String, String> routeParams, Map<String, Object> fields,
+                                                              String endpoint) {
+
+        return PatchAsync(Priority.high, null, fields, withRouteParams(endpoint, routeParams));
+    }
+
+    /**
+     * Non-blocking variant of {@link #Delete(Map, String)}.
+     */
+    public CompletableFuture<HttpResponse<JsonNode>> DeleteAsync(Map<String, String> routeParams, String endpoint) {
+
+        return DeleteAsync(Priority.high, null, withRouteParams(endpoint, routeParams));
+    }
+
+    /*
+     * Requests of the endpoint classes, tagged with the route the url was expanded from
+     * and the lane they wait in when the client paces requests.
+     */
+
+    protected HttpResponse<JsonNode> Get(Priority priority, RouteTemplate route, Map<String, Object> fields,
+                                         String endpoint) throws UnirestException {
+
+        return Futures.await(GetAsync(priority, route, fields, endpoint));
+    }
+
+    protected HttpResponse<InputStream> GetStream(Priority priority, RouteTemplate route, Map<String, Object> fields,
+                                                  String endpoint) throws UnirestException {
+
+        return Futures.await(GetStreamAsync(priority, route, fields, endpoint));
+    }
+
+    protected HttpResponse<JsonNode> Post(Priority priority, RouteTemplate route, Map<String, Object> fields,
+                                          String endpoint) throws UnirestException {
+
+        return Futures.await(PostAsync(priority, route, fields, endpoint));
+    }
+
+    protected HttpResponse<JsonNode> Patch(Priority priority, RouteTemplate route, Map<String, Object> fields,
+                                           String endpoint) throws UnirestException {
+
+        return Futures.await(PatchAsync(priority, route, fields, endpoint));
+    }
+
+    protected HttpResponse<JsonNode> Delete(Priority priority, RouteTemplate route, String endpoint) throws UnirestException {
+
+        return Futures.await(DeleteAsync(priority, route, endpoint));
+    }
+
+    /**
+     * Identical GETs in flight at the same time, from this or any other endpoint of the client with the same
+     * access token, share one http call; each caller still gets its own decoded response. Hedges of the
+     * {@link RetryPolicy} are sent on their own.
+     */
+    protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                               Map<String, Object> fields, String endpoint) {
+
+        RetryPolicy policy = this.retryPolicy;
+        if (policy == null)
+            return client.sendShared(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), JsonNode.class);
+
+        return policy.execute(route,
+                () -> client.sendShared(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), JsonNode.class),
+                () -> client.send(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), JsonNode.class));
+    }
+
+    protected CompletableFuture<HttpResponse<InputStream>> GetStreamAsync(Priority priority, RouteTemplate route,
+                                                                        Map<String, Object> fields, String endpoint) {
+
+        RetryPolicy policy = this.retryPolicy;
+        if (policy == null)
+            return client.send(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), InputStream.class);
+
+        return policy.execute(route,
+                () -> client.send(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), InputStream.class),
+                () -> client.send(priority, route, HttpMethod.GET, endpoint, fields, this.headers(), InputStream.class));
+    }
+
+    protected CompletableFuture<HttpResponse<JsonNode>> PostAsync(Priority priority, RouteTemplate route,
+                                                                Map<String, Object> fields, String endpoint) {
+
+        return client.send(priority, route, HttpMethod.POST, endpoint, fields, this.headers(), JsonNode.class);
+    }
+
+    protected CompletableFuture<HttpResponse<JsonNode>> PatchAsync(Priority priority, RouteTemplate route,
+                                                                 Map<String, Object> fields, String endpoint) {
+
+        return client.send(priority, route, HttpMethod.PATCH, endpoint, fields, this.headers(), JsonNode.class);
+    }
+
+    protected CompletableFuture<HttpResponse<JsonNode>> DeleteAsync(Priority priority, RouteTemplate route, String endpoint) {
+
+        return client.send(priority, route, HttpMethod.DELETE, endpoint, null, this.headers(), JsonNode.class);
+    }
+
+    /**
+     * Fill models from a response, reporting the time taken to the client's {@link MetricsListener}
+     * as decode time of the route
+     */
+    protected <T> T decode(HttpMethod method, RouteTemplate route, Supplier<T> decoder) {
+        MetricsListener metrics = client.GetMetrics();
+        if (metrics == null)
+            return decoder.get();
+
+        long started = System.nanoTime();
+        T decoded = decoder.get();
+        metrics.onDecode(OandaClient.routeName(route), method, System.nanoTime() - started);
+        return decoded;
+    }
+
+    /**
+     * Wraps an unexpected response of an async call so that it fails the returned future
+     * the same way the blocking call throws.
+     */
+    protected static CompletionException failure(HttpResponse<?> response) {
+        return new CompletionException(new UnirestException(bodyOf(response)));
+    }
+
+    /**
+     * @return the response body as text, for error messages
+     */
+    protected static String bodyOf(HttpResponse<?> response) {
+        Object body = response.getBody();
+        if (!(body instanceof InputStream))
+            return String.valueOf(body);
+
+        Scanner scanner = new Scanner((InputStream) body, "UTF-8").useDelimiter("\\A");
+        return scanner.hasNext() ? scanner.next() : "";
+    }
 
+    private static String withRouteParams(String endpoint, Map<String, String> routeParams) {
+        if (routeParams == null || routeParams.isEmpty())
+            return endpoint;
 
-        return request
-                .header("Authorization", String.format("Bearer %s", this.key))
-                .asJson();
+        return RouteTemplate.compile(endpoint).expand(null, routeParams);
     }
 }
@@ -0,0 +1,34 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Blocking over the async calls of this library, for the blocking variants of the endpoints and the helpers
+ * built on them. Not meant for callers of the library.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Block on an async call, rethrowing its failure the way the blocking api declares it
+     */
+    public static <T> T await(CompletableFuture<T> future) throws UnirestException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnirestException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof UnirestException)
+                throw (UnirestException) cause;
+            throw new UnirestException(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+}
@@ -0,0 +1,745 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.*;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+import rabun.oanda.rest.metrics.MetricsListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Http client shared by endpoints.
+ *
+ * Each client owns its own non-blocking connection pool, so independent workloads can be kept apart,
+ * e.g. one client for order traffic and another for bulk candle backfills, or one per account type.
+ * A client is immutable once built and safe to share between threads and endpoint instances.
+ * Close it to release its connections and I/O threads.
+ *
+ * <pre>
+ * OandaClient client = OandaClient.builder()
+ *         .maxConnectionsPerRoute(8)
+ *         .socketTimeout(5000)
+ *         .build();
+ * OrderEndpoints orders = new OrderEndpoints(key, AccountType.practice, client);
+ * </pre>
+ *
+ * Give the builder a {@link MetricsListener}, e.g. a {@link rabun.oanda.rest.metrics.RequestMetrics}, to time
+ * the requests per route. A {@link ConcurrencyLimiter} and a {@link CircuitBreaker} keep a slow or failing route
+ * from holding up the others.
+ */
+public final class OandaClient implements Closeable {
+
+    private static final AtomicInteger clientCount = new AtomicInteger();
+
+    private static volatile OandaClient shared;
+
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final int connectTimeout;
+    private final int socketTimeout;
+    private final int connectionRequestTimeout;
+    private final long keepAlive;
+    private final boolean tcpNoDelay;
+    private final int ioThreads;
+    private final RateLimiter rateLimiter;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final MetricsListener metrics;
+
+    private final CloseableHttpAsyncClient httpClient;
+
+    private final ConcurrentHashMap<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder sharedRequests = new LongAdder();
+
+    private OandaClient(Builder builder) {
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.maxConnectionsTotal = builder.maxConnectionsTotal;
+        this.connectTimeout = builder.connectTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.connectionRequestTimeout = builder.connectionRequestTimeout;
+        this.keepAlive = builder.keepAlive;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.ioThreads = builder.ioThreads;
+        this.rateLimiter = builder.rateLimiter;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.metrics = builder.metrics;
+
+        this.httpClient = makeHttpClient();
+        this.httpClient.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the client used by endpoints constructed without one, created with the default settings on first use
+     */
+    public static OandaClient shared() {
+        OandaClient client = shared;
+        if (client == null) {
+            synchronized (OandaClient.class) {
+                client = shared;
+                if (client == null)
+                    shared = client = builder().build();
+            }
+        }
+        return client;
+    }
+
+    public int GetMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int GetMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public int GetConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int GetSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public int GetConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public long GetKeepAlive() {
+        return keepAlive;
+    }
+
+    public boolean IsTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * @return the limiter pacing this client's requests, null if they are not paced
+     */
+    public RateLimiter GetRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return the limiter of this client's requests in flight per route, null if they are not limited
+     */
+    public ConcurrencyLimiter GetConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @return the breaker failing the requests of unhealthy routes, null if there is none
+     */
+    public CircuitBreaker GetCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @return the listener timing this client's requests, null if they are not timed
+     */
+    public MetricsListener GetMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Send a request without blocking the calling thread
+     *
+     * @param method http method
+     * @param url full url, route parameters already expanded
+     * @param fields query parameters for GET and DELETE, form fields otherwise; null values are left out
+     * @param headers request headers
+     * @param responseType JsonNode, String or InputStream
+     * @return future completed with the response, or exceptionally with an {@link UnirestException}
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpMethod method, String url, Map<String, Object> fields,
+                                                       Map<String, String> headers, Class<T> responseType) {
+
+        return send(Priority.normal, null, method, url, fields, headers, responseType);
+    }
+
+    /**
+     * Send a request without blocking the calling thread, paced by the client's {@link RateLimiter}
+     *
+     * @param priority lane the request waits in when it is paced
+     * @param route route the url was expanded from, null if it has no route limit
+     * @see #send(HttpMethod, String, Map, Map, Class)
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(Priority priority, RouteTemplate route, HttpMethod method,
+                                                       String url, Map<String, Object> fields,
+                                                       Map<String, String> headers, final Class<T> responseType) {
+
+        final CompletableFuture<HttpResponse<T>> future = new CompletableFuture<>();
+
+        paced(priority, route, method, url, fields, headers).whenComplete((response, error) -> {
+            if (error != null)
+                future.completeExceptionally(unwrap(error));
+            else
+                convert(route, method, response, responseType, future);
+        });
+
+        return future;
+    }
+
+    /**
+     * Send a request that callers issuing the identical request at the same time may share.
+     *
+     * While a request with the same method, url, fields and headers (and so the same access token) is in flight,
+     * no new http call is made; the caller is attached to the running one. The body is buffered once and every
+     * caller decodes its own copy of it, so results are never shared between callers.
+     *
+     * @see #send(Priority, RouteTemplate, HttpMethod, String, Map, Map, Class)
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendShared(Priority priority, RouteTemplate route, HttpMethod method,
+                                                             String url, Map<String, Object> fields,
+                                                             Map<String, String> headers, final Class<T> responseType) {
+
+        String key = requestKey(method, url, fields, headers);
+
+        CompletableFuture<BufferedResponse> call = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> running = inFlight.putIfAbsent(key, call);
+
+        if (running == null) {
+            paced(priority, route, method, url, fields, headers).whenComplete((response, error) -> {
+                inFlight.remove(key, call);
+
+                if (error != null) {
+                    call.completeExceptionally(unwrap(error));
+                    return;
+                }
+
+                try {
+                    call.complete(new BufferedResponse(response));
+                } catch (IOException | RuntimeException e) {
+                    call.completeExceptionally(new UnirestException(e));
+                }
+            });
+            running = call;
+        } else {
+            sharedRequests.increment();
+        }
+
+        final CompletableFuture<HttpResponse<T>> future = new CompletableFuture<>();
+        running.whenComplete((buffered, error) -> {
+            if (error != null)
+                future.completeExceptionally(unwrap(error));
+            else
+                convert(route, method, buffered.copy(), responseType, future);
+        });
+
+        return future;
+    }
+
+    /**
+     * @return requests that were attached to an identical request in flight instead of being sent
+     */
+    public long GetSharedRequests() {
+        return sharedRequests.sum();
+    }
+
+    private CompletableFuture<org.apache.http.HttpResponse> paced(Priority priority, RouteTemplate route,
+                                                                  HttpMethod method, String url,
+                                                                  Map<String, Object> fields, Map<String, String> headers) {
+        if (circuitBreaker != null && !circuitBreaker.allow(route)) {
+            CompletableFuture<org.apache.http.HttpResponse> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RequestRejectedException("Circuit of " + routeName(route) + " is open"));
+            return rejected;
+        }
+
+        if (rateLimiter == null && concurrencyLimiter == null)
+            return guarded(route, method, url, fields, headers);
+
+        CompletableFuture<Void> ready = rateLimiter == null
+                ? CompletableFuture.completedFuture(null)
+                : rateLimiter.acquire(priority, route);
+        if (concurrencyLimiter != null)
+            ready = ready.thenCompose(permit -> concurrencyLimiter.acquire(route));
+
+        return ready.thenCompose(permit -> guarded(route, method, url, fields, headers));
+    }
+
+    /**
+     * Execute a request holding a slot of the concurrency limiter, and report its outcome to the limiter and breaker
+     */
+    private CompletableFuture<org.apache.http.HttpResponse> guarded(RouteTemplate route, HttpMethod method, String url,
+                                                                    Map<String, Object> fields,
+                                                                    Map<String, String> headers) {
+        if (concurrencyLimiter == null && circuitBreaker == null)
+            return execute(route, method, url, fields, headers);
+
+        // the caller is chained onto the returned future, so the slot and outcome are settled before it resumes
+        long started = System.nanoTime();
+        return execute(route, method, url, fields, headers).whenComplete((response, error) -> {
+            boolean failed = error != null || overloaded(response.getStatusLine().getStatusCode());
+            if (concurrencyLimiter != null)
+                concurrencyLimiter.release(route, System.nanoTime() - started, failed);
+            if (circuitBreaker != null)
+                circuitBreaker.record(route, !failed);
+        });
+    }
+
+    private static boolean overloaded(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private CompletableFuture<org.apache.http.HttpResponse> execute(RouteTemplate route, HttpMethod method, String url,
+                                                                    Map<String, Object> fields,
+                                                                    Map<String, String> headers) {
+
+        final CompletableFuture<org.apache.http.HttpResponse> future = new CompletableFuture<>();
+
+        HttpUriRequest request;
+        try {
+            request = makeRequest(method, url, fields);
+        } catch (UnsupportedEncodingException e) {
+            future.completeExceptionally(new UnirestException(e));
+            return future;
+        }
+
+        request.setHeader("Accept-Encoding", "gzip");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet())
+                request.setHeader(header.getKey(), header.getValue());
+        }
+
+        final MetricsListener metrics = this.metrics;
+        final String name = routeName(route);
+        final long bytesOut = metrics == null ? 0 : bytesOut(request);
+        final long sent = metrics == null ? 0 : System.nanoTime();
+        if (metrics != null)
+            metrics.onSend(name, method);
+
+        httpClient.execute(request, new FutureCallback<org.apache.http.HttpResponse>() {
+            @Override
+            public void completed(org.apache.http.HttpResponse response) {
+                if (metrics != null) {
+                    long elapsed = System.nanoTime() - sent;
+                    long bytesIn;
+                    try {
+                        bytesIn = bytesIn(response);
+                    } catch (IOException e) {
+                        metrics.onResponse(name, method, 0, elapsed, bytesOut, 0);
+                        future.completeExceptionally(new UnirestException(e));
+                        return;
+                    }
+                    metrics.onResponse(name, method, response.getStatusLine().getStatusCode(), elapsed, bytesOut, bytesIn);
+                }
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (metrics != null)
+                    metrics.onResponse(name, method, 0, System.nanoTime() - sent, bytesOut, 0);
+                future.completeExceptionally(new UnirestException(e));
+            }
+
+            @Override
+            public void cancelled() {
+                if (metrics != null)
+                    metrics.onResponse(name, method, 0, System.nanoTime() - sent, bytesOut, 0);
+                future.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    private <T> void convert(RouteTemplate route, HttpMethod method, org.apache.http.HttpResponse response,
+                             Class<T> responseType, CompletableFuture<HttpResponse<T>> future) {
+        HttpResponse<T> converted;
+        try {
+            long started = metrics == null ? 0 : System.nanoTime();
+            converted = new HttpResponse<>(response, responseType);
+            if (metrics != null)
+                metrics.onParse(routeName(route), method, System.nanoTime() - started);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(new UnirestException(e));
+            return;
+        }
+        future.complete(converted);
+    }
+
+    /**
+     * @return name of the route in metrics, "*" for requests without one
+     */
+    static String routeName(RouteTemplate route) {
+        return route == null ? "*" : route.route();
+    }
+
+    private static long bytesOut(HttpUriRequest request) {
+        long bytes = request.getRequestLine().getUri().length();
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentLength() > 0)
+                bytes += entity.getContentLength();
+        }
+        return bytes;
+    }
+
+    /**
+     * Length of the body as received; a chunked body is buffered to count it, it is held in memory already
+     */
+    private static long bytesIn(org.apache.http.HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null)
+            return 0;
+        if (entity.getContentLength() >= 0)
+            return entity.getContentLength();
+
+        ByteArrayEntity buffered = new ByteArrayEntity(EntityUtils.toByteArray(entity));
+        buffered.setContentType(entity.getContentType());
+        buffered.setContentEncoding(entity.getContentEncoding());
+        response.setEntity(buffered);
+        return buffered.getContentLength();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String requestKey(HttpMethod method, String url, Map<String, Object> fields, Map<String, String> headers) {
+        StringBuilder key = new StringBuilder(url.length() + 64).append(method).append(' ').append(url);
+
+        if (fields != null) {
+            key.append('?');
+            for (Map.Entry<String, Object> field : new TreeMap<>(fields).entrySet()) {
+                if (field.getValue() != null)
+                    key.append(field.getKey()).append('=').append(field.getValue()).append('&');
+            }
+        }
+
+        if (headers != null) {
+            key.append('#');
+            for (Map.Entry<String, String> header : new TreeMap<>(headers).entrySet())
+                key.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Response read into memory, so that every caller sharing it can get a copy with its own body stream
+     */
+    private static final class BufferedResponse {
+        final StatusLine statusLine;
+        final Header[] headers;
+        final byte[] body;
+        final Header contentType;
+        final Header contentEncoding;
+
+        BufferedResponse(org.apache.http.HttpResponse response) throws IOException {
+            this.statusLine = response.getStatusLine();
+            this.headers = response.getAllHeaders();
+
+            HttpEntity entity = response.getEntity();
+            this.body = entity == null ? null : EntityUtils.toByteArray(entity);
+            this.contentType = entity == null ? null : entity.getContentType();
+            this.contentEncoding = entity == null ? null : entity.getContentEncoding();
+        }
+
+        org.apache.http.HttpResponse copy() {
+            BasicHttpResponse response = new BasicHttpResponse(statusLine);
+            response.setHeaders(headers);
+
+            if (body != null) {
+                ByteArrayEntity entity = new ByteArrayEntity(body);
+                entity.setContentType(contentType);
+                entity.setContentEncoding(contentEncoding);
+                response.setEntity(entity);
+            }
+
+            return response;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (OandaClient.class) {
+            if (shared == this)
+                shared = null;
+        }
+        httpClient.close();
+    }
+
+    private CloseableHttpAsyncClient makeHttpClient() {
+        final int id = clientCount.incrementAndGet();
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "oanda-client-" + id + "-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setTcpNoDelay(tcpNoDelay)
+                .setSoKeepAlive(keepAlive > 0)
+                .setConnectTimeout(connectTimeout)
+                .setSoTimeout(socketTimeout)
+                .build();
+
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(ioReactorConfig, threadFactory));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Unable to start the I/O reactor", e);
+        }
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .build();
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        };
+
+        return HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setThreadFactory(threadFactory)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setConnectionReuseStrategy(keepAlive > 0 ? null : NoConnectionReuseStrategy.INSTANCE)
+                .disableCookieManagement()
+                .build();
+    }
+
+    private static HttpUriRequest makeRequest(HttpMethod method, String url, Map<String, Object> fields)
+            throws UnsupportedEncodingException {
+
+        switch (method) {
+            case GET:
+                return new HttpGet(withQuery(url, fields));
+            case DELETE:
+                return new HttpDelete(withQuery(url, fields));
+            case HEAD:
+                return new HttpHead(withQuery(url, fields));
+            case OPTIONS:
+                return new HttpOptions(withQuery(url, fields));
+            case POST:
+                return withForm(new HttpPost(url), fields);
+            case PUT:
+                return withForm(new HttpPut(url), fields);
+            case PATCH:
+                return withForm(new HttpPatch(url), fields);
+            default:
+                throw new IllegalArgumentException("Unsupported method " + method);
+        }
+    }
+
+    private static String withQuery(String url, Map<String, Object> fields) throws UnsupportedEncodingException {
+        if (fields == null || fields.isEmpty())
+            return url;
+
+        StringBuilder sb = new StringBuilder(url.length() + fields.size() * 24).append(url);
+        char separator = url.indexOf('?') < 0 ? '?' : '&';
+
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (field.getValue() == null)
+                continue;
+
+            sb.append(separator)
+                    .append(URLEncoder.encode(field.getKey(), "UTF-8"))
+                    .append('=')
+                    .append(URLEncoder.encode(field.getValue().toString(), "UTF-8"));
+            separator = '&';
+        }
+
+        return sb.toString();
+    }
+
+    private static HttpEntityEnclosingRequestBase withForm(HttpEntityEnclosingRequestBase request, Map<String, Object> fields)
+            throws UnsupportedEncodingException {
+
+        if (fields == null || fields.isEmpty())
+            return request;
+
+        List<NameValuePair> pairs = new ArrayList<>(fields.size());
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (field.getValue() != null)
+                pairs.add(new BasicNameValuePair(field.getKey(), field.getValue().toString()));
+        }
+        request.setEntity(new UrlEncodedFormEntity(pairs, "UTF-8"));
+
+        return request;
+    }
+
+    /**
+     * Settings of an {@link OandaClient}. Timeouts are in milliseconds, 0 meaning no timeout.
+     */
+    public static final class Builder {
+        private int maxConnectionsPerRoute = 20;
+        private int maxConnectionsTotal = 100;
+        private int connectTimeout = 10000;
+        private int socketTimeout = 30000;
+        private int connectionRequestTimeout = 10000;
+        private long keepAlive = 30000;
+        private boolean tcpNoDelay = true;
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+        private RateLimiter rateLimiter;
+        private ConcurrencyLimiter concurrencyLimiter;
+        private CircuitBreaker circuitBreaker;
+        private MetricsListener metrics;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxConnectionsPerRoute pooled connections per host, default 20
+         */
+        public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = positive(maxConnectionsPerRoute, "maxConnectionsPerRoute");
+            return this;
+        }
+
+        /**
+         * @param maxConnectionsTotal pooled connections over all hosts, default 100
+         */
+        public Builder maxConnectionsTotal(int maxConnectionsTotal) {
+            this.maxConnectionsTotal = positive(maxConnectionsTotal, "maxConnectionsTotal");
+            return this;
+        }
+
+        /**
+         * @param connectTimeout time to establish a connection, default 10 s
+         */
+        public Builder connectTimeout(int connectTimeout) {
+            this.connectTimeout = notNegative(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * @param socketTimeout maximum inactivity while waiting for data, default 30 s
+         */
+        public Builder socketTimeout(int socketTimeout) {
+            this.socketTimeout = notNegative(socketTimeout, "socketTimeout");
+            return this;
+        }
+
+        /**
+         * @param connectionRequestTimeout time to wait for a free pooled connection, default 10 s
+         */
+        public Builder connectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = notNegative(connectionRequestTimeout, "connectionRequestTimeout");
+            return this;
+        }
+
+        /**
+         * @param keepAlive how long an idle connection is kept for reuse, default 30 s; 0 disables reuse
+         */
+        public Builder keepAlive(long keepAlive) {
+            if (keepAlive < 0)
+                throw new IllegalArgumentException("keepAlive must not be negative");
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param tcpNoDelay disable Nagle's algorithm, default true
+         */
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * @param ioThreads number of I/O dispatcher threads, default one per processor
+         */
+        public Builder ioThreads(int ioThreads) {
+            this.ioThreads = positive(ioThreads, "ioThreads");
+            return this;
+        }
+
+        /**
+         * @param rateLimiter limiter to pace requests with, default none
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * @param concurrencyLimiter adaptive limit of the requests in flight per route, default none
+         */
+        public Builder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * @param circuitBreaker breaker failing the requests of unhealthy routes fast, default none
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * @param metrics listener timing every request, default none
+         */
+        public Builder metrics(MetricsListener metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public OandaClient build() {
+            return new OandaClient(this);
+        }
+
+        private static int positive(int value, String name) {
+            if (value <= 0)
+                throw new IllegalArgumentException(name + " must be positive");
+            return value;
+        }
+
+        private static int notNegative(int value, String name) {
+            if (value < 0)
+                throw new IllegalArgumentException(name + " must not be negative");
+            return value;
+        }
+    }
+}
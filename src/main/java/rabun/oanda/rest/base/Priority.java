@@ -0,0 +1,21 @@
+package rabun.oanda.rest.base;
+
+/**
+ * Scheduling class of a request when the client paces its requests
+ *
+ * @see RateLimiter
+ */
+public enum Priority {
+    /**
+     * Order and trade changes, served before anything else
+     */
+    high,
+    /**
+     * Regular reads: prices, open orders and trades, positions
+     */
+    normal,
+    /**
+     * Bulk history pulls: candles and transaction history
+     */
+    low
+}
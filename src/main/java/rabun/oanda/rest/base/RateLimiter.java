@@ -0,0 +1,338 @@
+package rabun.oanda.rest.base;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side pacing of requests with token buckets.
+ *
+ * There is one bucket for all requests of a client and optionally one per route, keyed by the route
+ * template, e.g. "/v1/accounts/{account_id}/transactions". A request goes out once it gets a token from
+ * both. Requests that have to wait queue in one lane per {@link Priority}; whenever tokens free up the
+ * high lane is served first, so order and trade changes are never stuck behind a candle backfill.
+ * Within a lane requests go out in arrival order, except that a request held back by its own route
+ * limit does not block the ones behind it.
+ *
+ * Waiting never holds a thread: {@link #acquire(Priority, RouteTemplate)} returns a future that is
+ * completed when the request may be sent.
+ *
+ * <pre>
+ * RateLimiter limiter = RateLimiter.builder()
+ *         .rate(10, 20)
+ *         .route("/v1/accounts/{account_id}/transactions", 1.0 / 60, 1)
+ *         .build();
+ * OandaClient client = OandaClient.builder().rateLimiter(limiter).build();
+ * </pre>
+ */
+public final class RateLimiter {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "oanda-rate-limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Priority[] priorities = Priority.values();
+
+    private final Bucket global;
+    private final Map<String, Bucket> routes;
+
+    private final List<ArrayDeque<Waiter>> lanes = new ArrayList<>(priorities.length);
+    private final long[] granted = new long[priorities.length];
+    private final long[] waitNanos = new long[priorities.length];
+    private final int[] maxDepth = new int[priorities.length];
+
+    private long scheduledAt = Long.MAX_VALUE;
+
+    private RateLimiter(Builder builder) {
+        this.global = builder.global == null ? null : builder.global.copy();
+
+        Map<String, Bucket> routes = new HashMap<>();
+        for (Map.Entry<String, Bucket> route : builder.routes.entrySet())
+            routes.put(route.getKey(), route.getValue().copy());
+        this.routes = Collections.unmodifiableMap(routes);
+
+        for (int i = 0; i < priorities.length; i++)
+            lanes.add(new ArrayDeque<>());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Wait for a token without blocking
+     *
+     * @param priority lane to wait in
+     * @param route route of the request, null if it is only subject to the global limit
+     * @return future completed when the request may be sent
+     */
+    public CompletableFuture<Void> acquire(Priority priority, RouteTemplate route) {
+        Bucket bucket = route == null ? null : routes.get(route.route());
+        Waiter waiter = new Waiter(bucket, System.nanoTime());
+
+        List<Waiter> ready;
+        synchronized (this) {
+            long now = waiter.since;
+
+            if (idle() && available(bucket, now)) {
+                take(bucket);
+                granted[priority.ordinal()]++;
+                waiter.future.complete(null);
+                return waiter.future;
+            }
+
+            ArrayDeque<Waiter> lane = lanes.get(priority.ordinal());
+            lane.add(waiter);
+            if (bucket != null)
+                bucket.queued++;
+            maxDepth[priority.ordinal()] = Math.max(maxDepth[priority.ordinal()], lane.size());
+
+            ready = drain(now);
+            schedule(now);
+        }
+
+        complete(ready);
+        return waiter.future;
+    }
+
+    /**
+     * @return requests currently waiting in a lane
+     */
+    public synchronized int GetQueueDepth(Priority priority) {
+        return lanes.get(priority.ordinal()).size();
+    }
+
+    /**
+     * @return requests currently waiting for a token of a route, 0 for routes without a limit
+     */
+    public synchronized int GetQueueDepth(String route) {
+        Bucket bucket = routes.get(route);
+        return bucket == null ? 0 : bucket.queued;
+    }
+
+    /**
+     * @return the deepest a lane has been
+     */
+    public synchronized int GetMaxQueueDepth(Priority priority) {
+        return maxDepth[priority.ordinal()];
+    }
+
+    /**
+     * @return requests let through in a lane
+     */
+    public synchronized long GetGranted(Priority priority) {
+        return granted[priority.ordinal()];
+    }
+
+    /**
+     * @return total time requests of a lane spent queued, in nanoseconds
+     */
+    public synchronized long GetWaitNanos(Priority priority) {
+        return waitNanos[priority.ordinal()];
+    }
+
+    private void dispatch() {
+        List<Waiter> ready;
+        synchronized (this) {
+            long now = System.nanoTime();
+            scheduledAt = Long.MAX_VALUE;
+
+            ready = drain(now);
+            schedule(now);
+        }
+
+        complete(ready);
+    }
+
+    /**
+     * Hand out the available tokens, highest lane first
+     */
+    private List<Waiter> drain(long now) {
+        List<Waiter> ready = null;
+
+        for (int i = 0; i < priorities.length; i++) {
+            Iterator<Waiter> iterator = lanes.get(i).iterator();
+            while (iterator.hasNext()) {
+                if (global != null && !global.available(now))
+                    return ready;
+
+                Waiter waiter = iterator.next();
+                if (waiter.future.isDone()) {
+                    // cancelled while waiting
+                    remove(iterator, waiter);
+                    continue;
+                }
+
+                if (waiter.bucket == null || waiter.bucket.available(now)) {
+                    take(waiter.bucket);
+                    remove(iterator, waiter);
+                    granted[i]++;
+                    waitNanos[i] += now - waiter.since;
+
+                    if (ready == null)
+                        ready = new ArrayList<>();
+                    ready.add(waiter);
+                }
+            }
+        }
+
+        return ready;
+    }
+
+    /**
+     * Arrange for the next drain when the earliest token a waiting request needs is due
+     */
+    private void schedule(long now) {
+        if (idle())
+            return;
+
+        long delay = Long.MAX_VALUE;
+        if (global != null && !global.available(now)) {
+            delay = global.nanosUntilToken(now);
+        } else {
+            for (ArrayDeque<Waiter> lane : lanes) {
+                for (Waiter waiter : lane) {
+                    if (waiter.bucket != null)
+                        delay = Math.min(delay, waiter.bucket.nanosUntilToken(now));
+                }
+            }
+        }
+
+        if (delay == Long.MAX_VALUE || now + delay >= scheduledAt)
+            return;
+
+        scheduledAt = now + delay;
+        scheduler.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private boolean idle() {
+        for (ArrayDeque<Waiter> lane : lanes) {
+            if (!lane.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    private boolean available(Bucket bucket, long now) {
+        return (global == null || global.available(now)) && (bucket == null || bucket.available(now));
+    }
+
+    private void take(Bucket bucket) {
+        if (global != null)
+            global.tokens--;
+        if (bucket != null)
+            bucket.tokens--;
+    }
+
+    private static void remove(Iterator<Waiter> iterator, Waiter waiter) {
+        iterator.remove();
+        if (waiter.bucket != null)
+            waiter.bucket.queued--;
+    }
+
+    private static void complete(List<Waiter> ready) {
+        if (ready == null)
+            return;
+
+        for (Waiter waiter : ready)
+            waiter.future.complete(null);
+    }
+
+    private static final class Waiter {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final Bucket bucket;
+        final long since;
+
+        Waiter(Bucket bucket, long since) {
+            this.bucket = bucket;
+            this.since = since;
+        }
+    }
+
+    private static final class Bucket {
+        final int capacity;
+        final double nanosPerToken;
+
+        double tokens;
+        long refilledAt;
+        int queued;
+
+        Bucket(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0)
+                throw new IllegalArgumentException("permitsPerSecond must be positive");
+            if (burst <= 0)
+                throw new IllegalArgumentException("burst must be positive");
+
+            this.capacity = burst;
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        Bucket copy() {
+            return new Bucket(TimeUnit.SECONDS.toNanos(1) / nanosPerToken, capacity);
+        }
+
+        boolean available(long now) {
+            refill(now);
+            return tokens >= 1;
+        }
+
+        long nanosUntilToken(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * nanosPerToken);
+        }
+
+        private void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+                refilledAt = now;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private Bucket global;
+        private final Map<String, Bucket> routes = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Limit all requests
+         *
+         * @param permitsPerSecond sustained request rate
+         * @param burst requests that may go out at once after a quiet period
+         */
+        public Builder rate(double permitsPerSecond, int burst) {
+            this.global = new Bucket(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Limit the requests of one route, on top of the overall rate
+         *
+         * @param route route template as the endpoints declare it, e.g. "/v1/accounts/{account_id}/transactions"
+         * @param permitsPerSecond sustained request rate, e.g. 1.0 / 60 for one request a minute
+         * @param burst requests that may go out at once after a quiet period
+         */
+        public Builder route(String route, double permitsPerSecond, int burst) {
+            this.routes.put(route, new Bucket(permitsPerSecond, burst));
+            return this;
+        }
+
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
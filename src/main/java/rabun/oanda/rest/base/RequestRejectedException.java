@@ -0,0 +1,14 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+/**
+ * A request that was not sent because its route is overloaded or unhealthy, see {@link ConcurrencyLimiter}
+ * and {@link CircuitBreaker}. It is not retried by a {@link RetryPolicy}.
+ */
+public class RequestRejectedException extends UnirestException {
+
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+}
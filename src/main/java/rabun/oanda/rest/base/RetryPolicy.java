@@ -0,0 +1,417 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.metrics.LatencyHistogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hedging and retries for idempotent reads, set on an endpoint with {@link Endpoint#SetRetryPolicy(RetryPolicy)}.
+ *
+ * A GET that has no response within the hedge delay of its route is sent a second time and whichever answers
+ * first wins. The hedge delay is a percentile, p95 by default, of the recent response times of the route, so
+ * only the slow tail is hedged. Requests that fail, or are answered with 429 or 5xx, are retried after a
+ * jittered exponential backoff, and no sooner than a Retry-After the server asks for. Requests rejected by the
+ * client's {@link ConcurrencyLimiter} or {@link CircuitBreaker} are not retried.
+ *
+ * Hedges and retries draw from one budget: every request adds a fraction of a token and every extra attempt
+ * takes one, topped up by a few tokens a second, so during an outage the client sends at most that fraction
+ * more requests instead of multiplying its load. Extra attempts are paced by the client's {@link RateLimiter}
+ * like any other request. Share one policy between endpoints to give them one budget.
+ *
+ * <pre>
+ * RetryPolicy policy = RetryPolicy.builder()
+ *         .retries(3)
+ *         .hedgePercentile(95)
+ *         .build();
+ * rates.SetRetryPolicy(policy);
+ * </pre>
+ */
+public final class RetryPolicy {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "oanda-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int MIN_SAMPLES = 20;
+    private static final int REFRESH_SAMPLES = 16;
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(30);
+    private static final double BUDGET_CAPACITY = 10;
+
+    private final int retries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final double hedgePercentile;
+    private final long minHedgeDelay;
+    private final double budgetRatio;
+    private final double budgetPerSecond;
+
+    private final ConcurrentHashMap<String, RouteLatency> latencies = new ConcurrentHashMap<>();
+
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    private double tokens = BUDGET_CAPACITY;
+    private long refilledAt = System.nanoTime();
+
+    private RetryPolicy(Builder builder) {
+        this.retries = builder.retries;
+        this.baseDelay = TimeUnit.MILLISECONDS.toNanos(builder.baseDelay);
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos(builder.maxDelay);
+        this.hedgePercentile = builder.hedgePercentile;
+        this.minHedgeDelay = TimeUnit.MILLISECONDS.toNanos(builder.minHedgeDelay);
+        this.budgetRatio = builder.budgetRatio;
+        this.budgetPerSecond = builder.budgetPerSecond;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Send an idempotent request under this policy
+     *
+     * @param route route the url was expanded from, hedge delays are kept per route; null for none
+     * @param send sends the request
+     * @param hedge sends an identical request that is never shared with the one in flight
+     * @return future completed with the first response that is not retried, or the last one when the retries or
+     * the budget run out; exceptionally if the last attempt failed
+     */
+    public <T> CompletableFuture<HttpResponse<T>> execute(RouteTemplate route, Supplier<CompletableFuture<HttpResponse<T>>> send,
+                                                          Supplier<CompletableFuture<HttpResponse<T>>> hedge) {
+        deposit();
+
+        Call<T> call = new Call<>(latencyOf(route), send, hedge);
+        call.start();
+        return call.result;
+    }
+
+    /**
+     * @return attempts sent after a failed or rejected one
+     */
+    public long GetRetries() {
+        return retried.sum();
+    }
+
+    /**
+     * @return second requests sent while the first was slow
+     */
+    public long GetHedges() {
+        return hedged.sum();
+    }
+
+    /**
+     * @return hedges that answered before the request they hedged
+     */
+    public long GetHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return hedges and retries that were not sent because the budget was used up
+     */
+    public long GetBudgetExhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * @param route route template, e.g. "/v1/prices"
+     * @return current hedge delay of the route in nanoseconds, -1 while there are too few responses to derive it
+     */
+    public long GetHedgeDelay(String route) {
+        RouteLatency latency = latencies.get(route);
+        return latency == null ? -1 : latency.hedgeDelay;
+    }
+
+    private RouteLatency latencyOf(RouteTemplate route) {
+        return latencies.computeIfAbsent(OandaClient.routeName(route), name -> new RouteLatency());
+    }
+
+    private synchronized void deposit() {
+        refill();
+        tokens = Math.min(BUDGET_CAPACITY, tokens + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        refill();
+        if (tokens < 1) {
+            exhausted.increment();
+            return false;
+        }
+
+        tokens--;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(BUDGET_CAPACITY, tokens + (now - refilledAt) * budgetPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+
+    /**
+     * @return full jitter backoff before the given retry, -1 if the server asks to wait longer than the maximum delay
+     */
+    private long backoff(int retry, HttpResponse<?> response) {
+        long ceiling = Math.min(maxDelay, baseDelay << Math.min(retry - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+
+        long retryAfter = retryAfter(response);
+        if (retryAfter > maxDelay)
+            return -1;
+
+        return Math.max(delay, retryAfter);
+    }
+
+    private static long retryAfter(HttpResponse<?> response) {
+        if (response == null || response.getHeaders() == null)
+            return 0;
+
+        for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+            if (!"Retry-After".equalsIgnoreCase(header.getKey()) || header.getValue().isEmpty())
+                continue;
+            try {
+                return TimeUnit.SECONDS.toNanos(Long.parseLong(header.getValue().get(0).trim()));
+            } catch (NumberFormatException e) {
+                // an http date, wait for the backoff instead
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean retryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * One request through its attempts. Each round sends the request and, when it is slow, one hedge; the next
+     * round starts once every attempt of the round was rejected.
+     */
+    private final class Call<T> {
+        final RouteLatency latency;
+        final Supplier<CompletableFuture<HttpResponse<T>>> send;
+        final Supplier<CompletableFuture<HttpResponse<T>>> hedge;
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+        int round;
+        int pending;
+
+        Call(RouteLatency latency, Supplier<CompletableFuture<HttpResponse<T>>> send,
+             Supplier<CompletableFuture<HttpResponse<T>>> hedge) {
+            this.latency = latency;
+            this.send = send;
+            this.hedge = hedge;
+        }
+
+        void start() {
+            int round;
+            synchronized (this) {
+                if (result.isDone())
+                    return;
+                pending = 1;
+                round = this.round;
+            }
+
+            attempt(send, round, false);
+
+            long delay = latency.hedgeDelay;
+            if (hedgePercentile > 0 && delay >= 0)
+                scheduler.schedule(() -> hedge(round), delay, TimeUnit.NANOSECONDS);
+        }
+
+        void hedge(int round) {
+            synchronized (this) {
+                if (result.isDone() || round != this.round || pending == 0 || !withdraw())
+                    return;
+                pending++;
+            }
+
+            hedged.increment();
+            attempt(hedge, round, true);
+        }
+
+        void attempt(Supplier<CompletableFuture<HttpResponse<T>>> sender, int round, boolean hedging) {
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> future;
+            try {
+                future = sender.get();
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(new UnirestException(e));
+            }
+
+            future.whenComplete((response, error) -> settle(round, hedging, response, unwrap(error), System.nanoTime() - started));
+        }
+
+        void settle(int round, boolean hedging, HttpResponse<T> response, Throwable error, long elapsed) {
+            if (response != null)
+                latency.record(elapsed);
+
+            long delay;
+            synchronized (this) {
+                if (result.isDone() || round != this.round)
+                    return;
+
+                boolean retry = error != null
+                        ? error instanceof UnirestException && !(error instanceof RequestRejectedException)
+                        : retryable(response.getCode());
+                if (retry) {
+                    if (--pending > 0)
+                        return;
+
+                    delay = this.round < retries ? backoff(this.round + 1, response) : -1;
+                    if (delay >= 0 && !withdraw())
+                        delay = -1;
+                    if (delay >= 0)
+                        this.round++;
+                } else {
+                    delay = -1;
+                    if (hedging)
+                        hedgeWins.increment();
+                }
+            }
+
+            if (delay >= 0) {
+                retried.increment();
+                scheduler.schedule(this::start, delay, TimeUnit.NANOSECONDS);
+            } else if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(response);
+            }
+        }
+    }
+
+    /**
+     * Recent response times of a route. The hedge delay is derived from the current window once it has enough
+     * responses, from the previous one until then.
+     */
+    private final class RouteLatency {
+        final AtomicInteger sinceRefresh = new AtomicInteger();
+
+        volatile LatencyHistogram current = new LatencyHistogram();
+        volatile LatencyHistogram previous = new LatencyHistogram();
+        volatile long rotatedAt = System.nanoTime();
+        volatile long hedgeDelay = -1;
+
+        void record(long nanos) {
+            current.record(nanos);
+
+            long now = System.nanoTime();
+            if (now - rotatedAt > WINDOW) {
+                synchronized (this) {
+                    if (now - rotatedAt > WINDOW) {
+                        previous = current;
+                        current = new LatencyHistogram();
+                        rotatedAt = now;
+                        refresh();
+                    }
+                }
+            } else if (sinceRefresh.incrementAndGet() >= REFRESH_SAMPLES) {
+                refresh();
+            }
+        }
+
+        private void refresh() {
+            sinceRefresh.set(0);
+
+            LatencyHistogram window = current.GetCount() >= MIN_SAMPLES ? current : previous;
+            hedgeDelay = window.GetCount() >= MIN_SAMPLES
+                    ? Math.max(minHedgeDelay, window.GetPercentile(hedgePercentile))
+                    : -1;
+        }
+    }
+
+    public static final class Builder {
+        private int retries = 3;
+        private long baseDelay = 50;
+        private long maxDelay = 2000;
+        private double hedgePercentile = 95;
+        private long minHedgeDelay = 5;
+        private double budgetRatio = 0.1;
+        private double budgetPerSecond = 5;
+
+        private Builder() {
+        }
+
+        /**
+         * @param retries attempts after the first one is rejected, default 3; 0 only hedges
+         */
+        public Builder retries(int retries) {
+            if (retries < 0)
+                throw new IllegalArgumentException("retries must not be negative");
+            this.retries = retries;
+            return this;
+        }
+
+        /**
+         * @param baseDelay ceiling of the first backoff in milliseconds, doubled for every further retry, default 50
+         * @param maxDelay largest backoff in milliseconds, default 2000; a longer Retry-After is not waited for
+         */
+        public Builder backoff(long baseDelay, long maxDelay) {
+            if (baseDelay <= 0 || maxDelay < baseDelay)
+                throw new IllegalArgumentException("baseDelay must be positive and not above maxDelay");
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param hedgePercentile percentile of the route's response times after which a hedge is sent, default 95;
+         *                        0 disables hedging
+         */
+        public Builder hedgePercentile(double hedgePercentile) {
+            if (hedgePercentile < 0 || hedgePercentile > 100)
+                throw new IllegalArgumentException("hedgePercentile must be between 0 and 100");
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        /**
+         * @param minHedgeDelay shortest hedge delay in milliseconds, default 5
+         */
+        public Builder minHedgeDelay(long minHedgeDelay) {
+            if (minHedgeDelay < 0)
+                throw new IllegalArgumentException("minHedgeDelay must not be negative");
+            this.minHedgeDelay = minHedgeDelay;
+            return this;
+        }
+
+        /**
+         * @param ratio extra attempts allowed per request, default 0.1
+         * @param perSecond extra attempts allowed per second regardless of traffic, default 5
+         */
+        public Builder budget(double ratio, double perSecond) {
+            if (ratio < 0 || perSecond < 0)
+                throw new IllegalArgumentException("budget must not be negative");
+            this.budgetRatio = ratio;
+            this.budgetPerSecond = perSecond;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
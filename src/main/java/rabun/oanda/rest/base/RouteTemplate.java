@@ -0,0 +1,167 @@
+package rabun.oanda.rest.base;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Route with {name} placeholders, e.g. /v1/accounts/{account_id}/trades/{trade_id}.
+ *
+ * The route is split into literal segments and parameter names once, when the template is compiled,
+ * so expanding it is a straight append of segments and values into a reused buffer. Endpoint classes
+ * keep their templates in static fields so the parsing happens at class load.
+ */
+public final class RouteTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    private final String route;
+    private final String[] literals;
+    private final String[] params;
+
+    private RouteTemplate(String route, String[] literals, String[] params) {
+        this.route = route;
+        this.literals = literals;
+        this.params = params;
+    }
+
+    /**
+     * @param route route with {name} placeholders
+     * @return compiled template
+     */
+    public static RouteTemplate compile(String route) {
+        List<String> literals = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+
+        int from = 0;
+        while (true) {
+            int open = route.indexOf('{', from);
+            if (open < 0)
+                break;
+
+            int close = route.indexOf('}', open);
+            if (close < 0)
+                throw new IllegalArgumentException("Unclosed placeholder in route " + route);
+
+            literals.add(route.substring(from, open));
+            params.add(route.substring(open + 1, close));
+            from = close + 1;
+        }
+        literals.add(route.substring(from));
+
+        return new RouteTemplate(route, literals.toArray(new String[literals.size()]),
+                params.toArray(new String[params.size()]));
+    }
+
+    public String route() {
+        return route;
+    }
+
+    public int paramCount() {
+        return params.length;
+    }
+
+    public String paramName(int index) {
+        return params[index];
+    }
+
+    public String expand(String base) {
+        check(0);
+        return start(base).append(literals[0]).toString();
+    }
+
+    public String expand(String base, long first) {
+        check(1);
+        return start(base)
+                .append(literals[0]).append(first)
+                .append(literals[1]).toString();
+    }
+
+    public String expand(String base, long first, long second) {
+        check(2);
+        return start(base)
+                .append(literals[0]).append(first)
+                .append(literals[1]).append(second)
+                .append(literals[2]).toString();
+    }
+
+    public String expand(String base, long first, String second) {
+        check(2);
+        StringBuilder sb = start(base)
+                .append(literals[0]).append(first)
+                .append(literals[1]);
+        return appendEncoded(sb, second)
+                .append(literals[2]).toString();
+    }
+
+    /**
+     * Expand with positional values, in placeholder order
+     */
+    public String expand(String base, String... values) {
+        check(values.length);
+
+        StringBuilder sb = start(base).append(literals[0]);
+        for (int i = 0; i < values.length; i++)
+            appendEncoded(sb, values[i]).append(literals[i + 1]);
+
+        return sb.toString();
+    }
+
+    /**
+     * Expand with named values
+     */
+    public String expand(String base, Map<String, String> values) {
+        StringBuilder sb = start(base).append(literals[0]);
+        for (int i = 0; i < params.length; i++) {
+            String value = values.get(params[i]);
+            if (value == null)
+                throw new IllegalArgumentException("Missing route parameter " + params[i] + " for " + route);
+
+            appendEncoded(sb, value).append(literals[i + 1]);
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return route;
+    }
+
+    private void check(int count) {
+        if (count != params.length)
+            throw new IllegalArgumentException("Route " + route + " takes " + params.length + " parameters, got " + count);
+    }
+
+    private static StringBuilder start(String base) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        if (base != null)
+            sb.append(base);
+        return sb;
+    }
+
+    private static StringBuilder appendEncoded(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-' || c == '.' || c == '~';
+
+            if (!safe) {
+                try {
+                    return sb.append(URLEncoder.encode(value, "UTF-8").replace("+", "%20"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return sb.append(value);
+    }
+}
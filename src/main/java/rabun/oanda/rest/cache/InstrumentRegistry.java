@@ -0,0 +1,190 @@
+package rabun.oanda.rest.cache;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.base.Futures;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Instrument;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tradeable instruments of an account, loaded once and looked up in memory.
+ *
+ * Instruments are indexed by name and by a dense integer id, so hot paths can keep an int instead of a
+ * string and index arrays with it. Ids are handed out the first time an instrument is seen and stay the
+ * same across refreshes; an instrument that disappears from the list keeps its id and last known values.
+ *
+ * The list can be refreshed in the background; lookups always see a complete snapshot and never block.
+ * A failed refresh keeps the previous snapshot.
+ */
+public class InstrumentRegistry implements Closeable {
+
+    /**
+     * All instrument fields, the api returns only some of them by default
+     */
+    public static final String FIELDS = "instrument,displayName,pip,maxTradeUnits,precision,maxTrailingStop,"
+            + "minTrailingStop,marginRate,halted";
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "oanda-instrument-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final class Snapshot {
+        final Instrument[] byId;
+        final Map<String, Integer> ids;
+
+        Snapshot(Instrument[] byId, Map<String, Integer> ids) {
+            this.byId = byId;
+            this.ids = ids;
+        }
+    }
+
+    private final RateEndpoints rates;
+    private final long accountId;
+
+    private volatile Snapshot snapshot = new Snapshot(new Instrument[0], Collections.<String, Integer>emptyMap());
+    private volatile Throwable lastError;
+    private volatile long loadedAt;
+
+    private ScheduledFuture<?> refresh;
+
+    public InstrumentRegistry(RateEndpoints rates, long accountId) {
+        if (rates == null)
+            throw new IllegalArgumentException("rates must not be null");
+
+        this.rates = rates;
+        this.accountId = accountId;
+    }
+
+    /**
+     * Load the instrument list, blocking until it is there
+     *
+     * @return this registry
+     * @throws UnirestException
+     */
+    public InstrumentRegistry Load() throws UnirestException {
+        Futures.await(LoadAsync());
+        return this;
+    }
+
+    /**
+     * Load the instrument list without blocking the calling thread
+     *
+     * @return future completed once the new list is visible to lookups
+     */
+    public CompletableFuture<Void> LoadAsync() {
+        return rates.GetInstrumentsAsync(accountId, FIELDS, null).handle((instruments, error) -> {
+            if (error != null) {
+                lastError = error;
+                throw error instanceof RuntimeException ? (RuntimeException) error : new IllegalStateException(error);
+            }
+
+            update(instruments);
+            lastError = null;
+            loadedAt = System.currentTimeMillis();
+            return null;
+        });
+    }
+
+    /**
+     * Reload the list periodically in the background, replacing any earlier schedule
+     */
+    public synchronized void StartRefresh(long period, TimeUnit unit) {
+        StopRefresh();
+        refresh = scheduler.scheduleAtFixedRate(this::LoadAsync, period, period, unit);
+    }
+
+    public synchronized void StopRefresh() {
+        if (refresh != null) {
+            refresh.cancel(false);
+            refresh = null;
+        }
+    }
+
+    /**
+     * @return the instrument, null if it is not known
+     */
+    public Instrument Get(String instrument) {
+        Snapshot current = snapshot;
+        Integer id = current.ids.get(instrument);
+        return id == null ? null : current.byId[id];
+    }
+
+    /**
+     * @return the instrument with the given id
+     * @throws IndexOutOfBoundsException if the id was never handed out
+     */
+    public Instrument Get(int id) {
+        return snapshot.byId[id];
+    }
+
+    /**
+     * @return dense id of the instrument, -1 if it is not known
+     */
+    public int IdOf(String instrument) {
+        Integer id = snapshot.ids.get(instrument);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return number of ids handed out, ids run from 0 to Size() - 1
+     */
+    public int Size() {
+        return snapshot.byId.length;
+    }
+
+    public List<Instrument> GetInstruments() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.byId));
+    }
+
+    /**
+     * @return failure of the last load, null if it succeeded
+     */
+    public Throwable GetLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return when the list was last loaded, milliseconds since the epoch, 0 if never
+     */
+    public long GetLoadedAt() {
+        return loadedAt;
+    }
+
+    @Override
+    public void close() {
+        StopRefresh();
+    }
+
+    private synchronized void update(List<Instrument> instruments) {
+        Snapshot current = snapshot;
+
+        Map<String, Integer> ids = new HashMap<>(current.ids);
+        List<Instrument> byId = new ArrayList<>(Arrays.asList(current.byId));
+
+        for (Instrument instrument : instruments) {
+            Integer id = ids.get(instrument.instrument);
+            if (id == null) {
+                ids.put(instrument.instrument, byId.size());
+                byId.add(instrument);
+            } else {
+                byId.set(id, instrument);
+            }
+        }
+
+        snapshot = new Snapshot(byId.toArray(new Instrument[byId.size()]), Collections.unmodifiableMap(ids));
+    }
+}
@@ -0,0 +1,182 @@
+package rabun.oanda.rest.cache;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.base.Futures;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Price;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single instrument price requests into one multi-instrument {@link RateEndpoints#GetPrices(String)} call.
+ *
+ * The first request opens a batch; requests arriving within the batching window join it, and the batch is
+ * sent when the window closes or when it reaches the size cap, whichever comes first. Each caller gets
+ * its own instrument's price out of the combined response. Requests for the same instrument in one batch
+ * share its entry.
+ */
+public class PriceBatcher {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "oanda-price-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RateEndpoints rates;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private Map<String, CompletableFuture<Price>> batch;
+
+    private long batches;
+    private long batchedInstruments;
+    private int largestBatch;
+    private long latencyNanos;
+    private long maxLatencyNanos;
+
+    /**
+     * @param rates endpoint the prices are fetched with
+     * @param window how long a batch stays open for more instruments
+     * @param maxBatchSize instruments after which a batch is sent without waiting for the window to close
+     */
+    public PriceBatcher(RateEndpoints rates, long window, TimeUnit unit, int maxBatchSize) {
+        if (rates == null)
+            throw new IllegalArgumentException("rates must not be null");
+        if (window < 0)
+            throw new IllegalArgumentException("window must not be negative");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+
+        this.rates = rates;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Get the current price of one instrument
+     *
+     * @param instrument Required instrument
+     * @return price, null if the api returned none for the instrument
+     * @throws UnirestException
+     */
+    public Price GetPrice(String instrument) throws UnirestException {
+        return Futures.await(GetPriceAsync(instrument));
+    }
+
+    /**
+     * Get the current price of one instrument without blocking the calling thread
+     *
+     * @see #GetPrice(String)
+     */
+    public CompletableFuture<Price> GetPriceAsync(String instrument) {
+        if (instrument == null || instrument.isEmpty())
+            throw new IllegalArgumentException("instrument must not be empty");
+
+        Map<String, CompletableFuture<Price>> full = null;
+        CompletableFuture<Price> price;
+
+        synchronized (this) {
+            if (batch == null) {
+                final Map<String, CompletableFuture<Price>> opened = new LinkedHashMap<>();
+                batch = opened;
+                scheduler.schedule(() -> close(opened), windowNanos, TimeUnit.NANOSECONDS);
+            }
+
+            price = batch.get(instrument);
+            if (price == null) {
+                price = new CompletableFuture<>();
+                batch.put(instrument, price);
+            }
+
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                batch = null;
+            }
+        }
+
+        if (full != null)
+            send(full);
+
+        return price;
+    }
+
+    public synchronized long GetBatches() {
+        return batches;
+    }
+
+    public synchronized double GetAverageBatchSize() {
+        return batches == 0 ? 0 : (double) batchedInstruments / batches;
+    }
+
+    public synchronized int GetMaxBatchSize() {
+        return largestBatch;
+    }
+
+    /**
+     * @return average time from sending a batch to its response, in nanoseconds
+     */
+    public synchronized long GetAverageLatencyNanos() {
+        return batches == 0 ? 0 : latencyNanos / batches;
+    }
+
+    public synchronized long GetMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * Window of a batch closed; send it unless the size cap sent it already
+     */
+    private void close(Map<String, CompletableFuture<Price>> opened) {
+        synchronized (this) {
+            if (batch != opened)
+                return;
+            batch = null;
+        }
+
+        send(opened);
+    }
+
+    private void send(final Map<String, CompletableFuture<Price>> batch) {
+        StringBuilder instruments = new StringBuilder();
+        for (String instrument : batch.keySet()) {
+            if (instruments.length() > 0)
+                instruments.append(',');
+            instruments.append(instrument);
+        }
+
+        final long sent = System.nanoTime();
+        rates.GetPricesAsync(instruments.toString()).whenComplete((prices, error) -> {
+            record(batch.size(), System.nanoTime() - sent);
+
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                for (CompletableFuture<Price> price : batch.values())
+                    price.completeExceptionally(cause);
+                return;
+            }
+
+            Map<String, Price> byInstrument = new HashMap<>();
+            for (Price price : prices)
+                byInstrument.put(price.instrument, price);
+
+            for (Map.Entry<String, CompletableFuture<Price>> entry : batch.entrySet())
+                entry.getValue().complete(byInstrument.get(entry.getKey()));
+        });
+    }
+
+    private synchronized void record(int size, long latency) {
+        batches++;
+        batchedInstruments += size;
+        largestBatch = Math.max(largestBatch, size);
+        latencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+}
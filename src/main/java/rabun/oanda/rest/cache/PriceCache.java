@@ -0,0 +1,205 @@
+package rabun.oanda.rest.cache;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.base.Futures;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Price;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Price snapshots in front of {@link RateEndpoints#GetPrices(String)}.
+ *
+ * Quotes are cached per instrument and served as long as they are younger than the staleness bound.
+ * Only the instruments without a fresh quote go to the network, and an instrument that is already
+ * being fetched for another caller is not requested again: the caller waits for that request instead.
+ * So callers asking for the same or overlapping instrument lists at the same time share requests.
+ *
+ * The returned {@link Price} objects are shared between callers and must not be modified.
+ */
+public class PriceCache {
+
+    private static final class Entry {
+        final Price price;
+        final long fetchedAt;
+
+        Entry(Price price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final RateEndpoints rates;
+    private final long maxAgeNanos;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Price>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * @param rates endpoint the prices are fetched with
+     * @param maxAge how old a cached quote may be when it is served
+     */
+    public PriceCache(RateEndpoints rates, long maxAge, TimeUnit unit) {
+        if (rates == null)
+            throw new IllegalArgumentException("rates must not be null");
+        if (maxAge < 0)
+            throw new IllegalArgumentException("maxAge must not be negative");
+
+        this.rates = rates;
+        this.maxAgeNanos = unit.toNanos(maxAge);
+    }
+
+    /**
+     * Get current prices, from the cache where fresh enough
+     *
+     * @param instruments Required comma separated list of instruments
+     * @return prices in the order the instruments were given; instruments the api does not know are left out
+     * @throws UnirestException
+     */
+    public List<Price> GetPrices(String instruments) throws UnirestException {
+        return Futures.await(GetPricesAsync(instruments));
+    }
+
+    /**
+     * Get current prices without blocking the calling thread
+     *
+     * @see #GetPrices(String)
+     */
+    public CompletableFuture<List<Price>> GetPricesAsync(String instruments) {
+        if (instruments == null || instruments.isEmpty())
+            throw new IllegalArgumentException("instruments must not be empty");
+
+        String[] names = instruments.split(",");
+        long now = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Price>[] quotes = new CompletableFuture[names.length];
+        List<String> missing = null;
+        CompletableFuture<Price>[] pending = null;
+        boolean cached = true;
+
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim();
+            names[i] = name;
+
+            Entry entry = entries.get(name);
+            if (entry != null && now - entry.fetchedAt <= maxAgeNanos) {
+                hits.increment();
+                quotes[i] = CompletableFuture.completedFuture(entry.price);
+                continue;
+            }
+
+            misses.increment();
+            cached = false;
+
+            CompletableFuture<Price> quote = new CompletableFuture<>();
+            CompletableFuture<Price> running = inFlight.putIfAbsent(name, quote);
+            if (running != null) {
+                // someone else is fetching this instrument already
+                quotes[i] = running;
+                continue;
+            }
+
+            quotes[i] = quote;
+            if (missing == null) {
+                missing = new ArrayList<>();
+                pending = newFutures(names.length);
+            }
+            pending[missing.size()] = quote;
+            missing.add(name);
+        }
+
+        if (missing != null)
+            fetch(missing, pending);
+
+        if (cached) {
+            List<Price> prices = new ArrayList<>(names.length);
+            for (CompletableFuture<Price> quote : quotes)
+                prices.add(quote.join());
+            return CompletableFuture.completedFuture(prices);
+        }
+
+        return CompletableFuture.allOf(quotes).thenApply(ignored -> {
+            List<Price> prices = new ArrayList<>(quotes.length);
+            for (CompletableFuture<Price> quote : quotes) {
+                Price price = quote.join();
+                if (price != null)
+                    prices.add(price);
+            }
+            return prices;
+        });
+    }
+
+    /**
+     * Drop all cached quotes, the next call for any instrument goes to the network
+     */
+    public void Invalidate() {
+        entries.clear();
+    }
+
+    public long GetHits() {
+        return hits.sum();
+    }
+
+    public long GetMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return requests sent to the api
+     */
+    public long GetRequests() {
+        return requests.sum();
+    }
+
+    private void fetch(final List<String> names, final CompletableFuture<Price>[] quotes) {
+        requests.increment();
+
+        StringBuilder instruments = new StringBuilder();
+        for (String name : names) {
+            if (instruments.length() > 0)
+                instruments.append(',');
+            instruments.append(name);
+        }
+
+        rates.GetPricesAsync(instruments.toString()).whenComplete((prices, error) -> {
+            long fetchedAt = System.nanoTime();
+
+            Map<String, Price> fetched = new HashMap<>();
+            if (prices != null) {
+                for (Price price : prices) {
+                    fetched.put(price.instrument, price);
+                    entries.put(price.instrument, new Entry(price, fetchedAt));
+                }
+            }
+
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                inFlight.remove(name, quotes[i]);
+
+                if (error != null) {
+                    quotes[i].completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    quotes[i].complete(fetched.get(name));
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Price>[] newFutures(int size) {
+        return new CompletableFuture[size];
+    }
+}
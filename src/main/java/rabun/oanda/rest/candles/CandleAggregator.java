@@ -0,0 +1,316 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTimeZone;
+import rabun.oanda.rest.codec.Rfc3339;
+import rabun.oanda.rest.models.CandleBidAsk;
+import rabun.oanda.rest.models.CandleMid;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+import rabun.oanda.rest.models.Price;
+import rabun.oanda.rest.streaming.PriceListener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Builds live candles of every granularity from ticks, instead of polling the candles endpoint.
+ *
+ * Each tick updates the open candle of every granularity of its instrument in one pass; a candle closes
+ * when the first tick after its end arrives, or when {@link #Advance} is called with a later time, and is
+ * then handed to the subscribed {@link CandleListener}s. Like the api, a period without ticks has no candle,
+ * and the volume of a candle is its number of ticks. Boundaries follow the {@link CandleAlignment}.
+ *
+ * The aggregator is a {@link PriceListener}, so it can be subscribed to a {@link rabun.oanda.rest.streaming.PriceStream}
+ * directly; heartbeats close the candles that ended. Listeners are called on the thread that delivers the tick.
+ *
+ * <pre>
+ * CandleAggregator candles = CandleAggregator.builder().candleFormat(CandleFormat.midpoint).build();
+ * candles.Subscribe(listener);
+ * stream.Subscribe(candles);
+ * </pre>
+ */
+public class CandleAggregator implements PriceListener {
+
+    private final CandleFormat candleFormat;
+    private final CandleAlignment alignment;
+    private final GranularityType[] granularities;
+
+    private final Map<String, Bars> instruments = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<CandleListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Open candles of one instrument, row i is the candle of granularities[i]
+     */
+    private final class Bars {
+        final String instrument;
+        final CandleSeries candles;
+        final long[] end;
+
+        Bars(String instrument) {
+            this.instrument = instrument;
+            this.candles = new CandleSeries(candleFormat, granularities.length);
+            this.candles.size = granularities.length;
+            this.end = new long[granularities.length];
+            Arrays.fill(end, Long.MIN_VALUE);
+        }
+    }
+
+    private CandleAggregator(Builder builder) {
+        this.candleFormat = builder.candleFormat;
+        this.alignment = builder.alignment();
+        this.granularities = builder.granularities;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public CandleFormat GetCandleFormat() {
+        return candleFormat;
+    }
+
+    public CandleAlignment GetAlignment() {
+        return alignment;
+    }
+
+    public void Subscribe(CandleListener listener) {
+        listeners.add(listener);
+    }
+
+    public void Unsubscribe(CandleListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onPrice(Price price) {
+        Update(price.instrument, price.timeMicros, price.bid, price.ask);
+    }
+
+    @Override
+    public void onHeartbeat(long timeMicros) {
+        Advance(timeMicros);
+    }
+
+    /**
+     * Add a tick to the open candles of its instrument. A tick older than an open candle is left out of it.
+     */
+    public void Update(String instrument, long timeMicros, float bid, float ask) {
+        Bars bars = instruments.get(instrument);
+        if (bars == null)
+            bars = instruments.computeIfAbsent(instrument, Bars::new);
+
+        synchronized (bars) {
+            CandleSeries c = bars.candles;
+            float mid = (bid + ask) / 2;
+
+            for (int i = 0; i < granularities.length; i++) {
+                if (timeMicros >= bars.end[i]) {
+                    if (c.volume[i] > 0)
+                        close(bars, i);
+                    open(bars, i, timeMicros, bid, ask, mid);
+                    continue;
+                }
+
+                // late tick, or the candle was closed by Advance
+                if (timeMicros < c.time[i] || c.volume[i] == 0)
+                    continue;
+
+                if (c.isBidAsk()) {
+                    if (bid > c.highBid[i]) c.highBid[i] = bid;
+                    if (bid < c.lowBid[i]) c.lowBid[i] = bid;
+                    if (ask > c.highAsk[i]) c.highAsk[i] = ask;
+                    if (ask < c.lowAsk[i]) c.lowAsk[i] = ask;
+                    c.closeBid[i] = bid;
+                    c.closeAsk[i] = ask;
+                } else {
+                    if (mid > c.highMid[i]) c.highMid[i] = mid;
+                    if (mid < c.lowMid[i]) c.lowMid[i] = mid;
+                    c.closeMid[i] = mid;
+                }
+                c.volume[i]++;
+            }
+        }
+    }
+
+    /**
+     * Close the candles of all instruments that end at or before the given time, e.g. the time of a heartbeat
+     */
+    public void Advance(long nowMicros) {
+        for (Bars bars : instruments.values()) {
+            synchronized (bars) {
+                for (int i = 0; i < granularities.length; i++) {
+                    if (nowMicros >= bars.end[i] && bars.candles.volume[i] > 0) {
+                        close(bars, i);
+                        bars.candles.volume[i] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return copy of the open bid/ask candle, null if there is none or the format is midpoint
+     */
+    public CandleBidAsk GetBidAsk(String instrument, GranularityType granularity) {
+        Bars bars = instruments.get(instrument);
+        int i = indexOf(granularity);
+        if (bars == null || i < 0 || candleFormat != CandleFormat.bidask)
+            return null;
+
+        synchronized (bars) {
+            return bars.candles.volume[i] == 0 ? null : bidAsk(bars.candles, i, false);
+        }
+    }
+
+    /**
+     * @return copy of the open midpoint candle, null if there is none or the format is bidask
+     */
+    public CandleMid GetMid(String instrument, GranularityType granularity) {
+        Bars bars = instruments.get(instrument);
+        int i = indexOf(granularity);
+        if (bars == null || i < 0 || candleFormat != CandleFormat.midpoint)
+            return null;
+
+        synchronized (bars) {
+            return bars.candles.volume[i] == 0 ? null : mid(bars.candles, i, false);
+        }
+    }
+
+    private void open(Bars bars, int i, long timeMicros, float bid, float ask, float mid) {
+        CandleSeries c = bars.candles;
+        long start = alignment.start(granularities[i], timeMicros);
+
+        c.time[i] = start;
+        bars.end[i] = alignment.end(granularities[i], start);
+        c.volume[i] = 1;
+
+        if (c.isBidAsk()) {
+            c.openBid[i] = c.highBid[i] = c.lowBid[i] = c.closeBid[i] = bid;
+            c.openAsk[i] = c.highAsk[i] = c.lowAsk[i] = c.closeAsk[i] = ask;
+        } else {
+            c.openMid[i] = c.highMid[i] = c.lowMid[i] = c.closeMid[i] = mid;
+        }
+    }
+
+    private void close(Bars bars, int i) {
+        if (listeners.isEmpty())
+            return;
+
+        if (bars.candles.isBidAsk()) {
+            CandleBidAsk candle = bidAsk(bars.candles, i, true);
+            for (CandleListener listener : listeners)
+                listener.onCandle(bars.instrument, granularities[i], candle);
+        } else {
+            CandleMid candle = mid(bars.candles, i, true);
+            for (CandleListener listener : listeners)
+                listener.onCandle(bars.instrument, granularities[i], candle);
+        }
+    }
+
+    private int indexOf(GranularityType granularity) {
+        for (int i = 0; i < granularities.length; i++) {
+            if (granularities[i] == granularity)
+                return i;
+        }
+        return -1;
+    }
+
+    private static CandleBidAsk bidAsk(CandleSeries c, int i, boolean complete) {
+        CandleBidAsk candle = new CandleBidAsk();
+        candle.timeMicros = c.time[i];
+        candle.time = Rfc3339.format(c.time[i]);
+        candle.openBid = c.openBid[i];
+        candle.openAsk = c.openAsk[i];
+        candle.highBid = c.highBid[i];
+        candle.highAsk = c.highAsk[i];
+        candle.lowBid = c.lowBid[i];
+        candle.lowAsk = c.lowAsk[i];
+        candle.closeBid = c.closeBid[i];
+        candle.closeAsk = c.closeAsk[i];
+        candle.volume = c.volume[i];
+        candle.complete = complete;
+        return candle;
+    }
+
+    private static CandleMid mid(CandleSeries c, int i, boolean complete) {
+        CandleMid candle = new CandleMid();
+        candle.timeMicros = c.time[i];
+        candle.time = Rfc3339.format(c.time[i]);
+        candle.openMid = c.openMid[i];
+        candle.highMid = c.highMid[i];
+        candle.lowMid = c.lowMid[i];
+        candle.closeMid = c.closeMid[i];
+        candle.volume = c.volume[i];
+        candle.complete = complete;
+        return candle;
+    }
+
+    public static final class Builder {
+        private CandleFormat candleFormat = CandleFormat.bidask;
+        private Byte dailyAlignment;
+        private WeeklyAlignment weeklyAlignment;
+        private DateTimeZone alignmentTimezone;
+        private GranularityType[] granularities = GranularityType.values();
+
+        private Builder() {
+        }
+
+        /**
+         * @param candleFormat bidask (default) or midpoint
+         */
+        public Builder candleFormat(CandleFormat candleFormat) {
+            this.candleFormat = candleFormat == null ? CandleFormat.bidask : candleFormat;
+            return this;
+        }
+
+        /**
+         * @param dailyAlignment hour of day the daily candles start at, default 22 as the candle requests
+         */
+        public Builder dailyAlignment(Byte dailyAlignment) {
+            this.dailyAlignment = dailyAlignment;
+            return this;
+        }
+
+        /**
+         * @param weeklyAlignment day the weekly candles start on, default Friday as the candle requests
+         */
+        public Builder weeklyAlignment(WeeklyAlignment weeklyAlignment) {
+            this.weeklyAlignment = weeklyAlignment;
+            return this;
+        }
+
+        /**
+         * @param alignmentTimezone timezone of the daily alignment hour, default UTC
+         */
+        public Builder alignmentTimezone(DateTimeZone alignmentTimezone) {
+            this.alignmentTimezone = alignmentTimezone;
+            return this;
+        }
+
+        /**
+         * @param granularities the granularities to build, default all
+         */
+        public Builder granularities(GranularityType... granularities) {
+            if (granularities == null || granularities.length == 0)
+                throw new IllegalArgumentException("granularities must not be empty");
+            this.granularities = granularities.clone();
+            return this;
+        }
+
+        public CandleAggregator build() {
+            return new CandleAggregator(this);
+        }
+
+        private CandleAlignment alignment() {
+            CandleAlignment defaults = CandleAlignment.of(dailyAlignment, weeklyAlignment);
+            if (alignmentTimezone == null)
+                return defaults;
+
+            return new CandleAlignment(defaults.GetDailyAlignment(), defaults.GetWeeklyAlignment(), alignmentTimezone);
+        }
+    }
+}
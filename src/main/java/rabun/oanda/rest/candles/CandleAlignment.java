@@ -0,0 +1,147 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+/**
+ * Candle boundaries the way the api aligns them.
+ *
+ * Second and minute candles start on multiples of their length since the epoch. Hourly candles start on
+ * multiples of their length from the daily alignment hour, daily candles at that hour, weekly candles at
+ * that hour on the weekly alignment day and monthly candles at that hour on the first of the month,
+ * all in local time of the alignment timezone.
+ */
+public final class CandleAlignment {
+
+    private static final Chronology LOCAL = ISOChronology.getInstanceUTC();
+    private static final long HOUR_MILLIS = 3600000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * What {@link rabun.oanda.rest.endpoints.RateEndpoints} requests when dailyAlignment and weeklyAlignment
+     * are not given: 22:00 UTC, weeks from Friday
+     */
+    public static final CandleAlignment DEFAULT = new CandleAlignment(22, WeeklyAlignment.Friday, DateTimeZone.UTC);
+
+    private final int dailyAlignment;
+    private final WeeklyAlignment weeklyAlignment;
+    private final DateTimeZone timezone;
+
+    /**
+     * @param dailyAlignment hour of day, 0 to 23, in the alignment timezone
+     * @param weeklyAlignment first day of a weekly candle
+     * @param timezone alignment timezone
+     */
+    public CandleAlignment(int dailyAlignment, WeeklyAlignment weeklyAlignment, DateTimeZone timezone) {
+        if (dailyAlignment < 0 || dailyAlignment > 23)
+            throw new IllegalArgumentException("dailyAlignment must be between 0 and 23");
+        if (weeklyAlignment == null || timezone == null)
+            throw new IllegalArgumentException("weeklyAlignment and timezone must not be null");
+
+        this.dailyAlignment = dailyAlignment;
+        this.weeklyAlignment = weeklyAlignment;
+        this.timezone = timezone;
+    }
+
+    /**
+     * Alignment of the candle request parameters; null parameters take the defaults the endpoints send
+     */
+    public static CandleAlignment of(Byte dailyAlignment, WeeklyAlignment weeklyAlignment) {
+        if (dailyAlignment == null && weeklyAlignment == null)
+            return DEFAULT;
+
+        return new CandleAlignment(dailyAlignment == null ? DEFAULT.dailyAlignment : dailyAlignment,
+                weeklyAlignment == null ? DEFAULT.weeklyAlignment : weeklyAlignment, DEFAULT.timezone);
+    }
+
+    public int GetDailyAlignment() {
+        return dailyAlignment;
+    }
+
+    public WeeklyAlignment GetWeeklyAlignment() {
+        return weeklyAlignment;
+    }
+
+    public DateTimeZone GetTimezone() {
+        return timezone;
+    }
+
+    /**
+     * @return start of the candle that contains the given time, microseconds since the epoch
+     */
+    public long start(GranularityType granularity, long timeMicros) {
+        long duration = CandleTimes.durationMicros(granularity);
+        if (duration < CandleTimes.HOUR)
+            return timeMicros - Math.floorMod(timeMicros, duration);
+
+        long local = timezone.convertUTCToLocal(Math.floorDiv(timeMicros, 1000L));
+        long day = tradingDay(local);
+
+        long start;
+        switch (granularity) {
+            case D:
+                start = day;
+                break;
+            case W:
+                int dayOfWeek = LOCAL.dayOfWeek().get(day);
+                start = day - Math.floorMod(dayOfWeek - (weeklyAlignment.ordinal() + 1), 7) * DAY_MILLIS;
+                break;
+            case M:
+                start = LOCAL.monthOfYear().roundFloor(local - shift()) + shift();
+                break;
+            default:
+                long millis = duration / 1000L;
+                start = day + (local - day) / millis * millis;
+        }
+
+        return utcMicros(start);
+    }
+
+    /**
+     * @param startMicros start of a candle, as returned by {@link #start}
+     * @return start of the next candle, microseconds since the epoch
+     */
+    public long end(GranularityType granularity, long startMicros) {
+        long duration = CandleTimes.durationMicros(granularity);
+        if (duration < CandleTimes.HOUR)
+            return startMicros + duration;
+
+        long local = timezone.convertUTCToLocal(Math.floorDiv(startMicros, 1000L));
+
+        long end;
+        switch (granularity) {
+            case D:
+                end = local + DAY_MILLIS;
+                break;
+            case W:
+                end = local + 7 * DAY_MILLIS;
+                break;
+            case M:
+                end = LOCAL.monthOfYear().add(local - shift(), 1) + shift();
+                break;
+            default:
+                // the last hourly candle of a trading day is cut short if the day is not a multiple of it
+                end = Math.min(local + duration / 1000L, tradingDay(local) + DAY_MILLIS);
+        }
+
+        return utcMicros(end);
+    }
+
+    private long shift() {
+        return dailyAlignment * HOUR_MILLIS;
+    }
+
+    /**
+     * @return local start of the trading day that contains a local time
+     */
+    private long tradingDay(long local) {
+        return LOCAL.dayOfMonth().roundFloor(local - shift()) + shift();
+    }
+
+    private long utcMicros(long local) {
+        return timezone.convertLocalToUTC(local, false) * 1000L;
+    }
+}
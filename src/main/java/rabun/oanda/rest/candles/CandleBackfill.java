@@ -0,0 +1,274 @@
+package rabun.oanda.rest.candles;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import rabun.oanda.rest.base.Futures;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RateLimiter;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pulls a range of candle history that is too long for a single request.
+ *
+ * The range is split into windows of at most {@link Builder#candlesPerRequest(int)} candles, which are
+ * requested with start and end only, several at a time, and merged back into one series ordered by time.
+ * Neighbouring windows share their boundary, so a candle the api returns for both is kept once.
+ * includeFirst applies to the start of the whole range; inner windows always include their first candle.
+ *
+ * <pre>
+ * CandleBackfill backfill = CandleBackfill.builder(rates).parallelism(4).build();
+ * CandleSeries year = backfill.Fetch("EUR_USD", GranularityType.M1, start, end);
+ * </pre>
+ */
+public class CandleBackfill {
+
+    private final RateEndpoints rates;
+    private final int parallelism;
+    private final int candlesPerRequest;
+    private final CandleFormat candleFormat;
+    private final Byte dailyAlignment;
+    private final WeeklyAlignment weeklyAlignment;
+    private final RateLimiter rateLimiter;
+
+    private CandleBackfill(Builder builder) {
+        this.rates = builder.rates;
+        this.parallelism = builder.parallelism;
+        this.candlesPerRequest = builder.candlesPerRequest;
+        this.candleFormat = builder.candleFormat;
+        this.dailyAlignment = builder.dailyAlignment;
+        this.weeklyAlignment = builder.weeklyAlignment;
+        this.rateLimiter = builder.rateLimiter;
+    }
+
+    public static Builder builder(RateEndpoints rates) {
+        return new Builder(rates);
+    }
+
+    /**
+     * Fetch all candles from start to end
+     *
+     * @param instrument Required instrument to retrieve history for
+     * @param granularity Required candle granularity
+     * @param start Required start of the range
+     * @param end Required end of the range
+     * @return series of the candles, ordered by time without duplicates
+     * @throws UnirestException if one of the requests fails
+     */
+    public CandleSeries Fetch(String instrument, GranularityType granularity, DateTime start, DateTime end)
+            throws UnirestException {
+
+        return Fetch(instrument, granularity, start, end, true);
+    }
+
+    /**
+     * @param includeFirst Optional whether the candle at start is returned, default true
+     * @see #Fetch(String, GranularityType, DateTime, DateTime)
+     */
+    public CandleSeries Fetch(String instrument, GranularityType granularity, DateTime start, DateTime end,
+                              Boolean includeFirst) throws UnirestException {
+        return Futures.await(FetchAsync(instrument, granularity, start, end, includeFirst));
+    }
+
+    /**
+     * Fetch all candles from start to end without blocking the calling thread
+     *
+     * @see #Fetch(String, GranularityType, DateTime, DateTime, Boolean)
+     * @return future series; fails with the first failing request, the remaining windows are not requested
+     */
+    public CompletableFuture<CandleSeries> FetchAsync(final String instrument, final GranularityType granularity,
+                                                      DateTime start, DateTime end, final Boolean includeFirst) {
+
+        if (instrument == null || instrument.isEmpty())
+            throw new IllegalArgumentException("The instrument param can't be empty or null");
+        if (granularity == null || start == null || end == null)
+            throw new IllegalArgumentException("granularity, start and end are required");
+
+        final long[] bounds = windows(start.getMillis() * 1000L, end.getMillis() * 1000L, granularity, candlesPerRequest);
+        final int count = bounds.length - 1;
+
+        final CompletableFuture<CandleSeries> result = new CompletableFuture<>();
+        if (count <= 0) {
+            result.complete(merge(instrument, granularity, new CandleSeries[0]));
+            return result;
+        }
+
+        final CandleSeries[] parts = new CandleSeries[count];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger(Math.min(parallelism, count));
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                final int window = next.getAndIncrement();
+                if (window >= count || result.isDone()) {
+                    if (running.decrementAndGet() == 0 && !result.isDone())
+                        result.complete(merge(instrument, granularity, parts));
+                    return;
+                }
+
+                final Runnable worker = this;
+                fetchWindow(instrument, granularity, bounds[window], bounds[window + 1],
+                        window == 0 ? includeFirst : Boolean.TRUE)
+                        .whenComplete((series, error) -> {
+                            if (error != null) {
+                                result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                                return;
+                            }
+
+                            parts[window] = series;
+                            worker.run();
+                        });
+            }
+        };
+
+        for (int i = running.get(); i > 0; i--)
+            worker.run();
+
+        return result;
+    }
+
+    /**
+     * Split a range into windows of at most candlesPerRequest candles
+     *
+     * @return window boundaries in microseconds, window i runs from bounds[i] to bounds[i + 1]
+     */
+    static long[] windows(long start, long end, GranularityType granularity, int candlesPerRequest) {
+        if (end <= start)
+            return new long[]{start};
+
+        // the api returns the candles at both ends of a window, so a window spans one duration less than it holds
+        long step = CandleTimes.durationMicros(granularity) * (candlesPerRequest - 1);
+        int count = (int) ((end - start + step - 1) / step);
+
+        long[] bounds = new long[count + 1];
+        for (int i = 0; i < count; i++)
+            bounds[i] = start + i * step;
+        bounds[count] = end;
+
+        return bounds;
+    }
+
+    private CompletableFuture<CandleSeries> fetchWindow(final String instrument, final GranularityType granularity,
+                                                        long from, long to, final Boolean includeFirst) {
+
+        final DateTime start = new DateTime(from / 1000L, DateTimeZone.UTC);
+        final DateTime end = new DateTime(to / 1000L, DateTimeZone.UTC);
+
+        if (rateLimiter == null)
+            return request(instrument, granularity, start, end, includeFirst);
+
+        return rateLimiter.acquire(Priority.low, null)
+                .thenCompose(permit -> request(instrument, granularity, start, end, includeFirst));
+    }
+
+    private CompletableFuture<CandleSeries> request(String instrument, GranularityType granularity, DateTime start,
+                                                    DateTime end, Boolean includeFirst) {
+        try {
+            return rates.GetCandleSeriesAsync(instrument, granularity, null, start, end, includeFirst,
+                    dailyAlignment, weeklyAlignment, new CandleSeries(candleFormat, candlesPerRequest));
+        } catch (Exception e) {
+            CompletableFuture<CandleSeries> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e instanceof UnirestException ? e : new UnirestException(e));
+            return failed;
+        }
+    }
+
+    private CandleSeries merge(String instrument, GranularityType granularity, CandleSeries[] parts) {
+        int total = 0;
+        for (CandleSeries part : parts)
+            total += part.size;
+
+        CandleSeries series = new CandleSeries(candleFormat, Math.max(total, 1));
+        series.instrument = instrument;
+        series.granularity = granularity;
+
+        long last = Long.MIN_VALUE;
+        for (CandleSeries part : parts) {
+            for (int i = 0; i < part.size; i++) {
+                // windows share their boundary candle
+                if (part.time[i] <= last)
+                    continue;
+
+                series.append(part, i);
+                last = part.time[i];
+            }
+        }
+
+        return series;
+    }
+
+    public static final class Builder {
+        private final RateEndpoints rates;
+        private int parallelism = 4;
+        private int candlesPerRequest = 5000;
+        private CandleFormat candleFormat = CandleFormat.bidask;
+        private Byte dailyAlignment;
+        private WeeklyAlignment weeklyAlignment;
+        private RateLimiter rateLimiter;
+
+        private Builder(RateEndpoints rates) {
+            if (rates == null)
+                throw new IllegalArgumentException("rates must not be null");
+            this.rates = rates;
+        }
+
+        /**
+         * @param parallelism requests in flight at once, default 4
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0)
+                throw new IllegalArgumentException("parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param candlesPerRequest window size in candles, at most 5000 which is what the api returns per request
+         */
+        public Builder candlesPerRequest(int candlesPerRequest) {
+            if (candlesPerRequest < 2 || candlesPerRequest > 5000)
+                throw new IllegalArgumentException("candlesPerRequest must be between 2 and 5000");
+            this.candlesPerRequest = candlesPerRequest;
+            return this;
+        }
+
+        /**
+         * @param candleFormat bidask (default) or midpoint
+         */
+        public Builder candleFormat(CandleFormat candleFormat) {
+            this.candleFormat = candleFormat == null ? CandleFormat.bidask : candleFormat;
+            return this;
+        }
+
+        public Builder dailyAlignment(Byte dailyAlignment) {
+            this.dailyAlignment = dailyAlignment;
+            return this;
+        }
+
+        public Builder weeklyAlignment(WeeklyAlignment weeklyAlignment) {
+            this.weeklyAlignment = weeklyAlignment;
+            return this;
+        }
+
+        /**
+         * @param rateLimiter budget for the backfill's own requests, on top of any limit of the client, default none
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public CandleBackfill build() {
+            return new CandleBackfill(this);
+        }
+    }
+}
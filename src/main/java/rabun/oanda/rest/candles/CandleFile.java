@@ -0,0 +1,300 @@
+package rabun.oanda.rest.candles;
+
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only file of candles of one instrument, granularity and format.
+ *
+ * Candles are fixed-width records ordered by time in a memory-mapped file, so a candle is found by
+ * binary search on the time column and read without any decoding step. Only the last record may be
+ * rewritten, and only while it is incomplete; everything before it is history and never changes.
+ *
+ * Layout: a 32 byte header (magic, version, format, record size, record count) followed by the records:
+ * time and volume as longs, the complete flag as an int, then the prices as floats in the column order
+ * of {@link CandleSeries} (8 bid/ask or 4 mid).
+ */
+public final class CandleFile implements Closeable {
+
+    private static final int MAGIC = 0x4f434e44;
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int TIME = 0;
+    private static final int VOLUME = 8;
+    private static final int COMPLETE = 16;
+    private static final int PRICES = 20;
+
+    private final Path path;
+    private final CandleFormat candleFormat;
+    private final int recordSize;
+    private final FileChannel channel;
+
+    private MappedByteBuffer map;
+    private int capacity;
+    private int size;
+
+    private CandleFile(Path path, CandleFormat candleFormat, FileChannel channel) {
+        this.path = path;
+        this.candleFormat = candleFormat;
+        this.recordSize = PRICES + 4 * (candleFormat == CandleFormat.bidask ? 8 : 4);
+        this.channel = channel;
+    }
+
+    /**
+     * Open a candle file, creating it if it does not exist
+     *
+     * @throws IOException if the file cannot be opened or holds candles of another format
+     */
+    public static CandleFile open(Path path, CandleFormat candleFormat) throws IOException {
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        CandleFile file = new CandleFile(path, candleFormat, channel);
+        try {
+            file.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    public Path GetPath() {
+        return path;
+    }
+
+    public CandleFormat GetCandleFormat() {
+        return candleFormat;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return start time of a stored candle, microseconds since the epoch
+     */
+    public synchronized long time(int index) {
+        checkIndex(index);
+        return map.getLong(offset(index) + TIME);
+    }
+
+    public synchronized boolean isComplete(int index) {
+        checkIndex(index);
+        return map.getInt(offset(index) + COMPLETE) != 0;
+    }
+
+    /**
+     * @return index of the latest complete candle, -1 if there is none
+     */
+    public synchronized int lastComplete() {
+        for (int i = size - 1; i >= 0; i--) {
+            if (map.getInt(offset(i) + COMPLETE) != 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the first candle at or after the given time, size() if there is none
+     */
+    public synchronized int indexOf(long timeMicros) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (map.getLong(offset(mid) + TIME) < timeMicros)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Append the stored candles from (inclusive) to (exclusive) to a series
+     *
+     * @return the series passed in
+     */
+    public synchronized CandleSeries read(long from, long to, CandleSeries into) {
+        if (into.candleFormat != candleFormat)
+            throw new IllegalArgumentException("Cannot read " + candleFormat + " candles into a " + into.candleFormat + " series");
+
+        int first = indexOf(from);
+        int last = indexOf(to);
+        into.ensureCapacity(into.size + last - first);
+
+        for (int i = first; i < last; i++) {
+            int offset = offset(i);
+            int row = into.append();
+
+            into.time[row] = map.getLong(offset + TIME);
+            into.volume[row] = map.getLong(offset + VOLUME);
+            into.complete.set(row, map.getInt(offset + COMPLETE) != 0);
+
+            int p = offset + PRICES;
+            if (into.isBidAsk()) {
+                into.openBid[row] = map.getFloat(p);
+                into.openAsk[row] = map.getFloat(p + 4);
+                into.highBid[row] = map.getFloat(p + 8);
+                into.highAsk[row] = map.getFloat(p + 12);
+                into.lowBid[row] = map.getFloat(p + 16);
+                into.lowAsk[row] = map.getFloat(p + 20);
+                into.closeBid[row] = map.getFloat(p + 24);
+                into.closeAsk[row] = map.getFloat(p + 28);
+            } else {
+                into.openMid[row] = map.getFloat(p);
+                into.highMid[row] = map.getFloat(p + 4);
+                into.lowMid[row] = map.getFloat(p + 8);
+                into.closeMid[row] = map.getFloat(p + 12);
+            }
+        }
+
+        return into;
+    }
+
+    /**
+     * Store the candles of a series that are newer than the stored ones.
+     * A candle with the same time as the last stored one replaces it if the stored one is incomplete;
+     * older candles are ignored.
+     *
+     * @return number of candles appended or replaced
+     */
+    public synchronized int write(CandleSeries series) throws IOException {
+        if (series.candleFormat != candleFormat)
+            throw new IllegalArgumentException("Cannot write " + series.candleFormat + " candles to a " + candleFormat + " file");
+
+        int written = 0;
+        for (int i = 0; i < series.size; i++) {
+            long time = series.time[i];
+
+            int index;
+            if (size == 0 || time > map.getLong(offset(size - 1) + TIME)) {
+                ensureCapacity(size + 1);
+                index = size;
+            } else if (time == map.getLong(offset(size - 1) + TIME) && map.getInt(offset(size - 1) + COMPLETE) == 0) {
+                index = size - 1;
+            } else {
+                continue;
+            }
+
+            put(index, series, i);
+            if (index == size)
+                size++;
+            written++;
+        }
+
+        if (written > 0)
+            map.putLong(COUNT_OFFSET, size);
+
+        return written;
+    }
+
+    /**
+     * Flush written candles to the storage device
+     */
+    public synchronized void force() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (map != null)
+            map.force();
+        channel.close();
+        map = null;
+    }
+
+    private void put(int index, CandleSeries series, int row) {
+        int offset = offset(index);
+
+        map.putLong(offset + VOLUME, series.volume[row]);
+        map.putInt(offset + COMPLETE, series.complete.get(row) ? 1 : 0);
+
+        int p = offset + PRICES;
+        if (series.isBidAsk()) {
+            map.putFloat(p, series.openBid[row]);
+            map.putFloat(p + 4, series.openAsk[row]);
+            map.putFloat(p + 8, series.highBid[row]);
+            map.putFloat(p + 12, series.highAsk[row]);
+            map.putFloat(p + 16, series.lowBid[row]);
+            map.putFloat(p + 20, series.lowAsk[row]);
+            map.putFloat(p + 24, series.closeBid[row]);
+            map.putFloat(p + 28, series.closeAsk[row]);
+        } else {
+            map.putFloat(p, series.openMid[row]);
+            map.putFloat(p + 4, series.highMid[row]);
+            map.putFloat(p + 8, series.lowMid[row]);
+            map.putFloat(p + 12, series.closeMid[row]);
+        }
+
+        // time last, a record is only found by search once it is fully written
+        map.putLong(offset + TIME, series.time[row]);
+    }
+
+    private void load() throws IOException {
+        long length = channel.size();
+
+        if (length < HEADER) {
+            remap(1024);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(8, candleFormat.ordinal());
+            map.putInt(12, recordSize);
+            map.putLong(COUNT_OFFSET, 0);
+            return;
+        }
+
+        remap((int) Math.max(1, (length - HEADER) / recordSize));
+
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            throw new IOException(path + " is not a candle file");
+        if (map.getInt(8) != candleFormat.ordinal() || map.getInt(12) != recordSize)
+            throw new IOException(path + " does not hold " + candleFormat + " candles");
+
+        long count = map.getLong(COUNT_OFFSET);
+        if (count < 0 || count > capacity)
+            throw new IOException(path + " is truncated");
+
+        size = (int) count;
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed > capacity)
+            remap(Math.max(needed, capacity * 2));
+    }
+
+    private void remap(int records) throws IOException {
+        long bytes = HEADER + (long) records * recordSize;
+        if (bytes > Integer.MAX_VALUE)
+            throw new IOException(path + " is full");
+
+        if (map != null)
+            map.force();
+
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        capacity = records;
+    }
+
+    private int offset(int index) {
+        return HEADER + index * recordSize;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+}
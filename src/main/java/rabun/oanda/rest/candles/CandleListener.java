@@ -0,0 +1,23 @@
+package rabun.oanda.rest.candles;
+
+import rabun.oanda.rest.models.CandleBidAsk;
+import rabun.oanda.rest.models.CandleMid;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+/**
+ * Subscriber of a {@link CandleAggregator}; it is called with the candles of the aggregator's format
+ */
+public interface CandleListener {
+
+    /**
+     * A bid/ask candle closed. The candle belongs to the listener and may be kept.
+     */
+    default void onCandle(String instrument, GranularityType granularity, CandleBidAsk candle) {
+    }
+
+    /**
+     * A midpoint candle closed. The candle belongs to the listener and may be kept.
+     */
+    default void onCandle(String instrument, GranularityType granularity, CandleMid candle) {
+    }
+}
@@ -0,0 +1,152 @@
+package rabun.oanda.rest.candles;
+
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+/**
+ * Derives coarser candles from finer ones, e.g. H1 and D from locally stored M1 history, instead of
+ * requesting every granularity from the api.
+ *
+ * The source series is read once, front to back, column by column; a coarse candle opens with the first
+ * fine candle inside its {@link CandleAlignment} boundaries, takes the highest high, lowest low and the
+ * last close, and sums the volumes. A coarse candle is complete when all its fine candles are complete and
+ * the period is over, i.e. the source reaches its end or continues with a later period.
+ *
+ * <pre>
+ * CandleSeries hours = CandleResampler.Resample(minutes, GranularityType.H1);
+ * </pre>
+ */
+public final class CandleResampler {
+
+    private CandleResampler() {
+    }
+
+    /**
+     * Resample with the alignment the candle endpoints request by default, 22:00 UTC and weeks from Friday
+     *
+     * @see #Resample(CandleSeries, GranularityType, CandleAlignment, CandleSeries)
+     */
+    public static CandleSeries Resample(CandleSeries source, GranularityType granularity) {
+        return Resample(source, granularity, CandleAlignment.DEFAULT, null);
+    }
+
+    /**
+     * Resample with the alignment of a candle request
+     *
+     * @param dailyAlignment Optional as passed to {@link rabun.oanda.rest.endpoints.RateEndpoints#GetCandleSeries}
+     * @param weeklyAlignment Optional as passed to {@link rabun.oanda.rest.endpoints.RateEndpoints#GetCandleSeries}
+     * @see #Resample(CandleSeries, GranularityType, CandleAlignment, CandleSeries)
+     */
+    public static CandleSeries Resample(CandleSeries source, GranularityType granularity, Byte dailyAlignment,
+                                        WeeklyAlignment weeklyAlignment) {
+        return Resample(source, granularity, CandleAlignment.of(dailyAlignment, weeklyAlignment), null);
+    }
+
+    /**
+     * @param source Required candles ordered by time; its granularity must be set
+     * @param granularity Required target granularity, coarser than the source and made of whole source candles
+     * @param alignment Required boundaries of the target candles, the same the source was fetched with
+     * @param into Optional series of the source format to append the candles to, a new one if null
+     * @return the series the candles were appended to
+     */
+    public static CandleSeries Resample(CandleSeries source, GranularityType granularity, CandleAlignment alignment,
+                                        CandleSeries into) {
+
+        if (source.granularity == null)
+            throw new IllegalArgumentException("The granularity of the source series must be set");
+        if (!canResample(source.granularity, granularity))
+            throw new IllegalArgumentException("Cannot resample " + source.granularity + " candles to " + granularity);
+
+        if (into == null) {
+            long ratio = CandleTimes.durationMicros(granularity) / CandleTimes.durationMicros(source.granularity);
+            into = new CandleSeries(source.candleFormat, (int) Math.max(1, Math.min(source.size, source.size / ratio + 2)));
+        } else if (into.candleFormat != source.candleFormat) {
+            throw new IllegalArgumentException("Cannot resample " + source.candleFormat + " candles into a "
+                    + into.candleFormat + " series");
+        }
+
+        into.instrument = source.instrument;
+        into.granularity = granularity;
+
+        boolean bidAsk = source.isBidAsk();
+        long sourceDuration = CandleTimes.durationMicros(source.granularity);
+        long end = Long.MIN_VALUE;
+        int row = -1;
+        boolean complete = true;
+
+        for (int i = 0; i < source.size; i++) {
+            long time = source.time[i];
+
+            if (time >= end) {
+                // a later period started, so the candle is over
+                if (row >= 0)
+                    into.complete.set(row, complete);
+
+                complete = true;
+                long start = alignment.start(granularity, time);
+                end = alignment.end(granularity, start);
+
+                row = into.append();
+                into.time[row] = start;
+                into.volume[row] = 0;
+                if (bidAsk) {
+                    into.openBid[row] = source.openBid[i];
+                    into.openAsk[row] = source.openAsk[i];
+                    into.highBid[row] = source.highBid[i];
+                    into.highAsk[row] = source.highAsk[i];
+                    into.lowBid[row] = source.lowBid[i];
+                    into.lowAsk[row] = source.lowAsk[i];
+                } else {
+                    into.openMid[row] = source.openMid[i];
+                    into.highMid[row] = source.highMid[i];
+                    into.lowMid[row] = source.lowMid[i];
+                }
+            } else if (bidAsk) {
+                if (source.highBid[i] > into.highBid[row]) into.highBid[row] = source.highBid[i];
+                if (source.highAsk[i] > into.highAsk[row]) into.highAsk[row] = source.highAsk[i];
+                if (source.lowBid[i] < into.lowBid[row]) into.lowBid[row] = source.lowBid[i];
+                if (source.lowAsk[i] < into.lowAsk[row]) into.lowAsk[row] = source.lowAsk[i];
+            } else {
+                if (source.highMid[i] > into.highMid[row]) into.highMid[row] = source.highMid[i];
+                if (source.lowMid[i] < into.lowMid[row]) into.lowMid[row] = source.lowMid[i];
+            }
+
+            if (bidAsk) {
+                into.closeBid[row] = source.closeBid[i];
+                into.closeAsk[row] = source.closeAsk[i];
+            } else {
+                into.closeMid[row] = source.closeMid[i];
+            }
+            into.volume[row] += source.volume[i];
+
+            complete &= source.complete.get(i);
+        }
+
+        // the last candle is only over if its last source candle reaches its end
+        if (row >= 0)
+            into.complete.set(row, complete && source.time[source.size - 1] + sourceDuration >= end);
+
+        return into;
+    }
+
+    /**
+     * @return whether every target candle is made of whole source candles
+     */
+    public static boolean canResample(GranularityType from, GranularityType to) {
+        long source = CandleTimes.durationMicros(from);
+        long target = CandleTimes.durationMicros(to);
+
+        if (target <= source)
+            return false;
+
+        switch (to) {
+            case W:
+            case M:
+                // weeks and months are made of trading days; a week may span two months
+                return source <= CandleTimes.DAY;
+            default:
+                return target % source == 0 && (target < CandleTimes.HOUR || CandleTimes.DAY % source == 0);
+        }
+    }
+}
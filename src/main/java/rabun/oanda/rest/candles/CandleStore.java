@@ -0,0 +1,120 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local candle history, one {@link CandleFile} per instrument, granularity and candle format
+ * under a root directory (root/EUR_USD/M1-bidask.candles).
+ *
+ * {@link #Sync} brings a file up to date by asking the api only for the candles after the last
+ * complete one it holds, so a restart does not download the history again. A store should be
+ * used by one process at a time.
+ */
+public class CandleStore implements Closeable {
+
+    private static final long REQUEST_SIZE = 5000;
+
+    private final Path root;
+    private final Map<String, CandleFile> files = new HashMap<>();
+
+    public CandleStore(Path root) {
+        this.root = root;
+    }
+
+    public Path GetRoot() {
+        return root;
+    }
+
+    /**
+     * @return the file of an instrument, granularity and format, created if it does not exist yet
+     */
+    public synchronized CandleFile open(String instrument, GranularityType granularity, CandleFormat candleFormat)
+            throws IOException {
+
+        String name = granularity + "-" + candleFormat + ".candles";
+        String key = instrument + "/" + name;
+
+        CandleFile file = files.get(key);
+        if (file == null) {
+            file = CandleFile.open(root.resolve(instrument).resolve(name), candleFormat);
+            files.put(key, file);
+        }
+        return file;
+    }
+
+    /**
+     * Fetch the candles missing from the store
+     *
+     * @param rates endpoint to fetch candles with
+     * @param instrument Required instrument
+     * @param granularity Required candle granularity
+     * @param candleFormat Required candle format
+     * @param since Required where the history starts when nothing is stored yet
+     * @return the synced file
+     * @throws Exception if a request fails or the file cannot be written
+     */
+    public CandleFile Sync(RateEndpoints rates, String instrument, GranularityType granularity,
+                           CandleFormat candleFormat, DateTime since) throws Exception {
+
+        CandleFile file = open(instrument, granularity, candleFormat);
+
+        while (true) {
+            int last = file.lastComplete();
+
+            DateTime start;
+            boolean includeFirst;
+            if (last >= 0) {
+                start = toDateTime(file.time(last));
+                includeFirst = false;
+            } else if (file.size() > 0) {
+                start = toDateTime(file.time(0));
+                includeFirst = true;
+            } else {
+                start = since;
+                includeFirst = true;
+            }
+
+            CandleSeries batch = rates.GetCandleSeries(instrument, granularity, REQUEST_SIZE, start, null,
+                    includeFirst, null, null, new CandleSeries(candleFormat, (int) REQUEST_SIZE));
+            file.write(batch);
+
+            // a short or unfinished batch means we reached the current candle
+            if (batch.size < REQUEST_SIZE || !batch.complete.get(batch.size - 1) || file.lastComplete() == last)
+                break;
+        }
+
+        file.force();
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (CandleFile file : files.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        files.clear();
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private static DateTime toDateTime(long micros) {
+        return new DateTime(micros / 1000L, DateTimeZone.UTC);
+    }
+}
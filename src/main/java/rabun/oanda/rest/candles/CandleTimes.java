@@ -0,0 +1,69 @@
+package rabun.oanda.rest.candles;
+
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+/**
+ * Candle durations, in the microseconds used by {@link rabun.oanda.rest.models.CandleSeries#time}
+ */
+public final class CandleTimes {
+
+    public static final long SECOND = 1000000L;
+    public static final long MINUTE = 60 * SECOND;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+
+    private CandleTimes() {
+    }
+
+    /**
+     * @return length of a candle; monthly candles count as 31 days, the longest a month can be
+     */
+    public static long durationMicros(GranularityType granularity) {
+        switch (granularity) {
+            case S5:
+                return 5 * SECOND;
+            case S10:
+                return 10 * SECOND;
+            case S15:
+                return 15 * SECOND;
+            case S30:
+                return 30 * SECOND;
+            case M1:
+                return MINUTE;
+            case M2:
+                return 2 * MINUTE;
+            case M3:
+                return 3 * MINUTE;
+            case M5:
+                return 5 * MINUTE;
+            case M10:
+                return 10 * MINUTE;
+            case M15:
+                return 15 * MINUTE;
+            case M30:
+                return 30 * MINUTE;
+            case H1:
+                return HOUR;
+            case H2:
+                return 2 * HOUR;
+            case H3:
+                return 3 * HOUR;
+            case H4:
+                return 4 * HOUR;
+            case H6:
+                return 6 * HOUR;
+            case H8:
+                return 8 * HOUR;
+            case H12:
+                return 12 * HOUR;
+            case D:
+                return DAY;
+            case W:
+                return 7 * DAY;
+            case M:
+                return 31 * DAY;
+            default:
+                throw new IllegalArgumentException("Unknown granularity " + granularity);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package rabun.oanda.rest.codec;
+
+import rabun.oanda.rest.models.Candle;
+import rabun.oanda.rest.models.CandleBidAsk;
+import rabun.oanda.rest.models.CandleMid;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Streaming decoder for the /v1/candles response.
+ *
+ * Candles are read token by token and written straight into the result, without building
+ * a JSONObject per candle first.
+ */
+public final class CandleDecoder {
+
+    private static final JsonReader.Names ROOT = JsonReader.Names.of("instrument", "granularity", "candles");
+
+    private static final int TIME = 0;
+    private static final int OPEN_BID = 1;
+    private static final int OPEN_ASK = 2;
+    private static final int HIGH_BID = 3;
+    private static final int HIGH_ASK = 4;
+    private static final int LOW_BID = 5;
+    private static final int LOW_ASK = 6;
+    private static final int CLOSE_BID = 7;
+    private static final int CLOSE_ASK = 8;
+    private static final int OPEN_MID = 9;
+    private static final int HIGH_MID = 10;
+    private static final int LOW_MID = 11;
+    private static final int CLOSE_MID = 12;
+    private static final int VOLUME = 13;
+    private static final int COMPLETE = 14;
+
+    private static final JsonReader.Names CANDLE = JsonReader.Names.of("time",
+            "openBid", "openAsk", "highBid", "highAsk", "lowBid", "lowAsk", "closeBid", "closeAsk",
+            "openMid", "highMid", "lowMid", "closeMid", "volume", "complete");
+
+    private CandleDecoder() {
+    }
+
+    /**
+     * Decode a candles response into the given candle
+     *
+     * @param in response body
+     * @param candleFormat format the candles were requested in, null for the server default (bidask)
+     * @param candle result the instrument, granularity and candles are written to
+     */
+    public static void decode(InputStream in, CandleFormat candleFormat, Candle candle) {
+        decode(new JsonReader(in), candleFormat, candle);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void decode(JsonReader reader, CandleFormat candleFormat, Candle candle) {
+        boolean mid = candleFormat == CandleFormat.midpoint;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(ROOT)) {
+                case 0:
+                    candle.instrument = reader.nextString();
+                    break;
+                case 1:
+                    candle.granularity = GranularityType.valueOf(reader.nextString());
+                    break;
+                case 2:
+                    reader.beginArray();
+                    if (mid)
+                        readMid(reader, candle.candles);
+                    else
+                        readBidAsk(reader, candle.candles);
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Decode a candles response, appending the candles to the given series
+     *
+     * @param in response body
+     * @param series columnar result, its format decides which price columns are read
+     */
+    public static void decode(InputStream in, CandleSeries series) {
+        decode(new JsonReader(in), series);
+    }
+
+    public static void decode(JsonReader reader, CandleSeries series) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(ROOT)) {
+                case 0:
+                    series.instrument = reader.nextString();
+                    break;
+                case 1:
+                    series.granularity = GranularityType.valueOf(reader.nextString());
+                    break;
+                case 2:
+                    reader.beginArray();
+                    readSeries(reader, series);
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readSeries(JsonReader reader, CandleSeries series) {
+        boolean bidAsk = series.isBidAsk();
+
+        while (reader.hasNext()) {
+            int i = series.append();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int name = reader.nextName(CANDLE);
+
+                // columns of the other format are not allocated
+                if ((name >= OPEN_BID && name <= CLOSE_ASK && !bidAsk) || (name >= OPEN_MID && name <= CLOSE_MID && bidAsk)) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                switch (name) {
+                    case TIME:
+                        series.time[i] = reader.nextTimestamp();
+                        break;
+                    case OPEN_BID:
+                        series.openBid[i] = (float) reader.nextDouble();
+                        break;
+                    case OPEN_ASK:
+                        series.openAsk[i] = (float) reader.nextDouble();
+                        break;
+                    case HIGH_BID:
+                        series.highBid[i] = (float) reader.nextDouble();
+                        break;
+                    case HIGH_ASK:
+                        series.highAsk[i] = (float) reader.nextDouble();
+                        break;
+                    case LOW_BID:
+                        series.lowBid[i] = (float) reader.nextDouble();
+                        break;
+                    case LOW_ASK:
+                        series.lowAsk[i] = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_BID:
+                        series.closeBid[i] = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_ASK:
+                        series.closeAsk[i] = (float) reader.nextDouble();
+                        break;
+                    case OPEN_MID:
+                        series.openMid[i] = (float) reader.nextDouble();
+                        break;
+                    case HIGH_MID:
+                        series.highMid[i] = (float) reader.nextDouble();
+                        break;
+                    case LOW_MID:
+                        series.lowMid[i] = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_MID:
+                        series.closeMid[i] = (float) reader.nextDouble();
+                        break;
+                    case VOLUME:
+                        series.volume[i] = reader.nextLong();
+                        break;
+                    case COMPLETE:
+                        series.complete.set(i, reader.nextBoolean());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    private static void readBidAsk(JsonReader reader, List<CandleBidAsk> candles) {
+        while (reader.hasNext()) {
+            CandleBidAsk candle = new CandleBidAsk();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(CANDLE)) {
+                    case TIME:
+                        candle.time = reader.nextString();
+                        candle.timeMicros = candle.time == null ? 0 : Rfc3339.parseMicros(candle.time);
+                        break;
+                    case OPEN_BID:
+                        candle.openBid = (float) reader.nextDouble();
+                        break;
+                    case OPEN_ASK:
+                        candle.openAsk = (float) reader.nextDouble();
+                        break;
+                    case HIGH_BID:
+                        candle.highBid = (float) reader.nextDouble();
+                        break;
+                    case HIGH_ASK:
+                        candle.highAsk = (float) reader.nextDouble();
+                        break;
+                    case LOW_BID:
+                        candle.lowBid = (float) reader.nextDouble();
+                        break;
+                    case LOW_ASK:
+                        candle.lowAsk = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_BID:
+                        candle.closeBid = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_ASK:
+                        candle.closeAsk = (float) reader.nextDouble();
+                        break;
+                    case VOLUME:
+                        candle.volume = reader.nextLong();
+                        break;
+                    case COMPLETE:
+                        candle.complete = reader.nextBoolean();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            candles.add(candle);
+        }
+    }
+
+    private static void readMid(JsonReader reader, List<CandleMid> candles) {
+        while (reader.hasNext()) {
+            CandleMid candle = new CandleMid();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(CANDLE)) {
+                    case TIME:
+                        candle.time = reader.nextString();
+                        candle.timeMicros = candle.time == null ? 0 : Rfc3339.parseMicros(candle.time);
+                        break;
+                    case OPEN_MID:
+                        candle.openMid = (float) reader.nextDouble();
+                        break;
+                    case HIGH_MID:
+                        candle.highMid = (float) reader.nextDouble();
+                        break;
+                    case LOW_MID:
+                        candle.lowMid = (float) reader.nextDouble();
+                        break;
+                    case CLOSE_MID:
+                        candle.closeMid = (float) reader.nextDouble();
+                        break;
+                    case VOLUME:
+                        candle.volume = reader.nextLong();
+                        break;
+                    case COMPLETE:
+                        candle.complete = reader.nextBoolean();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            candles.add(candle);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package rabun.oanda.rest.codec;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal pull reader for JSON documents.
+ *
+ * Tokens are read straight out of a byte buffer that is refilled from the underlying stream,
+ * so no intermediate tree is built. Member names are matched against a precompiled {@link Names}
+ * table instead of being materialized as strings, and numbers are parsed without allocation on
+ * the common path. The caller drives the structure (begin/end object or array, hasNext, name, value).
+ *
+ * Malformed input is reported with {@link JSONException} so callers see the same error type as
+ * with the org.json DOM.
+ */
+public final class JsonReader {
+
+    /**
+     * Precompiled member names, matched byte by byte without creating strings
+     */
+    public static final class Names {
+        private final byte[][] names;
+
+        private Names(String... names) {
+            this.names = new byte[names.length][];
+            for (int i = 0; i < names.length; i++)
+                this.names[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        public static Names of(String... names) {
+            return new Names(names);
+        }
+
+        int find(byte[] buf, int start, int length) {
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = names[i];
+                if (name.length != length)
+                    continue;
+
+                int j = 0;
+                while (j < length && name[j] == buf[start + j])
+                    j++;
+
+                if (j == length)
+                    return i;
+            }
+            return -1;
+        }
+    }
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private int mark = -1;
+
+    public JsonReader(InputStream in) {
+        this(in, 8192);
+    }
+
+    public JsonReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Reader over an already buffered document
+     */
+    public JsonReader(byte[] bytes, int offset, int length) {
+        this.in = null;
+        this.buf = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    /**
+     * @return true if the current object or array has another member, consuming the separating comma
+     */
+    public boolean hasNext() {
+        int c = peekNonWhitespace();
+        if (c == ',') {
+            pos++;
+            return true;
+        }
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /**
+     * @return true if the next value is a JSON null, in which case it is consumed
+     */
+    public boolean nextNull() {
+        if (peekNonWhitespace() != 'n')
+            return false;
+
+        literal("null");
+        return true;
+    }
+
+    /**
+     * Read a member name and the following colon
+     *
+     * @param names candidate names
+     * @return index of the matching candidate, or -1 if the name is not one of them
+     */
+    public int nextName(Names names) {
+        expect('"');
+
+        boolean escaped = false;
+        mark = pos;
+        while (true) {
+            if (pos == limit && !fill())
+                throw syntaxError("Unterminated name");
+
+            byte b = buf[pos];
+            if (b == '"')
+                break;
+            if (b == '\\') {
+                escaped = true;
+                pos++;
+                if (pos == limit && !fill())
+                    throw syntaxError("Unterminated name");
+            }
+            pos++;
+        }
+
+        // names with escapes never match a precompiled name
+        int index = escaped ? -1 : names.find(buf, mark, pos - mark);
+        mark = -1;
+        pos++;
+
+        expect(':');
+        return index;
+    }
+
+    /**
+     * Read a member name as a string
+     */
+    public String nextName() {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    public String nextString() {
+        if (nextNull())
+            return null;
+
+        expect('"');
+
+        StringBuilder escaped = null;
+        mark = pos;
+        while (true) {
+            if (pos == limit && !fill())
+                throw syntaxError("Unterminated string");
+
+            byte b = buf[pos];
+            if (b == '"') {
+                String value;
+                if (escaped == null) {
+                    value = new String(buf, mark, pos - mark, StandardCharsets.UTF_8);
+                } else {
+                    escaped.append(new String(buf, mark, pos - mark, StandardCharsets.UTF_8));
+                    value = escaped.toString();
+                }
+                mark = -1;
+                pos++;
+                return value;
+            }
+
+            if (b == '\\') {
+                if (escaped == null)
+                    escaped = new StringBuilder();
+                escaped.append(new String(buf, mark, pos - mark, StandardCharsets.UTF_8));
+                pos++;
+                escaped.append(readEscape());
+                mark = pos;
+                continue;
+            }
+
+            pos++;
+        }
+    }
+
+    /**
+     * Read a string timestamp in RFC3339 or unix format without creating a string
+     *
+     * @return microseconds since the epoch, 0 for null
+     * @see Rfc3339#parseMicros(byte[], int, int)
+     */
+    public long nextTimestamp() {
+        if (nextNull())
+            return 0;
+
+        expect('"');
+
+        mark = pos;
+        while (true) {
+            if (pos == limit && !fill())
+                throw syntaxError("Unterminated string");
+
+            byte b = buf[pos];
+            if (b == '"')
+                break;
+            if (b == '\\')
+                throw syntaxError("Unexpected escape in timestamp");
+            pos++;
+        }
+
+        try {
+            return Rfc3339.parseMicros(buf, mark, pos - mark);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        } finally {
+            mark = -1;
+            pos++;
+        }
+    }
+
+    public boolean nextBoolean() {
+        int c = peekNonWhitespace();
+        if (c == 't') {
+            literal("true");
+            return true;
+        }
+        if (c == 'f') {
+            literal("false");
+            return false;
+        }
+        if (c == '"')
+            return Boolean.parseBoolean(nextString());
+
+        throw syntaxError("Expected a boolean");
+    }
+
+    public long nextLong() {
+        int c = peekNonWhitespace();
+        if (c == '"')
+            return Long.parseLong(nextString());
+
+        mark = pos;
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        while (true) {
+            if (pos == limit && !fill())
+                break;
+
+            byte b = buf[pos];
+            if (b < '0' || b > '9')
+                break;
+
+            value = value * 10 + (b - '0');
+            digits++;
+            pos++;
+        }
+
+        int next = pos < limit || fill() ? buf[pos] : -1;
+        if (digits == 0 || digits > 18 || next == '.' || next == 'e' || next == 'E') {
+            // fractional or very long values take the slow path
+            scanNumber();
+            String text = new String(buf, mark, pos - mark, StandardCharsets.US_ASCII);
+            mark = -1;
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                try {
+                    return (long) Double.parseDouble(text);
+                } catch (NumberFormatException invalid) {
+                    throw new JSONException("Invalid number " + text);
+                }
+            }
+        }
+
+        mark = -1;
+        return negative ? -value : value;
+    }
+
+    public double nextDouble() {
+        int c = peekNonWhitespace();
+        if (c == '"')
+            return Double.parseDouble(nextString());
+
+        mark = pos;
+        scanNumber();
+
+        double value = parseDouble(buf, mark, pos - mark);
+        mark = -1;
+        return value;
+    }
+
+    /**
+     * Skip the next value, including nested objects and arrays
+     */
+    public void skipValue() {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    nextString();
+                    expect(':');
+                    skipValue();
+                }
+                endObject();
+                return;
+            case '[':
+                beginArray();
+                while (hasNext())
+                    skipValue();
+                endArray();
+                return;
+            case '"':
+                nextString();
+                return;
+            case 't':
+            case 'f':
+                nextBoolean();
+                return;
+            case 'n':
+                nextNull();
+                return;
+            default:
+                mark = pos;
+                scanNumber();
+                mark = -1;
+        }
+    }
+
+    /**
+     * @return the next non whitespace character without consuming it, or -1 at the end of input
+     */
+    public int peek() {
+        return peekNonWhitespace();
+    }
+
+    static double parseDouble(byte[] buf, int start, int length) {
+        int i = start;
+        int end = start + length;
+
+        boolean negative = false;
+        if (i < end && buf[i] == '-') {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = 0;
+        boolean point = false;
+
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (point)
+                    fraction++;
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+
+        // mantissa and power of ten are both exact, so a single division is correctly rounded
+        if (i == end && digits > 0 && digits <= 15 && fraction < POW10.length) {
+            double value = fraction == 0 ? mantissa : mantissa / POW10[fraction];
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(new String(buf, start, length, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid number " + new String(buf, start, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void scanNumber() {
+        while (true) {
+            if (pos == limit && !fill())
+                break;
+
+            byte b = buf[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E')
+                pos++;
+            else
+                break;
+        }
+
+        if (pos == mark)
+            throw syntaxError("Expected a number");
+    }
+
+    private char readEscape() {
+        if (pos == limit && !fill())
+            throw syntaxError("Unterminated escape");
+
+        byte b = buf[pos++];
+        switch (b) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill())
+                        throw syntaxError("Unterminated escape");
+                    value = (value << 4) + Character.digit(buf[pos++], 16);
+                }
+                return (char) value;
+            default:
+                return (char) b;
+        }
+    }
+
+    private void literal(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos == limit && !fill())
+                throw syntaxError("Expected " + literal);
+            if (buf[pos++] != literal.charAt(i))
+                throw syntaxError("Expected " + literal);
+        }
+    }
+
+    private void expect(char c) {
+        if (peekNonWhitespace() != c)
+            throw syntaxError("Expected '" + c + "'");
+        pos++;
+    }
+
+    private int peekNonWhitespace() {
+        while (true) {
+            if (pos == limit && !fill())
+                return -1;
+
+            byte b = buf[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t')
+                pos++;
+            else
+                return b;
+        }
+    }
+
+    /**
+     * Read more input, keeping the token that starts at mark contiguous in the buffer
+     */
+    private boolean fill() {
+        if (in == null)
+            return false;
+
+        int keep = mark >= 0 ? mark : pos;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            if (mark >= 0)
+                mark = 0;
+        }
+
+        if (limit == buf.length) {
+            byte[] grown = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = grown;
+        }
+
+        try {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read <= 0)
+                return false;
+
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at byte " + pos);
+    }
+}
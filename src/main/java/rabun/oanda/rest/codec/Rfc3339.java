@@ -0,0 +1,191 @@
+package rabun.oanda.rest.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Timestamp codec for the datetime formats used by the API.
+ *
+ * Timestamps are handled as microseconds since the epoch (UTC), the resolution the API reports.
+ * Parsing works on characters or raw bytes without going through a formatter or calendar object,
+ * and accepts both formats the API can be asked for:
+ * RFC3339 ("2014-07-02T04:00:00.000000Z", any fraction length, Z or numeric offset) and
+ * unix ("1404273600000000" microseconds, or "1404273600.000000" seconds).
+ */
+public final class Rfc3339 {
+
+    private Rfc3339() {
+    }
+
+    public static long parseMicros(CharSequence text) {
+        if (text == null)
+            throw new IllegalArgumentException("Timestamp is null");
+
+        int length = text.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) text.charAt(i);
+
+        return parseMicros(bytes, 0, length);
+    }
+
+    /**
+     * @return microseconds since the epoch
+     * @throws IllegalArgumentException if the text is neither RFC3339 nor a unix timestamp
+     */
+    public static long parseMicros(byte[] buf, int start, int length) {
+        int end = start + length;
+
+        if (length < 20 || buf[start + 4] != '-')
+            return parseUnix(buf, start, end);
+
+        int year = digits(buf, start, 4, start, length);
+        int month = digits(buf, start + 5, 2, start, length);
+        int day = digits(buf, start + 8, 2, start, length);
+        int hour = digits(buf, start + 11, 2, start, length);
+        int minute = digits(buf, start + 14, 2, start, length);
+        int second = digits(buf, start + 17, 2, start, length);
+
+        if (buf[start + 7] != '-' || (buf[start + 10] != 'T' && buf[start + 10] != 't' && buf[start + 10] != ' ')
+                || buf[start + 13] != ':' || buf[start + 16] != ':')
+            throw invalid(buf, start, length);
+
+        int i = start + 19;
+        long micros = 0;
+        if (i < end && buf[i] == '.') {
+            i++;
+            int scale = 100000;
+            while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+                micros += (buf[i] - '0') * scale;
+                scale /= 10;
+                i++;
+            }
+        }
+
+        long offsetSeconds = 0;
+        if (i < end && (buf[i] == 'Z' || buf[i] == 'z')) {
+            i++;
+        } else if (i + 6 == end && (buf[i] == '+' || buf[i] == '-') && buf[i + 3] == ':') {
+            int sign = buf[i] == '-' ? -1 : 1;
+            offsetSeconds = sign * (digits(buf, i + 1, 2, start, length) * 3600L + digits(buf, i + 4, 2, start, length) * 60L);
+            i = end;
+        }
+
+        if (i != end || month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60)
+            throw invalid(buf, start, length);
+
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return seconds * 1000000L + micros;
+    }
+
+    /**
+     * Format as RFC3339 in UTC with microseconds, e.g. 2014-07-02T04:00:00.000000Z
+     */
+    public static String format(long micros) {
+        return format(micros, new StringBuilder(27)).toString();
+    }
+
+    public static StringBuilder format(long micros, StringBuilder sb) {
+        long seconds = Math.floorDiv(micros, 1000000L);
+        int fraction = (int) Math.floorMod(micros, 1000000L);
+        long days = Math.floorDiv(seconds, 86400L);
+        int secondOfDay = (int) Math.floorMod(seconds, 86400L);
+
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        pad(sb, year, 4).append('-');
+        pad(sb, month, 2).append('-');
+        pad(sb, day, 2).append('T');
+        pad(sb, secondOfDay / 3600, 2).append(':');
+        pad(sb, secondOfDay / 60 % 60, 2).append(':');
+        pad(sb, secondOfDay % 60, 2).append('.');
+        pad(sb, fraction, 6).append('Z');
+
+        return sb;
+    }
+
+    /**
+     * Format in the unix format, microseconds since the epoch
+     */
+    public static String formatUnix(long micros) {
+        return Long.toString(micros);
+    }
+
+    private static long parseUnix(byte[] buf, int start, int end) {
+        long value = 0;
+        long fraction = 0;
+        int scale = -1;
+        boolean negative = false;
+
+        int i = start;
+        if (i < end && buf[i] == '-') {
+            negative = true;
+            i++;
+        }
+
+        if (i == end)
+            throw invalid(buf, start, end - start);
+
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (scale < 0) {
+                    value = value * 10 + (b - '0');
+                } else if (scale > 0) {
+                    fraction += (b - '0') * scale;
+                    scale /= 10;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 100000;
+            } else {
+                throw invalid(buf, start, end - start);
+            }
+        }
+
+        // with a fraction the value is in seconds, otherwise already in microseconds
+        long micros = scale < 0 ? value : value * 1000000L + fraction;
+        return negative ? -micros : micros;
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int digits(byte[] buf, int from, int count, int start, int length) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9')
+                throw invalid(buf, start, length);
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static StringBuilder pad(StringBuilder sb, long value, int width) {
+        long limit = 10;
+        for (int i = 1; i < width; i++) {
+            if (value < limit)
+                sb.append('0');
+            limit *= 10;
+        }
+        return sb.append(value);
+    }
+
+    private static IllegalArgumentException invalid(byte[] buf, int start, int length) {
+        return new IllegalArgumentException("Invalid timestamp " + new String(buf, start, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,102 @@
+package rabun.oanda.rest.codec;
+
+import rabun.oanda.rest.models.Price;
+
+/**
+ * Streaming decoder for the messages of the /v1/prices stream.
+ *
+ * The stream is a sequence of JSON objects, one per line: {"tick":{...}} for a price and
+ * {"heartbeat":{"time":...}} to show the connection is alive. Messages are read one at a time
+ * from a {@link JsonReader} over the response body, so a tick is handed on as soon as its line arrived.
+ */
+public final class TickDecoder {
+
+    /**
+     * No more messages, the server closed the stream
+     */
+    public static final int END = -1;
+    /**
+     * A message of another kind, skipped
+     */
+    public static final int OTHER = 0;
+    public static final int TICK = 1;
+    public static final int HEARTBEAT = 2;
+
+    private static final JsonReader.Names MESSAGE = JsonReader.Names.of("tick", "heartbeat");
+    private static final JsonReader.Names TICK_FIELDS = JsonReader.Names.of("instrument", "time", "bid", "ask", "status");
+    private static final JsonReader.Names HEARTBEAT_FIELDS = JsonReader.Names.of("time");
+
+    private TickDecoder() {
+    }
+
+    /**
+     * Read the next message
+     *
+     * @param reader reader over the stream
+     * @param price filled with the tick; for a heartbeat only timeMicros is set
+     * @return {@link #TICK}, {@link #HEARTBEAT}, {@link #OTHER} or {@link #END}
+     */
+    public static int next(JsonReader reader, Price price) {
+        if (reader.peek() == -1)
+            return END;
+
+        int kind = OTHER;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(MESSAGE)) {
+                case 0:
+                    readTick(reader, price);
+                    kind = TICK;
+                    break;
+                case 1:
+                    readHeartbeat(reader, price);
+                    kind = HEARTBEAT;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return kind;
+    }
+
+    private static void readTick(JsonReader reader, Price price) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(TICK_FIELDS)) {
+                case 0:
+                    price.instrument = reader.nextString();
+                    break;
+                case 1:
+                    price.time = reader.nextString();
+                    price.timeMicros = price.time == null ? 0 : Rfc3339.parseMicros(price.time);
+                    break;
+                case 2:
+                    price.bid = (float) reader.nextDouble();
+                    break;
+                case 3:
+                    price.ask = (float) reader.nextDouble();
+                    break;
+                case 4:
+                    price.status = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readHeartbeat(JsonReader reader, Price price) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName(HEARTBEAT_FIELDS) == 0)
+                price.timeMicros = reader.nextTimestamp();
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,264 @@
+package rabun.oanda.rest.codec;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import rabun.oanda.rest.models.*;
+import rabun.oanda.rest.models.OandaTypes.Reason;
+import rabun.oanda.rest.models.OandaTypes.Side;
+import rabun.oanda.rest.models.OandaTypes.TransactionType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder of the transactions of /v1/accounts/{account_id}/transactions.
+ *
+ * Every {@link TransactionType} has a decoder in a table indexed by the type's ordinal, built once,
+ * so a transaction is decoded with one map lookup of its type name and one array access, without
+ * reflection. Each decoder creates the model class of its type and fills the fields the api sends for it.
+ * A type this version does not know is decoded as a plain {@link Transaction} with a null type.
+ */
+public final class TransactionDecoder {
+
+    /**
+     * Creates and fills the model of one transaction type
+     */
+    private interface Decoder {
+        Transaction decode(JSONObject obj);
+    }
+
+    private static final Decoder[] DECODERS = new Decoder[TransactionType.values().length];
+    private static final Map<String, TransactionType> TYPES = names(TransactionType.values());
+    private static final Map<String, Side> SIDES = names(Side.values());
+    private static final Map<String, Reason> REASONS = names(Reason.values());
+
+    static {
+        register(TransactionType.MARKET_ORDER_CREATE, obj -> {
+            TransactionMarketOrderCreate t = simple(obj, new TransactionMarketOrderCreate());
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            t.tradeOpened = tradeOpened(obj);
+            return t;
+        });
+        register(TransactionType.STOP_ORDER_CREATE, obj -> {
+            TransactionStopOrderCreate t = simple(obj, new TransactionStopOrderCreate());
+            t.expiry = obj.optLong("expiry");
+            t.reason = reason(obj);
+            return t;
+        });
+        register(TransactionType.LIMIT_ORDER_CREATE, obj -> orderCreate(obj, new TransactionLimitOrderCreate()));
+        register(TransactionType.MARKET_IF_TOUCHED_ORDER_CREATE, obj -> orderCreate(obj, new TransactionMarketIfTouchedCreate()));
+        register(TransactionType.ORDER_UPDATE, obj -> {
+            TransactionOrderUpdate t = base(obj, new TransactionOrderUpdate());
+            t.units = obj.optLong("units");
+            t.price = floatOf(obj, "price");
+            t.expiry = obj.optLong("expiry");
+            t.reason = reason(obj);
+            return t;
+        });
+        register(TransactionType.ORDER_CANCEL, obj -> {
+            TransactionOrderCancel t = base(obj, new TransactionOrderCancel());
+            t.orderId = obj.optLong("orderId");
+            t.reason = reason(obj);
+            return t;
+        });
+        register(TransactionType.ORDER_FILLED, obj -> {
+            TransactionOrderFilled t = orderCreate(obj, new TransactionOrderFilled());
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.orderId = obj.optLong("orderId");
+            t.tradeOpened = tradeOpened(obj);
+            return t;
+        });
+        register(TransactionType.TRADE_UPDATE, obj -> {
+            TransactionTradeUpdate t = base(obj, new TransactionTradeUpdate());
+            t.units = obj.optLong("units");
+            t.side = side(obj);
+            t.stopLossPrice = floatOf(obj, "stopLossPrice");
+            t.tradeId = obj.optLong("tradeId");
+            return t;
+        });
+        register(TransactionType.TRADE_CLOSE, obj -> {
+            TransactionTradeClose t = simple(obj, new TransactionTradeClose());
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            t.tradeId = obj.optLong("tradeId");
+            return t;
+        });
+        register(TransactionType.MIGRATE_TRADE_OPEN, obj -> {
+            TransactionMigrateTradeOpen t = simple(obj, new TransactionMigrateTradeOpen());
+            t.tradeOpened = tradeOpened(obj);
+            return t;
+        });
+        register(TransactionType.MIGRATE_TRADE_CLOSE, obj -> {
+            TransactionMigrateTradeClose t = simple(obj, new TransactionMigrateTradeClose());
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            t.tradeId = obj.optLong("tradeId");
+            return t;
+        });
+        register(TransactionType.STOP_LOSS_FILLED, obj -> {
+            TransactionStopLossField t = simple(obj, new TransactionStopLossField());
+            t.tradeId = obj.optLong("tradeId");
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            return t;
+        });
+        register(TransactionType.TAKE_PROFIT_FILLED, obj -> {
+            TransactionTakeProfitField t = simple(obj, new TransactionTakeProfitField());
+            t.tradeId = obj.optLong("tradeId");
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            return t;
+        });
+        register(TransactionType.TRAILING_STOP_FILLED, obj -> {
+            TransactionTrailingStopField t = simple(obj, new TransactionTrailingStopField());
+            t.tradeId = obj.optLong("tradeId");
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            return t;
+        });
+        register(TransactionType.MARGIN_CALL_ENTER, obj -> base(obj, new TransactionMarginCallEnter()));
+        register(TransactionType.MARGIN_CALL_EXIT, obj -> base(obj, new TransactionMarginCallExit()));
+        register(TransactionType.MARGIN_CLOSEOUT, obj -> {
+            TransactionMarginCloseOut t = simple(obj, new TransactionMarginCloseOut());
+            t.tradeId = obj.optLong("tradeId");
+            t.pl = floatOf(obj, "pl");
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            return t;
+        });
+        register(TransactionType.SET_MARGIN_RATE, obj -> {
+            TransactionSatMarginRate t = base(obj, new TransactionSatMarginRate());
+            t.rate = floatOf(obj, "rate");
+            return t;
+        });
+        register(TransactionType.TRANSFER_FUNDS, obj -> {
+            TransactionTransferFounds t = base(obj, new TransactionTransferFounds());
+            t.amount = floatOf(obj, "amount");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            t.reason = reason(obj);
+            return t;
+        });
+        register(TransactionType.DAILY_INTEREST, obj -> {
+            TransactionDailyInterest t = base(obj, new TransactionDailyInterest());
+            t.instrument = obj.optString("instrument", null);
+            t.interest = floatOf(obj, "interest");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            return t;
+        });
+        register(TransactionType.FEE, obj -> {
+            TransactionFee t = base(obj, new TransactionFee());
+            t.amount = floatOf(obj, "amount");
+            t.accountBalance = floatOf(obj, "accountBalance");
+            t.reason = reason(obj);
+            return t;
+        });
+
+        for (TransactionType type : TransactionType.values()) {
+            if (DECODERS[type.ordinal()] == null)
+                throw new ExceptionInInitializerError("No decoder for " + type);
+        }
+    }
+
+    private TransactionDecoder() {
+    }
+
+    /**
+     * Decode the transactions array of a response
+     */
+    public static List<Transaction> decode(JSONArray array) {
+        List<Transaction> transactions = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++)
+            transactions.add(decode(array.getJSONObject(i)));
+        return transactions;
+    }
+
+    /**
+     * Decode one transaction into the model class of its type
+     */
+    public static Transaction decode(JSONObject obj) {
+        TransactionType type = TYPES.get(obj.optString("type"));
+        if (type == null)
+            return base(obj, new Transaction());
+
+        Transaction transaction = DECODERS[type.ordinal()].decode(obj);
+        transaction.type = type;
+        return transaction;
+    }
+
+    private static void register(TransactionType type, Decoder decoder) {
+        DECODERS[type.ordinal()] = decoder;
+    }
+
+    private static <T extends Transaction> T base(JSONObject obj, T t) {
+        t.id = obj.optLong("id");
+        t.accountId = obj.optLong("accountId");
+        t.time = obj.optString("time", null);
+        t.timeMicros = t.time == null || t.time.isEmpty() ? 0 : Rfc3339.parseMicros(t.time);
+        return t;
+    }
+
+    private static <T extends TransactionSimple> T simple(JSONObject obj, T t) {
+        base(obj, t);
+        t.instrument = obj.optString("instrument", null);
+        t.units = obj.optLong("units");
+        t.side = side(obj);
+        t.price = floatOf(obj, "price");
+        return t;
+    }
+
+    private static <T extends TransactionDefault> T orderCreate(JSONObject obj, T t) {
+        simple(obj, t);
+        t.expiry = obj.optLong("expiry");
+        t.reason = reason(obj);
+        t.lowerBound = optFloat(obj, "lowerBound");
+        t.upperBound = optFloat(obj, "upperBound");
+        t.takeProfitPrice = optFloat(obj, "takeProfitPrice");
+        t.stopLossPrice = optFloat(obj, "stopLossPrice");
+        t.trailingStopLossDistance = optFloat(obj, "trailingStopLossDistance");
+        return t;
+    }
+
+    private static TradeOpened tradeOpened(JSONObject obj) {
+        JSONObject opened = obj.optJSONObject("tradeOpened");
+        if (opened == null)
+            return null;
+
+        TradeOpened tradeOpened = new TradeOpened();
+        tradeOpened.id = opened.optLong("id");
+        tradeOpened.units = opened.optLong("units");
+        return tradeOpened;
+    }
+
+    private static float floatOf(JSONObject obj, String name) {
+        return (float) obj.optDouble(name, 0);
+    }
+
+    private static Float optFloat(JSONObject obj, String name) {
+        return obj.has(name) ? (float) obj.optDouble(name, 0) : null;
+    }
+
+    private static Side side(JSONObject obj) {
+        return SIDES.get(obj.optString("side"));
+    }
+
+    private static Reason reason(JSONObject obj) {
+        return REASONS.get(obj.optString("reason"));
+    }
+
+    private static <E extends Enum<E>> Map<String, E> names(E[] values) {
+        Map<String, E> names = new HashMap<>();
+        for (E value : values)
+            names.put(value.name(), value);
+        return names;
+    }
+}
@@ -1,24 +1,30 @@
 package rabun.oanda.rest.endpoints;
 
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import org.joda.time.DateTime;
 import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
 import rabun.oanda.rest.models.*;
+import rabun.oanda.rest.paging.Paginator;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * ORDER ENDPOINTS
  */
 public class OrderEndpoints extends Endpoint {
 
-    private final String ordersRoute = "/v1/accounts/{account_id}/orders";
-    private final String orderRoute = "/v1/accounts/{account_id}/orders/{order_id}";
+    private static final RouteTemplate ordersRoute = RouteTemplate.compile("/v1/accounts/{account_id}/orders");
+    private static final RouteTemplate orderRoute = RouteTemplate.compile("/v1/accounts/{account_id}/orders/{order_id}");
 
     /**
      * @param key Secret access key required to access the api
@@ -28,6 +34,15 @@ public class OrderEndpoints extends Endpoint {
         super(key, accountType);
     }
 
+    /**
+     * @param key Secret access key required to access the api
+     * @param accountType Type of account with which you work (training or real)
+     * @param client Http client whose connection pool the requests go through
+     */
+    public OrderEndpoints(String key, AccountType accountType, OandaClient client) {
+        super(key, accountType, client);
+    }
+
     /**
      * This will return all pending orders for an account.
      * Note: pending take profit or stop loss orders are recorded in the open trade object, and will not be returned in this request.
@@ -46,35 +61,47 @@ public class OrderEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public List<Order> GetOrders(long accountId, Long maxId, Long count, String instrument, String ids) throws UnirestException {
-        List<Order> orders = new ArrayList<>();
-
-        String endpoint = makeEndpoint(accountType, ordersRoute);
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        Map<String, Object> fields = new HashMap<>();
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, ordersRoute, makeOrders(maxId, count, instrument, ids), endpoint);
 
-        if (maxId != null)
-            fields.put("maxId", maxId);
 
-        if (count != null)
-            fields.put("count", count);
-
-        if (instrument != null)
-            fields.put("instrument", instrument);
+        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+            throw new UnirestException(jsonResponse.getBody().toString());
 
-        if (ids != null)
-            fields.put("ids", ids);
+        return decode(HttpMethod.GET, ordersRoute, () -> fillOrders(jsonResponse));
+    }
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        HttpResponse<JsonNode> jsonResponse = this.Get(routeParams, fields, endpoint);
+    /**
+     * Get pending orders without blocking the calling thread
+     *
+     * @see #GetOrders(long, Long, Long, String, String)
+     * @return future list of orders
+     */
+    public CompletableFuture<List<Order>> GetOrdersAsync(long accountId, Long maxId, Long count, String instrument, String ids) {
 
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
-            throw new UnirestException(jsonResponse.getBody().toString());
+        return this.GetAsync(Priority.normal, ordersRoute, makeOrders(maxId, count, instrument, ids), endpoint)
+                .thenApply(this::ordersOf);
+    }
 
-        fillOrders(orders, jsonResponse);
+    /**
+     * All pending orders of an account, newest first, fetched page by page while they are iterated
+     *
+     * @param accountId account id
+     * @param instrument Optional Retrieve pending orders for a specific instrument only. Default: all
+     * @param pageSize orders per request, 1 to 500
+     * @return lazy iterable, the next page is prefetched while one is consumed
+     * @see #GetOrders(long, Long, Long, String, String)
+     */
+    public Paginator<Order> IterateOrders(final long accountId, final String instrument, final int pageSize) {
+        // a larger page is answered with 500, which the paginator would take for the last page
+        if (pageSize < 1 || pageSize > 500)
+            throw new IllegalArgumentException("pageSize must be between 1 and 500");
 
-        return orders;
+        return new Paginator<>(maxId -> GetOrdersAsync(accountId, maxId, (long) pageSize, instrument, null),
+                order -> order.id, pageSize);
     }
 
     /**
@@ -91,21 +118,27 @@ public class OrderEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public List<Order> GetOrders(long accountId) throws UnirestException {
-        List<Order> orders = new ArrayList<>();
-
-        String endpoint = makeEndpoint(accountType, ordersRoute);
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        HttpResponse<JsonNode> jsonResponse = this.Get(routeParams, null, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, ordersRoute, null, endpoint);
 
         if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
             throw new UnirestException(jsonResponse.getBody().toString());
 
-        fillOrders(orders, jsonResponse);
+        return decode(HttpMethod.GET, ordersRoute, () -> fillOrders(jsonResponse));
+    }
+
+    /**
+     * Get pending orders without blocking the calling thread
+     *
+     * @see #GetOrders(long)
+     * @return future list of orders
+     */
+    public CompletableFuture<List<Order>> GetOrdersAsync(long accountId) {
 
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        return orders;
+        return this.GetAsync(Priority.normal, ordersRoute, null, endpoint).thenApply(this::ordersOf);
     }
 
     /**
@@ -129,39 +162,40 @@ public class OrderEndpoints extends Endpoint {
                              DateTime expiry, Float price, Float lowerBound, Float upperBound,
                              Long takeProfit, Long trailingStop) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, ordersRoute);
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        Map<String, Object> fields = new HashMap<>();
+        Map<String, Object> fields = makeCreateOrder(instrument, units, side, type, expiry, price, lowerBound, upperBound,
+                takeProfit, trailingStop);
 
-        fields.put("instrument", instrument);
-        fields.put("units", units);
-        fields.put("side", side.toString());
-        fields.put("type", type.toString());
+        HttpResponse<JsonNode> jsonResponse = this.Post(Priority.high, ordersRoute, fields,endpoint);
 
-        if (type != OandaTypes.OrderType.market) {
-            String dateString = expiry.toString();
+        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+            throw new UnirestException(jsonResponse.getBody().toString());
 
-            fields.put("expiry", dateString);
-            fields.put("price", price);
-        }
+        return decode(HttpMethod.POST, ordersRoute, () -> fillCreateOrder(jsonResponse));
+    }
 
-        if (lowerBound != null)
-            fields.put("lowerBound", lowerBound);
-        if (upperBound != null)
-            fields.put("upperBound", upperBound);
-        if (takeProfit != null)
-            fields.put("takeProfit", takeProfit);
-        if (trailingStop != null)
-            fields.put("trailingStop", trailingStop);
+    /**
+     * Create a new order without blocking the calling thread
+     *
+     * @see #CreateOrder(long, String, long, OandaTypes.Side, OandaTypes.OrderType, DateTime, Float, Float, Float, Long, Long)
+     * @return future created order
+     */
+    public CompletableFuture<Order> CreateOrderAsync(long accountId, String instrument, long units, OandaTypes.Side side,
+                                                     OandaTypes.OrderType type, DateTime expiry, Float price,
+                                                     Float lowerBound, Float upperBound, Long takeProfit, Long trailingStop) {
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        HttpResponse<JsonNode> jsonResponse = this.Post(routeParams,fields,endpoint);
+        String endpoint = ordersRoute.expand(baseUrl(), accountId);
 
-        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
-            throw new UnirestException(jsonResponse.getBody().toString());
+        Map<String, Object> fields = makeCreateOrder(instrument, units, side, type, expiry, price, lowerBound, upperBound,
+                takeProfit, trailingStop);
 
-        return fillCreateOrder(jsonResponse);
+        return this.PostAsync(Priority.high, ordersRoute, fields, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.POST, ordersRoute, () -> fillCreateOrder(jsonResponse));
+        });
     }
 
     /**
@@ -174,18 +208,32 @@ public class OrderEndpoints extends Endpoint {
      */
     public Order GetOrder(long accountId, long orderId) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, orderRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("order_id", String.valueOf(orderId));
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(routeParams, null, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, orderRoute, null, endpoint);
 
         if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
             throw new UnirestException(jsonResponse.getBody().toString());
 
-        return fillOrder(jsonResponse);
+        return decode(HttpMethod.GET, orderRoute, () -> fillOrder(jsonResponse));
+    }
+
+    /**
+     * Get information for an order without blocking the calling thread
+     *
+     * @see #GetOrder(long, long)
+     * @return future order
+     */
+    public CompletableFuture<Order> GetOrderAsync(long accountId, long orderId) {
+
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
+
+        return this.GetAsync(Priority.normal, orderRoute, null, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.GET, orderRoute, () -> fillOrder(jsonResponse));
+        });
     }
 
     /**
@@ -208,12 +256,128 @@ public class OrderEndpoints extends Endpoint {
                              Float lowerBound, Float upperBound, Float stopLoss, Float takeProfit,
                              Long trailingStop) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, orderRoute);
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
+
+        Map<String, Object> fields = makeUpdateOrder(units, price, expiry, lowerBound, upperBound, stopLoss, takeProfit,
+                trailingStop);
+
+        HttpResponse<JsonNode> jsonResponse = this.Patch(Priority.high, orderRoute, fields, endpoint);
+
+        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+            throw new UnirestException(jsonResponse.getBody().toString());
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("order_id", String.valueOf(orderId));
+        return decode(HttpMethod.PATCH, orderRoute, () -> fillOrder(jsonResponse));
+    }
 
+    /**
+     * Modify an existing order without blocking the calling thread
+     *
+     * @see #UpdateOrder(long, long, Long, Float, DateTime, Float, Float, Float, Float, Long)
+     * @return future order
+     */
+    public CompletableFuture<Order> UpdateOrderAsync(long accountId, long orderId, Long units, Float price, DateTime expiry,
+                                                     Float lowerBound, Float upperBound, Float stopLoss, Float takeProfit,
+                                                     Long trailingStop) {
+
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
+
+        Map<String, Object> fields = makeUpdateOrder(units, price, expiry, lowerBound, upperBound, stopLoss, takeProfit,
+                trailingStop);
+
+        return this.PatchAsync(Priority.high, orderRoute, fields, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.PATCH, orderRoute, () -> fillOrder(jsonResponse));
+        });
+    }
+
+    /**
+     * Close an order
+     *
+     * @param accountId account id
+     * @param orderId order id
+     * @return order
+     * @throws UnirestException
+     */
+    public Order CloseOrder(long accountId, long orderId) throws UnirestException {
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
+
+        HttpResponse<JsonNode> jsonResponse = this.Delete(Priority.high, orderRoute, endpoint);
+
+        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+            throw new UnirestException(jsonResponse.getBody().toString());
+
+        return decode(HttpMethod.DELETE, orderRoute, () -> fillOrderClosed(jsonResponse));
+
+    }
+
+    /**
+     * Close an order without blocking the calling thread
+     *
+     * @see #CloseOrder(long, long)
+     * @return future order
+     */
+    public CompletableFuture<Order> CloseOrderAsync(long accountId, long orderId) {
+        String endpoint = orderRoute.expand(baseUrl(), accountId, orderId);
+
+        return this.DeleteAsync(Priority.high, orderRoute, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.DELETE, orderRoute, () -> fillOrderClosed(jsonResponse));
+        });
+    }
+
+    private Map<String, Object> makeOrders(Long maxId, Long count, String instrument, String ids) {
+        Map<String, Object> fields = new HashMap<>();
+
+        if (maxId != null)
+            fields.put("maxId", maxId);
+
+        if (count != null)
+            fields.put("count", count);
+
+        if (instrument != null)
+            fields.put("instrument", instrument);
+
+        if (ids != null)
+            fields.put("ids", ids);
+
+        return fields;
+    }
+
+    private Map<String, Object> makeCreateOrder(String instrument, long units, OandaTypes.Side side, OandaTypes.OrderType type,
+                                                DateTime expiry, Float price, Float lowerBound, Float upperBound,
+                                                Long takeProfit, Long trailingStop) {
+        Map<String, Object> fields = new HashMap<>();
+
+        fields.put("instrument", instrument);
+        fields.put("units", units);
+        fields.put("side", side.toString());
+        fields.put("type", type.toString());
+
+        if (type != OandaTypes.OrderType.market) {
+            String dateString = formatTime(expiry);
+
+            fields.put("expiry", dateString);
+            fields.put("price", price);
+        }
+
+        if (lowerBound != null)
+            fields.put("lowerBound", lowerBound);
+        if (upperBound != null)
+            fields.put("upperBound", upperBound);
+        if (takeProfit != null)
+            fields.put("takeProfit", takeProfit);
+        if (trailingStop != null)
+            fields.put("trailingStop", trailingStop);
+
+        return fields;
+    }
+
+    private Map<String, Object> makeUpdateOrder(Long units, Float price, DateTime expiry, Float lowerBound, Float upperBound,
+                                                Float stopLoss, Float takeProfit, Long trailingStop) {
         Map<String, Object> fields = new HashMap<>();
 
         if (units != null)
@@ -221,7 +385,7 @@ public class OrderEndpoints extends Endpoint {
         if (price != null)
             fields.put("price", price);
         if (expiry != null)
-            fields.put("expiry", expiry.toString());
+            fields.put("expiry", formatTime(expiry));
         if (lowerBound != null)
             fields.put("lowerBound", lowerBound);
         if (upperBound != null)
@@ -233,44 +397,22 @@ public class OrderEndpoints extends Endpoint {
         if (trailingStop != null)
             fields.put("trailingStop", trailingStop);
 
-        HttpResponse<JsonNode> jsonResponse = this.Patch(routeParams, fields, endpoint);
-
-        if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
-            throw new UnirestException(jsonResponse.getBody().toString());
-
-        return this.fillOrder(jsonResponse);
+        return fields;
     }
 
-    /**
-     * Close an order
-     *
-     * @param accountId account id
-     * @param orderId order id
-     * @return order
-     * @throws UnirestException
-     */
-    public Order CloseOrder(long accountId, long orderId) throws UnirestException {
-        String endpoint = makeEndpoint(accountType, orderRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("order_id", String.valueOf(orderId));
-
-        HttpResponse<JsonNode> jsonResponse = this.Delete(routeParams, endpoint);
-
+    private List<Order> ordersOf(HttpResponse<JsonNode> jsonResponse) {
         if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
-            throw new UnirestException(jsonResponse.getBody().toString());
-
-        return fillOrderClosed(jsonResponse);
+            throw failure(jsonResponse);
 
+        return decode(HttpMethod.GET, ordersRoute, () -> fillOrders(jsonResponse));
     }
 
-    private void fillOrders(List<Order> orders, HttpResponse<JsonNode> jsonResponse) {
+    private List<Order> fillOrders(HttpResponse<JsonNode> jsonResponse) {
+        List<Order> orders = new ArrayList<>();
+
         JSONObject jsonResult = jsonResponse.getBody().getObject();
         JSONArray array = jsonResult.getJSONArray("orders");
 
-        if (array.length() == 0) return;
-
         for (int i = 0; i < array.length(); i++) {
             JSONObject object = array.getJSONObject(i);
 
@@ -289,6 +431,7 @@ public class OrderEndpoints extends Endpoint {
                 order.type = OandaTypes.OrderType.valueOf(object.getString("type"));
                 order.units = object.getLong("units");
                 order.time = object.getString("time");
+                order.timeMicros = timeOf(order.time);
 
                 orders.add(order);
             } else {
@@ -308,10 +451,13 @@ public class OrderEndpoints extends Endpoint {
                 order.units = object.getLong("units");
                 order.upperBound = (float) object.getDouble("upperBound");
                 order.time = object.getString("time");
+                order.timeMicros = timeOf(order.time);
 
                 orders.add(order);
             }
         }
+
+        return orders;
     }
 
     private Order fillCreateOrder(HttpResponse<JsonNode> jsonResponse) {
@@ -333,6 +479,7 @@ public class OrderEndpoints extends Endpoint {
             order.trailingStop = (float) object.getDouble("trailingStop");
             order.units = object.getLong("units");
             order.time = jsonResult.getString("time");
+            order.timeMicros = timeOf(order.time);
             order.type = OandaTypes.OrderType.market;
             return order;
 
@@ -354,6 +501,7 @@ public class OrderEndpoints extends Endpoint {
             order.units = object.getLong("units");
             order.upperBound = (float) object.getDouble("upperBound");
             order.time = jsonResult.getString("time");
+            order.timeMicros = timeOf(order.time);
             order.type = OandaTypes.OrderType.marketIfTouched;
 
             return order;
@@ -374,6 +522,7 @@ public class OrderEndpoints extends Endpoint {
             order.instrument = jsonResult.getString("instrument");
             order.price = (float) jsonResult.getDouble("price");
             order.time = jsonResult.getString("time");
+            order.timeMicros = timeOf(order.time);
             order.id = jsonResult.getLong("id");
             order.side = OandaTypes.Side.valueOf(jsonResult.getString("side"));
             order.stopLoss = (float) jsonResult.getDouble("stopLoss");
@@ -389,6 +538,7 @@ public class OrderEndpoints extends Endpoint {
             order.instrument = jsonResult.getString("instrument");
             order.price = (float) jsonResult.getDouble("price");
             order.time = jsonResult.getString("time");
+            order.timeMicros = timeOf(order.time);
             order.id = jsonResult.getLong("id");
             order.side = OandaTypes.Side.valueOf(jsonResult.getString("side"));
             order.stopLoss = (float) jsonResult.getDouble("stopLoss");
@@ -413,6 +563,7 @@ public class OrderEndpoints extends Endpoint {
         orderClosed.price = (float)jsonResult.getDouble("price");
         orderClosed.side = OandaTypes.Side.valueOf(jsonResult.getString("side"));
         orderClosed.time = jsonResult.getString("time");
+        orderClosed.timeMicros = timeOf(orderClosed.time);
 
         return orderClosed;
     }
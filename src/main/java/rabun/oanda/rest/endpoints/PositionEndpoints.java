@@ -1,30 +1,37 @@
 package rabun.oanda.rest.endpoints;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
 import rabun.oanda.rest.models.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * POSITION ENDPOINTS
  */
 public class PositionEndpoints extends Endpoint {
 
-    private final String positionsRoute = "/v1/accounts/{account_id}/positions";
-    private final String positionRoute = "/v1/accounts/{account_id}/positions/{instrument}";
+    private static final RouteTemplate positionsRoute = RouteTemplate.compile("/v1/accounts/{account_id}/positions");
+    private static final RouteTemplate positionRoute = RouteTemplate.compile("/v1/accounts/{account_id}/positions/{instrument}");
 
     public PositionEndpoints(String key, AccountType accountType) {
         super(key, accountType);
     }
 
+    public PositionEndpoints(String key, AccountType accountType, OandaClient client) {
+        super(key, accountType, client);
+    }
+
     /**
      * Get a list of all open positions
      * @param accountId account id
@@ -33,17 +40,32 @@ public class PositionEndpoints extends Endpoint {
      */
     public List<Position> GetPositions(long accountId) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, positionsRoute);
+        String endpoint = positionsRoute.expand(baseUrl(), accountId);
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-
-        HttpResponse<JsonNode> jsonResponse = this.Get(routeParams, null, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, positionsRoute, null, endpoint);
 
         if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
             throw new UnirestException(jsonResponse.getBody().toString());
 
-        return fillPositions(jsonResponse);
+        return decode(HttpMethod.GET, positionsRoute, () -> fillPositions(jsonResponse));
+    }
+
+    /**
+     * Get a list of all open positions without blocking the calling thread
+     *
+     * @see #GetPositions(long)
+     * @return future list of positions
+     */
+    public CompletableFuture<List<Position>> GetPositionsAsync(long accountId) {
+
+        String endpoint = positionsRoute.expand(baseUrl(), accountId);
+
+        return this.GetAsync(Priority.normal, positionsRoute, null, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.GET, positionsRoute, () -> fillPositions(jsonResponse));
+        });
     }
 
     /**
@@ -55,18 +77,31 @@ public class PositionEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public Position GetPosition(long accountId, String instrument) throws UnirestException {
-        String endpoint = makeEndpoint(accountType, positionRoute);
+        String endpoint = positionRoute.expand(baseUrl(), accountId, instrument);
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("instrument", instrument);
-
-        HttpResponse<JsonNode> jsonResponse = this.Get(routeParams, null, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, positionRoute, null, endpoint);
 
         if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
             throw new UnirestException(jsonResponse.getBody().toString());
 
-        return fillPosition(jsonResponse);
+        return decode(HttpMethod.GET, positionRoute, () -> fillPosition(jsonResponse));
+    }
+
+    /**
+     * Get the position for an instrument without blocking the calling thread
+     *
+     * @see #GetPosition(long, String)
+     * @return future position
+     */
+    public CompletableFuture<Position> GetPositionAsync(long accountId, String instrument) {
+        String endpoint = positionRoute.expand(baseUrl(), accountId, instrument);
+
+        return this.GetAsync(Priority.normal, positionRoute, null, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() > 299 || jsonResponse.getCode() < 200)
+                throw failure(jsonResponse);
+
+            return decode(HttpMethod.GET, positionRoute, () -> fillPosition(jsonResponse));
+        });
     }
 
     /**
@@ -78,18 +113,31 @@ public class PositionEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public PositionClosed ClosePosition(long accountId, String instrument) throws UnirestException {
-        String endpoint = makeEndpoint(accountType, positionRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("instrument", instrument);
+        String endpoint = positionRoute.expand(baseUrl(), accountId, instrument);
 
-        HttpResponse<JsonNode> response = this.Delete(routeParams, endpoint);
+        HttpResponse<JsonNode> response = this.Delete(Priority.high, positionRoute, endpoint);
 
         if (response.getCode() > 299 || response.getCode() < 200)
             throw new UnirestException(response.getBody().toString());
 
-        return fillPositionClosed(response);
+        return decode(HttpMethod.DELETE, positionRoute, () -> fillPositionClosed(response));
+    }
+
+    /**
+     * Close an existing position without blocking the calling thread
+     *
+     * @see #ClosePosition(long, String)
+     * @return future positionClosed model
+     */
+    public CompletableFuture<PositionClosed> ClosePositionAsync(long accountId, String instrument) {
+        String endpoint = positionRoute.expand(baseUrl(), accountId, instrument);
+
+        return this.DeleteAsync(Priority.high, positionRoute, endpoint).thenApply(response -> {
+            if (response.getCode() > 299 || response.getCode() < 200)
+                throw failure(response);
+
+            return decode(HttpMethod.DELETE, positionRoute, () -> fillPositionClosed(response));
+        });
     }
 
     private List<Position> fillPositions(HttpResponse<JsonNode> response){
@@ -1,15 +1,22 @@
 package rabun.oanda.rest.endpoints;
 
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import org.joda.time.DateTime;
 import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
+import rabun.oanda.rest.codec.CandleDecoder;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import rabun.oanda.rest.models.*;
 import rabun.oanda.rest.models.OandaTypes.*;
@@ -19,14 +26,18 @@ import rabun.oanda.rest.models.OandaTypes.*;
  */
 public class RateEndpoints extends Endpoint {
 
-    private final String instrumentsRoute = "/v1/instruments";
-    private final String priceRoute = "/v1/prices";
-    private final String candleRoute = "/v1/candles";
+    private static final RouteTemplate instrumentsRoute = RouteTemplate.compile("/v1/instruments");
+    private static final RouteTemplate priceRoute = RouteTemplate.compile("/v1/prices");
+    private static final RouteTemplate candleRoute = RouteTemplate.compile("/v1/candles");
 
     public RateEndpoints(String key, AccountType accountType) {
         super(key, accountType);
     }
 
+    public RateEndpoints(String key, AccountType accountType, OandaClient client) {
+        super(key, accountType, client);
+    }
+
     /**
      * Get an instrument list
      *
@@ -42,41 +53,34 @@ public class RateEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public List<Instrument> GetInstruments(long accountId, String fields, String instruments) throws UnirestException {
-        List<Instrument> instrumentList = new ArrayList<>();
 
-        String endpoint = makeEndpoint(accountType, instrumentsRoute);
-
-        Map<String, Object> map = new HashMap<>();
-        map.put("accountId", accountId);
-        if (fields != null)
-            map.put("fields", fields);
-        if (instruments != null && instruments.length() > 0)
-            map.put("instruments", instruments);
+        String endpoint = instrumentsRoute.expand(baseUrl());
 
-
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, map, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, instrumentsRoute, makeInstruments(accountId, fields, instruments), endpoint);
 
         if (jsonResponse.getCode() != 200) {
             throw new UnirestException(jsonResponse.getBody().toString());
         }
 
-        JSONObject obj = jsonResponse.getBody().getObject();
-        JSONArray array = obj.getJSONArray("instruments");
-
+        return decode(HttpMethod.GET, instrumentsRoute, () -> fillInstruments(jsonResponse));
+    }
 
-        for (int i = 0; i < array.length(); i++) {
-            JSONObject object = array.getJSONObject(i);
-            Instrument instrument = new Instrument();
+    /**
+     * Get an instrument list without blocking the calling thread
+     *
+     * @see #GetInstruments(long, String, String)
+     * @return future list of instrument
+     */
+    public CompletableFuture<List<Instrument>> GetInstrumentsAsync(long accountId, String fields, String instruments) {
 
-            instrument.displayName = object.getString("displayName");
-            instrument.instrument = object.getString("instrument");
-            instrument.maxTradeUnits = object.getLong("maxTradeUnits");
-            instrument.pip = (float) object.getDouble("pip");
+        String endpoint = instrumentsRoute.expand(baseUrl());
 
-            instrumentList.add(instrument);
-        }
+        return this.GetAsync(Priority.normal, instrumentsRoute, makeInstruments(accountId, fields, instruments), endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() != 200)
+                throw failure(jsonResponse);
 
-        return instrumentList;
+            return decode(HttpMethod.GET, instrumentsRoute, () -> fillInstruments(jsonResponse));
+        });
     }
 
     /**
@@ -88,37 +92,40 @@ public class RateEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public List<Price> GetPrices(String instruments) throws UnirestException {
-        List<Price> prices = new ArrayList<>();
 
-        String endpoint = makeEndpoint(accountType, priceRoute);
+        String endpoint = priceRoute.expand(baseUrl());
 
         Map<String, Object> map = new HashMap<>();
         map.put("instruments", instruments);
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, map, endpoint);
+        HttpResponse<JsonNode> jsonResponse = this.Get(Priority.normal, priceRoute, map, endpoint);
 
         if (jsonResponse.getCode() != 200) {
             throw new UnirestException(jsonResponse.getBody().toString());
         }
 
-        JSONObject obj = jsonResponse.getBody().getObject();
-        JSONArray array = obj.getJSONArray("prices");
+        return decode(HttpMethod.GET, priceRoute, () -> fillPrices(jsonResponse));
 
+    }
 
-        for (int i = 0; i < array.length(); i++) {
-            JSONObject object = array.getJSONObject(i);
-            Price price = new Price();
+    /**
+     * Get current prices without blocking the calling thread
+     *
+     * @see #GetPrices(String)
+     * @return future list of prices
+     */
+    public CompletableFuture<List<Price>> GetPricesAsync(String instruments) {
 
-            price.ask = (float) object.getDouble("ask");
-            price.bid = (float) object.getDouble("bid");
-            price.instrument = object.getString("instrument");
-            price.status = object.optString("status");
-            price.time = object.optString("time");
+        String endpoint = priceRoute.expand(baseUrl());
 
-            prices.add(price);
-        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("instruments", instruments);
 
-        return prices;
+        return this.GetAsync(Priority.normal, priceRoute, map, endpoint).thenApply(jsonResponse -> {
+            if (jsonResponse.getCode() != 200)
+                throw failure(jsonResponse);
 
+            return decode(HttpMethod.GET, priceRoute, () -> fillPrices(jsonResponse));
+        });
     }
 
     /**
@@ -160,25 +167,90 @@ public class RateEndpoints extends Endpoint {
                              WeeklyAlignment weeklyAlignment) throws Exception {
 
         Candle candle = new Candle();
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, granularity, count, start, end,
                 candleFormat, includeFirst, dailyAlignment, weeklyAlignment);
 
-        if (candleFormat != null && candleFormat == CandleFormat.midpoint) {
-            candleFormat = CandleFormat.bidask;
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
+
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, candleFormat, candle));
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+    }
+
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandles(String, GranularityType, long, DateTime, DateTime, CandleFormat, Boolean, Byte, WeeklyAlignment)
+     * @return future candle
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle> GetCandlesAsync(String instrument, GranularityType granularity, long count, DateTime start,
+                                                     DateTime end, CandleFormat candleFormat, Boolean includeFirst,
+                                                     Byte dailyAlignment, WeeklyAlignment weeklyAlignment) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, granularity, count, start, end,
+                candleFormat, includeFirst, dailyAlignment, weeklyAlignment);
+
+        return candleAsync(fields, candleFormat, new Candle());
+    }
+
+    /**
+     * Retrieve instrument history into a columnar series
+     *
+     * Same request as {@link #GetCandles}, but the candles are decoded straight into the primitive
+     * columns of a {@link CandleSeries} instead of one object per candle.
+     *
+     * @param series Required Series to append the candles to, its format is the requested candleFormat
+     * @return the series passed in
+     * @throws Exception
+     * @see #GetCandles(String, GranularityType, long, DateTime, DateTime, CandleFormat, Boolean, Byte, WeeklyAlignment)
+     */
+    public CandleSeries GetCandleSeries(String instrument, GranularityType granularity, Long count, DateTime start,
+                                        DateTime end, Boolean includeFirst, Byte dailyAlignment,
+                                        WeeklyAlignment weeklyAlignment, CandleSeries series) throws Exception {
+
+        String endpoint = candleRoute.expand(baseUrl());
+
+        Map<String, Object> fields = makeCandle(instrument, granularity, count, start, end,
+                series.candleFormat, includeFirst, dailyAlignment, weeklyAlignment);
+
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
+
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, candleFormat, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillSeries(response, series));
+    }
+
+    /**
+     * Retrieve instrument history into a columnar series without blocking the calling thread
+     *
+     * @see #GetCandleSeries(String, GranularityType, Long, DateTime, DateTime, Boolean, Byte, WeeklyAlignment, CandleSeries)
+     * @return future series, the one passed in
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<CandleSeries> GetCandleSeriesAsync(String instrument, GranularityType granularity, Long count,
+                                                                DateTime start, DateTime end, Boolean includeFirst,
+                                                                Byte dailyAlignment, WeeklyAlignment weeklyAlignment,
+                                                                CandleSeries series) throws Exception {
+
+        String endpoint = candleRoute.expand(baseUrl());
 
-        return candle;
+        Map<String, Object> fields = makeCandle(instrument, granularity, count, start, end,
+                series.candleFormat, includeFirst, dailyAlignment, weeklyAlignment);
+
+        return this.GetStreamAsync(Priority.low, candleRoute, fields, endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
 
+            return decode(HttpMethod.GET, candleRoute, () -> fillSeries(response, series));
+        });
     }
 
     /**
@@ -194,20 +266,32 @@ public class RateEndpoints extends Endpoint {
 
         Candle<CandleMid> candle = new Candle<>();
 
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, null, null, null, null, CandleFormat.midpoint, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.midpoint, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.midpoint, candle));
 
-        return candle;
+    }
 
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesMid(String)
+     * @return future candle of CandleMid
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleMid>> GetCandlesMidAsync(String instrument) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, null, null, null, null, CandleFormat.midpoint, null, null, null);
+
+        return candleAsync(fields, CandleFormat.midpoint, new Candle<CandleMid>());
     }
 
     /**
@@ -223,20 +307,32 @@ public class RateEndpoints extends Endpoint {
     public Candle<CandleMid> GetCandlesMid(String instrument, GranularityType granularity) throws Exception {
 
         Candle<CandleMid> candle = new Candle<>();
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, granularity, null, null, null, CandleFormat.midpoint, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.midpoint, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.midpoint, candle));
 
-        return candle;
+    }
+
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesMid(String, GranularityType)
+     * @return future candle of CandleMid
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleMid>> GetCandlesMidAsync(String instrument, GranularityType granularity) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, granularity, null, null, null, CandleFormat.midpoint, null, null, null);
 
+        return candleAsync(fields, CandleFormat.midpoint, new Candle<CandleMid>());
     }
 
     /**
@@ -257,20 +353,33 @@ public class RateEndpoints extends Endpoint {
     public Candle<CandleMid> GetCandlesMid(String instrument, GranularityType granularity, long count) throws Exception {
 
         Candle<CandleMid> candle = new Candle<>();
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, granularity, count, null, null, CandleFormat.midpoint, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.midpoint, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.midpoint, candle));
 
-        return candle;
+    }
+
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesMid(String, GranularityType, long)
+     * @return future candle of CandleMid
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleMid>> GetCandlesMidAsync(String instrument, GranularityType granularity,
+                                                                   long count) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, granularity, count, null, null, CandleFormat.midpoint, null, null, null);
 
+        return candleAsync(fields, CandleFormat.midpoint, new Candle<CandleMid>());
     }
 
     /**
@@ -286,20 +395,32 @@ public class RateEndpoints extends Endpoint {
 
         Candle<CandleBidAsk> candle = new Candle<>();
 
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, null, null, null, null, CandleFormat.bidask, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.bidask, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.bidask, candle));
 
-        return candle;
+    }
 
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesBidAsk(String)
+     * @return future candle of CandleBidAsk
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleBidAsk>> GetCandlesBidAskAsync(String instrument) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, null, null, null, null, CandleFormat.bidask, null, null, null);
+
+        return candleAsync(fields, CandleFormat.bidask, new Candle<CandleBidAsk>());
     }
 
     /**
@@ -315,20 +436,32 @@ public class RateEndpoints extends Endpoint {
     public Candle<CandleBidAsk> GetCandlesBidAsk(String instrument, GranularityType granularity) throws Exception {
 
         Candle<CandleBidAsk> candle = new Candle<>();
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, granularity, null, null, null, CandleFormat.bidask, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.bidask, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.bidask, candle));
 
-        return candle;
+    }
+
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesBidAsk(String, GranularityType)
+     * @return future candle of CandleBidAsk
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleBidAsk>> GetCandlesBidAskAsync(String instrument, GranularityType granularity) throws Exception {
 
+        Map<String, Object> fields = makeCandle(instrument, granularity, null, null, null, CandleFormat.bidask, null, null, null);
+
+        return candleAsync(fields, CandleFormat.bidask, new Candle<CandleBidAsk>());
     }
 
     /**
@@ -349,20 +482,117 @@ public class RateEndpoints extends Endpoint {
     public Candle<CandleBidAsk> GetCandlesBidAsk(String instrument, GranularityType granularity, long count) throws Exception {
 
         Candle<CandleBidAsk> candle = new Candle<>();
-        String endpoint = makeEndpoint(accountType, candleRoute);
+        String endpoint = candleRoute.expand(baseUrl());
 
         Map<String, Object> fields = makeCandle(instrument, granularity, count, null, null, CandleFormat.bidask, null, null, null);
 
-        HttpResponse<JsonNode> jsonResponse = this.Get(null, fields, endpoint);
+        HttpResponse<InputStream> response = this.GetStream(Priority.low, candleRoute, fields, endpoint);
 
-        if (jsonResponse.getCode() != 200) {
-            throw new UnirestException(jsonResponse.getBody().toString());
+        if (response.getCode() != 200) {
+            throw new UnirestException(bodyOf(response));
         }
 
-        fillCandle(jsonResponse, CandleFormat.bidask, candle);
+        return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, CandleFormat.bidask, candle));
 
+    }
+
+    /**
+     * Retrieve instrument history without blocking the calling thread
+     *
+     * @see #GetCandlesBidAsk(String, GranularityType, long)
+     * @return future candle of CandleBidAsk
+     * @throws Exception if the request parameters are invalid
+     */
+    public CompletableFuture<Candle<CandleBidAsk>> GetCandlesBidAskAsync(String instrument, GranularityType granularity,
+                                                                         long count) throws Exception {
+
+        Map<String, Object> fields = makeCandle(instrument, granularity, count, null, null, CandleFormat.bidask, null, null, null);
+
+        return candleAsync(fields, CandleFormat.bidask, new Candle<CandleBidAsk>());
+    }
+
+    private <T> CompletableFuture<Candle<T>> candleAsync(Map<String, Object> fields, CandleFormat candleFormat, Candle<T> candle) {
+        String endpoint = candleRoute.expand(baseUrl());
+
+        return this.GetStreamAsync(Priority.low, candleRoute, fields, endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
+
+            return decode(HttpMethod.GET, candleRoute, () -> fillCandle(response, candleFormat, candle));
+        });
+    }
+
+    private <T extends Candle> T fillCandle(HttpResponse<InputStream> response, CandleFormat candleFormat, T candle) {
+        CandleDecoder.decode(response.getBody(), candleFormat, candle);
         return candle;
+    }
+
+    private CandleSeries fillSeries(HttpResponse<InputStream> response, CandleSeries series) {
+        CandleDecoder.decode(response.getBody(), series);
+        return series;
+    }
+
+    private Map<String, Object> makeInstruments(long accountId, String fields, String instruments) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("accountId", accountId);
+        if (fields != null)
+            map.put("fields", fields);
+        if (instruments != null && instruments.length() > 0)
+            map.put("instruments", instruments);
+
+        return map;
+    }
+
+    private List<Instrument> fillInstruments(HttpResponse<JsonNode> jsonResponse) {
+        List<Instrument> instrumentList = new ArrayList<>();
+
+        JSONObject obj = jsonResponse.getBody().getObject();
+        JSONArray array = obj.getJSONArray("instruments");
+
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            Instrument instrument = new Instrument();
+
+            // only the instrument name is always there, the rest depends on the requested fields
+            instrument.instrument = object.getString("instrument");
+            instrument.displayName = object.optString("displayName", null);
+            instrument.pip = (float) object.optDouble("pip", 0);
+            instrument.maxTradeUnits = object.optLong("maxTradeUnits");
+            instrument.precision = object.optString("precision", null);
+            instrument.maxTrailingStop = (float) object.optDouble("maxTrailingStop", 0);
+            instrument.minTrailingStop = (float) object.optDouble("minTrailingStop", 0);
+            instrument.marginRate = (float) object.optDouble("marginRate", 0);
+            instrument.halted = object.optBoolean("halted");
+
+            instrumentList.add(instrument);
+        }
+
+        return instrumentList;
+    }
+
+    private List<Price> fillPrices(HttpResponse<JsonNode> jsonResponse) {
+        List<Price> prices = new ArrayList<>();
 
+        JSONObject obj = jsonResponse.getBody().getObject();
+        JSONArray array = obj.getJSONArray("prices");
+
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            Price price = new Price();
+
+            price.ask = (float) object.getDouble("ask");
+            price.bid = (float) object.getDouble("bid");
+            price.instrument = object.getString("instrument");
+            price.status = object.optString("status");
+            price.time = object.optString("time");
+            price.timeMicros = timeOf(price.time);
+
+            prices.add(price);
+        }
+
+        return prices;
     }
 
     private Map<String, Object> makeCandle(String instrument, GranularityType granularity, Long count, DateTime start, DateTime end,
@@ -380,17 +610,19 @@ public class RateEndpoints extends Endpoint {
             granularity = GranularityType.S5;
         fields.put("granularity", granularity.toString());
 
-        if (count == null)
+        // count must not be sent together with both start and end
+        if (count == null && (start == null || end == null))
             count = 500L;
-        fields.put("count", count);
+        if (count != null)
+            fields.put("count", count);
 
         if (start != null) {
-            fields.put("start", start.toString());
+            fields.put("start", formatTime(start));
         }
 
         if (start != null && end != null) {
-            fields.put("start", start.toString());
-            fields.put("end", end.toString());
+            fields.put("start", formatTime(start));
+            fields.put("end", formatTime(end));
         }
 
         if (candleFormat != null)
@@ -413,57 +645,10 @@ public class RateEndpoints extends Endpoint {
             weeklyAlignment = WeeklyAlignment.Friday;
         fields.put("weeklyAlignment", weeklyAlignment.toString());
 
-        return fields;
-
-    }
-
-    private void fillCandle(HttpResponse<JsonNode> jsonResponse, CandleFormat candleFormat, Candle candle) {
-        JSONObject obj = jsonResponse.getBody().getObject();
+        if (dateFormat == DateFormat.unix)
+            fields.put("dateFormat", dateFormat.toString());
 
-        candle.granularity = GranularityType.valueOf(obj.getString("granularity"));
-        candle.instrument = obj.getString("instrument");
-
-        JSONArray array = obj.getJSONArray("candles");
-
-        if (candleFormat == CandleFormat.bidask) {
-
-            List candles = candle.candles;
-
-            for (int i = 0; i < array.length(); i++) {
-                JSONObject object = array.getJSONObject(i);
-                CandleBidAsk candleBidAsk = new CandleBidAsk();
-
-                candleBidAsk.closeAsk = (float) object.getDouble("closeAsk");
-                candleBidAsk.closeBid = (float) object.getDouble("closeBid");
-                candleBidAsk.highAsk = (float) object.getDouble("highAsk");
-                candleBidAsk.highBid = (float) object.getDouble("highBid");
-                candleBidAsk.lowAsk = (float) object.getDouble("lowAsk");
-                candleBidAsk.lowBid = (float) object.getDouble("lowBid");
-                candleBidAsk.openAsk = (float) object.getDouble("openAsk");
-                candleBidAsk.openBid = (float) object.getDouble("openBid");
-                candleBidAsk.complete = object.getBoolean("complete");
-                candleBidAsk.time = object.getString("time");
-                candleBidAsk.volume = object.getLong("volume");
-
-                candles.add(candleBidAsk);
-            }
-        } else if (candleFormat == CandleFormat.midpoint) {
-            List<CandleMid> candles = candle.candles;
-            for (int i = 0; i < array.length(); i++) {
-                JSONObject object = array.getJSONObject(i);
-                CandleMid candleMid = new CandleMid();
-
-                candleMid.closeMid = (float) object.getDouble("closeMid");
-                candleMid.highMid = (float) object.getDouble("highMid");
-                candleMid.lowMid = (float) object.getDouble("lowMid");
-                candleMid.openMid = (float) object.getDouble("openMid");
-                candleMid.volume = object.getLong("volume");
-                candleMid.time = object.getString("time");
-                candleMid.complete = object.getBoolean("complete");
-
-                candles.add(candleMid);
-            }
-        }
+        return fields;
 
     }
 
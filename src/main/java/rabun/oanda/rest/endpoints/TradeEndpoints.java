@@ -1,30 +1,40 @@
 package rabun.oanda.rest.endpoints;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
 import rabun.oanda.rest.models.*;
+import rabun.oanda.rest.paging.Paginator;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Get a list of open trades
  */
 public class TradeEndpoints extends Endpoint {
 
-    private final String tradesRoute = "/v1/accounts/{account_id}/trades";
-    private final String tradeRoute = "/v1/accounts/{account_id}/trades/{trade_id}";
+    private static final RouteTemplate tradesRoute = RouteTemplate.compile("/v1/accounts/{account_id}/trades");
+    private static final RouteTemplate tradeRoute = RouteTemplate.compile("/v1/accounts/{account_id}/trades/{trade_id}");
 
     public TradeEndpoints(String key, AccountType accountType) {
         super(key, accountType);
     }
 
+    public TradeEndpoints(String key, AccountType accountType, OandaClient client) {
+        super(key, accountType, client);
+    }
+
     /**
      * Get a list of open trades
      *
@@ -44,28 +54,51 @@ public class TradeEndpoints extends Endpoint {
      */
     public List<Trade> GetTrades(long accountId, Long maxId, Long count, String instrument, String ids) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, tradesRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-
-        Map<String, Object> fields = new HashMap<>();
-        if (maxId != null)
-            fields.put("maxId", maxId);
-        if (count != null)
-            fields.put("count", count);
-        if (instrument != null)
-            fields.put("instrument", instrument);
-        if (ids != null)
-            fields.put("ids", ids);
+        String endpoint = tradesRoute.expand(baseUrl(), accountId);
 
-        HttpResponse<JsonNode> response = this.Get(routeParams, fields, endpoint);
+        HttpResponse<JsonNode> response = this.Get(Priority.normal, tradesRoute, makeTrades(maxId, count, instrument, ids), endpoint);
 
         if (response.getCode() != 200) {
             throw new UnirestException(response.getBody().toString());
         }
 
-        return fillTrades(response);
+        return decode(HttpMethod.GET, tradesRoute, () -> fillTrades(response));
+    }
+
+    /**
+     * Get a list of open trades without blocking the calling thread
+     *
+     * @see #GetTrades(long, Long, Long, String, String)
+     * @return future list of trades
+     */
+    public CompletableFuture<List<Trade>> GetTradesAsync(long accountId, Long maxId, Long count, String instrument, String ids) {
+
+        String endpoint = tradesRoute.expand(baseUrl(), accountId);
+
+        return this.GetAsync(Priority.normal, tradesRoute, makeTrades(maxId, count, instrument, ids), endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
+
+            return decode(HttpMethod.GET, tradesRoute, () -> fillTrades(response));
+        });
+    }
+
+    /**
+     * All open trades of an account, newest first, fetched page by page while they are iterated
+     *
+     * @param accountId account id
+     * @param instrument Optional Retrieve open trades for a specific instrument only Default: all
+     * @param pageSize trades per request, 1 to 500
+     * @return lazy iterable, the next page is prefetched while one is consumed
+     * @see #GetTrades(long, Long, Long, String, String)
+     */
+    public Paginator<Trade> IterateTrades(final long accountId, final String instrument, final int pageSize) {
+        // a larger page is answered with 500, which the paginator would take for the last page
+        if (pageSize < 1 || pageSize > 500)
+            throw new IllegalArgumentException("pageSize must be between 1 and 500");
+
+        return new Paginator<>(maxId -> GetTradesAsync(accountId, maxId, (long) pageSize, instrument, null),
+                trade -> trade.id, pageSize);
     }
 
     /**
@@ -78,19 +111,33 @@ public class TradeEndpoints extends Endpoint {
      */
     public Trade GetTrade(long accountId, long tradeId) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, tradeRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("trade_id", String.valueOf(tradeId));
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
 
-        HttpResponse<JsonNode> response = this.Get(routeParams, null, endpoint);
+        HttpResponse<JsonNode> response = this.Get(Priority.normal, tradeRoute, null, endpoint);
 
         if (response.getCode() != 200) {
             throw new UnirestException(response.getBody().toString());
         }
 
-        return fillTrade(response);
+        return decode(HttpMethod.GET, tradeRoute, () -> fillTrade(response));
+    }
+
+    /**
+     * Get information on a specific trade without blocking the calling thread
+     *
+     * @see #GetTrade(long, long)
+     * @return future trade
+     */
+    public CompletableFuture<Trade> GetTradeAsync(long accountId, long tradeId) {
+
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
+
+        return this.GetAsync(Priority.normal, tradeRoute, null, endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
+
+            return decode(HttpMethod.GET, tradeRoute, () -> fillTrade(response));
+        });
     }
 
     /**
@@ -108,24 +155,37 @@ public class TradeEndpoints extends Endpoint {
      * @throws UnirestException
      */
     public Trade UpdateTrade(long accountId, long tradeId, Float stopLoss, Float takeProfit, long trailingStop) throws UnirestException {
-        String endpoint = makeEndpoint(accountType, tradeRoute);
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("trade_id", String.valueOf(tradeId));
+        Map<String, Object> fields = makeUpdateTrade(stopLoss, takeProfit, trailingStop);
 
-        Map<String, Object> fields = new HashMap<>();
-        fields.put("stopLoss", stopLoss);
-        fields.put("takeProfit", takeProfit);
-        fields.put("trailingStop", trailingStop);
-
-        HttpResponse<JsonNode> response = this.Patch(routeParams,fields, endpoint);
+        HttpResponse<JsonNode> response = this.Patch(Priority.high, tradeRoute, fields, endpoint);
 
         if (response.getCode() != 200) {
             throw new UnirestException(response.getBody().toString());
         }
 
-        return fillTrade(response);
+        return decode(HttpMethod.PATCH, tradeRoute, () -> fillTrade(response));
+    }
+
+    /**
+     * Modify an existing trade without blocking the calling thread
+     *
+     * @see #UpdateTrade(long, long, Float, Float, long)
+     * @return future trade
+     */
+    public CompletableFuture<Trade> UpdateTradeAsync(long accountId, long tradeId, Float stopLoss, Float takeProfit,
+                                                     long trailingStop) {
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
+
+        Map<String, Object> fields = makeUpdateTrade(stopLoss, takeProfit, trailingStop);
+
+        return this.PatchAsync(Priority.high, tradeRoute, fields, endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
+
+            return decode(HttpMethod.PATCH, tradeRoute, () -> fillTrade(response));
+        });
     }
 
     /**
@@ -138,19 +198,56 @@ public class TradeEndpoints extends Endpoint {
      */
     public TradeClosed CloseTrade(long accountId, long tradeId) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, tradeRoute);
-
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
-        routeParams.put("trade_id", String.valueOf(tradeId));
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
 
-        HttpResponse<JsonNode> response = this.Delete(routeParams, endpoint);
+        HttpResponse<JsonNode> response = this.Delete(Priority.high, tradeRoute, endpoint);
 
         if (response.getCode() != 200) {
             throw new UnirestException(response.getBody().toString());
         }
 
-        return fillTradeClosed(response);
+        return decode(HttpMethod.DELETE, tradeRoute, () -> fillTradeClosed(response));
+    }
+
+    /**
+     * Close an open trade without blocking the calling thread
+     *
+     * @see #CloseTrade(long, long)
+     * @return future TradeClosed model
+     */
+    public CompletableFuture<TradeClosed> CloseTradeAsync(long accountId, long tradeId) {
+
+        String endpoint = tradeRoute.expand(baseUrl(), accountId, tradeId);
+
+        return this.DeleteAsync(Priority.high, tradeRoute, endpoint).thenApply(response -> {
+            if (response.getCode() != 200)
+                throw failure(response);
+
+            return decode(HttpMethod.DELETE, tradeRoute, () -> fillTradeClosed(response));
+        });
+    }
+
+    private Map<String, Object> makeTrades(Long maxId, Long count, String instrument, String ids) {
+        Map<String, Object> fields = new HashMap<>();
+        if (maxId != null)
+            fields.put("maxId", maxId);
+        if (count != null)
+            fields.put("count", count);
+        if (instrument != null)
+            fields.put("instrument", instrument);
+        if (ids != null)
+            fields.put("ids", ids);
+
+        return fields;
+    }
+
+    private Map<String, Object> makeUpdateTrade(Float stopLoss, Float takeProfit, long trailingStop) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("stopLoss", stopLoss);
+        fields.put("takeProfit", takeProfit);
+        fields.put("trailingStop", trailingStop);
+
+        return fields;
     }
 
     private List<Trade> fillTrades(HttpResponse<JsonNode> response) {
@@ -168,6 +265,7 @@ public class TradeEndpoints extends Endpoint {
             trade.side = OandaTypes.Side.valueOf(obj.getString("side"));
             trade.instrument = obj.getString("instrument");
             trade.time = obj.getString("time");
+            trade.timeMicros = timeOf(trade.time);
             trade.price = (float) obj.getDouble("price");
             trade.takeProfit = (float) obj.getDouble("takeProfit");
             trade.stopLoss = (float) obj.getDouble("stopLoss");
@@ -189,6 +287,7 @@ public class TradeEndpoints extends Endpoint {
         trade.side = OandaTypes.Side.valueOf(object.getString("side"));
         trade.instrument = object.getString("instrument");
         trade.time = object.getString("time");
+        trade.timeMicros = timeOf(trade.time);
         trade.price = (float) object.getDouble("price");
         trade.takeProfit = (float) object.getDouble("takeProfit");
         trade.stopLoss = (float) object.getDouble("stopLoss");
@@ -208,6 +307,7 @@ public class TradeEndpoints extends Endpoint {
         trade.profit = (float) object.getDouble("profit");
         trade.side = OandaTypes.Side.valueOf(object.getString("side"));
         trade.time = object.getString("time");
+        trade.timeMicros = timeOf(trade.time);
 
         return trade;
     }
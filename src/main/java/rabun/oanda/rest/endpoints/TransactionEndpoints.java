@@ -1,38 +1,47 @@
 package rabun.oanda.rest.endpoints;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
+import rabun.oanda.rest.codec.TransactionDecoder;
 import rabun.oanda.rest.models.*;
-import org.json.JSONArray;
+import rabun.oanda.rest.paging.Paginator;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * TRANSACTION ENDPOINTS
  */
 public class TransactionEndpoints extends Endpoint {
 
-    private final String transactionsRoute = "/v1/accounts/{account_id}/transactions";
+    private static final RouteTemplate transactionsRoute = RouteTemplate.compile("/v1/accounts/{account_id}/transactions");
 
     public TransactionEndpoints(String key, AccountType accountType) {
         super(key, accountType);
     }
 
+    public TransactionEndpoints(String key, AccountType accountType, OandaClient client) {
+        super(key, accountType, client);
+    }
+
     /**
      * Get transaction history
      *
      * @param accountId account id
-     * @param maxId Optional The first transaction to get.
+     * @param maxId Optional The first transaction to get, 0 for the newest.
      *              The server will return transactions with id less than or equal to this, in descending order.
-     * @param minId Optional The last transaction to get.
+     * @param minId Optional The last transaction to get, 0 for the oldest.
      *              The server will return transactions with id greater or equal to this, in descending order.
-     * @param count Optional The maximum number of transactions to return.
+     * @param count Optional The maximum number of transactions to return, 0 for the default.
      *              The maximum value that can be specified is 500.
      *              By default, if count is not specified, a maximum of 50 transactions will be fetched.
      *              Note: Transactions requests with the count parameter specified is rate limited to 1 per every 60 seconds.
@@ -45,74 +54,79 @@ public class TransactionEndpoints extends Endpoint {
     public List<Transaction> GetTransactions(long accountId, long maxId, long minId, long count,
                                              String instrument, String ids) throws UnirestException {
 
-        String endpoint = makeEndpoint(accountType, transactionsRoute);
+        String endpoint = transactionsRoute.expand(baseUrl(), accountId);
+
+        Map<String, Object> fields = makeTransactions(maxId, minId, count, instrument, ids);
+
+        HttpResponse<JsonNode> response = this.Get(Priority.low, transactionsRoute, fields, endpoint);
+
+        if (response.getCode() > 299 || response.getCode() < 200)
+            throw new UnirestException(response.getBody().toString());
+
+        return decode(HttpMethod.GET, transactionsRoute, () -> fillTransaction(response));
+    }
+
+    /**
+     * Get transaction history without blocking the calling thread
+     *
+     * @see #GetTransactions(long, long, long, long, String, String)
+     * @return future list of trasactions
+     */
+    public CompletableFuture<List<Transaction>> GetTransactionsAsync(long accountId, long maxId, long minId, long count,
+                                                                     String instrument, String ids) {
+
+        String endpoint = transactionsRoute.expand(baseUrl(), accountId);
 
-        Map<String, String> routeParams = new HashMap<>();
-        routeParams.put("account_id", String.valueOf(accountId));
+        Map<String, Object> fields = makeTransactions(maxId, minId, count, instrument, ids);
 
+        return this.GetAsync(Priority.low, transactionsRoute, fields, endpoint).thenApply(response -> {
+            if (response.getCode() > 299 || response.getCode() < 200)
+                throw failure(response);
+
+            return decode(HttpMethod.GET, transactionsRoute, () -> fillTransaction(response));
+        });
+    }
+
+    /**
+     * Transaction history of an account, newest first, fetched page by page while it is iterated.
+     *
+     * The pages are requested without count, which the api rate limits to one request a minute,
+     * so every page holds the default 50 transactions.
+     *
+     * @param accountId account id
+     * @param minId Optional The oldest transaction to get, 0 for all
+     * @param instrument Optional Retrieve transactions for a specific instrument only. Default: all
+     * @return lazy iterable, the next page is prefetched while one is consumed
+     * @see #GetTransactions(long, long, long, long, String, String)
+     */
+    public Paginator<Transaction> IterateTransactions(final long accountId, final long minId, final String instrument) {
+        return new Paginator<>(maxId -> GetTransactionsAsync(accountId, maxId == null ? 0 : maxId, minId, 0, instrument, null),
+                transaction -> transaction.id, 50);
+    }
+
+    private Map<String, Object> makeTransactions(long maxId, long minId, long count, String instrument, String ids) {
         Map<String, Object> fields = new HashMap<>();
-        fields.put("maxId", maxId);
-        fields.put("minId", minId);
-        fields.put("count", count);
-        fields.put("instrument", instrument);
-        fields.put("ids", ids);
-
-        HttpResponse<JsonNode> response = this.Get(routeParams, fields, endpoint);
-        return fillTransaction(response);
+
+        if (maxId > 0)
+            fields.put("maxId", maxId);
+
+        if (minId > 0)
+            fields.put("minId", minId);
+
+        if (count > 0)
+            fields.put("count", count);
+
+        if (instrument != null)
+            fields.put("instrument", instrument);
+
+        if (ids != null)
+            fields.put("ids", ids);
+
+        return fields;
     }
 
     private List<Transaction> fillTransaction(HttpResponse<JsonNode> response) {
         JSONObject object = response.getBody().getObject();
-        JSONArray array = object.getJSONArray("transactions");
-
-        List<Transaction> transactions = new ArrayList<>();
-        for (int i = 0; i < array.length(); i++) {
-            JSONObject obj = array.getJSONObject(i);
-            OandaTypes.TransactionType transactionType = OandaTypes.TransactionType.valueOf(obj.getString("type"));
-
-            switch (transactionType) {
-                case MARKET_ORDER_CREATE: {
-                    TransactionMarketOrderCreate transaction = new TransactionMarketOrderCreate();
-                    transaction.id = obj.getLong("id");
-                    transaction.accountId = obj.getLong("accountId");
-                    transaction.time = obj.getString("time");
-                    transaction.type = transactionType;
-                    transaction.instrument = obj.getString("instrument");
-                    transaction.units = obj.getLong("units");
-                    transaction.side = OandaTypes.Side.valueOf(obj.getString("side"));
-                    transaction.price = (float) obj.getDouble("price");
-                    transaction.pl = obj.getInt("pl");
-                    transaction.interest = (float) obj.getDouble("interest");
-                    transaction.accountBalance = (float) obj.getDouble("accountBalance");
-
-                    JSONObject toj = obj.getJSONObject("tradeOpened");
-                    transaction.tradeOpened = new TradeOpened();
-                    transaction.tradeOpened.id = toj.getLong("id");
-                    transaction.tradeOpened.units = toj.getLong("units");
-
-                    transactions.add(transaction);
-                }
-
-                case STOP_ORDER_CREATE: {
-                    TransactionStopOrderCreate transaction = new TransactionStopOrderCreate();
-                    transaction.id = obj.getLong("id");
-                    transaction.accountId = obj.getLong("accountId");
-                    transaction.time = obj.getString("time");
-                    transaction.type = transactionType;
-                    transaction.instrument = obj.getString("instrument");
-                    transaction.units = obj.getLong("units");
-                    transaction.side = OandaTypes.Side.valueOf(obj.getString("side"));
-                    transaction.price = (float) obj.getDouble("price");
-                    transaction.expiry = obj.getLong("expiry");
-                    transaction.reason = OandaTypes.Reason.valueOf(obj.getString("reason"));
-
-                    transactions.add(transaction);
-                }
-            }
-        }
-
-        return transactions;
+        return TransactionDecoder.decode(object.getJSONArray("transactions"));
     }
-
-
 }
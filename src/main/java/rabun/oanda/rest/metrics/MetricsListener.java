@@ -0,0 +1,43 @@
+package rabun.oanda.rest.metrics;
+
+import com.mashape.unirest.http.HttpMethod;
+
+/**
+ * Receives the timings of the requests of an {@link rabun.oanda.rest.base.OandaClient}.
+ *
+ * Requests are identified by their route template, e.g. "/v1/accounts/{account_id}/orders", and method, so
+ * that all orders of all accounts add up to one series; requests sent without a route are reported as "*".
+ * The methods are called on the client's I/O threads and on the threads decoding responses, so they must be
+ * thread safe and quick. {@link RequestMetrics} is the built-in implementation.
+ */
+public interface MetricsListener {
+
+    /**
+     * A request was handed to the connection pool, after any wait for the rate limiter
+     */
+    default void onSend(String route, HttpMethod method) {
+    }
+
+    /**
+     * The response of a request arrived, or the request failed
+     *
+     * @param status http status, 0 if there was no response
+     * @param networkNanos time from {@link #onSend} until the whole response was received
+     * @param bytesOut length of the request target and body
+     * @param bytesIn length of the response body as received, before decompression
+     */
+    default void onResponse(String route, HttpMethod method, int status, long networkNanos, long bytesOut, long bytesIn) {
+    }
+
+    /**
+     * The body of a response was converted to json or a stream, once per caller of a shared request
+     */
+    default void onParse(String route, HttpMethod method, long nanos) {
+    }
+
+    /**
+     * An endpoint filled its models from a response
+     */
+    default void onDecode(String route, HttpMethod method, long nanos) {
+    }
+}
@@ -0,0 +1,234 @@
+package rabun.oanda.rest.metrics;
+
+import com.mashape.unirest.http.HttpMethod;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MetricsListener} that keeps {@link RouteMetrics} per route template and method.
+ *
+ * <pre>
+ * RequestMetrics metrics = new RequestMetrics();
+ * OandaClient client = OandaClient.builder().metrics(metrics).build();
+ * ...
+ * RouteMetrics orders = metrics.GetRoute("/v1/accounts/{account_id}/orders", HttpMethod.POST);
+ * long p99 = orders.GetNetwork(200).GetPercentile(99);
+ * </pre>
+ *
+ * {@link #RegisterMBeans(String)} publishes every route to the platform MBean server, including routes first
+ * used later, so that the latencies can be watched and alerted on from a JMX console or agent.
+ */
+public class RequestMetrics implements MetricsListener {
+
+    public static final String DOMAIN = "rabun.oanda.rest";
+
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile String name;
+
+    @Override
+    public void onSend(String route, HttpMethod method) {
+        routeOf(route, method).sent();
+    }
+
+    @Override
+    public void onResponse(String route, HttpMethod method, int status, long networkNanos, long bytesOut, long bytesIn) {
+        routeOf(route, method).received(status, networkNanos, bytesOut, bytesIn);
+    }
+
+    @Override
+    public void onParse(String route, HttpMethod method, long nanos) {
+        routeOf(route, method).parsed(nanos);
+    }
+
+    @Override
+    public void onDecode(String route, HttpMethod method, long nanos) {
+        routeOf(route, method).decoded(nanos);
+    }
+
+    /**
+     * @return metrics of the route template and method, null if it was not requested yet
+     */
+    public RouteMetrics GetRoute(String route, HttpMethod method) {
+        return routes.get(key(route, method));
+    }
+
+    public Collection<RouteMetrics> GetRoutes() {
+        return new ArrayList<>(routes.values());
+    }
+
+    public void Reset() {
+        routes.values().forEach(RouteMetrics::Reset);
+    }
+
+    /**
+     * Register an MBean per route as rabun.oanda.rest:type=RequestMetrics,name=&lt;name&gt;,route=..,method=..
+     *
+     * @param name distinguishes the clients of an application, e.g. "live" and "practice"
+     */
+    public synchronized void RegisterMBeans(String name) throws JMException {
+        if (this.name != null)
+            throw new IllegalStateException("MBeans are registered as " + this.name);
+
+        this.name = name;
+        for (RouteMetrics metrics : routes.values())
+            register(metrics);
+    }
+
+    public synchronized void UnregisterMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        }
+        registered.clear();
+        name = null;
+    }
+
+    private RouteMetrics routeOf(String route, HttpMethod method) {
+        String key = key(route, method);
+        RouteMetrics metrics = routes.get(key);
+        if (metrics != null)
+            return metrics;
+
+        metrics = routes.computeIfAbsent(key, k -> new RouteMetrics(route, method));
+        if (name != null) {
+            try {
+                registerIfAbsent(metrics);
+            } catch (JMException e) {
+                // metrics are still kept without their MBean
+            }
+        }
+        return metrics;
+    }
+
+    private synchronized void registerIfAbsent(RouteMetrics metrics) throws JMException {
+        if (name != null && !registered.contains(objectName(metrics)))
+            register(metrics);
+    }
+
+    private void register(RouteMetrics metrics) throws JMException {
+        ObjectName objectName = objectName(metrics);
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new StandardMBean(new View(metrics), RouteMetricsMBean.class), objectName);
+        registered.add(objectName);
+    }
+
+    private ObjectName objectName(RouteMetrics metrics) throws JMException {
+        return new ObjectName(DOMAIN + ":type=RequestMetrics,name=" + ObjectName.quote(name)
+                + ",route=" + ObjectName.quote(metrics.GetRoute()) + ",method=" + metrics.GetMethod());
+    }
+
+    private static String key(String route, HttpMethod method) {
+        return method + " " + route;
+    }
+
+    private static final class View implements RouteMetricsMBean {
+
+        private final RouteMetrics metrics;
+
+        View(RouteMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String getRoute() {
+            return metrics.GetRoute();
+        }
+
+        @Override
+        public String getMethod() {
+            return metrics.GetMethod().name();
+        }
+
+        @Override
+        public long getRequests() {
+            return metrics.GetRequests();
+        }
+
+        @Override
+        public long getInFlight() {
+            return metrics.GetInFlight();
+        }
+
+        @Override
+        public long getErrors() {
+            return metrics.GetErrors();
+        }
+
+        @Override
+        public String getStatuses() {
+            StringBuilder statuses = new StringBuilder();
+            for (Map.Entry<Integer, Long> entry : metrics.GetStatuses().entrySet()) {
+                if (statuses.length() > 0)
+                    statuses.append(',');
+                statuses.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            return statuses.toString();
+        }
+
+        @Override
+        public long getBytesIn() {
+            return metrics.GetBytesIn();
+        }
+
+        @Override
+        public long getBytesOut() {
+            return metrics.GetBytesOut();
+        }
+
+        @Override
+        public double getNetworkMeanMillis() {
+            return metrics.GetNetwork().GetMean() / 1e6;
+        }
+
+        @Override
+        public double getNetworkP50Millis() {
+            return metrics.GetNetwork().GetPercentile(50) / 1e6;
+        }
+
+        @Override
+        public double getNetworkP99Millis() {
+            return metrics.GetNetwork().GetPercentile(99) / 1e6;
+        }
+
+        @Override
+        public double getNetworkP999Millis() {
+            return metrics.GetNetwork().GetPercentile(99.9) / 1e6;
+        }
+
+        @Override
+        public double getNetworkMaxMillis() {
+            return metrics.GetNetwork().GetMax() / 1e6;
+        }
+
+        @Override
+        public double getParseP99Millis() {
+            return metrics.GetParse().GetPercentile(99) / 1e6;
+        }
+
+        @Override
+        public double getDecodeP50Millis() {
+            return metrics.GetDecode().GetPercentile(50) / 1e6;
+        }
+
+        @Override
+        public double getDecodeP99Millis() {
+            return metrics.GetDecode().GetPercentile(99) / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            metrics.Reset();
+        }
+    }
+}
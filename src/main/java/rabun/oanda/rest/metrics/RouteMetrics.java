@@ -0,0 +1,154 @@
+package rabun.oanda.rest.metrics;
+
+import com.mashape.unirest.http.HttpMethod;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics of one route template and method, kept by {@link RequestMetrics}. Counters and histograms
+ * are cumulative until {@link #Reset()}.
+ */
+public final class RouteMetrics {
+
+    private final String route;
+    private final HttpMethod method;
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final ConcurrentHashMap<Integer, LatencyHistogram> network = new ConcurrentHashMap<>();
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram decode = new LatencyHistogram();
+
+    RouteMetrics(String route, HttpMethod method) {
+        this.route = route;
+        this.method = method;
+    }
+
+    void sent() {
+        inFlight.incrementAndGet();
+    }
+
+    void received(int status, long networkNanos, long bytesOut, long bytesIn) {
+        inFlight.decrementAndGet();
+        this.bytesOut.add(bytesOut);
+        this.bytesIn.add(bytesIn);
+        network.computeIfAbsent(status, s -> new LatencyHistogram()).record(networkNanos);
+    }
+
+    void parsed(long nanos) {
+        parse.record(nanos);
+    }
+
+    void decoded(long nanos) {
+        decode.record(nanos);
+    }
+
+    public String GetRoute() {
+        return route;
+    }
+
+    public HttpMethod GetMethod() {
+        return method;
+    }
+
+    /**
+     * @return requests with a response or failure
+     */
+    public long GetRequests() {
+        long requests = 0;
+        for (LatencyHistogram histogram : network.values())
+            requests += histogram.GetCount();
+        return requests;
+    }
+
+    /**
+     * @return requests that failed or were answered with a status of 400 or more
+     */
+    public long GetErrors() {
+        long errors = 0;
+        for (Integer status : network.keySet()) {
+            if (status == 0 || status >= 400)
+                errors += network.get(status).GetCount();
+        }
+        return errors;
+    }
+
+    /**
+     * @return requests sent and not yet answered
+     */
+    public long GetInFlight() {
+        return inFlight.get();
+    }
+
+    public long GetBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long GetBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * @return network time of the requests answered with the given status, 0 for failed requests; null if there is none
+     */
+    public LatencyHistogram GetNetwork(int status) {
+        return network.get(status);
+    }
+
+    /**
+     * @return network time of all requests, a copy
+     */
+    public LatencyHistogram GetNetwork() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : network.values())
+            all.add(histogram);
+        return all;
+    }
+
+    /**
+     * @return number of responses per status, 0 for failed requests
+     */
+    public SortedMap<Integer, Long> GetStatuses() {
+        SortedMap<Integer, Long> statuses = new TreeMap<>();
+        network.forEach((status, histogram) -> statuses.put(status, histogram.GetCount()));
+        return statuses;
+    }
+
+    /**
+     * @return time to convert response bodies to json or streams
+     */
+    public LatencyHistogram GetParse() {
+        return parse;
+    }
+
+    /**
+     * @return time for the endpoints to fill their models
+     */
+    public LatencyHistogram GetDecode() {
+        return decode;
+    }
+
+    /**
+     * Clear the histograms and byte counts; requests in flight are still counted
+     */
+    public void Reset() {
+        network.values().forEach(LatencyHistogram::reset);
+        parse.reset();
+        decode.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram all = GetNetwork();
+        return String.format("%s %s requests=%d errors=%d inFlight=%d p50=%.2fms p99=%.2fms decodeP99=%.2fms",
+                method, route, all.GetCount(), GetErrors(), GetInFlight(),
+                all.GetPercentile(50) / 1e6, all.GetPercentile(99) / 1e6, decode.GetPercentile(99) / 1e6);
+    }
+}
@@ -0,0 +1,51 @@
+package rabun.oanda.rest.metrics;
+
+/**
+ * JMX view of the {@link RouteMetrics} of one route and method, registered by
+ * {@link RequestMetrics#RegisterMBeans(String)}. Durations are in milliseconds.
+ */
+public interface RouteMetricsMBean {
+
+    String getRoute();
+
+    String getMethod();
+
+    long getRequests();
+
+    long getInFlight();
+
+    /**
+     * @return requests that failed or were answered with a status of 400 or more
+     */
+    long getErrors();
+
+    /**
+     * @return number of responses per status, e.g. "200=1520,429=3"
+     */
+    String getStatuses();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getNetworkMeanMillis();
+
+    double getNetworkP50Millis();
+
+    double getNetworkP99Millis();
+
+    double getNetworkP999Millis();
+
+    double getNetworkMaxMillis();
+
+    double getParseP99Millis();
+
+    double getDecodeP50Millis();
+
+    double getDecodeP99Millis();
+
+    /**
+     * Start over, e.g. after every scrape to alert on the latest interval
+     */
+    void reset();
+}
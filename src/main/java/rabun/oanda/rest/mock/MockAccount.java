@@ -0,0 +1,481 @@
+package rabun.oanda.rest.mock;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import rabun.oanda.rest.mock.MockRestServer.ApiError;
+import rabun.oanda.rest.models.OandaTypes.OrderType;
+import rabun.oanda.rest.models.OandaTypes.Side;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Orders, trades and transactions of one account of a {@link MockRestServer}, kept in memory.
+ *
+ * Records are kept as the json the api sends, with times as microseconds, and rendered in the datetime
+ * format of each request. Positions are the sums of the open trades per instrument.
+ */
+final class MockAccount {
+
+    private static final int MAX_COUNT = 500;
+
+    private final long id;
+    private final MockRestServer server;
+
+    private final TreeMap<Long, JSONObject> orders = new TreeMap<>();
+    private final TreeMap<Long, JSONObject> trades = new TreeMap<>();
+    private final TreeMap<Long, JSONObject> transactions = new TreeMap<>();
+    private double balance = 100000;
+
+    MockAccount(long id, MockRestServer server) {
+        this.id = id;
+        this.server = server;
+    }
+
+    /*
+     * Orders
+     */
+
+    synchronized String orders(Map<String, String> params, boolean unix) {
+        return new JSONObject().put("orders", list(orders, params, unix)).toString();
+    }
+
+    synchronized String order(long orderId, boolean unix) {
+        return render(find(orders, orderId, "Order"), unix).toString();
+    }
+
+    synchronized String createOrder(Map<String, String> params, boolean unix) {
+        String instrument = required(params, "instrument");
+        long units = MockRestServer.longOf(required(params, "units"), "units");
+        Side side = MockRestServer.enumOf(Side.class, required(params, "side"), "side");
+        OrderType type = MockRestServer.enumOf(OrderType.class, required(params, "type"), "type");
+        if (units <= 0)
+            throw new ApiError(400, "Invalid value specified for 'units'");
+
+        long now = now();
+        double[] price = server.price(instrument);
+
+        if (type == OrderType.market) {
+            JSONObject trade = openTrade(instrument, units, side, side == Side.buy ? price[1] : price[0], params, now);
+            JSONObject opened = new JSONObject()
+                    .put("id", trade.getLong("id"))
+                    .put("units", units)
+                    .put("side", side.toString())
+                    .put("takeProfit", trade.getDouble("takeProfit"))
+                    .put("stopLoss", trade.getDouble("stopLoss"))
+                    .put("trailingStop", trade.getDouble("trailingStop"));
+
+            return render(new JSONObject()
+                    .put("instrument", instrument)
+                    .put("time", now)
+                    .put("price", trade.getDouble("price"))
+                    .put("tradeOpened", opened)
+                    .put("tradesClosed", new JSONArray())
+                    .put("tradeReduced", new JSONObject()), unix).toString();
+        }
+
+        JSONObject order = new JSONObject()
+                .put("id", server.nextId())
+                .put("instrument", instrument)
+                .put("units", units)
+                .put("side", side.toString())
+                .put("type", type.toString())
+                .put("time", now)
+                .put("price", MockRestServer.doubleOf(params.get("price"), "price"))
+                .put("takeProfit", optDouble(params, "takeProfit"))
+                .put("stopLoss", optDouble(params, "stopLoss"))
+                .put("expiry", MockRestServer.timeOf(required(params, "expiry"), "expiry"))
+                .put("upperBound", optDouble(params, "upperBound"))
+                .put("lowerBound", optDouble(params, "lowerBound"))
+                .put("trailingStop", optDouble(params, "trailingStop"));
+        orders.put(order.getLong("id"), order);
+
+        record(order.getLong("id"), orderCreateType(type), now)
+                .put("instrument", instrument)
+                .put("units", units)
+                .put("side", side.toString())
+                .put("price", order.getDouble("price"))
+                .put("expiry", order.getLong("expiry"))
+                .put("reason", "CLIENT_REQUEST")
+                .put("upperBound", order.getDouble("upperBound"))
+                .put("lowerBound", order.getDouble("lowerBound"))
+                .put("takeProfitPrice", order.getDouble("takeProfit"))
+                .put("stopLossPrice", order.getDouble("stopLoss"))
+                .put("trailingStopLossDistance", order.getDouble("trailingStop"));
+
+        JSONObject opened = new JSONObject();
+        for (String field : new String[]{"id", "units", "side", "takeProfit", "stopLoss", "expiry", "upperBound",
+                "lowerBound", "trailingStop"})
+            opened.put(field, order.get(field));
+
+        return render(new JSONObject()
+                .put("instrument", instrument)
+                .put("time", now)
+                .put("price", order.getDouble("price"))
+                .put("orderOpened", opened), unix).toString();
+    }
+
+    synchronized String updateOrder(long orderId, Map<String, String> params, boolean unix) {
+        JSONObject order = find(orders, orderId, "Order");
+
+        if (params.containsKey("units"))
+            order.put("units", MockRestServer.longOf(params.get("units"), "units"));
+        if (params.containsKey("expiry"))
+            order.put("expiry", MockRestServer.timeOf(params.get("expiry"), "expiry"));
+        for (String field : new String[]{"price", "lowerBound", "upperBound", "stopLoss", "takeProfit", "trailingStop"}) {
+            if (params.containsKey(field))
+                order.put(field, MockRestServer.doubleOf(params.get(field), field));
+        }
+
+        record(server.nextId(), "ORDER_UPDATE", now())
+                .put("instrument", order.getString("instrument"))
+                .put("units", order.getLong("units"))
+                .put("side", order.getString("side"))
+                .put("price", order.getDouble("price"))
+                .put("expiry", order.getLong("expiry"))
+                .put("reason", "CLIENT_REQUEST");
+
+        return render(order, unix).toString();
+    }
+
+    synchronized String cancelOrder(long orderId, boolean unix) {
+        JSONObject order = find(orders, orderId, "Order");
+        orders.remove(orderId);
+
+        long now = now();
+        record(server.nextId(), "ORDER_CANCEL", now)
+                .put("orderId", orderId)
+                .put("reason", "CLIENT_REQUEST");
+
+        return render(new JSONObject()
+                .put("id", orderId)
+                .put("instrument", order.getString("instrument"))
+                .put("units", order.getLong("units"))
+                .put("side", order.getString("side"))
+                .put("price", order.getDouble("price"))
+                .put("time", now), unix).toString();
+    }
+
+    /*
+     * Trades and positions
+     */
+
+    synchronized String trades(Map<String, String> params, boolean unix) {
+        return new JSONObject().put("trades", list(trades, params, unix)).toString();
+    }
+
+    synchronized String trade(long tradeId, boolean unix) {
+        return render(find(trades, tradeId, "Trade"), unix).toString();
+    }
+
+    synchronized String updateTrade(long tradeId, Map<String, String> params, boolean unix) {
+        JSONObject trade = find(trades, tradeId, "Trade");
+
+        for (String field : new String[]{"stopLoss", "takeProfit", "trailingStop"}) {
+            if (params.containsKey(field))
+                trade.put(field, MockRestServer.doubleOf(params.get(field), field));
+        }
+
+        record(server.nextId(), "TRADE_UPDATE", now())
+                .put("instrument", trade.getString("instrument"))
+                .put("units", trade.getLong("units"))
+                .put("side", trade.getString("side"))
+                .put("stopLossPrice", trade.getDouble("stopLoss"))
+                .put("tradeId", tradeId);
+
+        return render(trade, unix).toString();
+    }
+
+    synchronized String closeTrade(long tradeId, boolean unix) {
+        JSONObject trade = find(trades, tradeId, "Trade");
+        long now = now();
+        double[] close = close(trade, now);
+
+        return render(new JSONObject()
+                .put("id", tradeId)
+                .put("price", close[0])
+                .put("instrument", trade.getString("instrument"))
+                .put("profit", close[1])
+                .put("side", trade.getString("side"))
+                .put("time", now), unix).toString();
+    }
+
+    synchronized String positions() {
+        JSONArray array = new JSONArray();
+        for (String instrument : server.instruments()) {
+            JSONObject position = positionOf(instrument);
+            if (position != null)
+                array.put(position);
+        }
+        return new JSONObject().put("positions", array).toString();
+    }
+
+    synchronized String position(String instrument) {
+        JSONObject position = positionOf(instrument);
+        if (position == null)
+            throw new ApiError(404, "Position not found");
+        return position.toString();
+    }
+
+    synchronized String closePosition(String instrument) {
+        JSONObject position = positionOf(instrument);
+        if (position == null)
+            throw new ApiError(404, "Position not found");
+
+        long now = now();
+        JSONArray ids = new JSONArray();
+        double price = 0;
+        for (JSONObject trade : trades.values().toArray(new JSONObject[0])) {
+            if (!trade.getString("instrument").equals(instrument))
+                continue;
+
+            price = close(trade, now)[0];
+            ids.put(transactions.lastKey());
+        }
+
+        return new JSONObject()
+                .put("ids", ids)
+                .put("instrument", instrument)
+                .put("totalUnits", position.getLong("units"))
+                .put("price", price)
+                .toString();
+    }
+
+    /*
+     * Transactions
+     */
+
+    synchronized String transactions(Map<String, String> params, boolean unix) {
+        return new JSONObject().put("transactions", list(transactions, params, unix)).toString();
+    }
+
+    synchronized String transaction(long transactionId, boolean unix) {
+        return render(find(transactions, transactionId, "Transaction"), unix).toString();
+    }
+
+    /**
+     * Random pending orders and open trades around the current prices
+     */
+    synchronized void generate(int orderCount, int tradeCount, Random random) {
+        String[] instruments = server.instruments();
+        long now = now();
+
+        for (int i = 0; i < orderCount + tradeCount; i++) {
+            String instrument = instruments[random.nextInt(instruments.length)];
+            Side side = random.nextBoolean() ? Side.buy : Side.sell;
+            long units = 1000L * (1 + random.nextInt(100));
+            double[] price = server.price(instrument);
+            double pip = server.pip(instrument);
+
+            if (i < tradeCount) {
+                openTrade(instrument, units, side, side == Side.buy ? price[1] : price[0], null, now);
+                continue;
+            }
+
+            OrderType type = OrderType.values()[random.nextInt(3)];
+            double distance = (10 + random.nextInt(200)) * pip;
+            boolean above = (type == OrderType.limit) == (side == Side.sell);
+            double at = server.round(instrument, above ? price[1] + distance : price[0] - distance);
+
+            JSONObject order = new JSONObject()
+                    .put("id", server.nextId())
+                    .put("instrument", instrument)
+                    .put("units", units)
+                    .put("side", side.toString())
+                    .put("type", type.toString())
+                    .put("time", now)
+                    .put("price", at)
+                    .put("takeProfit", 0)
+                    .put("stopLoss", 0)
+                    .put("expiry", now + 30L * 86400 * 1000000)
+                    .put("upperBound", 0)
+                    .put("lowerBound", 0)
+                    .put("trailingStop", 0);
+            orders.put(order.getLong("id"), order);
+
+            record(order.getLong("id"), orderCreateType(type), now)
+                    .put("instrument", instrument)
+                    .put("units", units)
+                    .put("side", side.toString())
+                    .put("price", at)
+                    .put("expiry", order.getLong("expiry"))
+                    .put("reason", "CLIENT_REQUEST");
+        }
+    }
+
+    private JSONObject openTrade(String instrument, long units, Side side, double price, Map<String, String> params,
+                                 long now) {
+        long tradeId = server.nextId();
+        JSONObject trade = new JSONObject()
+                .put("id", tradeId)
+                .put("units", units)
+                .put("side", side.toString())
+                .put("instrument", instrument)
+                .put("time", now)
+                .put("price", price)
+                .put("takeProfit", params == null ? 0 : optDouble(params, "takeProfit"))
+                .put("stopLoss", params == null ? 0 : optDouble(params, "stopLoss"))
+                .put("trailingStop", params == null ? 0 : optDouble(params, "trailingStop"))
+                .put("trailingAmount", 0);
+        trades.put(tradeId, trade);
+
+        record(tradeId, "MARKET_ORDER_CREATE", now)
+                .put("instrument", instrument)
+                .put("units", units)
+                .put("side", side.toString())
+                .put("price", price)
+                .put("pl", 0)
+                .put("interest", 0)
+                .put("accountBalance", balance)
+                .put("tradeOpened", new JSONObject().put("id", tradeId).put("units", units));
+
+        return trade;
+    }
+
+    /**
+     * @return closing price and profit
+     */
+    private double[] close(JSONObject trade, long now) {
+        String instrument = trade.getString("instrument");
+        boolean buy = trade.getString("side").equals("buy");
+        double[] price = server.price(instrument);
+        double close = buy ? price[0] : price[1];
+        long units = trade.getLong("units");
+        double profit = Math.round((close - trade.getDouble("price")) * units * (buy ? 1 : -1) * 10000) / 10000.0;
+
+        trades.remove(trade.getLong("id"));
+        balance += profit;
+
+        record(server.nextId(), "TRADE_CLOSE", now)
+                .put("instrument", instrument)
+                .put("units", units)
+                .put("side", trade.getString("side"))
+                .put("price", close)
+                .put("pl", profit)
+                .put("interest", 0)
+                .put("accountBalance", balance)
+                .put("tradeId", trade.getLong("id"));
+
+        return new double[]{close, profit};
+    }
+
+    private JSONObject positionOf(String instrument) {
+        long units = 0;
+        double cost = 0;
+        for (JSONObject trade : trades.values()) {
+            if (!trade.getString("instrument").equals(instrument))
+                continue;
+
+            long signed = trade.getString("side").equals("buy") ? trade.getLong("units") : -trade.getLong("units");
+            units += signed;
+            cost += signed * trade.getDouble("price");
+        }
+
+        if (units == 0)
+            return null;
+
+        return new JSONObject()
+                .put("instrument", instrument)
+                .put("units", Math.abs(units))
+                .put("side", units > 0 ? "buy" : "sell")
+                .put("avgPrice", server.round(instrument, cost / units));
+    }
+
+    private JSONObject record(long transactionId, String type, long now) {
+        JSONObject transaction = new JSONObject()
+                .put("id", transactionId)
+                .put("accountId", id)
+                .put("time", now)
+                .put("type", type);
+        transactions.put(transactionId, transaction);
+        return transaction;
+    }
+
+    /**
+     * Records newest first, filtered by the paging parameters of the list routes
+     */
+    private static JSONArray list(TreeMap<Long, JSONObject> records, Map<String, String> params, boolean unix) {
+        int count = (int) MockRestServer.longOf(params.getOrDefault("count", "50"), "count");
+        if (count <= 0 || count > MAX_COUNT)
+            throw new ApiError(400, "Invalid value specified for 'count'");
+
+        String instrument = params.get("instrument");
+        long minId = params.containsKey("minId") ? MockRestServer.longOf(params.get("minId"), "minId") : 0;
+        NavigableMap<Long, JSONObject> range = params.containsKey("maxId")
+                ? records.headMap(MockRestServer.longOf(params.get("maxId"), "maxId"), true) : records;
+
+        Set<Long> ids = null;
+        if (params.containsKey("ids")) {
+            ids = new HashSet<>();
+            for (String id : Arrays.asList(params.get("ids").split(",")))
+                ids.add(MockRestServer.longOf(id, "ids"));
+        }
+
+        JSONArray array = new JSONArray();
+        for (JSONObject record : range.descendingMap().values()) {
+            if (array.length() == count || record.getLong("id") < minId)
+                break;
+            if (ids != null && !ids.contains(record.getLong("id")))
+                continue;
+            if (instrument != null && !instrument.equals(record.optString("instrument")))
+                continue;
+
+            array.put(render(record, unix));
+        }
+        return array;
+    }
+
+    private static JSONObject find(TreeMap<Long, JSONObject> records, long id, String name) {
+        JSONObject record = records.get(id);
+        if (record == null)
+            throw new ApiError(404, name + " not found");
+        return record;
+    }
+
+    /**
+     * @return copy of a record with its times formatted
+     */
+    private static JSONObject render(JSONObject record, boolean unix) {
+        JSONObject copy = new JSONObject();
+        for (String field : JSONObject.getNames(record)) {
+            Object value = record.get(field);
+            if (value instanceof Long && (field.equals("time") || field.equals("expiry")))
+                value = MockRestServer.time((Long) value, unix);
+            else if (value instanceof JSONObject && ((JSONObject) value).length() > 0)
+                value = render((JSONObject) value, unix);
+            copy.put(field, value);
+        }
+        return copy;
+    }
+
+    private static String orderCreateType(OrderType type) {
+        switch (type) {
+            case limit:
+                return "LIMIT_ORDER_CREATE";
+            case stop:
+                return "STOP_ORDER_CREATE";
+            default:
+                return "MARKET_IF_TOUCHED_ORDER_CREATE";
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty())
+            throw new ApiError(400, "Missing required argument: " + name);
+        return value;
+    }
+
+    private static double optDouble(Map<String, String> params, String name) {
+        return params.containsKey(name) ? MockRestServer.doubleOf(params.get(name), name) : 0;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() * 1000L;
+    }
+}
@@ -0,0 +1,722 @@
+package rabun.oanda.rest.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import rabun.oanda.rest.candles.CandleAlignment;
+import rabun.oanda.rest.codec.Rfc3339;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the v1 REST api the endpoint classes use, to load test and benchmark clients offline.
+ *
+ * Serves /v1/instruments, /v1/prices and /v1/candles from a set of synthetic instruments, and the orders,
+ * trades, positions and transactions of any account id from memory: accounts are created on first use,
+ * market orders open trades at the current price, and every change is recorded as a transaction.
+ * {@link #Generate} fills an account with random orders and trades. Candles follow a deterministic price
+ * path, so the same request always gets the same candles, and candles of different granularities agree.
+ *
+ * Faults are injected per request: a fixed latency with jitter, a share of slow responses for a latency
+ * tail, a share of 500 and 429 responses, or an explicit series of failures with {@link #FailNext}.
+ * Delayed responses wait on a timer instead of a thread, so many requests can be in flight at once.
+ *
+ * <pre>
+ * try (MockRestServer server = MockRestServer.start()) {
+ *     server.SetLatency(20, 5);
+ *     server.SetThrottleRate(0.01);
+ *     RateEndpoints rates = new RateEndpoints("key", Endpoint.AccountType.practice);
+ *     rates.SetUrl(server.GetUrl());
+ *     ...
+ * }
+ * </pre>
+ */
+public class MockRestServer implements Closeable {
+
+    private static final int MAX_CANDLES = 5000;
+
+    static {
+        // the server writes headers and body separately; without this every response waits for a delayed ack.
+        // Read once, when the first server of the jvm is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+
+    private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+    private final Map<Long, MockAccount> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(175000000);
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double slowRate;
+    private volatile long slowNanos;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private final Queue<Integer> failures = new ArrayDeque<>();
+
+    private volatile double volatility = 0.5;
+    private volatile String lastAuthorization;
+
+    /**
+     * Thrown while answering a request to reply with an api error
+     */
+    static final class ApiError extends RuntimeException {
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * One synthetic instrument; the current price walks randomly, candles follow a fixed path around the base
+     */
+    private static final class Quote {
+        final String instrument;
+        final String displayName;
+        final double pip;
+        final double scale;
+        final long seed;
+        double base;
+        double mid;
+        double spread;
+
+        Quote(String instrument, double price, double pip) {
+            this.instrument = instrument;
+            this.displayName = instrument.replace('_', '/');
+            this.pip = pip;
+            this.scale = Math.round(10 / pip);
+            this.seed = instrument.hashCode() * 0x9E3779B97F4A7C15L;
+            this.base = price;
+            this.mid = price;
+            this.spread = 1.6 * pip;
+        }
+
+        double round(double price) {
+            return Math.round(price * scale) / scale;
+        }
+    }
+
+    private MockRestServer(HttpServer server) {
+        this.server = server;
+        this.executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()),
+                daemon("mock-rest-server"));
+        this.timer = Executors.newScheduledThreadPool(2, daemon("mock-rest-latency"));
+
+        addInstrument("EUR_USD", 1.1, 0.0001);
+        addInstrument("USD_JPY", 120.0, 0.01);
+        addInstrument("GBP_USD", 1.5, 0.0001);
+        addInstrument("AUD_USD", 0.75, 0.0001);
+        addInstrument("USD_CHF", 0.97, 0.0001);
+        addInstrument("USD_CAD", 1.3, 0.0001);
+        addInstrument("EUR_GBP", 0.73, 0.0001);
+        addInstrument("EUR_JPY", 132.0, 0.01);
+        addInstrument("NZD_USD", 0.68, 0.0001);
+
+        server.createContext("/v1/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Start a server on a free local port
+     */
+    public static MockRestServer start() throws IOException {
+        return start(0);
+    }
+
+    public static MockRestServer start(int port) throws IOException {
+        return new MockRestServer(HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0));
+    }
+
+    /**
+     * @return scheme, host and port to give an endpoint with SetUrl
+     */
+    public String GetUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return Authorization header of the last request
+     */
+    public String GetLastAuthorization() {
+        return lastAuthorization;
+    }
+
+    /**
+     * @return number of requests received, including those answered with an injected failure
+     */
+    public long GetRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Delay every response
+     *
+     * @param latencyMillis minimum time from receiving a request to sending the response
+     * @param jitterMillis upper bound of a uniformly distributed extra delay
+     */
+    public void SetLatency(long latencyMillis, long jitterMillis) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+    }
+
+    /**
+     * Delay a share of the responses further, to give the latency distribution a tail
+     *
+     * @param rate share of the responses, 0 to 1
+     * @param extraMillis delay on top of {@link #SetLatency}
+     */
+    public void SetSlowResponses(double rate, long extraMillis) {
+        this.slowRate = rate;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(extraMillis);
+    }
+
+    /**
+     * @param rate share of the requests answered with 500 Internal Server Error, 0 to 1
+     */
+    public void SetErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * @param rate share of the requests answered with 429 Too Many Requests, 0 to 1
+     */
+    public void SetThrottleRate(double rate) {
+        this.throttleRate = rate;
+    }
+
+    /**
+     * Answer the next requests with an error, before any random failure
+     *
+     * @param status http status of the error response, e.g. 429 or 503
+     * @param count number of requests to fail
+     */
+    public void FailNext(int status, int count) {
+        synchronized (failures) {
+            for (int i = 0; i < count; i++)
+                failures.add(status);
+        }
+    }
+
+    /**
+     * Remove all injected latency and failures
+     */
+    public void ClearFaults() {
+        SetLatency(0, 0);
+        SetSlowResponses(0, 0);
+        SetErrorRate(0);
+        SetThrottleRate(0);
+        synchronized (failures) {
+            failures.clear();
+        }
+    }
+
+    /**
+     * @param pips largest move of a price between two requests for it, 0 for fixed prices; default 0.5
+     */
+    public void SetVolatility(double pips) {
+        this.volatility = pips;
+    }
+
+    /**
+     * Set the current price of an instrument, adding the instrument if it is new
+     */
+    public void SetPrice(String instrument, double bid, double ask) {
+        Quote quote = quotes.get(instrument);
+        if (quote == null) {
+            double mid = (bid + ask) / 2;
+            quote = new Quote(instrument, mid, mid >= 20 ? 0.01 : 0.0001);
+            quotes.put(instrument, quote);
+        }
+
+        synchronized (quote) {
+            quote.mid = (bid + ask) / 2;
+            quote.spread = ask - bid;
+        }
+    }
+
+    /**
+     * Fill an account with random pending orders and open trades, each with its transaction
+     */
+    public void Generate(long accountId, int orders, int trades) {
+        account(accountId).generate(orders, trades, ThreadLocalRandom.current());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /*
+     * State shared with the accounts
+     */
+
+    long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    String[] instruments() {
+        String[] names = quotes.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        return names;
+    }
+
+    /**
+     * @return current bid and ask, moved by a random step
+     */
+    double[] price(String instrument) {
+        Quote quote = quote(instrument);
+        synchronized (quote) {
+            quote.mid += (ThreadLocalRandom.current().nextDouble() - 0.5) * 2 * volatility * quote.pip;
+            return new double[]{quote.round(quote.mid - quote.spread / 2), quote.round(quote.mid + quote.spread / 2)};
+        }
+    }
+
+    double round(String instrument, double price) {
+        return quote(instrument).round(price);
+    }
+
+    double pip(String instrument) {
+        return quote(instrument).pip;
+    }
+
+    private Quote quote(String instrument) {
+        Quote quote = instrument == null ? null : quotes.get(instrument);
+        if (quote == null)
+            throw new ApiError(400, "Invalid instrument: " + instrument);
+        return quote;
+    }
+
+    private MockAccount account(long accountId) {
+        return accounts.computeIfAbsent(accountId, id -> new MockAccount(id, this));
+    }
+
+    private void addInstrument(String instrument, double price, double pip) {
+        quotes.put(instrument, new Quote(instrument, price, pip));
+    }
+
+    /*
+     * Http
+     */
+
+    private void handle(HttpExchange exchange) {
+        long received = System.nanoTime();
+        requests.incrementAndGet();
+        lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+        int status;
+        String body;
+        try {
+            Integer failure = failure();
+            if (failure != null)
+                throw new ApiError(failure, failure == 429 ? "Rate limit violation" : "Injected failure");
+
+            body = route(exchange);
+            status = 200;
+        } catch (ApiError e) {
+            status = e.status;
+            body = error(e.status, e.getMessage());
+        } catch (RuntimeException | IOException e) {
+            status = 500;
+            body = error(500, String.valueOf(e.getMessage()));
+        }
+
+        final int replyStatus = status;
+        final byte[] reply = body.getBytes(StandardCharsets.UTF_8);
+        long delay = delayNanos() - (System.nanoTime() - received);
+
+        if (delay > 0)
+            timer.schedule(() -> send(exchange, replyStatus, reply), delay, TimeUnit.NANOSECONDS);
+        else
+            send(exchange, replyStatus, reply);
+    }
+
+    private Integer failure() {
+        synchronized (failures) {
+            Integer status = failures.poll();
+            if (status != null)
+                return status;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (throttleRate > 0 && random.nextDouble() < throttleRate)
+            return 429;
+        if (errorRate > 0 && random.nextDouble() < errorRate)
+            return 500;
+        return null;
+    }
+
+    private long delayNanos() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyNanos;
+        if (jitterNanos > 0)
+            delay += (long) (random.nextDouble() * jitterNanos);
+        if (slowRate > 0 && random.nextDouble() < slowRate)
+            delay += slowNanos;
+        return delay;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) {
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+        Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+        if (method.equals("POST") || method.equals("PATCH"))
+            params.putAll(params(read(exchange.getRequestBody())));
+
+        boolean unix = "UNIX".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-Accept-Datetime-Format"))
+                || "unix".equals(params.get("dateFormat"));
+
+        if (path.length == 2 && method.equals("GET")) {
+            switch (path[1]) {
+                case "instruments":
+                    return instruments(params);
+                case "prices":
+                    return prices(params, unix);
+                case "candles":
+                    return candles(params, unix);
+            }
+        }
+
+        if (path.length >= 4 && path[1].equals("accounts")) {
+            MockAccount account = account(longOf(path[2], "account id"));
+            String id = path.length == 5 ? path[4] : null;
+
+            if (path.length <= 5) {
+                switch (path[3] + " " + method + (id == null ? "" : " id")) {
+                    case "orders GET":
+                        return account.orders(params, unix);
+                    case "orders POST":
+                        return account.createOrder(params, unix);
+                    case "orders GET id":
+                        return account.order(longOf(id, "order id"), unix);
+                    case "orders PATCH id":
+                        return account.updateOrder(longOf(id, "order id"), params, unix);
+                    case "orders DELETE id":
+                        return account.cancelOrder(longOf(id, "order id"), unix);
+                    case "trades GET":
+                        return account.trades(params, unix);
+                    case "trades GET id":
+                        return account.trade(longOf(id, "trade id"), unix);
+                    case "trades PATCH id":
+                        return account.updateTrade(longOf(id, "trade id"), params, unix);
+                    case "trades DELETE id":
+                        return account.closeTrade(longOf(id, "trade id"), unix);
+                    case "positions GET":
+                        return account.positions();
+                    case "positions GET id":
+                        return account.position(id);
+                    case "positions DELETE id":
+                        return account.closePosition(id);
+                    case "transactions GET":
+                        return account.transactions(params, unix);
+                    case "transactions GET id":
+                        return account.transaction(longOf(id, "transaction id"), unix);
+                }
+            }
+        }
+
+        throw new ApiError(404, "No such route: " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    private String instruments(Map<String, String> params) {
+        String requested = params.get("instruments");
+        String[] names = requested == null ? instruments() : requested.split(",");
+        String fields = params.getOrDefault("fields", "instrument,displayName,pip,maxTradeUnits");
+
+        JSONArray array = new JSONArray();
+        for (String name : names) {
+            Quote quote = quotes.get(name);
+            if (quote == null)
+                continue;
+
+            JSONObject instrument = new JSONObject();
+            for (String field : fields.split(",")) {
+                switch (field) {
+                    case "instrument":
+                        instrument.put(field, quote.instrument);
+                        break;
+                    case "displayName":
+                        instrument.put(field, quote.displayName);
+                        break;
+                    case "pip":
+                        instrument.put(field, quote.pip);
+                        break;
+                    case "maxTradeUnits":
+                        instrument.put(field, 10000000);
+                        break;
+                    case "precision":
+                        instrument.put(field, String.valueOf(quote.pip / 10));
+                        break;
+                    case "maxTrailingStop":
+                        instrument.put(field, 10000);
+                        break;
+                    case "minTrailingStop":
+                        instrument.put(field, 5);
+                        break;
+                    case "marginRate":
+                        instrument.put(field, 0.02);
+                        break;
+                    case "halted":
+                        instrument.put(field, false);
+                        break;
+                }
+            }
+            instrument.put("instrument", quote.instrument);
+            array.put(instrument);
+        }
+
+        return new JSONObject().put("instruments", array).toString();
+    }
+
+    private String prices(Map<String, String> params, boolean unix) {
+        String requested = params.get("instruments");
+        if (requested == null || requested.isEmpty())
+            throw new ApiError(400, "Missing required argument: instruments");
+
+        String time = time(System.currentTimeMillis() * 1000L, unix);
+        StringBuilder sb = new StringBuilder(64 + 96 * requested.length() / 8).append("{\"prices\":[");
+        String[] names = requested.split(",");
+        for (int i = 0; i < names.length; i++) {
+            double[] price = price(names[i]);
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"instrument\":\"").append(names[i])
+                    .append("\",\"time\":\"").append(time)
+                    .append("\",\"bid\":").append(price[0])
+                    .append(",\"ask\":").append(price[1])
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String candles(Map<String, String> params, boolean unix) {
+        Quote quote = quote(params.get("instrument"));
+        GranularityType granularity = enumOf(GranularityType.class, params.getOrDefault("granularity", "S5"), "granularity");
+        CandleFormat format = enumOf(CandleFormat.class, params.getOrDefault("candleFormat", "bidask"), "candleFormat");
+        CandleAlignment alignment = CandleAlignment.of(
+                params.containsKey("dailyAlignment") ? (byte) longOf(params.get("dailyAlignment"), "dailyAlignment") : null,
+                params.containsKey("weeklyAlignment")
+                        ? enumOf(WeeklyAlignment.class, params.get("weeklyAlignment"), "weeklyAlignment") : null);
+
+        long now = System.currentTimeMillis() * 1000L;
+        long start = params.containsKey("start") ? timeOf(params.get("start"), "start") : 0;
+        long end = params.containsKey("end") ? timeOf(params.get("end"), "end") : 0;
+        int count = (int) longOf(params.getOrDefault("count", "500"), "count");
+        if (count <= 0 || count > MAX_CANDLES)
+            throw new ApiError(400, "Invalid value specified for 'count'");
+
+        long[] times = new long[Math.min(count, MAX_CANDLES)];
+        int size = 0;
+
+        if (start > 0) {
+            long time = alignment.start(granularity, start);
+            if (time < start || (time == start && "false".equals(params.get("includeFirst"))))
+                time = alignment.end(granularity, time);
+
+            long until = end > 0 ? Math.min(end, now) : now;
+            while (time < until && (end > 0 || size < count)) {
+                if (size == MAX_CANDLES)
+                    throw new ApiError(400, "Maximum value for 'count' exceeded");
+                if (size == times.length)
+                    times = Arrays.copyOf(times, Math.min(times.length * 2, MAX_CANDLES));
+                times[size++] = time;
+                time = alignment.end(granularity, time);
+            }
+        } else {
+            long time = alignment.start(granularity, (end > 0 ? Math.min(end, now) : now) - 1);
+            for (; size < count; size++) {
+                times[size] = time;
+                time = alignment.start(granularity, time - 1);
+            }
+            // oldest first
+            for (int i = 0; i < size / 2; i++) {
+                long t = times[i];
+                times[i] = times[size - 1 - i];
+                times[size - 1 - i] = t;
+            }
+        }
+
+        boolean bidAsk = format == CandleFormat.bidask;
+        StringBuilder sb = new StringBuilder(128 + size * (bidAsk ? 260 : 160))
+                .append("{\"instrument\":\"").append(quote.instrument)
+                .append("\",\"granularity\":\"").append(granularity)
+                .append("\",\"candles\":[");
+
+        double half = quote.spread / 2;
+        for (int i = 0; i < size; i++) {
+            long open = times[i];
+            long close = alignment.end(granularity, open);
+            double o = path(quote, open);
+            double c = path(quote, Math.min(close, now));
+            double h = Math.max(o, c) + noise(quote.seed, open, 1) * 10 * quote.pip;
+            double l = Math.min(o, c) - noise(quote.seed, open, 2) * 10 * quote.pip;
+
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"time\":\"").append(time(open, unix)).append('"');
+            if (bidAsk) {
+                sb.append(",\"openBid\":").append(quote.round(o - half)).append(",\"openAsk\":").append(quote.round(o + half))
+                        .append(",\"highBid\":").append(quote.round(h - half)).append(",\"highAsk\":").append(quote.round(h + half))
+                        .append(",\"lowBid\":").append(quote.round(l - half)).append(",\"lowAsk\":").append(quote.round(l + half))
+                        .append(",\"closeBid\":").append(quote.round(c - half)).append(",\"closeAsk\":").append(quote.round(c + half));
+            } else {
+                sb.append(",\"openMid\":").append(quote.round(o)).append(",\"highMid\":").append(quote.round(h))
+                        .append(",\"lowMid\":").append(quote.round(l)).append(",\"closeMid\":").append(quote.round(c));
+            }
+            sb.append(",\"volume\":").append(1 + (long) (noise(quote.seed, open, 3) * 200))
+                    .append(",\"complete\":").append(close <= now)
+                    .append('}');
+        }
+
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Price of the candle path at a time: slow waves around the base price plus noise per second
+     */
+    private static double path(Quote quote, long micros) {
+        double seconds = micros / 1e6;
+        double wave = Math.sin(seconds / 3600) * 0.002 + Math.sin(seconds / 259200) * 0.01;
+        return quote.base * (1 + wave) + (noise(quote.seed, micros / 1000000L, 0) - 0.5) * 4 * quote.pip;
+    }
+
+    /**
+     * @return number from 0 to 1 that only depends on the arguments
+     */
+    private static double noise(long seed, long time, int stream) {
+        long z = seed + time * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /*
+     * Helpers shared with the accounts
+     */
+
+    static String time(long micros, boolean unix) {
+        return unix ? Rfc3339.formatUnix(micros) : Rfc3339.format(micros);
+    }
+
+    static String error(int status, String message) {
+        return new JSONObject()
+                .put("code", status)
+                .put("message", message)
+                .put("moreInfo", "http://developer.oanda.com/docs/v1/troubleshooting/#errors")
+                .toString();
+    }
+
+    static long longOf(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiError(400, "Invalid value specified for '" + name + "'");
+        }
+    }
+
+    static double doubleOf(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new ApiError(400, "Invalid value specified for '" + name + "'");
+        }
+    }
+
+    static long timeOf(String value, String name) {
+        try {
+            return Rfc3339.parseMicros(value);
+        } catch (IllegalArgumentException e) {
+            throw new ApiError(400, "Invalid value specified for '" + name + "'");
+        }
+    }
+
+    static <E extends Enum<E>> E enumOf(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new ApiError(400, "Invalid value specified for '" + name + "'");
+        }
+    }
+
+    private static Map<String, String> params(String encoded) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (encoded == null || encoded.isEmpty())
+            return params;
+
+        for (String parameter : encoded.split("&")) {
+            int eq = parameter.indexOf('=');
+            if (eq < 0)
+                params.put(URLDecoder.decode(parameter, "UTF-8"), "");
+            else
+                params.put(URLDecoder.decode(parameter.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) != -1; )
+            out.write(buffer, 0, read);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        final AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,275 @@
+package rabun.oanda.rest.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import rabun.oanda.rest.codec.Rfc3339;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the /v1/prices rates stream, to test and benchmark stream clients offline.
+ *
+ * Every connection gets a chunked response of line-delimited messages in the format of the real stream.
+ * Ticks are either published explicitly with {@link #Publish} or produced by a random walk generator
+ * started with {@link #Generate}; only ticks for the instruments a connection asked for are sent to it.
+ * A heartbeat is sent to idle connections at a fixed interval.
+ *
+ * <pre>
+ * try (MockStreamServer server = MockStreamServer.start()) {
+ *     PriceStream stream = new PriceStream("key", server.GetUrl(), 1, "EUR_USD");
+ *     ...
+ *     server.Publish("EUR_USD", 1.1012, 1.1014);
+ * }
+ * </pre>
+ */
+public class MockStreamServer implements Closeable {
+
+    private static final String POISON = "";
+
+    private final HttpServer server;
+    private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<>();
+
+    private volatile long heartbeatMillis = 5000;
+    private volatile String lastAuthorization;
+    private volatile Thread generator;
+
+    private static final class Connection {
+        final Set<String> instruments;
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        Connection(Set<String> instruments) {
+            this.instruments = instruments;
+        }
+    }
+
+    private MockStreamServer(HttpServer server) {
+        this.server = server;
+        server.createContext("/v1/prices", this::stream);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-stream-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Start a server on a free local port
+     */
+    public static MockStreamServer start() throws IOException {
+        return start(0);
+    }
+
+    public static MockStreamServer start(int port) throws IOException {
+        return new MockStreamServer(HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0));
+    }
+
+    /**
+     * @return scheme, host and port to give a stream client
+     */
+    public String GetUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param heartbeatMillis interval of heartbeats on an idle connection, default 5 s
+     */
+    public void SetHeartbeatInterval(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * @return Authorization header of the last connection
+     */
+    public String GetLastAuthorization() {
+        return lastAuthorization;
+    }
+
+    public int GetConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Wait until at least the given number of clients are connected
+     *
+     * @return true if they connected in time
+     */
+    public boolean AwaitConnections(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (connections.size() < count) {
+            if (System.nanoTime() > deadline)
+                return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /**
+     * Send a tick to every connection streaming the instrument, stamped with the current time
+     */
+    public void Publish(String instrument, double bid, double ask) {
+        String line = tick(instrument, System.currentTimeMillis() * 1000L, bid, ask);
+
+        for (Connection connection : connections) {
+            if (connection.instruments.contains(instrument))
+                connection.lines.add(line);
+        }
+    }
+
+    /**
+     * Send a raw line, e.g. a malformed message
+     */
+    public void PublishLine(String line) {
+        for (Connection connection : connections)
+            connection.lines.add(line);
+    }
+
+    /**
+     * Drop all current connections, as a server restart or network failure would
+     */
+    public void Disconnect() {
+        for (Connection connection : connections)
+            connection.lines.add(POISON);
+    }
+
+    /**
+     * Produce random walk ticks for the given instruments in the background
+     *
+     * @param ticksPerSecond rate over all instruments, 0 for as fast as the clients read
+     */
+    public synchronized void Generate(final double ticksPerSecond, final String... instruments) {
+        StopGenerating();
+
+        final long pauseNanos = ticksPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / ticksPerSecond);
+        Thread thread = new Thread(() -> {
+            Random random = new Random(42);
+            double[] mids = new double[instruments.length];
+            Arrays.fill(mids, 1.1);
+
+            long next = System.nanoTime();
+            for (int i = 0; !Thread.currentThread().isInterrupted(); i = (i + 1) % instruments.length) {
+                mids[i] += (random.nextDouble() - 0.5) * 0.0002;
+                Publish(instruments[i], mids[i] - 0.0001, mids[i] + 0.0001);
+
+                if (pauseNanos > 0) {
+                    next += pauseNanos;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                } else {
+                    backpressure();
+                }
+            }
+        }, "mock-stream-generator");
+        thread.setDaemon(true);
+        thread.start();
+        generator = thread;
+    }
+
+    public synchronized void StopGenerating() {
+        Thread thread = generator;
+        if (thread != null) {
+            thread.interrupt();
+            generator = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        StopGenerating();
+        Disconnect();
+        server.stop(0);
+    }
+
+    /**
+     * Without a rate, keep the queues short instead of filling memory faster than clients read
+     */
+    private void backpressure() {
+        for (Connection connection : connections) {
+            while (connection.lines.size() > 10000 && !Thread.currentThread().isInterrupted())
+                Thread.yield();
+        }
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+        Connection connection = new Connection(instruments(exchange.getRequestURI().getRawQuery()));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+
+        connections.add(connection);
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (true) {
+                String line = connection.lines.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (line == POISON)
+                    break;
+
+                if (line == null)
+                    line = "{\"heartbeat\":{\"time\":\"" + Rfc3339.format(System.currentTimeMillis() * 1000L) + "\"}}";
+
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+
+                // send what is queued in one chunk
+                while ((line = connection.lines.peek()) != null && line != POISON) {
+                    connection.lines.poll();
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            connections.remove(connection);
+            exchange.close();
+        }
+    }
+
+    private static String tick(String instrument, long micros, double bid, double ask) {
+        return new StringBuilder(96)
+                .append("{\"tick\":{\"instrument\":\"").append(instrument)
+                .append("\",\"time\":\"").append(Rfc3339.format(micros))
+                .append("\",\"bid\":").append(round(bid))
+                .append(",\"ask\":").append(round(ask))
+                .append("}}").toString();
+    }
+
+    private static double round(double price) {
+        return Math.round(price * 100000) / 100000.0;
+    }
+
+    private static Set<String> instruments(String query) throws IOException {
+        Set<String> instruments = new HashSet<>();
+        if (query == null)
+            return instruments;
+
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("instruments="))
+                instruments.addAll(Arrays.asList(URLDecoder.decode(parameter.substring(12), "UTF-8").split(",")));
+        }
+        return instruments;
+    }
+}
@@ -2,6 +2,7 @@ package rabun.oanda.rest.models;
 
 public class CandleBidAsk {
     public String time;
+    public long timeMicros;
     public float openBid;
     public float openAsk;
     public float highBid;
@@ -2,6 +2,7 @@ package rabun.oanda.rest.models;
 
 public class CandleMid {
     public String time;
+    public long timeMicros;
     public float openMid;
     public float highMid;
     public float lowMid;
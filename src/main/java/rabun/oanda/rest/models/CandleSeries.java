@@ -0,0 +1,150 @@
+package rabun.oanda.rest.models;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column oriented candle history.
+ *
+ * Each candle attribute is kept in its own primitive array so indicator loops scan contiguous memory
+ * instead of chasing one object per candle. Only the columns of the series format are allocated:
+ * the bid and ask columns for {@link OandaTypes.CandleFormat#bidask}, the mid columns for
+ * {@link OandaTypes.CandleFormat#midpoint}. Arrays may be larger than {@link #size}; only the first
+ * size entries are valid.
+ */
+public class CandleSeries {
+
+    public CandleSeries(OandaTypes.CandleFormat candleFormat) {
+        this(candleFormat, 500);
+    }
+
+    public CandleSeries(OandaTypes.CandleFormat candleFormat, int capacity) {
+        this.candleFormat = candleFormat == null ? OandaTypes.CandleFormat.bidask : candleFormat;
+        this.time = new long[capacity];
+        this.volume = new long[capacity];
+        this.complete = new BitSet(capacity);
+
+        if (this.candleFormat == OandaTypes.CandleFormat.bidask) {
+            openBid = new float[capacity];
+            openAsk = new float[capacity];
+            highBid = new float[capacity];
+            highAsk = new float[capacity];
+            lowBid = new float[capacity];
+            lowAsk = new float[capacity];
+            closeBid = new float[capacity];
+            closeAsk = new float[capacity];
+        } else {
+            openMid = new float[capacity];
+            highMid = new float[capacity];
+            lowMid = new float[capacity];
+            closeMid = new float[capacity];
+        }
+    }
+
+    public String instrument;
+    public OandaTypes.GranularityType granularity;
+    public final OandaTypes.CandleFormat candleFormat;
+    public int size;
+
+    /**
+     * Candle start time, microseconds since the epoch (UTC)
+     */
+    public long[] time;
+    public float[] openBid;
+    public float[] openAsk;
+    public float[] highBid;
+    public float[] highAsk;
+    public float[] lowBid;
+    public float[] lowAsk;
+    public float[] closeBid;
+    public float[] closeAsk;
+    public float[] openMid;
+    public float[] highMid;
+    public float[] lowMid;
+    public float[] closeMid;
+    public long[] volume;
+    public BitSet complete;
+
+    public boolean isBidAsk() {
+        return candleFormat == OandaTypes.CandleFormat.bidask;
+    }
+
+    /**
+     * Make room for at least the given number of candles
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= time.length)
+            return;
+
+        int grown = Math.max(capacity, time.length + (time.length >> 1) + 16);
+
+        time = Arrays.copyOf(time, grown);
+        volume = Arrays.copyOf(volume, grown);
+
+        if (isBidAsk()) {
+            openBid = Arrays.copyOf(openBid, grown);
+            openAsk = Arrays.copyOf(openAsk, grown);
+            highBid = Arrays.copyOf(highBid, grown);
+            highAsk = Arrays.copyOf(highAsk, grown);
+            lowBid = Arrays.copyOf(lowBid, grown);
+            lowAsk = Arrays.copyOf(lowAsk, grown);
+            closeBid = Arrays.copyOf(closeBid, grown);
+            closeAsk = Arrays.copyOf(closeAsk, grown);
+        } else {
+            openMid = Arrays.copyOf(openMid, grown);
+            highMid = Arrays.copyOf(highMid, grown);
+            lowMid = Arrays.copyOf(lowMid, grown);
+            closeMid = Arrays.copyOf(closeMid, grown);
+        }
+    }
+
+    /**
+     * Append a candle slot and return its index, the caller fills in the columns
+     */
+    public int append() {
+        ensureCapacity(size + 1);
+
+        int index = size++;
+        complete.clear(index);
+
+        return index;
+    }
+
+    /**
+     * Append a copy of one candle of another series of the same format
+     *
+     * @return index of the copy
+     */
+    public int append(CandleSeries from, int row) {
+        if (from.candleFormat != candleFormat)
+            throw new IllegalArgumentException("Cannot append " + from.candleFormat + " candles to a " + candleFormat + " series");
+
+        int index = append();
+        time[index] = from.time[row];
+        volume[index] = from.volume[row];
+        complete.set(index, from.complete.get(row));
+
+        if (isBidAsk()) {
+            openBid[index] = from.openBid[row];
+            openAsk[index] = from.openAsk[row];
+            highBid[index] = from.highBid[row];
+            highAsk[index] = from.highAsk[row];
+            lowBid[index] = from.lowBid[row];
+            lowAsk[index] = from.lowAsk[row];
+            closeBid[index] = from.closeBid[row];
+            closeAsk[index] = from.closeAsk[row];
+        } else {
+            openMid[index] = from.openMid[row];
+            highMid[index] = from.highMid[row];
+            lowMid[index] = from.lowMid[row];
+            closeMid[index] = from.closeMid[row];
+        }
+
+        return index;
+    }
+
+    public void clear() {
+        size = 0;
+        complete.clear();
+    }
+}
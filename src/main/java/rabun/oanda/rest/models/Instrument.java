@@ -5,4 +5,9 @@ public class Instrument {
     public String displayName;
     public float pip;
     public long maxTradeUnits;
+    public String precision;
+    public float maxTrailingStop;
+    public float minTrailingStop;
+    public float marginRate;
+    public boolean halted;
 }
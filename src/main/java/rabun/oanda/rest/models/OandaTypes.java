@@ -67,7 +67,9 @@ public final class OandaTypes {
     public enum Reason {
         CLIENT_REQUEST,
         MIGRATION,
-        REPLACES_ORDER
+        REPLACES_ORDER,
+        TIME_IN_FORCE_EXPIRED,
+        ORDER_FILLED
     }
 
     public static enum CandleFormat {
@@ -75,6 +77,11 @@ public final class OandaTypes {
         bidask
     }
 
+    public static enum DateFormat {
+        rfc3339,
+        unix
+    }
+
     public static enum WeeklyAlignment {
         Monday,
         Tuesday,
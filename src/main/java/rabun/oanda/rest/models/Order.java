@@ -4,6 +4,7 @@ public class Order {
     public long id;
     public String instrument;
     public String time;
+    public long timeMicros;
     public float price;
     public OandaTypes.OrderType type;
     public OandaTypes.Side side;
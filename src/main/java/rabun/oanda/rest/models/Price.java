@@ -3,6 +3,7 @@ package rabun.oanda.rest.models;
 public class Price {
     public String instrument;
     public String time;
+    public long timeMicros;
     public float bid;
     public float ask;
     public String status;
@@ -6,6 +6,7 @@ public class Trade {
     public OandaTypes.Side side;
     public String instrument;
     public String time;
+    public long timeMicros;
     public float price;
     public float takeProfit;
     public float stopLoss;
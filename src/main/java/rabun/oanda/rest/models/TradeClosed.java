@@ -7,4 +7,5 @@ public class TradeClosed {
     public float profit;
     public OandaTypes.Side side;
     public String time;
+    public long timeMicros;
 }
@@ -4,6 +4,7 @@ public class Transaction {
     public long id;
     public long accountId;
     public String time;
+    public long timeMicros;
     public OandaTypes.TransactionType type;
 
 }
\ No newline at end of file
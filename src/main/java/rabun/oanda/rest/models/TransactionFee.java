@@ -1,6 +1,6 @@
 package rabun.oanda.rest.models;
 
-public class TransactionFee {
+public class TransactionFee extends Transaction {
     public float amount;
     public float accountBalance;
     public OandaTypes.Reason reason;
@@ -2,7 +2,7 @@ package rabun.oanda.rest.models;
 
 public class TransactionMigrateTradeClose extends TransactionSimple {
     public float pl;
-    public long interest;
+    public float interest;
     public float accountBalance;
     public long tradeId;
 }
@@ -2,5 +2,5 @@ package rabun.oanda.rest.models;
 
 
 public class TransactionMigrateTradeOpen extends TransactionSimple {
-    TradeOpened tradeOpened;
+    public TradeOpened tradeOpened;
 }
@@ -1,8 +1,8 @@
 package rabun.oanda.rest.models;
 
 public class TransactionOrderFilled extends TransactionDefault {
-    public long pl;
-    public long interest;
+    public float pl;
+    public float interest;
     public long orderId;
     public TradeOpened tradeOpened;
 }
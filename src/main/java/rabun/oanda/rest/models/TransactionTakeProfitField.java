@@ -3,6 +3,6 @@ package rabun.oanda.rest.models;
 public class TransactionTakeProfitField extends TransactionSimple {
     public long tradeId;
     public float pl;
-    public long interest;
+    public float interest;
     public float accountBalance;
 }
@@ -3,7 +3,7 @@ package rabun.oanda.rest.models;
 
 public class TransactionTradeClose extends TransactionSimple {
     public float pl;
-    public long interest;
+    public float interest;
     public float accountBalance;
     public long tradeId;
 }
@@ -0,0 +1,132 @@
+package rabun.oanda.rest.paging;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.base.Futures;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy view of a list the api returns in pages of descending ids, such as orders, trades or transactions.
+ *
+ * Each iteration walks the pages from the newest down: the next page is requested with maxId one below
+ * the last id of the current page, the way the api builds the url in its Link header. While the caller
+ * consumes a page, the next one is already being fetched, so at most two pages are held at a time and the
+ * latency of a page is hidden behind the work on the previous one. Iteration ends with a short page.
+ *
+ * A request that fails ends the iteration with a {@link PagingException}.
+ *
+ * <pre>
+ * for (Transaction transaction : transactions.IterateTransactions(accountId, 0, null))
+ *     ...
+ * long buys = trades.IterateTrades(accountId, "EUR_USD", 500).stream().filter(t -> t.side == Side.buy).count();
+ * </pre>
+ */
+public class Paginator<T> implements Iterable<T> {
+
+    /**
+     * Requests one page
+     */
+    public interface PageFetcher<T> {
+        /**
+         * @param maxId highest id of the page, null for the newest
+         */
+        CompletableFuture<List<T>> fetch(Long maxId);
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final ToLongFunction<T> idOf;
+    private final int pageSize;
+
+    /**
+     * @param fetcher requests a page
+     * @param idOf id of an item, the items of a page are in descending id order
+     * @param pageSize number of items of a full page; a page with fewer items is the last one
+     */
+    public Paginator(PageFetcher<T> fetcher, ToLongFunction<T> idOf, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+
+        this.fetcher = fetcher;
+        this.idOf = idOf;
+        this.pageSize = pageSize;
+    }
+
+    public int GetPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return iterator that fetches from the newest page, every iterator makes its own requests
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    /**
+     * @return sequential stream over all items, fetched while the stream is consumed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private final class PageIterator implements Iterator<T> {
+        private List<T> page = Collections.emptyList();
+        private int index;
+        private CompletableFuture<List<T>> next = request(null);
+
+        @Override
+        public boolean hasNext() {
+            while (index >= page.size()) {
+                if (next == null)
+                    return false;
+
+                page = await(next);
+                index = 0;
+
+                // prefetch while the caller works on this page
+                next = page.size() < pageSize ? null : request(idOf.applyAsLong(page.get(page.size() - 1)) - 1);
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return page.get(index++);
+        }
+
+        private CompletableFuture<List<T>> request(Long maxId) {
+            if (maxId != null && maxId <= 0)
+                return null;
+
+            try {
+                return fetcher.fetch(maxId);
+            } catch (RuntimeException e) {
+                CompletableFuture<List<T>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+
+        private List<T> await(CompletableFuture<List<T>> future) {
+            try {
+                return Futures.await(future);
+            } catch (UnirestException e) {
+                next = null;
+                throw new PagingException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package rabun.oanda.rest.paging;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+/**
+ * A page request failed while iterating a {@link Paginator}; iterators cannot throw the checked cause
+ */
+public class PagingException extends RuntimeException {
+
+    public PagingException(UnirestException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized UnirestException getCause() {
+        return (UnirestException) super.getCause();
+    }
+}
@@ -0,0 +1,351 @@
+package rabun.oanda.rest.paging;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import rabun.oanda.rest.base.Futures;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RateLimiter;
+import rabun.oanda.rest.endpoints.TransactionEndpoints;
+import rabun.oanda.rest.models.Transaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Downloads the full transaction history of an account, for reconciliation.
+ *
+ * The id space from minId to the newest transaction is split into ranges of {@link Builder#rangeSize(long)} ids.
+ * Transaction ids are shared by all accounts, so without a minId the oldest transaction of the account is looked
+ * up first instead of requesting every range from id 1.
+ * Several ranges are fetched at once, each page by page with minId and maxId. The transactions are handed to
+ * the caller in ascending id order, range by range. Ranges that finished early wait in a buffer of at most
+ * {@link Builder#bufferedRanges(int)} ranges, so a slow caller holds back the downloads instead of filling memory.
+ *
+ * With a checkpoint file, the last id handed to the caller is saved after every range, and a later run
+ * starts after it. A run that fails or is interrupted therefore resumes where it stopped.
+ *
+ * <pre>
+ * TransactionDownloader downloader = TransactionDownloader.builder(transactions, accountId)
+ *         .checkpoint(Paths.get("transactions.checkpoint"))
+ *         .build();
+ * downloader.Download(transaction -> ledger.add(transaction));
+ * </pre>
+ */
+public class TransactionDownloader {
+
+    /**
+     * Transactions per page when count is not sent
+     */
+    private static final int PAGE_SIZE = 50;
+
+    private final TransactionEndpoints transactions;
+    private final long accountId;
+    private final long minId;
+    private final long maxId;
+    private final long rangeSize;
+    private final int parallelism;
+    private final int bufferedRanges;
+    private final Path checkpoint;
+    private final RateLimiter rateLimiter;
+
+    private TransactionDownloader(Builder builder) {
+        this.transactions = builder.transactions;
+        this.accountId = builder.accountId;
+        this.minId = builder.minId;
+        this.maxId = builder.maxId;
+        this.rangeSize = builder.rangeSize;
+        this.parallelism = builder.parallelism;
+        this.bufferedRanges = Math.max(builder.bufferedRanges, builder.parallelism);
+        this.checkpoint = builder.checkpoint;
+        this.rateLimiter = builder.rateLimiter;
+    }
+
+    public static Builder builder(TransactionEndpoints transactions, long accountId) {
+        return new Builder(transactions, accountId);
+    }
+
+    /**
+     * Download the transactions after the checkpoint, handing them to the handler on the calling thread
+     *
+     * @param handler Required called with every transaction in ascending id order
+     * @return number of transactions handed to the handler
+     * @throws UnirestException if a request fails; the checkpoint keeps the ranges that were handled
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    public long Download(Consumer<Transaction> handler) throws UnirestException, IOException {
+        long resumed = GetCheckpoint();
+        long from = Math.max(minId, resumed + 1);
+        long to = maxId > 0 ? maxId : newestId();
+        if (to < from)
+            return 0;
+
+        if (minId == 0 && resumed == 0)
+            from = oldestId(to);
+
+        return new Run(from, to).run(handler);
+    }
+
+    /**
+     * @return last transaction id handed to a handler by a previous run, 0 if there is none
+     */
+    public long GetCheckpoint() throws IOException {
+        if (checkpoint == null || !Files.exists(checkpoint))
+            return 0;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+
+        if (Long.parseLong(properties.getProperty("accountId", "0")) != accountId)
+            throw new IOException(checkpoint + " is the checkpoint of another account");
+
+        return Long.parseLong(properties.getProperty("lastId", "0"));
+    }
+
+    private void saveCheckpoint(long lastId) throws IOException {
+        if (checkpoint == null)
+            return;
+
+        Properties properties = new Properties();
+        properties.setProperty("accountId", String.valueOf(accountId));
+        properties.setProperty("lastId", String.valueOf(lastId));
+
+        // replace the file in one step, so a crash leaves either the old or the new checkpoint
+        Path parent = checkpoint.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, checkpoint.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long newestId() throws UnirestException {
+        List<Transaction> page = Futures.await(transactions.GetTransactionsAsync(accountId, 0, 0, 0, null, null));
+        return page.isEmpty() ? 0 : page.get(0).id;
+    }
+
+    /**
+     * Bisect on maxId for the oldest transaction of the account, a few dozen requests for any id space
+     */
+    private long oldestId(long newest) throws UnirestException {
+        long low = 1;
+        long high = newest;
+
+        while (low < high) {
+            long mid = low + (high - low) / 2;
+            List<Transaction> page = Futures.await(transactions.GetTransactionsAsync(accountId, mid, 0, 0, null, null));
+
+            if (page.isEmpty())
+                low = mid + 1;
+            else if (page.size() < PAGE_SIZE)
+                return page.get(page.size() - 1).id;
+            else
+                high = page.get(page.size() - 1).id;
+        }
+        return low;
+    }
+
+    /**
+     * Fetch the transactions from low to high, newest first, page by page
+     */
+    private CompletableFuture<List<Transaction>> fetchRange(final long low, long high, final List<Transaction> into) {
+        CompletableFuture<Void> permit = rateLimiter == null ? CompletableFuture.completedFuture(null)
+                : rateLimiter.acquire(Priority.low, null);
+
+        return permit.thenCompose(ignored -> transactions.GetTransactionsAsync(accountId, high, low, 0, null, null))
+                .thenCompose(page -> {
+                    into.addAll(page);
+                    if (page.size() < PAGE_SIZE || page.get(page.size() - 1).id <= low)
+                        return CompletableFuture.completedFuture(into);
+
+                    return fetchRange(low, page.get(page.size() - 1).id - 1, into);
+                });
+    }
+
+    /**
+     * One download: ranges are started while fewer than parallelism are running and fewer than bufferedRanges
+     * wait to be handled, and handled in order by the calling thread. Only the started ranges are held.
+     */
+    private final class Run {
+        final long from;
+        final long to;
+        final long count;
+        final Map<Long, CompletableFuture<List<Transaction>>> ranges = new HashMap<>();
+
+        long started;
+        long handled;
+        int running;
+        boolean failed;
+
+        Run(long from, long to) {
+            this.from = from;
+            this.to = to;
+            this.count = (to - from) / rangeSize + 1;
+        }
+
+        long run(Consumer<Transaction> handler) throws UnirestException, IOException {
+            long total = 0;
+
+            for (long k = 0; k < count; k++) {
+                start();
+
+                CompletableFuture<List<Transaction>> range;
+                synchronized (this) {
+                    range = ranges.get(k);
+                    // the slot of a finished range is freed by its callback, which may not have run yet
+                    if (range == null)
+                        range = launch(started++);
+                }
+
+                List<Transaction> page;
+                try {
+                    page = Futures.await(range);
+                } catch (UnirestException e) {
+                    synchronized (this) {
+                        failed = true;
+                    }
+                    throw e;
+                }
+
+                // fetched newest first
+                for (int i = page.size() - 1; i >= 0; i--)
+                    handler.accept(page.get(i));
+                total += page.size();
+
+                saveCheckpoint(high(k));
+
+                synchronized (this) {
+                    ranges.remove(k);
+                    handled++;
+                }
+            }
+
+            return total;
+        }
+
+        private synchronized void start() {
+            while (!failed && started < count && running < parallelism && started < handled + bufferedRanges) {
+                launch(started++);
+            }
+        }
+
+        private synchronized CompletableFuture<List<Transaction>> launch(long k) {
+            running++;
+
+            CompletableFuture<List<Transaction>> range = fetchRange(low(k), high(k), new ArrayList<>());
+            ranges.put(k, range);
+            range.whenComplete((page, error) -> {
+                synchronized (Run.this) {
+                    running--;
+                }
+                start();
+            });
+            return range;
+        }
+
+        private long low(long k) {
+            return from + k * rangeSize;
+        }
+
+        private long high(long k) {
+            return Math.min(to, low(k) + rangeSize - 1);
+        }
+    }
+
+    public static final class Builder {
+        private final TransactionEndpoints transactions;
+        private final long accountId;
+        private long minId;
+        private long maxId;
+        private long rangeSize = 1000;
+        private int parallelism = 4;
+        private int bufferedRanges = 8;
+        private Path checkpoint;
+        private RateLimiter rateLimiter;
+
+        private Builder(TransactionEndpoints transactions, long accountId) {
+            if (transactions == null)
+                throw new IllegalArgumentException("transactions must not be null");
+            this.transactions = transactions;
+            this.accountId = accountId;
+        }
+
+        /**
+         * @param minId first transaction id to download, default the oldest transaction of the account
+         */
+        public Builder minId(long minId) {
+            this.minId = Math.max(1, minId);
+            return this;
+        }
+
+        /**
+         * @param maxId last transaction id to download, default the newest at the start of a run
+         */
+        public Builder maxId(long maxId) {
+            this.maxId = maxId;
+            return this;
+        }
+
+        /**
+         * @param rangeSize ids per range, default 1000
+         */
+        public Builder rangeSize(long rangeSize) {
+            if (rangeSize <= 0)
+                throw new IllegalArgumentException("rangeSize must be positive");
+            this.rangeSize = rangeSize;
+            return this;
+        }
+
+        /**
+         * @param parallelism ranges fetched at once, default 4
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0)
+                throw new IllegalArgumentException("parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param bufferedRanges ranges fetched ahead of the one being handled, default 8, at least parallelism
+         */
+        public Builder bufferedRanges(int bufferedRanges) {
+            if (bufferedRanges <= 0)
+                throw new IllegalArgumentException("bufferedRanges must be positive");
+            this.bufferedRanges = bufferedRanges;
+            return this;
+        }
+
+        /**
+         * @param checkpoint file to resume from and to record progress in, default none
+         */
+        public Builder checkpoint(Path checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * @param rateLimiter budget for the downloader's own requests, on top of any limit of the client, default none
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public TransactionDownloader build() {
+            return new TransactionDownloader(this);
+        }
+    }
+}
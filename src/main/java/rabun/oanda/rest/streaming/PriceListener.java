@@ -0,0 +1,28 @@
+package rabun.oanda.rest.streaming;
+
+import rabun.oanda.rest.models.Price;
+
+/**
+ * Subscriber of a {@link PriceStream}
+ */
+public interface PriceListener {
+
+    /**
+     * A tick arrived. The price belongs to the listener and may be kept.
+     */
+    void onPrice(Price price);
+
+    /**
+     * The server sent a heartbeat
+     *
+     * @param timeMicros server time, microseconds since the epoch
+     */
+    default void onHeartbeat(long timeMicros) {
+    }
+
+    /**
+     * The connection was lost; the stream reconnects by itself unless it was closed
+     */
+    default void onDisconnect(Throwable cause) {
+    }
+}
@@ -0,0 +1,271 @@
+package rabun.oanda.rest.streaming;
+
+import rabun.oanda.rest.base.Endpoint.AccountType;
+import rabun.oanda.rest.codec.JsonReader;
+import rabun.oanda.rest.codec.TickDecoder;
+import rabun.oanda.rest.models.Price;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of the /v1/prices rates stream.
+ *
+ * Holds one long-lived connection to the stream endpoint and reads its line-delimited ticks and
+ * heartbeats as they arrive, decoding them straight from the socket with {@link TickDecoder}.
+ * Every tick is handed to all subscribers on the stream's reader thread, so listeners should return quickly.
+ * A listener that throws is skipped for that message; the other listeners and the connection are not affected.
+ * When the connection drops or stays silent longer than the heartbeat timeout the stream reconnects,
+ * backing off up to 30 seconds between attempts.
+ *
+ * <pre>
+ * PriceStream stream = new PriceStream(key, AccountType.practice, accountId, "EUR_USD,USD_JPY");
+ * stream.Subscribe(price -&gt; System.out.println(price.instrument + " " + price.bid));
+ * stream.Start();
+ * </pre>
+ */
+public class PriceStream implements Closeable {
+
+    public static final String REAL_STREAM = "https://stream-fxtrade.oanda.com";
+    public static final String PRACTICE_STREAM = "https://stream-fxpractice.oanda.com";
+
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+
+    private final String key;
+    private final String url;
+
+    private final CopyOnWriteArrayList<PriceListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong listenerErrors = new AtomicLong();
+
+    private int connectTimeout = 10000;
+    private int heartbeatTimeout = 20000;
+
+    private volatile boolean running;
+    private volatile HttpURLConnection connection;
+    private boolean received;
+    private Thread reader;
+
+    /**
+     * @param key Secret access key required to access the api
+     * @param accountType Type of account with which you work (training or real)
+     * @param accountId account to stream prices for
+     * @param instruments comma separated list of instruments
+     */
+    public PriceStream(String key, AccountType accountType, long accountId, String instruments) {
+        this(key, accountType == AccountType.real ? REAL_STREAM : PRACTICE_STREAM, accountId, instruments);
+    }
+
+    /**
+     * @param streamUrl scheme and host of the stream server, e.g. a {@link rabun.oanda.rest.mock.MockStreamServer}
+     */
+    public PriceStream(String key, String streamUrl, long accountId, String instruments) {
+        if (instruments == null || instruments.isEmpty())
+            throw new IllegalArgumentException("instruments must not be empty");
+
+        this.key = key;
+        try {
+            this.url = streamUrl + "/v1/prices?accountId=" + accountId
+                    + "&instruments=" + URLEncoder.encode(instruments, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void Subscribe(PriceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void Unsubscribe(PriceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param connectTimeout milliseconds to establish the connection, default 10 s
+     */
+    public void SetConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param heartbeatTimeout milliseconds without any message after which the connection is considered dead,
+     *                         default 20 s; the server sends a heartbeat every few seconds
+     */
+    public void SetHeartbeatTimeout(int heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    /**
+     * Connect and start reading on a background thread
+     */
+    public synchronized void Start() {
+        if (running)
+            return;
+
+        running = true;
+        reader = new Thread(this::run, "oanda-price-stream");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean IsRunning() {
+        return running;
+    }
+
+    public long GetTicks() {
+        return ticks.get();
+    }
+
+    public long GetHeartbeats() {
+        return heartbeats.get();
+    }
+
+    /**
+     * @return connections made, more than one means the stream reconnected
+     */
+    public long GetConnects() {
+        return connects.get();
+    }
+
+    /**
+     * @return calls of a listener that threw
+     */
+    public long GetListenerErrors() {
+        return listenerErrors.get();
+    }
+
+    /**
+     * Stop reading and disconnect
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = reader;
+            reader = null;
+        }
+
+        HttpURLConnection current = connection;
+        if (current != null)
+            current.disconnect();
+
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hand a message to the subscribers
+     *
+     * @param kind {@link TickDecoder#TICK} or {@link TickDecoder#HEARTBEAT}
+     */
+    protected void dispatch(int kind, Price price) {
+        for (PriceListener listener : listeners) {
+            try {
+                if (kind == TickDecoder.TICK)
+                    listener.onPrice(price);
+                else
+                    listener.onHeartbeat(price.timeMicros);
+            } catch (RuntimeException e) {
+                // one failing subscriber must not cost the others this message, nor everyone the connection
+                listenerErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private void run() {
+        long backoff = 0;
+
+        while (running) {
+            try {
+                if (backoff > 0)
+                    Thread.sleep(backoff);
+
+                received = false;
+                read();
+                disconnected(new IOException("Stream closed by the server"));
+
+                // a server that closes before sending anything, e.g. over the connection limit, is backed off too
+                backoff = received ? 0 : Math.min(MAX_BACKOFF, Math.max(backoff * 2, 500));
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                if (!running)
+                    break;
+
+                disconnected(e);
+                backoff = Math.min(MAX_BACKOFF, Math.max(received ? 0 : backoff * 2, 500));
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Authorization", "Bearer " + key);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(heartbeatTimeout);
+        this.connection = connection;
+
+        try {
+            if (connection.getResponseCode() != 200)
+                throw new IOException("Stream request failed with " + connection.getResponseCode());
+
+            connects.incrementAndGet();
+
+            try (InputStream in = connection.getInputStream()) {
+                JsonReader reader = new JsonReader(in, 4096);
+
+                while (running) {
+                    Price price = new Price();
+                    int kind = TickDecoder.next(reader, price);
+
+                    if (kind == TickDecoder.END)
+                        return;
+
+                    if (kind == TickDecoder.TICK || kind == TickDecoder.HEARTBEAT)
+                        received = true;
+
+                    if (kind == TickDecoder.TICK) {
+                        ticks.incrementAndGet();
+                        dispatch(kind, price);
+                    } else if (kind == TickDecoder.HEARTBEAT) {
+                        heartbeats.incrementAndGet();
+                        dispatch(kind, price);
+                    }
+                }
+            }
+        } finally {
+            connection.disconnect();
+            this.connection = null;
+        }
+    }
+
+    private void disconnected(Throwable cause) {
+        if (!running)
+            return;
+
+        for (PriceListener listener : listeners) {
+            try {
+                listener.onDisconnect(cause);
+            } catch (RuntimeException e) {
+                listenerErrors.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package rabun.oanda.rest.streaming;
+
+import rabun.oanda.rest.models.Price;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Single producer, multiple consumer ring buffer for ticks, in the style of the LMAX Disruptor.
+ *
+ * The ring holds preallocated {@link Price} slots. The producer copies a tick into the next slot and
+ * advances the cursor; every consumer runs on its own thread and follows the cursor with its own
+ * sequence, so publishing takes no lock and consumers never contend with each other. The producer
+ * only waits when the ring is full, i.e. when the slowest consumer is a whole ring behind.
+ *
+ * A consumer that keeps the producer waiting longer than the slow consumer timeout, or whose handler throws,
+ * is evicted: it stops receiving ticks and no longer holds up the others.
+ *
+ * The dispatcher is also a {@link PriceListener}, so it can be subscribed to a {@link PriceStream} directly.
+ * Only one thread may publish.
+ */
+public class TickDispatcher implements PriceListener, Closeable {
+
+    /**
+     * Sequence counter on its own cache line, so the producer's and consumers' counters do not false share
+     */
+    static final class Sequence {
+        private static final AtomicLongFieldUpdater<Sequence> VALUE =
+                AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long value = -1;
+        long q1, q2, q3, q4, q5, q6, q7;
+
+        long get() {
+            return value;
+        }
+
+        void set(long value) {
+            VALUE.lazySet(this, value);
+        }
+    }
+
+    private final Price[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final long slowConsumerNanos;
+
+    private final Sequence cursor = new Sequence();
+    private long next = -1;
+    private long cachedGate = -1;
+
+    private volatile Consumer[] consumers = new Consumer[0];
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param waitStrategy how producer and consumers wait
+     * @param slowConsumerTimeout how long the producer waits on a full ring before evicting the consumer it waits for,
+     *                            0 to wait indefinitely
+     */
+    public TickDispatcher(int capacity, WaitStrategy waitStrategy, long slowConsumerTimeout, TimeUnit unit) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1)
+            size = 1;
+
+        this.slots = new Price[size];
+        for (int i = 0; i < size; i++)
+            slots[i] = new Price();
+
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.slowConsumerNanos = unit.toNanos(slowConsumerTimeout);
+    }
+
+    public int GetCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Add a consumer with its own thread; it receives the ticks published from now on
+     *
+     * @return the consumer, to follow its lag or remove it
+     */
+    public synchronized Consumer Subscribe(TickHandler handler) {
+        Consumer consumer = new Consumer(handler, cursor.get());
+
+        Consumer[] grown = Arrays.copyOf(consumers, consumers.length + 1);
+        grown[grown.length - 1] = consumer;
+        consumers = grown;
+
+        consumer.thread.start();
+        return consumer;
+    }
+
+    /**
+     * Stop a consumer; the ticks it has not seen yet are dropped for it
+     */
+    public void Unsubscribe(Consumer consumer) {
+        remove(consumer);
+        consumer.running = false;
+    }
+
+    public int GetConsumerCount() {
+        return consumers.length;
+    }
+
+    /**
+     * @return sequence of the last published tick, -1 before the first
+     */
+    public long GetCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Copy a tick into the ring and make it visible to the consumers. Producer thread only.
+     *
+     * @return the tick's sequence
+     */
+    public long Publish(Price price) {
+        long sequence = claim();
+        Price slot = slots[(int) sequence & mask];
+
+        slot.instrument = price.instrument;
+        slot.time = price.time;
+        slot.timeMicros = price.timeMicros;
+        slot.bid = price.bid;
+        slot.ask = price.ask;
+        slot.status = price.status;
+
+        cursor.set(sequence);
+        return sequence;
+    }
+
+    /**
+     * Publish without creating a Price, e.g. from a decoder. Producer thread only.
+     */
+    public long Publish(String instrument, long timeMicros, float bid, float ask) {
+        long sequence = claim();
+        Price slot = slots[(int) sequence & mask];
+
+        slot.instrument = instrument;
+        slot.time = null;
+        slot.timeMicros = timeMicros;
+        slot.bid = bid;
+        slot.ask = ask;
+        slot.status = null;
+
+        cursor.set(sequence);
+        return sequence;
+    }
+
+    @Override
+    public void onPrice(Price price) {
+        Publish(price);
+    }
+
+    /**
+     * Stop all consumers after they have handled what is published
+     */
+    @Override
+    public void close() {
+        running = false;
+
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait until the slot after the last published one is free
+     */
+    private long claim() {
+        long sequence = ++next;
+        long wrap = sequence - slots.length;
+
+        if (wrap > cachedGate) {
+            long waitingSince = 0;
+            int attempt = 0;
+
+            while (wrap > (cachedGate = minimumSequence(sequence - 1))) {
+                if (slowConsumerNanos > 0) {
+                    long now = System.nanoTime();
+                    if (waitingSince == 0) {
+                        waitingSince = now;
+                    } else if (now - waitingSince > slowConsumerNanos) {
+                        evictSlowest(sequence - 1);
+                        waitingSince = 0;
+                        continue;
+                    }
+                }
+                waitStrategy.idle(attempt++);
+            }
+        }
+
+        return sequence;
+    }
+
+    private long minimumSequence(long limit) {
+        long minimum = limit;
+        for (Consumer consumer : consumers)
+            minimum = Math.min(minimum, consumer.sequence.get());
+        return minimum;
+    }
+
+    private void evictSlowest(long published) {
+        Consumer slowest = null;
+        for (Consumer consumer : consumers) {
+            if (slowest == null || consumer.sequence.get() < slowest.sequence.get())
+                slowest = consumer;
+        }
+
+        if (slowest != null) {
+            remove(slowest);
+            slowest.evictedLag = published - slowest.sequence.get();
+            slowest.running = false;
+        }
+    }
+
+    private synchronized void remove(Consumer consumer) {
+        Consumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == consumer) {
+                Consumer[] shrunk = new Consumer[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                consumers = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * A subscribed handler and the thread that feeds it
+     */
+    public final class Consumer {
+        private final TickHandler handler;
+        private final Sequence sequence = new Sequence();
+        private final Thread thread;
+
+        private volatile boolean running = true;
+        private volatile long evictedLag = -1;
+        private volatile long handled;
+
+        private Consumer(TickHandler handler, long start) {
+            this.handler = handler;
+            this.sequence.set(start);
+            this.thread = new Thread(this::run, "oanda-tick-consumer");
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * @return ticks published that this consumer has not handled yet
+         */
+        public long GetLag() {
+            return cursor.get() - sequence.get();
+        }
+
+        public long GetHandled() {
+            return handled;
+        }
+
+        public boolean IsEvicted() {
+            return evictedLag >= 0;
+        }
+
+        private void run() {
+            long nextSequence = sequence.get() + 1;
+            long count = 0;
+            int attempt = 0;
+
+            while (running) {
+                long available = cursor.get();
+
+                if (available < nextSequence) {
+                    if (!TickDispatcher.this.running)
+                        break;
+                    waitStrategy.idle(attempt++);
+                    continue;
+                }
+
+                attempt = 0;
+                for (long s = nextSequence; s <= available && running; s++) {
+                    try {
+                        handler.onTick(slots[(int) s & mask], s, s == available);
+                    } catch (RuntimeException e) {
+                        // a consumer that stops here must not hold up the producer once the ring wraps
+                        remove(this);
+                        evictedLag = cursor.get() - s + 1;
+                        running = false;
+                        break;
+                    }
+                    count++;
+                }
+
+                handled = count;
+                sequence.set(available);
+                nextSequence = available + 1;
+            }
+
+            if (evictedLag >= 0)
+                handler.onEvicted(evictedLag);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package rabun.oanda.rest.streaming;
+
+import rabun.oanda.rest.models.Price;
+
+/**
+ * Consumer of a {@link TickDispatcher}
+ */
+public interface TickHandler {
+
+    /**
+     * A tick was published.
+     * The price is a slot of the ring buffer that is reused once every consumer is past it:
+     * read it here, copy it if it has to be kept.
+     *
+     * @param sequence position of the tick in the stream of ticks
+     * @param endOfBatch true for the last tick that is currently available, e.g. to flush work
+     */
+    void onTick(Price price, long sequence, boolean endOfBatch);
+
+    /**
+     * The consumer fell so far behind that it held up the producer for longer than the slow consumer timeout,
+     * or {@link #onTick} threw, and it was removed from the dispatcher. Called on the consumer's thread,
+     * no more ticks follow.
+     *
+     * @param lag ticks published that the consumer did not handle, including the one it threw on
+     */
+    default void onEvicted(long lag) {
+    }
+}
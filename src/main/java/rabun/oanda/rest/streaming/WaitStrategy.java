@@ -0,0 +1,44 @@
+package rabun.oanda.rest.streaming;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a {@link TickDispatcher} thread does while it waits for the other side
+ */
+public enum WaitStrategy {
+    /**
+     * Spin on the sequence. Lowest latency, burns a core per waiting thread
+     */
+    busySpin {
+        @Override
+        void idle(int attempt) {
+        }
+    },
+    /**
+     * Spin briefly, then give up the processor between checks
+     */
+    yielding {
+        @Override
+        void idle(int attempt) {
+            if (attempt > 100)
+                Thread.yield();
+        }
+    },
+    /**
+     * Spin briefly, then sleep in short parks. Highest latency, near zero idle cpu
+     */
+    parking {
+        @Override
+        void idle(int attempt) {
+            if (attempt > 200)
+                LockSupport.parkNanos(50000);
+            else if (attempt > 100)
+                Thread.yield();
+        }
+    };
+
+    /**
+     * @param attempt how many times in a row the waiting thread found nothing to do
+     */
+    abstract void idle(int attempt);
+}
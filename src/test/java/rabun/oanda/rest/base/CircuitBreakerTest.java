@@ -0,0 +1,99 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.junit.Test;
+import rabun.oanda.rest.endpoints.OrderEndpoints;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.mock.MockRestServer;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private final RouteTemplate candles = RouteTemplate.compile("/v1/candles");
+
+    @Test
+    public void testOpensAndCloses() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().failureRate(0.5, 10).openTime(50).probes(2).build();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.allow(candles));
+            breaker.record(candles, true);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.allow(candles));
+            breaker.record(candles, false);
+        }
+        // 4 failures out of 8 requests
+        assertEquals(CircuitBreaker.State.open, breaker.GetState("/v1/candles"));
+        assertFalse(breaker.allow(candles));
+        assertEquals(1, breaker.GetRejected());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allow(candles));
+        assertTrue(breaker.allow(candles));
+        assertFalse(breaker.allow(candles));
+        assertEquals(CircuitBreaker.State.halfOpen, breaker.GetState("/v1/candles"));
+
+        breaker.record(candles, true);
+        breaker.record(candles, true);
+        assertEquals(CircuitBreaker.State.closed, breaker.GetState("/v1/candles"));
+        assertTrue(breaker.allow(candles));
+        assertEquals(1, breaker.GetOpened());
+    }
+
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().failureRate(1, 2).openTime(50).build();
+
+        breaker.allow(candles);
+        breaker.record(candles, false);
+        assertEquals(CircuitBreaker.State.open, breaker.GetState("/v1/candles"));
+
+        Thread.sleep(60);
+        assertTrue(breaker.allow(candles));
+        breaker.record(candles, false);
+        assertEquals(CircuitBreaker.State.open, breaker.GetState("/v1/candles"));
+        assertFalse(breaker.allow(candles));
+    }
+
+    @Test
+    public void testUnhealthyRouteFailsFast() throws Exception {
+        MockRestServer server = MockRestServer.start();
+        OandaClient client = OandaClient.builder()
+                .circuitBreaker(CircuitBreaker.builder().failureRate(0.5, 10).openTime(60000).build())
+                .build();
+        try {
+            RateEndpoints rates = new RateEndpoints("key", Endpoint.AccountType.practice, client);
+            OrderEndpoints orders = new OrderEndpoints("key", Endpoint.AccountType.practice, client);
+            rates.SetUrl(server.GetUrl());
+            orders.SetUrl(server.GetUrl());
+
+            server.FailNext(503, 5);
+            for (int i = 0; i < 5; i++) {
+                try {
+                    rates.GetCandles("EUR_USD", GranularityType.M1, 10, null, null, CandleFormat.midpoint, null, null, null);
+                    fail();
+                } catch (UnirestException expected) {
+                }
+            }
+            long requests = server.GetRequests();
+
+            try {
+                rates.GetCandles("EUR_USD", GranularityType.M1, 10, null, null, CandleFormat.midpoint, null, null, null);
+                fail();
+            } catch (RequestRejectedException expected) {
+            }
+            assertEquals(requests, server.GetRequests());
+
+            // other routes are not affected
+            assertTrue(orders.GetOrders(1234).isEmpty());
+            assertEquals(CircuitBreaker.State.closed, client.GetCircuitBreaker().GetState("/v1/accounts/{account_id}/orders"));
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+}
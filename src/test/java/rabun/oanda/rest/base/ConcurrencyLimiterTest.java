@@ -0,0 +1,79 @@
+package rabun.oanda.rest.base;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    private final RouteTemplate candles = RouteTemplate.compile("/v1/candles");
+    private final RouteTemplate orders = RouteTemplate.compile("/v1/accounts/{account_id}/orders");
+
+    private static final long ms = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testQueueAndReject() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().limit(2, 1, 2).maxQueue(1).build();
+
+        assertTrue(limiter.acquire(candles).isDone());
+        assertTrue(limiter.acquire(candles).isDone());
+
+        CompletableFuture<Void> queued = limiter.acquire(candles);
+        assertFalse(queued.isDone());
+        assertEquals(1, limiter.GetQueueDepth("/v1/candles"));
+
+        try {
+            limiter.acquire(candles).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RequestRejectedException);
+        }
+        assertEquals(1, limiter.GetRejected());
+
+        // other routes have their own limit
+        assertTrue(limiter.acquire(orders).isDone());
+
+        limiter.release(candles, 10 * ms, false);
+        assertTrue(queued.isDone());
+        assertEquals(2, limiter.GetInFlight("/v1/candles"));
+    }
+
+    @Test
+    public void testLimitAdapts() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().limit(10, 2, 20).build();
+
+        // a busy, healthy route grows its limit
+        for (int i = 0; i < 200; i++) {
+            List<CompletableFuture<Void>> slots = new ArrayList<>();
+            int limit = limiter.GetLimit("/v1/candles");
+            for (int j = 0; j < limit; j++)
+                slots.add(limiter.acquire(candles));
+            for (CompletableFuture<Void> slot : slots) {
+                assertTrue(slot.isDone());
+                limiter.release(candles, 10 * ms, false);
+            }
+        }
+        assertEquals(20, limiter.GetLimit("/v1/candles"));
+
+        // slow responses shrink it, at most once per round trip
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(candles);
+            limiter.release(candles, 500 * ms, false);
+        }
+        assertEquals(18, limiter.GetLimit("/v1/candles"));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(candles);
+            limiter.release(candles, 0, true);
+            Thread.sleep(1);
+        }
+        assertTrue(limiter.GetLimit("/v1/candles") < 10);
+        assertEquals(10, limiter.GetLimit("/v1/accounts/{account_id}/orders"));
+    }
+}
@@ -0,0 +1,177 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OandaClientTest {
+
+    private HttpServer server;
+    private OandaClient client;
+    private String base;
+    private final AtomicInteger slowHits = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            InputStream in = exchange.getRequestBody();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while ((read = in.read(buf)) > 0)
+                body.write(buf, 0, read);
+
+            String json = "{\"method\":\"" + exchange.getRequestMethod() + "\""
+                    + ",\"query\":\"" + exchange.getRequestURI().getRawQuery() + "\""
+                    + ",\"body\":\"" + body.toString("UTF-8") + "\""
+                    + ",\"auth\":\"" + exchange.getRequestHeaders().getFirst("Authorization") + "\"}";
+
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            slowHits.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            byte[] bytes = ("{\"query\":\"" + exchange.getRequestURI().getRawQuery() + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = OandaClient.builder()
+                .maxConnectionsPerRoute(2)
+                .connectTimeout(2000)
+                .socketTimeout(2000)
+                .ioThreads(1)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        assertEquals(2, client.GetMaxConnectionsPerRoute());
+        assertEquals(2000, client.GetSocketTimeout());
+        assertTrue(client.IsTcpNoDelay());
+
+        try {
+            OandaClient.builder().maxConnectionsPerRoute(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testGetQuery() throws Exception {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("instruments", "EUR_USD,USD JPY");
+        fields.put("since", null);
+        fields.put("count", 5);
+
+        HttpResponse<JsonNode> response = client.send(HttpMethod.GET, base + "/echo", fields,
+                Collections.singletonMap("Authorization", "Bearer key"), JsonNode.class).get();
+
+        assertEquals(200, response.getCode());
+        assertEquals("GET", response.getBody().getObject().getString("method"));
+        assertEquals("instruments=EUR_USD%2CUSD+JPY&count=5", response.getBody().getObject().getString("query"));
+        assertEquals("Bearer key", response.getBody().getObject().getString("auth"));
+    }
+
+    @Test
+    public void testPostForm() throws Exception {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("instrument", "EUR_USD");
+        fields.put("units", 100);
+
+        HttpResponse<JsonNode> response = client.send(HttpMethod.POST, base + "/echo", fields,
+                null, JsonNode.class).get();
+
+        assertEquals("POST", response.getBody().getObject().getString("method"));
+        assertEquals("instrument=EUR_USD&units=100", response.getBody().getObject().getString("body"));
+    }
+
+    @Test
+    public void testEndpointUsesClient() throws Exception {
+        Endpoint endpoint = new Endpoint("key", Endpoint.AccountType.practice, client) {
+        };
+
+        assertSame(client, endpoint.GetClient());
+        assertEquals("Bearer key",
+                endpoint.Get(null, null, base + "/echo").getBody().getObject().getString("auth"));
+    }
+
+    @Test
+    public void testConnectionFailure() throws Exception {
+        server.stop(0);
+
+        try {
+            client.send(HttpMethod.GET, base + "/echo", null, null, JsonNode.class).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnirestException);
+        }
+    }
+
+    @Test
+    public void testSharedGet() throws Exception {
+        Map<String, String> headers = Collections.singletonMap("Authorization", "Bearer key");
+        Map<String, Object> fields = Collections.<String, Object>singletonMap("instrument", "EUR_USD");
+
+        CompletableFuture<HttpResponse<JsonNode>> first = client.sendShared(Priority.normal, null, HttpMethod.GET,
+                base + "/slow", fields, headers, JsonNode.class);
+        CompletableFuture<HttpResponse<JsonNode>> second = client.sendShared(Priority.normal, null, HttpMethod.GET,
+                base + "/slow", fields, headers, JsonNode.class);
+        CompletableFuture<HttpResponse<JsonNode>> otherToken = client.sendShared(Priority.normal, null, HttpMethod.GET,
+                base + "/slow", fields, Collections.singletonMap("Authorization", "Bearer other"), JsonNode.class);
+
+        assertEquals("instrument=EUR_USD", first.get().getBody().getObject().getString("query"));
+        assertEquals("instrument=EUR_USD", second.get().getBody().getObject().getString("query"));
+        assertNotSame(first.get().getBody(), second.get().getBody());
+        otherToken.get();
+
+        assertEquals(2, slowHits.get());
+        assertEquals(1, client.GetSharedRequests());
+
+        // nothing in flight anymore, so the next one goes out again
+        client.sendShared(Priority.normal, null, HttpMethod.GET, base + "/slow", fields, headers, JsonNode.class).get();
+        assertEquals(3, slowHits.get());
+    }
+}
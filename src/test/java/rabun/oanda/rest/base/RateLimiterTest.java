@@ -0,0 +1,77 @@
+package rabun.oanda.rest.base;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    private final RouteTemplate candles = RouteTemplate.compile("/v1/candles");
+    private final RouteTemplate orders = RouteTemplate.compile("/v1/accounts/{account_id}/orders");
+    private final RouteTemplate transactions = RouteTemplate.compile("/v1/accounts/{account_id}/transactions");
+
+    @Test
+    public void testBurst() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().rate(1, 3).build();
+
+        for (int i = 0; i < 3; i++)
+            assertTrue(limiter.acquire(Priority.normal, null).isDone());
+
+        CompletableFuture<Void> fourth = limiter.acquire(Priority.normal, null);
+        assertFalse(fourth.isDone());
+        assertEquals(1, limiter.GetQueueDepth(Priority.normal));
+
+        fourth.get(3, TimeUnit.SECONDS);
+        assertEquals(0, limiter.GetQueueDepth(Priority.normal));
+        assertEquals(4, limiter.GetGranted(Priority.normal));
+    }
+
+    @Test
+    public void testHighPriorityFirst() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().rate(20, 1).build();
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        limiter.acquire(Priority.low, candles).get();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final String name = "low" + i;
+            futures.add(limiter.acquire(Priority.low, candles).thenRun(() -> order.add(name)));
+        }
+        futures.add(limiter.acquire(Priority.high, orders).thenRun(() -> order.add("high")));
+
+        assertEquals(3, limiter.GetQueueDepth(Priority.low));
+        assertEquals(1, limiter.GetQueueDepth(Priority.high));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(5, TimeUnit.SECONDS);
+
+        assertEquals("high", order.get(0));
+        assertEquals("low0", order.get(1));
+        assertEquals(3, limiter.GetMaxQueueDepth(Priority.low));
+    }
+
+    @Test
+    public void testRouteLimit() throws Exception {
+        RateLimiter limiter = RateLimiter.builder()
+                .route(transactions.route(), 1.0 / 60, 1)
+                .build();
+
+        assertTrue(limiter.acquire(Priority.low, transactions).isDone());
+
+        CompletableFuture<Void> second = limiter.acquire(Priority.low, transactions);
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.GetQueueDepth(transactions.route()));
+
+        // other routes are not held back by the waiting request
+        assertTrue(limiter.acquire(Priority.low, candles).isDone());
+        assertTrue(limiter.acquire(Priority.normal, null).isDone());
+
+        second.cancel(false);
+    }
+}
@@ -0,0 +1,126 @@
+package rabun.oanda.rest.base;
+
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.mock.MockRestServer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    private final RouteTemplate prices = RouteTemplate.compile("/v1/prices");
+
+    @Test
+    public void testRetriesServerErrors() throws Exception {
+        MockRestServer server = MockRestServer.start();
+        try {
+            RateEndpoints rates = new RateEndpoints("key", Endpoint.AccountType.practice);
+            rates.SetUrl(server.GetUrl());
+
+            RetryPolicy policy = RetryPolicy.builder().retries(3).backoff(1, 10).build();
+            rates.SetRetryPolicy(policy);
+
+            server.FailNext(503, 2);
+            assertEquals(1, rates.GetPrices("EUR_USD").size());
+            assertEquals(2, policy.GetRetries());
+
+            server.FailNext(429, 4);
+            try {
+                rates.GetPrices("EUR_USD");
+                fail();
+            } catch (UnirestException expected) {
+            }
+            assertEquals(5, policy.GetRetries());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().backoff(1, 10).build();
+        AtomicInteger sent = new AtomicInteger();
+
+        HttpResponse<String> response = policy.execute(prices, () -> {
+            sent.incrementAndGet();
+            return respond(400, null);
+        }, null).get(1, TimeUnit.SECONDS);
+
+        assertEquals(400, response.getCode());
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void testLongRetryAfterIsNotWaitedFor() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().backoff(1, 1000).build();
+        AtomicInteger sent = new AtomicInteger();
+
+        HttpResponse<String> response = policy.execute(prices, () -> {
+            sent.incrementAndGet();
+            return respond(429, "60");
+        }, null).get(1, TimeUnit.SECONDS);
+
+        assertEquals(429, response.getCode());
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().retries(3).backoff(1, 1).budget(0, 0).build();
+        AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            HttpResponse<String> response = policy.execute(prices, () -> {
+                sent.incrementAndGet();
+                return respond(503, null);
+            }, null).get(1, TimeUnit.SECONDS);
+            assertEquals(503, response.getCode());
+        }
+
+        // the 10 tokens of the initial budget, not 3 retries for each of the 5 requests
+        assertEquals(15, sent.get());
+        assertEquals(10, policy.GetRetries());
+        assertTrue(policy.GetBudgetExhausted() > 0);
+    }
+
+    @Test
+    public void testHedgesSlowRequest() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().hedgePercentile(90).minHedgeDelay(5).build();
+
+        for (int i = 0; i < 32; i++)
+            policy.execute(prices, () -> respond(200, null), null).get();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), policy.GetHedgeDelay("/v1/prices"));
+
+        CompletableFuture<HttpResponse<String>> slow = new CompletableFuture<>();
+        long started = System.nanoTime();
+        HttpResponse<String> response = policy.execute(prices, () -> slow, () -> respond(200, null))
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getCode());
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, policy.GetHedges());
+        assertEquals(1, policy.GetHedgeWins());
+
+        // the slow answer arriving later changes nothing
+        slow.complete(respond(500, null).get());
+        assertEquals(0, policy.GetRetries());
+    }
+
+    private static CompletableFuture<HttpResponse<String>> respond(int status, String retryAfter) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+        response.setEntity(new StringEntity("{}", "UTF-8"));
+        if (retryAfter != null)
+            response.setHeader("Retry-After", retryAfter);
+
+        return CompletableFuture.completedFuture(new HttpResponse<>(response, String.class));
+    }
+}
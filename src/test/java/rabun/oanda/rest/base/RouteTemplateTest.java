@@ -0,0 +1,55 @@
+package rabun.oanda.rest.base;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RouteTemplateTest {
+
+    private final String base = "https://api-fxpractice.oanda.com";
+
+    @Test
+    public void testCompile() throws Exception {
+        RouteTemplate template = RouteTemplate.compile("/v1/accounts/{account_id}/trades/{trade_id}");
+
+        assertEquals(2, template.paramCount());
+        assertEquals("account_id", template.paramName(0));
+        assertEquals("trade_id", template.paramName(1));
+        assertEquals("/v1/accounts/{account_id}/trades/{trade_id}", template.route());
+    }
+
+    @Test
+    public void testExpand() throws Exception {
+        assertEquals(base + "/v1/prices", RouteTemplate.compile("/v1/prices").expand(base));
+        assertEquals(base + "/v1/accounts/12/orders",
+                RouteTemplate.compile("/v1/accounts/{account_id}/orders").expand(base, 12));
+        assertEquals(base + "/v1/accounts/12/orders/34",
+                RouteTemplate.compile("/v1/accounts/{account_id}/orders/{order_id}").expand(base, 12, 34));
+        assertEquals(base + "/v1/accounts/12/positions/EUR_USD",
+                RouteTemplate.compile("/v1/accounts/{account_id}/positions/{instrument}").expand(base, 12, "EUR_USD"));
+    }
+
+    @Test
+    public void testExpandEncodesValues() throws Exception {
+        assertEquals("/v1/accounts/12/positions/A%20B%2FC",
+                RouteTemplate.compile("/v1/accounts/{account_id}/positions/{instrument}").expand(null, 12, "A B/C"));
+    }
+
+    @Test
+    public void testExpandNamed() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("trade_id", "34");
+        values.put("account_id", "12");
+
+        assertEquals(base + "/v1/accounts/12/trades/34",
+                RouteTemplate.compile("/v1/accounts/{account_id}/trades/{trade_id}").expand(base, values));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpandChecksArity() throws Exception {
+        RouteTemplate.compile("/v1/accounts/{account_id}/trades/{trade_id}").expand(base, 12);
+    }
+}
@@ -0,0 +1,81 @@
+package rabun.oanda.rest.benchmarks;
+
+import com.mashape.unirest.http.JsonNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.codec.CandleDecoder;
+import rabun.oanda.rest.models.Candle;
+import rabun.oanda.rest.models.CandleBidAsk;
+import rabun.oanda.rest.models.OandaTypes;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming candle decoding against the JsonNode path RateEndpoints used before.
+ *
+ * Run with -prof gc to compare bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CandleDecodeBenchmark {
+
+    @Param({"500", "5000"})
+    public int candles;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = Payloads.candlesBidAsk(candles);
+    }
+
+    @Benchmark
+    public Candle<CandleBidAsk> jsonNode() {
+        // the body as Unirest hands it over, then one JSONObject lookup per field
+        JsonNode node = new JsonNode(new String(body, StandardCharsets.UTF_8).trim());
+        JSONObject obj = node.getObject();
+
+        Candle<CandleBidAsk> candle = new Candle<>();
+        candle.granularity = OandaTypes.GranularityType.valueOf(obj.getString("granularity"));
+        candle.instrument = obj.getString("instrument");
+
+        JSONArray array = obj.getJSONArray("candles");
+        List<CandleBidAsk> candles = candle.candles;
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            CandleBidAsk candleBidAsk = new CandleBidAsk();
+
+            candleBidAsk.closeAsk = (float) object.getDouble("closeAsk");
+            candleBidAsk.closeBid = (float) object.getDouble("closeBid");
+            candleBidAsk.highAsk = (float) object.getDouble("highAsk");
+            candleBidAsk.highBid = (float) object.getDouble("highBid");
+            candleBidAsk.lowAsk = (float) object.getDouble("lowAsk");
+            candleBidAsk.lowBid = (float) object.getDouble("lowBid");
+            candleBidAsk.openAsk = (float) object.getDouble("openAsk");
+            candleBidAsk.openBid = (float) object.getDouble("openBid");
+            candleBidAsk.complete = object.getBoolean("complete");
+            candleBidAsk.time = object.getString("time");
+            candleBidAsk.volume = object.getLong("volume");
+
+            candles.add(candleBidAsk);
+        }
+
+        return candle;
+    }
+
+    @Benchmark
+    public Candle<CandleBidAsk> streaming() {
+        Candle<CandleBidAsk> candle = new Candle<>();
+        CandleDecoder.decode(new ByteArrayInputStream(body), OandaTypes.CandleFormat.bidask, candle);
+        return candle;
+    }
+}
@@ -0,0 +1,66 @@
+package rabun.oanda.rest.benchmarks;
+
+import com.mashape.unirest.http.HttpResponse;
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.base.Endpoint.AccountType;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Candle;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GetCandles and GetCandleSeries of both candle formats against a response of 500 or 5000 candles,
+ * from the request fields to the decoded candles.
+ *
+ * Run with -prof gc to compare bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CandleEndpointBenchmark {
+
+    @Param({"bidask", "midpoint"})
+    public CandleFormat candleFormat;
+
+    @Param({"500", "5000"})
+    public int candles;
+
+    private RateEndpoints rateEndpoints;
+
+    @Setup
+    public void setUp() {
+        final byte[] body = candleFormat == CandleFormat.bidask ? Payloads.candlesBidAsk(candles)
+                : Payloads.candlesMid(candles);
+
+        rateEndpoints = new RateEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<InputStream>> GetStreamAsync(Priority priority, RouteTemplate route,
+                                                                                Map<String, Object> fields, String endpoint) {
+                return Replay.ok(body, InputStream.class);
+            }
+        };
+    }
+
+    @Benchmark
+    public Candle getCandles() throws Exception {
+        return rateEndpoints.GetCandles("EUR_USD", GranularityType.M1, candles, null, null, candleFormat,
+                null, null, null);
+    }
+
+    @Benchmark
+    public CandleSeries getCandleSeries() throws Exception {
+        return rateEndpoints.GetCandleSeries("EUR_USD", GranularityType.M1, (long) candles, null, null,
+                null, null, null, new CandleSeries(candleFormat, candles));
+    }
+}
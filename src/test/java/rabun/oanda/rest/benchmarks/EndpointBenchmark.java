@@ -0,0 +1,141 @@
+package rabun.oanda.rest.benchmarks;
+
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.base.Endpoint.AccountType;
+import rabun.oanda.rest.base.Priority;
+import rabun.oanda.rest.base.RouteTemplate;
+import rabun.oanda.rest.endpoints.OrderEndpoints;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.endpoints.TradeEndpoints;
+import rabun.oanda.rest.endpoints.TransactionEndpoints;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.Order;
+import rabun.oanda.rest.models.Price;
+import rabun.oanda.rest.models.Trade;
+import rabun.oanda.rest.models.Transaction;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The public endpoint calls against recorded responses: route expansion, field maps and headers, then
+ * the response as Unirest converts it and the endpoint decodes it. Only the http exchange is left out.
+ *
+ * The decode benchmarks answer with a recorded page (50 orders, trades or transactions, 30 prices);
+ * the request benchmarks answer with an empty list, so they measure building the request.
+ * The benchmark profile runs with -prof gc, which reports gc.alloc.rate.norm, the bytes allocated per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndpointBenchmark {
+
+    private static final long accountId = 6531071;
+
+    private final byte[] prices = Replay.recorded("prices.json");
+    private final byte[] orders = Replay.recorded("orders.json");
+    private final byte[] trades = Replay.recorded("trades.json");
+    private final byte[] transactions = Replay.recorded("transactions.json");
+    private final byte[] noOrders = "{\"orders\" : []}".getBytes(StandardCharsets.UTF_8);
+    private final byte[] noCandles = "{\"instrument\" : \"EUR_USD\", \"granularity\" : \"M1\", \"candles\" : []}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final DateTime start = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC);
+    private final DateTime end = start.plusHours(12);
+
+    private RateEndpoints rateEndpoints;
+    private OrderEndpoints orderEndpoints;
+    private OrderEndpoints emptyOrderEndpoints;
+    private TradeEndpoints tradeEndpoints;
+    private TransactionEndpoints transactionEndpoints;
+
+    @Setup
+    public void setUp() {
+        rateEndpoints = new RateEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                                       Map<String, Object> fields, String endpoint) {
+                return Replay.ok(prices, JsonNode.class);
+            }
+
+            @Override
+            protected CompletableFuture<HttpResponse<InputStream>> GetStreamAsync(Priority priority, RouteTemplate route,
+                                                                                Map<String, Object> fields, String endpoint) {
+                return Replay.ok(noCandles, InputStream.class);
+            }
+        };
+        orderEndpoints = new OrderEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                                       Map<String, Object> fields, String endpoint) {
+                return Replay.ok(orders, JsonNode.class);
+            }
+        };
+        emptyOrderEndpoints = new OrderEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                                       Map<String, Object> fields, String endpoint) {
+                return Replay.ok(noOrders, JsonNode.class);
+            }
+        };
+        tradeEndpoints = new TradeEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                                       Map<String, Object> fields, String endpoint) {
+                return Replay.ok(trades, JsonNode.class);
+            }
+        };
+        transactionEndpoints = new TransactionEndpoints("key", AccountType.practice) {
+            @Override
+            protected CompletableFuture<HttpResponse<JsonNode>> GetAsync(Priority priority, RouteTemplate route,
+                                                                       Map<String, Object> fields, String endpoint) {
+                return Replay.ok(transactions, JsonNode.class);
+            }
+        };
+    }
+
+    @Benchmark
+    public List<Price> getPrices() throws UnirestException {
+        return rateEndpoints.GetPrices("EUR_USD,USD_JPY,GBP_USD");
+    }
+
+    @Benchmark
+    public List<Order> getOrders() throws UnirestException {
+        return orderEndpoints.GetOrders(accountId, null, 50L, null, null);
+    }
+
+    @Benchmark
+    public List<Trade> getTrades() throws UnirestException {
+        return tradeEndpoints.GetTrades(accountId, null, 50L, null, null);
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactions() throws UnirestException {
+        return transactionEndpoints.GetTransactions(accountId, 0, 0, 0, null, null);
+    }
+
+    @Benchmark
+    public List<Order> ordersRequest() throws UnirestException {
+        return emptyOrderEndpoints.GetOrders(accountId, 175427639L, 50L, "EUR_USD", null);
+    }
+
+    @Benchmark
+    public CandleSeries candlesRequest() throws Exception {
+        return rateEndpoints.GetCandleSeries("EUR_USD", GranularityType.M1, null, start, end, false, null, null,
+                new CandleSeries(CandleFormat.bidask, 16));
+    }
+}
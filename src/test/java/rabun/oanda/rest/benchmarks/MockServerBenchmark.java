@@ -0,0 +1,71 @@
+package rabun.oanda.rest.benchmarks;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.base.Endpoint.AccountType;
+import rabun.oanda.rest.endpoints.OrderEndpoints;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.mock.MockRestServer;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.Order;
+import rabun.oanda.rest.models.Price;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end calls through the shared client against a {@link MockRestServer} on localhost, from several
+ * threads at once. The server answers after 2 to 3 ms, and 1% of the answers take another 20 ms, so the
+ * sampled percentiles show how the client passes a server's latency tail on to its callers.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MockServerBenchmark {
+
+    private static final long accountId = 1234;
+
+    private MockRestServer server;
+    private RateEndpoints rateEndpoints;
+    private OrderEndpoints orderEndpoints;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = MockRestServer.start();
+        server.SetLatency(2, 1);
+        server.SetSlowResponses(0.01, 20);
+        server.Generate(accountId, 500, 0);
+
+        rateEndpoints = new RateEndpoints("key", AccountType.practice);
+        rateEndpoints.SetUrl(server.GetUrl());
+        orderEndpoints = new OrderEndpoints("key", AccountType.practice);
+        orderEndpoints.SetUrl(server.GetUrl());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public List<Price> getPrices() throws UnirestException {
+        return rateEndpoints.GetPrices("EUR_USD,USD_JPY,GBP_USD");
+    }
+
+    @Benchmark
+    public List<Order> getOrders() throws UnirestException {
+        return orderEndpoints.GetOrders(accountId, null, 50L, null, null);
+    }
+
+    @Benchmark
+    public CandleSeries getCandleSeries() throws Exception {
+        return rateEndpoints.GetCandleSeries("EUR_USD", GranularityType.M1, 500L, null, null, null, null, null,
+                new CandleSeries(CandleFormat.bidask, 500));
+    }
+}
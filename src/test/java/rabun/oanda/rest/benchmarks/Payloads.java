@@ -0,0 +1,169 @@
+package rabun.oanda.rest.benchmarks;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic response bodies shaped like the OANDA v1 payloads
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    public static byte[] candlesBidAsk(int count) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(count * 256);
+        DateTime time = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC);
+        double price = 1.19;
+
+        sb.append("{\n\t\"instrument\" : \"EUR_USD\",\n\t\"granularity\" : \"M1\",\n\t\"candles\" : [\n");
+        for (int i = 0; i < count; i++) {
+            double open = price;
+            double close = open + (random.nextInt(41) - 20) / 100000.0;
+            double high = Math.max(open, close) + random.nextInt(10) / 100000.0;
+            double low = Math.min(open, close) - random.nextInt(10) / 100000.0;
+            price = close;
+
+            if (i > 0)
+                sb.append(",\n");
+            sb.append("\t\t{\n\t\t\t\"time\" : \"").append(time.plusMinutes(i)).append("\",\n");
+            field(sb, "openBid", open).append(",\n");
+            field(sb, "openAsk", open + 0.00012).append(",\n");
+            field(sb, "highBid", high).append(",\n");
+            field(sb, "highAsk", high + 0.00012).append(",\n");
+            field(sb, "lowBid", low).append(",\n");
+            field(sb, "lowAsk", low + 0.00012).append(",\n");
+            field(sb, "closeBid", close).append(",\n");
+            field(sb, "closeAsk", close + 0.00012).append(",\n");
+            sb.append("\t\t\t\"volume\" : ").append(random.nextInt(500) + 1).append(",\n");
+            sb.append("\t\t\t\"complete\" : ").append(i < count - 1).append("\n\t\t}");
+        }
+        sb.append("\n\t]\n}");
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] candlesMid(int count) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(count * 160);
+        DateTime time = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC);
+        double price = 1.19;
+
+        sb.append("{\n\t\"instrument\" : \"EUR_USD\",\n\t\"granularity\" : \"M1\",\n\t\"candles\" : [\n");
+        for (int i = 0; i < count; i++) {
+            double open = price;
+            double close = open + (random.nextInt(41) - 20) / 100000.0;
+            double high = Math.max(open, close) + random.nextInt(10) / 100000.0;
+            double low = Math.min(open, close) - random.nextInt(10) / 100000.0;
+            price = close;
+
+            if (i > 0)
+                sb.append(",\n");
+            sb.append("\t\t{\n\t\t\t\"time\" : \"").append(time.plusMinutes(i)).append("\",\n");
+            field(sb, "openMid", open).append(",\n");
+            field(sb, "highMid", high).append(",\n");
+            field(sb, "lowMid", low).append(",\n");
+            field(sb, "closeMid", close).append(",\n");
+            sb.append("\t\t\t\"volume\" : ").append(random.nextInt(500) + 1).append(",\n");
+            sb.append("\t\t\t\"complete\" : ").append(i < count - 1).append("\n\t\t}");
+        }
+        sb.append("\n\t]\n}");
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Transaction history with the type mix of an active account: mostly orders, fills, closes and interest
+     */
+    public static byte[] transactions(int count) {
+        String[] mix = {
+                "MARKET_ORDER_CREATE", "MARKET_ORDER_CREATE", "MARKET_ORDER_CREATE", "MARKET_ORDER_CREATE",
+                "TRADE_CLOSE", "TRADE_CLOSE", "TRADE_CLOSE", "DAILY_INTEREST", "DAILY_INTEREST", "DAILY_INTEREST",
+                "LIMIT_ORDER_CREATE", "LIMIT_ORDER_CREATE", "ORDER_FILLED", "ORDER_FILLED", "STOP_LOSS_FILLED",
+                "TAKE_PROFIT_FILLED", "ORDER_CANCEL", "TRADE_UPDATE", "STOP_ORDER_CREATE", "ORDER_UPDATE",
+                "TRAILING_STOP_FILLED", "MARKET_IF_TOUCHED_ORDER_CREATE", "TRANSFER_FUNDS", "FEE",
+                "MARGIN_CALL_ENTER", "MARGIN_CALL_EXIT", "MARGIN_CLOSEOUT", "SET_MARGIN_RATE",
+                "MIGRATE_TRADE_OPEN", "MIGRATE_TRADE_CLOSE"
+        };
+
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(count * 300);
+        DateTime time = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC);
+        double balance = 100000;
+
+        sb.append("{\n\t\"transactions\" : [\n");
+        for (int i = 0; i < count; i++) {
+            String type = mix[random.nextInt(mix.length)];
+            long id = 176403879L - i;
+            double price = 1.19 + (random.nextInt(2000) - 1000) / 100000.0;
+            double pl = (random.nextInt(20000) - 10000) / 100.0;
+
+            if (i > 0)
+                sb.append(",\n");
+            sb.append("\t\t{\n\t\t\t\"id\" : ").append(id).append(",\n");
+            sb.append("\t\t\t\"accountId\" : 6531071,\n");
+            sb.append("\t\t\t\"time\" : \"").append(time.minusMinutes(i)).append("\",\n");
+            sb.append("\t\t\t\"type\" : \"").append(type).append("\"");
+
+            switch (type) {
+                case "MARGIN_CALL_ENTER":
+                case "MARGIN_CALL_EXIT":
+                    break;
+                case "SET_MARGIN_RATE":
+                    sb.append(",\n");
+                    field(sb, "rate", 0.02);
+                    break;
+                case "TRANSFER_FUNDS":
+                case "FEE":
+                    sb.append(",\n");
+                    field(sb, "amount", pl).append(",\n");
+                    field(sb, "accountBalance", balance += pl).append(",\n");
+                    sb.append("\t\t\t\"reason\" : \"CLIENT_REQUEST\"");
+                    break;
+                case "DAILY_INTEREST":
+                    sb.append(",\n\t\t\t\"instrument\" : \"EUR_USD\",\n");
+                    field(sb, "interest", pl / 100).append(",\n");
+                    field(sb, "accountBalance", balance += pl / 100);
+                    break;
+                case "ORDER_CANCEL":
+                    sb.append(",\n\t\t\t\"orderId\" : ").append(id - 7).append(",\n");
+                    sb.append("\t\t\t\"reason\" : \"CLIENT_REQUEST\"");
+                    break;
+                default:
+                    sb.append(",\n\t\t\t\"instrument\" : \"EUR_USD\",\n");
+                    sb.append("\t\t\t\"units\" : ").append(1 + random.nextInt(10000)).append(",\n");
+                    sb.append("\t\t\t\"side\" : \"").append(random.nextBoolean() ? "buy" : "sell").append("\",\n");
+                    field(sb, "price", price);
+
+                    if (type.endsWith("_CREATE") && !type.startsWith("MARKET_ORDER")) {
+                        sb.append(",\n\t\t\t\"expiry\" : ").append(time.plusDays(30).getMillis() / 1000).append(",\n");
+                        sb.append("\t\t\t\"reason\" : \"CLIENT_REQUEST\",\n");
+                        field(sb, "takeProfitPrice", price + 0.005).append(",\n");
+                        field(sb, "stopLossPrice", price - 0.005);
+                    } else if (!type.equals("TRADE_UPDATE") && !type.equals("ORDER_UPDATE")) {
+                        sb.append(",\n");
+                        field(sb, "pl", pl).append(",\n");
+                        field(sb, "interest", pl / 1000).append(",\n");
+                        field(sb, "accountBalance", balance += pl).append(",\n");
+                        sb.append("\t\t\t\"tradeId\" : ").append(id - 3);
+                    }
+
+                    if (type.equals("MARKET_ORDER_CREATE") || type.equals("ORDER_FILLED") || type.equals("MIGRATE_TRADE_OPEN"))
+                        sb.append(",\n\t\t\t\"tradeOpened\" : {\"id\" : ").append(id).append(", \"units\" : 10}");
+            }
+            sb.append("\n\t\t}");
+        }
+        sb.append("\n\t]\n}");
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder field(StringBuilder sb, String name, double value) {
+        return sb.append("\t\t\t\"").append(name).append("\" : ").append(String.format(Locale.US, "%.5f", value));
+    }
+}
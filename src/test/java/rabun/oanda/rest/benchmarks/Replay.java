@@ -0,0 +1,51 @@
+package rabun.oanda.rest.benchmarks;
+
+import com.mashape.unirest.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recorded response bodies and responses built from them, so endpoint benchmarks run the request building
+ * and decoding of an endpoint without the network
+ */
+public final class Replay {
+
+    private Replay() {
+    }
+
+    /**
+     * @param name file in src/test/resources/payloads
+     */
+    public static byte[] recorded(String name) {
+        try (InputStream in = Replay.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null)
+                throw new IllegalArgumentException("No recorded payload " + name);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; )
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a 200 response with the body, converted by Unirest as a response off the wire would be
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> ok(byte[] body, Class<T> type) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setHeader("Content-Type", "application/json");
+        response.setEntity(new ByteArrayEntity(body));
+
+        return CompletableFuture.completedFuture(new HttpResponse<>(response, type));
+    }
+}
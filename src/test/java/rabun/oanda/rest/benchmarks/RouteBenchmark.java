@@ -0,0 +1,58 @@
+package rabun.oanda.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.base.RouteTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * URL construction on the order path, the per request regex and String.format route expansion
+ * against a precompiled RouteTemplate.
+ *
+ * Run with -prof gc to compare bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteBenchmark {
+
+    private static final String base = "https://api-fxpractice.oanda.com";
+    private static final String route = "/v1/accounts/{account_id}/orders/{order_id}";
+    private static final RouteTemplate template = RouteTemplate.compile(route);
+
+    public long accountId = 5517316;
+    public long orderId = 175427639;
+
+    @Benchmark
+    public String regex() {
+        String endpoint = String.format("%s%s", base, route);
+
+        Map<String, String> routeParams = new HashMap<>();
+        routeParams.put("account_id", String.valueOf(accountId));
+        routeParams.put("order_id", String.valueOf(orderId));
+
+        Pattern p = Pattern.compile("\\{\\w+}");
+        Matcher matcher = p.matcher(endpoint);
+
+        while (matcher.find()) {
+            String tmp = matcher.group();
+            String spl = tmp.substring(1, tmp.length() - 1);
+
+            endpoint = endpoint.replace(tmp, routeParams.get(spl));
+        }
+
+        return endpoint;
+    }
+
+    @Benchmark
+    public String template() {
+        return template.expand(base, accountId, orderId);
+    }
+}
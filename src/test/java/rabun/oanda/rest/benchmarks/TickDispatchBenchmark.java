@@ -0,0 +1,163 @@
+package rabun.oanda.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.models.Price;
+import rabun.oanda.rest.streaming.TickDispatcher;
+import rabun.oanda.rest.streaming.WaitStrategy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of ticks to several subscriber threads, the ring buffer dispatcher against a bounded
+ * queue per subscriber. throughput publishes a batch and waits until every subscriber has seen it,
+ * latency publishes a single tick and waits until every subscriber has seen it.
+ *
+ * Pick the wait strategy with -p waitStrategy=busySpin; busySpin needs a free core per subscriber.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickDispatchBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"4"})
+    public int consumers;
+
+    @Param({"yielding"})
+    public WaitStrategy waitStrategy;
+
+    private TickDispatcher dispatcher;
+    private TickDispatcher.Consumer[] subscribed;
+
+    private BlockingQueue<Price>[] queues;
+    private QueueConsumer[] queueConsumers;
+
+    private final Price price = new Price();
+    private long published;
+
+    private static final class QueueConsumer extends Thread {
+        final BlockingQueue<Price> queue;
+        volatile long handled;
+        double sum;
+
+        QueueConsumer(BlockingQueue<Price> queue) {
+            this.queue = queue;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    sum += queue.take().bid;
+                    handled++;
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        price.instrument = "EUR_USD";
+        price.bid = 1.1f;
+        price.ask = 1.1002f;
+
+        dispatcher = new TickDispatcher(4096, waitStrategy, 0, TimeUnit.SECONDS);
+        subscribed = new TickDispatcher.Consumer[consumers];
+        for (int i = 0; i < consumers; i++) {
+            final double[] sum = new double[1];
+            subscribed[i] = dispatcher.Subscribe((tick, sequence, endOfBatch) -> sum[0] += tick.bid);
+        }
+
+        queues = new BlockingQueue[consumers];
+        queueConsumers = new QueueConsumer[consumers];
+        for (int i = 0; i < consumers; i++) {
+            queues[i] = new ArrayBlockingQueue<>(4096);
+            queueConsumers[i] = new QueueConsumer(queues[i]);
+            queueConsumers[i].start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.close();
+        for (QueueConsumer consumer : queueConsumers)
+            consumer.interrupt();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void ringThroughput() {
+        for (int i = 0; i < BATCH; i++) {
+            price.timeMicros = i;
+            dispatcher.Publish(price);
+        }
+        awaitRing();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void queueThroughput() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            // a queue needs its own copy per tick, the ring reuses its slots
+            Price tick = copy(i);
+            for (BlockingQueue<Price> queue : queues)
+                queue.put(tick);
+        }
+        published += BATCH;
+        awaitQueues();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void ringLatency() {
+        dispatcher.Publish(price);
+        awaitRing();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queueLatency() throws InterruptedException {
+        Price tick = copy(0);
+        for (BlockingQueue<Price> queue : queues)
+            queue.put(tick);
+        published++;
+        awaitQueues();
+    }
+
+    private Price copy(long time) {
+        Price tick = new Price();
+        tick.instrument = price.instrument;
+        tick.timeMicros = time;
+        tick.bid = price.bid;
+        tick.ask = price.ask;
+        return tick;
+    }
+
+    private void awaitRing() {
+        for (TickDispatcher.Consumer consumer : subscribed) {
+            while (consumer.GetLag() > 0)
+                Thread.yield();
+        }
+    }
+
+    private void awaitQueues() {
+        for (QueueConsumer consumer : queueConsumers) {
+            while (consumer.handled < published)
+                Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package rabun.oanda.rest.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import rabun.oanda.rest.codec.TransactionDecoder;
+import rabun.oanda.rest.models.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a mixed-type transaction history with the per-type decoder table.
+ * decode starts from the parsed JSON array, parseAndDecode includes parsing the response body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionDecodeBenchmark {
+
+    @Param({"100000"})
+    public int transactions;
+
+    private String body;
+    private JSONArray array;
+
+    @Setup
+    public void setUp() {
+        body = new String(Payloads.transactions(transactions), StandardCharsets.UTF_8);
+        array = new JSONObject(body).getJSONArray("transactions");
+    }
+
+    @Benchmark
+    public List<Transaction> decode() {
+        return TransactionDecoder.decode(array);
+    }
+
+    @Benchmark
+    public List<Transaction> parseAndDecode() {
+        return TransactionDecoder.decode(new JSONObject(body).getJSONArray("transactions"));
+    }
+}
@@ -0,0 +1,91 @@
+package rabun.oanda.rest.cache;
+
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Instrument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InstrumentRegistryTest {
+
+    private static class FakeRates extends RateEndpoints {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile String[] names = {"EUR_USD", "USD_JPY"};
+        volatile String fields;
+
+        FakeRates() {
+            super("key", Endpoint.AccountType.practice);
+        }
+
+        @Override
+        public CompletableFuture<List<Instrument>> GetInstrumentsAsync(long accountId, String fields, String instruments) {
+            this.fields = fields;
+            int call = calls.incrementAndGet();
+
+            List<Instrument> list = new ArrayList<>();
+            for (String name : names) {
+                Instrument instrument = new Instrument();
+                instrument.instrument = name;
+                instrument.pip = name.endsWith("JPY") ? 0.01f : 0.0001f;
+                instrument.maxTradeUnits = 10000000L * call;
+                instrument.marginRate = 0.02f;
+                list.add(instrument);
+            }
+            return CompletableFuture.completedFuture(list);
+        }
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        FakeRates rates = new FakeRates();
+        InstrumentRegistry registry = new InstrumentRegistry(rates, 1234).Load();
+
+        assertEquals(InstrumentRegistry.FIELDS, rates.fields);
+        assertEquals(2, registry.Size());
+        assertEquals(0.01f, registry.Get("USD_JPY").pip, 0f);
+        assertEquals(0.02f, registry.Get("EUR_USD").marginRate, 0f);
+
+        int id = registry.IdOf("USD_JPY");
+        assertSame(registry.Get("USD_JPY"), registry.Get(id));
+        assertEquals(-1, registry.IdOf("XAU_USD"));
+        assertNull(registry.Get("XAU_USD"));
+    }
+
+    @Test
+    public void testIdsStableAcrossRefresh() throws Exception {
+        FakeRates rates = new FakeRates();
+        InstrumentRegistry registry = new InstrumentRegistry(rates, 1234).Load();
+        int jpy = registry.IdOf("USD_JPY");
+
+        rates.names = new String[]{"GBP_USD", "USD_JPY"};
+        registry.Load();
+
+        assertEquals(3, registry.Size());
+        assertEquals(jpy, registry.IdOf("USD_JPY"));
+        assertEquals(2, registry.IdOf("GBP_USD"));
+        assertEquals(20000000L, registry.Get("USD_JPY").maxTradeUnits);
+        // gone from the list, but still known
+        assertNotNull(registry.Get("EUR_USD"));
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        FakeRates rates = new FakeRates();
+        InstrumentRegistry registry = new InstrumentRegistry(rates, 1234);
+        registry.StartRefresh(10, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 500 && rates.calls.get() < 3; i++)
+            Thread.sleep(10);
+        registry.close();
+
+        assertTrue(rates.calls.get() >= 3);
+        assertEquals(2, registry.Size());
+    }
+}
@@ -0,0 +1,78 @@
+package rabun.oanda.rest.cache;
+
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Price;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PriceBatcherTest {
+
+    private static class FakeRates extends RateEndpoints {
+        final List<String> requested = Collections.synchronizedList(new ArrayList<String>());
+
+        FakeRates() {
+            super("key", Endpoint.AccountType.practice);
+        }
+
+        @Override
+        public CompletableFuture<List<Price>> GetPricesAsync(String instruments) {
+            requested.add(instruments);
+
+            List<Price> prices = new ArrayList<>();
+            for (String instrument : instruments.split(",")) {
+                Price price = new Price();
+                price.instrument = instrument;
+                price.bid = instrument.length();
+                prices.add(price);
+            }
+            return CompletableFuture.completedFuture(prices);
+        }
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        FakeRates rates = new FakeRates();
+        PriceBatcher batcher = new PriceBatcher(rates, 50, TimeUnit.MILLISECONDS, 100);
+
+        CompletableFuture<Price> eur = batcher.GetPriceAsync("EUR_USD");
+        CompletableFuture<Price> jpy = batcher.GetPriceAsync("USD_JPY");
+        CompletableFuture<Price> eurAgain = batcher.GetPriceAsync("EUR_USD");
+
+        assertFalse(eur.isDone());
+
+        assertEquals("EUR_USD", eur.get(5, TimeUnit.SECONDS).instrument);
+        assertEquals("USD_JPY", jpy.get(5, TimeUnit.SECONDS).instrument);
+        assertSame(eur.get(), eurAgain.get());
+
+        assertEquals(1, rates.requested.size());
+        assertEquals("EUR_USD,USD_JPY", rates.requested.get(0));
+        assertEquals(1, batcher.GetBatches());
+        assertEquals(2.0, batcher.GetAverageBatchSize(), 0.0);
+    }
+
+    @Test
+    public void testSizeCap() throws Exception {
+        FakeRates rates = new FakeRates();
+        PriceBatcher batcher = new PriceBatcher(rates, 1, TimeUnit.MINUTES, 2);
+
+        CompletableFuture<Price> eur = batcher.GetPriceAsync("EUR_USD");
+        CompletableFuture<Price> jpy = batcher.GetPriceAsync("USD_JPY");
+
+        // sent as soon as it is full, long before the window closes
+        assertTrue(eur.isDone());
+        assertTrue(jpy.isDone());
+        assertEquals(2, batcher.GetMaxBatchSize());
+
+        CompletableFuture<Price> gbp = batcher.GetPriceAsync("GBP_USD");
+        assertFalse(gbp.isDone());
+        assertEquals(1, rates.requested.size());
+    }
+}
@@ -0,0 +1,108 @@
+package rabun.oanda.rest.cache;
+
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.Price;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PriceCacheTest {
+
+    /**
+     * Records the requested instrument lists and lets the test decide when they are answered
+     */
+    private static class FakeRates extends RateEndpoints {
+        final List<String> requested = new ArrayList<>();
+        final List<CompletableFuture<List<Price>>> responses = new ArrayList<>();
+
+        FakeRates() {
+            super("key", Endpoint.AccountType.practice);
+        }
+
+        @Override
+        public synchronized CompletableFuture<List<Price>> GetPricesAsync(String instruments) {
+            requested.add(instruments);
+            CompletableFuture<List<Price>> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        }
+
+        void answer(int index, float bid) {
+            List<Price> prices = new ArrayList<>();
+            for (String instrument : requested.get(index).split(",")) {
+                Price price = new Price();
+                price.instrument = instrument;
+                price.bid = bid;
+                price.ask = bid + 0.0002f;
+                prices.add(price);
+            }
+            responses.get(index).complete(prices);
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        FakeRates rates = new FakeRates();
+        PriceCache cache = new PriceCache(rates, 1, TimeUnit.MINUTES);
+
+        CompletableFuture<List<Price>> first = cache.GetPricesAsync("EUR_USD,USD_JPY");
+        CompletableFuture<List<Price>> second = cache.GetPricesAsync("EUR_USD,USD_JPY");
+        CompletableFuture<List<Price>> overlapping = cache.GetPricesAsync("USD_JPY,GBP_USD");
+
+        assertEquals(2, rates.requested.size());
+        assertEquals("EUR_USD,USD_JPY", rates.requested.get(0));
+        assertEquals("GBP_USD", rates.requested.get(1));
+
+        rates.answer(0, 1.1f);
+        rates.answer(1, 1.5f);
+
+        assertEquals(2, first.get().size());
+        assertSame(first.get().get(0), second.get().get(0));
+        assertEquals("USD_JPY", overlapping.get().get(0).instrument);
+        assertEquals("GBP_USD", overlapping.get().get(1).instrument);
+
+        // served from the cache now
+        List<Price> cached = cache.GetPrices("GBP_USD,EUR_USD");
+        assertEquals(2, rates.requested.size());
+        assertEquals(1.5f, cached.get(0).bid, 0f);
+        assertEquals(1.1f, cached.get(1).bid, 0f);
+        assertEquals(2, cache.GetRequests());
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        FakeRates rates = new FakeRates();
+        PriceCache cache = new PriceCache(rates, 0, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<List<Price>> first = cache.GetPricesAsync("EUR_USD");
+        rates.answer(0, 1.1f);
+        first.get();
+
+        Thread.sleep(1);
+        cache.GetPricesAsync("EUR_USD");
+        assertEquals(2, rates.requested.size());
+    }
+
+    @Test
+    public void testFailureReachesAllWaiters() throws Exception {
+        FakeRates rates = new FakeRates();
+        PriceCache cache = new PriceCache(rates, 1, TimeUnit.MINUTES);
+
+        CompletableFuture<List<Price>> first = cache.GetPricesAsync("EUR_USD");
+        CompletableFuture<List<Price>> second = cache.GetPricesAsync("EUR_USD");
+        rates.responses.get(0).completeExceptionally(new IllegalStateException("down"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+
+        // the failed request is not kept in flight
+        cache.GetPricesAsync("EUR_USD");
+        assertEquals(2, rates.requested.size());
+    }
+}
@@ -0,0 +1,146 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import rabun.oanda.rest.models.CandleBidAsk;
+import rabun.oanda.rest.models.CandleMid;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CandleAggregatorTest {
+
+    private static long micros(int year, int month, int day, int hour, int minute, int second) {
+        return new DateTime(year, month, day, hour, minute, second, DateTimeZone.UTC).getMillis() * 1000L;
+    }
+
+    @Test
+    public void testDefaultAlignment() {
+        CandleAlignment alignment = CandleAlignment.DEFAULT;
+
+        // a Wednesday
+        long time = micros(2015, 1, 7, 23, 30, 12);
+
+        assertEquals(micros(2015, 1, 7, 23, 30, 10), alignment.start(GranularityType.S5, time));
+        assertEquals(micros(2015, 1, 7, 23, 30, 0), alignment.start(GranularityType.M15, time));
+        assertEquals(micros(2015, 1, 7, 22, 0, 0), alignment.start(GranularityType.H4, time));
+        assertEquals(micros(2015, 1, 7, 22, 0, 0), alignment.start(GranularityType.D, time));
+        assertEquals(micros(2015, 1, 2, 22, 0, 0), alignment.start(GranularityType.W, time));
+        assertEquals(micros(2015, 1, 1, 22, 0, 0), alignment.start(GranularityType.M, time));
+
+        assertEquals(micros(2015, 1, 8, 2, 0, 0), alignment.end(GranularityType.H4, micros(2015, 1, 7, 22, 0, 0)));
+        assertEquals(micros(2015, 2, 1, 22, 0, 0), alignment.end(GranularityType.M, micros(2015, 1, 1, 22, 0, 0)));
+    }
+
+    @Test
+    public void testDaylightSavingTime() {
+        CandleAlignment alignment = new CandleAlignment(17, WeeklyAlignment.Friday, DateTimeZone.forID("America/New_York"));
+
+        assertEquals(micros(2015, 1, 7, 22, 0, 0), alignment.start(GranularityType.D, micros(2015, 1, 7, 23, 30, 12)));
+
+        // New York switches to daylight saving time on March 8 2015, the trading day is an hour shorter
+        assertEquals(micros(2015, 3, 8, 21, 0, 0), alignment.end(GranularityType.D, micros(2015, 3, 7, 22, 0, 0)));
+        assertEquals(micros(2015, 3, 8, 21, 0, 0), alignment.end(GranularityType.H3, micros(2015, 3, 8, 19, 0, 0)));
+        assertEquals(micros(2015, 7, 7, 21, 0, 0), alignment.start(GranularityType.D, micros(2015, 7, 8, 3, 0, 0)));
+    }
+
+    @Test
+    public void testCustomAlignment() {
+        CandleAggregator aggregator = CandleAggregator.builder()
+                .dailyAlignment((byte) 0)
+                .weeklyAlignment(WeeklyAlignment.Monday)
+                .alignmentTimezone(DateTimeZone.UTC)
+                .build();
+
+        CandleAlignment alignment = aggregator.GetAlignment();
+        long time = micros(2015, 1, 7, 23, 30, 12);
+
+        assertEquals(micros(2015, 1, 7, 0, 0, 0), alignment.start(GranularityType.D, time));
+        assertEquals(micros(2015, 1, 5, 0, 0, 0), alignment.start(GranularityType.W, time));
+        assertEquals(micros(2015, 1, 7, 20, 0, 0), alignment.start(GranularityType.H4, time));
+    }
+
+    @Test
+    public void testCandlesCloseOnNextTick() {
+        CandleAggregator aggregator = CandleAggregator.builder()
+                .granularities(GranularityType.S5, GranularityType.M1, GranularityType.D)
+                .build();
+
+        final List<String> closed = new ArrayList<>();
+        final List<CandleBidAsk> candles = new ArrayList<>();
+        aggregator.Subscribe(new CandleListener() {
+            @Override
+            public void onCandle(String instrument, GranularityType granularity, CandleBidAsk candle) {
+                closed.add(instrument + " " + granularity);
+                candles.add(candle);
+            }
+        });
+
+        long start = micros(2015, 1, 7, 12, 0, 0);
+        aggregator.Update("EUR_USD", start + 1000000, 1.10f, 1.12f);
+        aggregator.Update("EUR_USD", start + 2000000, 1.15f, 1.17f);
+        aggregator.Update("EUR_USD", start + 3000000, 1.05f, 1.07f);
+        aggregator.Update("EUR_USD", start + 4000000, 1.11f, 1.13f);
+        assertTrue(closed.isEmpty());
+
+        CandleBidAsk live = aggregator.GetBidAsk("EUR_USD", GranularityType.M1);
+        assertEquals(start, live.timeMicros);
+        assertEquals(4, live.volume);
+        assertFalse(live.complete);
+        assertNull(aggregator.GetBidAsk("EUR_USD", GranularityType.H1));
+
+        aggregator.Update("EUR_USD", start + 6000000, 1.2f, 1.22f);
+        assertEquals(1, closed.size());
+        assertEquals("EUR_USD S5", closed.get(0));
+
+        CandleBidAsk candle = candles.get(0);
+        assertEquals(start, candle.timeMicros);
+        assertEquals("2015-01-07T12:00:00Z", candle.time.replace(".000000", ""));
+        assertEquals(1.10f, candle.openBid, 0);
+        assertEquals(1.15f, candle.highBid, 0);
+        assertEquals(1.05f, candle.lowBid, 0);
+        assertEquals(1.11f, candle.closeBid, 0);
+        assertEquals(1.17f, candle.highAsk, 0);
+        assertEquals(4, candle.volume);
+        assertTrue(candle.complete);
+
+        // a heartbeat a minute later closes S5 and M1, the daily candle stays open
+        aggregator.Advance(start + 61000000);
+        assertEquals(3, closed.size());
+        assertEquals("EUR_USD M1", closed.get(2));
+        assertEquals(5, candles.get(2).volume);
+        assertEquals(1.22f, candles.get(2).closeAsk, 0);
+        assertEquals(5, aggregator.GetBidAsk("EUR_USD", GranularityType.D).volume);
+    }
+
+    @Test
+    public void testMidpoint() {
+        CandleAggregator aggregator = CandleAggregator.builder().candleFormat(CandleFormat.midpoint).build();
+
+        final List<CandleMid> candles = new ArrayList<>();
+        aggregator.Subscribe(new CandleListener() {
+            @Override
+            public void onCandle(String instrument, GranularityType granularity, CandleMid candle) {
+                if (granularity == GranularityType.S5)
+                    candles.add(candle);
+            }
+        });
+
+        long start = micros(2015, 1, 7, 12, 0, 0);
+        aggregator.Update("EUR_USD", start, 1.0f, 1.2f);
+        aggregator.Update("USD_JPY", start, 120f, 120.02f);
+        aggregator.Update("EUR_USD", start + 5000000, 1.0f, 1.4f);
+
+        assertEquals(1, candles.size());
+        assertEquals(1.1f, candles.get(0).openMid, 1e-6);
+        assertEquals(1.2f, aggregator.GetMid("EUR_USD", GranularityType.S5).openMid, 1e-6);
+        assertEquals(120.01f, aggregator.GetMid("USD_JPY", GranularityType.M).closeMid, 1e-3);
+        assertNull(aggregator.GetBidAsk("EUR_USD", GranularityType.S5));
+    }
+}
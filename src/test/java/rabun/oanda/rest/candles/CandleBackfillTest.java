@@ -0,0 +1,118 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CandleBackfillTest {
+
+    /**
+     * Serves one M1 candle per minute from start to end inclusive, like the api does for a start/end request
+     */
+    private static class FakeRates extends RateEndpoints {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger maxCandles = new AtomicInteger();
+
+        FakeRates() {
+            super("key", Endpoint.AccountType.practice);
+        }
+
+        @Override
+        public CompletableFuture<CandleSeries> GetCandleSeriesAsync(String instrument, GranularityType granularity, Long count,
+                                                                    DateTime start, DateTime end, Boolean includeFirst,
+                                                                    Byte dailyAlignment, WeeklyAlignment weeklyAlignment,
+                                                                    CandleSeries series) {
+            assertNull(count);
+            requests.incrementAndGet();
+
+            return CompletableFuture.supplyAsync(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+
+                long step = CandleTimes.MINUTE;
+                long time = start.getMillis() * 1000L;
+                if (!includeFirst)
+                    time += step;
+
+                int candles = 0;
+                for (; time <= end.getMillis() * 1000L; time += step) {
+                    int i = series.append();
+                    series.time[i] = time;
+                    series.closeBid[i] = time / step;
+                    candles++;
+                }
+                maxCandles.accumulateAndGet(candles, Math::max);
+
+                inFlight.decrementAndGet();
+                return series;
+            }, executor);
+        }
+    }
+
+    @Test
+    public void testWindows() throws Exception {
+        long[] bounds = CandleBackfill.windows(0, 10 * CandleTimes.HOUR, GranularityType.M1, 100);
+
+        // windows share their boundary candle, so 100 candles span 99 minutes
+        assertEquals(8, bounds.length);
+        assertEquals(99 * CandleTimes.MINUTE, bounds[1]);
+        assertEquals(10 * CandleTimes.HOUR, bounds[7]);
+
+        assertEquals(1, CandleBackfill.windows(5, 5, GranularityType.M1, 100).length);
+    }
+
+    @Test
+    public void testAlignedWindowsStayWithinLimit() {
+        // 5000 minutes hold 5001 candles, one more than a request may return
+        long[] bounds = CandleBackfill.windows(0, 5000 * CandleTimes.MINUTE, GranularityType.M1, 5000);
+
+        assertEquals(3, bounds.length);
+        for (int i = 1; i < bounds.length; i++)
+            assertTrue((bounds[i] - bounds[i - 1]) / CandleTimes.MINUTE + 1 <= 5000);
+        assertEquals(5000 * CandleTimes.MINUTE, bounds[2]);
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        FakeRates rates = new FakeRates();
+        CandleBackfill backfill = CandleBackfill.builder(rates).parallelism(3).candlesPerRequest(1000).build();
+
+        DateTime start = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC);
+        DateTime end = start.plusMinutes(10000);
+
+        CandleSeries series = backfill.Fetch("EUR_USD", GranularityType.M1, start, end);
+
+        assertEquals(11, rates.requests.get());
+        assertTrue(rates.maxCandles.get() <= 1000);
+        assertTrue(rates.maxInFlight.get() <= 3);
+        assertEquals("EUR_USD", series.instrument);
+        assertEquals(10001, series.size);
+        for (int i = 1; i < series.size; i++)
+            assertEquals(CandleTimes.MINUTE, series.time[i] - series.time[i - 1]);
+
+        CandleSeries exclusive = backfill.Fetch("EUR_USD", GranularityType.M1, start, end, false);
+        assertEquals(10000, exclusive.size);
+        assertEquals(start.getMillis() * 1000L + CandleTimes.MINUTE, exclusive.time[0]);
+
+        rates.executor.shutdown();
+    }
+}
@@ -0,0 +1,135 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import static org.junit.Assert.*;
+
+public class CandleResamplerTest {
+
+    private static long micros(int year, int month, int day, int hour, int minute) {
+        return new DateTime(year, month, day, hour, minute, DateTimeZone.UTC).getMillis() * 1000L;
+    }
+
+    /**
+     * Hourly midpoint candles from start, the price of candle i is i, the last candle is incomplete
+     */
+    private static CandleSeries hours(long start, int count) {
+        CandleSeries series = new CandleSeries(CandleFormat.midpoint, count);
+        series.instrument = "EUR_USD";
+        series.granularity = GranularityType.H1;
+
+        for (int i = 0; i < count; i++) {
+            int row = series.append();
+            series.time[row] = start + i * CandleTimes.HOUR;
+            series.openMid[row] = i;
+            series.highMid[row] = i + 0.5f;
+            series.lowMid[row] = i - 0.5f;
+            series.closeMid[row] = i + 0.25f;
+            series.volume[row] = 10;
+            series.complete.set(row, i < count - 1);
+        }
+        return series;
+    }
+
+    @Test
+    public void testDailyCandlesAlignAtTwentyTwo() {
+        // Monday 00:00 to Wednesday 12:00
+        CandleSeries source = hours(micros(2015, 1, 5, 0, 0), 60);
+
+        CandleSeries days = CandleResampler.Resample(source, GranularityType.D);
+        assertEquals(GranularityType.D, days.granularity);
+        assertEquals("EUR_USD", days.instrument);
+        assertEquals(3, days.size);
+
+        // the first trading day started on Sunday 22:00 and holds the source hours 0 to 21
+        assertEquals(micros(2015, 1, 4, 22, 0), days.time[0]);
+        assertEquals(0, days.openMid[0], 0);
+        assertEquals(21.5f, days.highMid[0], 0);
+        assertEquals(-0.5f, days.lowMid[0], 0);
+        assertEquals(21.25f, days.closeMid[0], 0);
+        assertEquals(220, days.volume[0]);
+        assertTrue(days.complete.get(0));
+
+        assertEquals(micros(2015, 1, 5, 22, 0), days.time[1]);
+        assertEquals(22, days.openMid[1], 0);
+        assertEquals(240, days.volume[1]);
+        assertTrue(days.complete.get(1));
+
+        assertEquals(micros(2015, 1, 6, 22, 0), days.time[2]);
+        assertFalse(days.complete.get(2));
+    }
+
+    @Test
+    public void testWeeklyAndCustomAlignment() {
+        CandleSeries source = hours(micros(2015, 1, 5, 0, 0), 24 * 14);
+
+        // weeks from Friday 22:00
+        CandleSeries weeks = CandleResampler.Resample(source, GranularityType.W);
+        assertEquals(micros(2015, 1, 2, 22, 0), weeks.time[0]);
+        assertEquals(micros(2015, 1, 9, 22, 0), weeks.time[1]);
+        assertEquals(3, weeks.size);
+
+        CandleSeries mondays = CandleResampler.Resample(source, GranularityType.W, (byte) 0, WeeklyAlignment.Monday);
+        assertEquals(2, mondays.size);
+        assertEquals(micros(2015, 1, 12, 0, 0), mondays.time[1]);
+        assertTrue(mondays.complete.get(0));
+        assertFalse(mondays.complete.get(1));
+
+        // H4 candles start on multiples of four hours from the daily alignment
+        CandleSeries fours = CandleResampler.Resample(source, GranularityType.H4);
+        assertEquals(micros(2015, 1, 4, 22, 0), fours.time[0]);
+        assertEquals(micros(2015, 1, 5, 2, 0), fours.time[1]);
+        assertEquals(20, fours.volume[0]);
+        assertEquals(40, fours.volume[1]);
+    }
+
+    @Test
+    public void testCompleteOnlyWhenPeriodEnds() {
+        // 30 minutes of a bid/ask M1 history, all complete
+        CandleSeries minutes = new CandleSeries(CandleFormat.bidask, 30);
+        minutes.granularity = GranularityType.M1;
+        long start = micros(2015, 1, 5, 10, 0);
+        for (int i = 0; i < 30; i++) {
+            int row = minutes.append();
+            minutes.time[row] = start + i * CandleTimes.MINUTE;
+            minutes.openBid[row] = minutes.highBid[row] = minutes.lowBid[row] = minutes.closeBid[row] = 1 + i;
+            minutes.openAsk[row] = minutes.highAsk[row] = minutes.lowAsk[row] = minutes.closeAsk[row] = 2 + i;
+            minutes.volume[row] = 1;
+            minutes.complete.set(row);
+        }
+
+        CandleSeries quarters = CandleResampler.Resample(minutes, GranularityType.M15);
+        assertEquals(2, quarters.size);
+        assertTrue(quarters.complete.get(1));
+        assertEquals(16, quarters.openBid[1], 0);
+        assertEquals(31, quarters.highAsk[1], 0);
+        assertEquals(30, quarters.closeBid[1], 0);
+
+        CandleSeries hour = CandleResampler.Resample(minutes, GranularityType.H1);
+        assertEquals(1, hour.size);
+        assertFalse(hour.complete.get(0));
+    }
+
+    @Test
+    public void testCanResample() {
+        assertTrue(CandleResampler.canResample(GranularityType.S5, GranularityType.M1));
+        assertTrue(CandleResampler.canResample(GranularityType.M1, GranularityType.M));
+        assertTrue(CandleResampler.canResample(GranularityType.H3, GranularityType.D));
+        assertFalse(CandleResampler.canResample(GranularityType.S10, GranularityType.S15));
+        assertFalse(CandleResampler.canResample(GranularityType.H8, GranularityType.H12));
+        assertFalse(CandleResampler.canResample(GranularityType.W, GranularityType.M));
+        assertFalse(CandleResampler.canResample(GranularityType.H1, GranularityType.M30));
+
+        try {
+            CandleResampler.Resample(hours(0, 1), GranularityType.M15);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package rabun.oanda.rest.candles;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.models.CandleSeries;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+import rabun.oanda.rest.models.OandaTypes.WeeklyAlignment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CandleStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long START = new DateTime(2015, 1, 5, 0, 0, DateTimeZone.UTC).getMillis() * 1000L;
+
+    /**
+     * Market of M1 candles from START up to a moving "now"; the candle at now is incomplete
+     */
+    private static class FakeRates extends RateEndpoints {
+        long now;
+        final List<Boolean> includeFirsts = new ArrayList<>();
+
+        FakeRates() {
+            super("key", Endpoint.AccountType.practice);
+        }
+
+        @Override
+        public CandleSeries GetCandleSeries(String instrument, GranularityType granularity, Long count, DateTime start,
+                                            DateTime end, Boolean includeFirst, Byte dailyAlignment,
+                                            WeeklyAlignment weeklyAlignment, CandleSeries series) {
+            includeFirsts.add(includeFirst);
+
+            long time = Math.max(START, start.getMillis() * 1000L);
+            if (!includeFirst)
+                time += CandleTimes.MINUTE;
+
+            for (; time <= now && series.size < count; time += CandleTimes.MINUTE) {
+                int i = series.append();
+                series.time[i] = time;
+                series.closeMid[i] = now;
+                series.complete.set(i, time < now);
+            }
+            return series;
+        }
+    }
+
+    private static CandleSeries candles(long from, int count, boolean lastComplete) {
+        CandleSeries series = new CandleSeries(CandleFormat.midpoint);
+        for (int i = 0; i < count; i++) {
+            int row = series.append();
+            series.time[row] = from + i * CandleTimes.MINUTE;
+            series.openMid[row] = i;
+            series.closeMid[row] = i + 0.5f;
+            series.volume[row] = 10 + i;
+            series.complete.set(row, i < count - 1 || lastComplete);
+        }
+        return series;
+    }
+
+    @Test
+    public void testWriteAndReopen() throws Exception {
+        CandleFile file = CandleFile.open(folder.getRoot().toPath().resolve("EUR_USD/M1-midpoint.candles"), CandleFormat.midpoint);
+        assertEquals(3000, file.write(candles(START, 3000, true)));
+        // nothing new
+        assertEquals(0, file.write(candles(START, 10, true)));
+        file.close();
+
+        file = CandleFile.open(folder.getRoot().toPath().resolve("EUR_USD/M1-midpoint.candles"), CandleFormat.midpoint);
+        assertEquals(3000, file.size());
+        assertEquals(10, file.indexOf(START + 10 * CandleTimes.MINUTE));
+        assertEquals(11, file.indexOf(START + 10 * CandleTimes.MINUTE + 1));
+        assertEquals(3000, file.indexOf(Long.MAX_VALUE));
+
+        CandleSeries read = file.read(START + 10 * CandleTimes.MINUTE, START + 20 * CandleTimes.MINUTE,
+                new CandleSeries(CandleFormat.midpoint));
+        assertEquals(10, read.size);
+        assertEquals(START + 10 * CandleTimes.MINUTE, read.time[0]);
+        assertEquals(10f, read.openMid[0], 0f);
+        assertEquals(10.5f, read.closeMid[0], 0f);
+        assertEquals(20, read.volume[0]);
+        assertTrue(read.complete.get(9));
+        file.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testFormatMismatch() throws Exception {
+        CandleFile.open(folder.getRoot().toPath().resolve("f.candles"), CandleFormat.midpoint).close();
+        CandleFile.open(folder.getRoot().toPath().resolve("f.candles"), CandleFormat.bidask);
+    }
+
+    @Test
+    public void testIncompleteReplacedInPlace() throws Exception {
+        CandleFile file = CandleFile.open(folder.getRoot().toPath().resolve("f.candles"), CandleFormat.midpoint);
+        file.write(candles(START, 5, false));
+        assertEquals(3, file.lastComplete());
+
+        CandleSeries update = candles(START + 4 * CandleTimes.MINUTE, 2, false);
+        assertEquals(2, file.write(update));
+        assertEquals(6, file.size());
+        assertTrue(file.isComplete(4));
+        assertFalse(file.isComplete(5));
+        file.close();
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        FakeRates rates = new FakeRates();
+        rates.now = START + 12000 * CandleTimes.MINUTE;
+
+        try (CandleStore store = new CandleStore(folder.getRoot().toPath())) {
+            CandleFile file = store.Sync(rates, "EUR_USD", GranularityType.M1, CandleFormat.midpoint,
+                    new DateTime(START / 1000L, DateTimeZone.UTC));
+
+            assertEquals(12001, file.size());
+            assertEquals(11999, file.lastComplete());
+            assertEquals(3, rates.includeFirsts.size());
+            assertTrue(rates.includeFirsts.get(0));
+            assertFalse(rates.includeFirsts.get(1));
+        }
+
+        // restart later: only the new candles are requested
+        rates.now += 3 * CandleTimes.MINUTE;
+        rates.includeFirsts.clear();
+
+        try (CandleStore store = new CandleStore(folder.getRoot().toPath())) {
+            CandleFile file = store.Sync(rates, "EUR_USD", GranularityType.M1, CandleFormat.midpoint, null);
+
+            assertEquals(1, rates.includeFirsts.size());
+            assertFalse(rates.includeFirsts.get(0));
+            assertEquals(12004, file.size());
+            assertTrue(file.isComplete(12000));
+            assertFalse(file.isComplete(12003));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package rabun.oanda.rest.codec;
+
+import org.joda.time.DateTime;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import rabun.oanda.rest.benchmarks.Payloads;
+import rabun.oanda.rest.models.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CandleDecoderTest {
+
+    @Test
+    public void testDecodeBidAsk() throws Exception {
+        byte[] body = Payloads.candlesBidAsk(1200);
+
+        Candle<CandleBidAsk> candle = new Candle<>();
+        // a small buffer makes tokens straddle refills
+        CandleDecoder.decode(new JsonReader(new ByteArrayInputStream(body), 64), OandaTypes.CandleFormat.bidask, candle);
+
+        JSONObject expected = new JSONObject(new String(body, StandardCharsets.UTF_8));
+        JSONArray array = expected.getJSONArray("candles");
+
+        assertEquals("EUR_USD", candle.instrument);
+        assertEquals(OandaTypes.GranularityType.M1, candle.granularity);
+        assertEquals(array.length(), candle.candles.size());
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            CandleBidAsk actual = candle.candles.get(i);
+
+            assertEquals(object.getString("time"), actual.time);
+            assertEquals(new DateTime(actual.time).getMillis() * 1000L, actual.timeMicros);
+            assertEquals((float) object.getDouble("openBid"), actual.openBid, 0f);
+            assertEquals((float) object.getDouble("openAsk"), actual.openAsk, 0f);
+            assertEquals((float) object.getDouble("highBid"), actual.highBid, 0f);
+            assertEquals((float) object.getDouble("highAsk"), actual.highAsk, 0f);
+            assertEquals((float) object.getDouble("lowBid"), actual.lowBid, 0f);
+            assertEquals((float) object.getDouble("lowAsk"), actual.lowAsk, 0f);
+            assertEquals((float) object.getDouble("closeBid"), actual.closeBid, 0f);
+            assertEquals((float) object.getDouble("closeAsk"), actual.closeAsk, 0f);
+            assertEquals(object.getLong("volume"), actual.volume);
+            assertEquals(object.getBoolean("complete"), actual.complete);
+        }
+    }
+
+    @Test
+    public void testDecodeMid() throws Exception {
+        byte[] body = Payloads.candlesMid(50);
+
+        Candle<CandleMid> candle = new Candle<>();
+        CandleDecoder.decode(new ByteArrayInputStream(body), OandaTypes.CandleFormat.midpoint, candle);
+
+        JSONArray array = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("candles");
+
+        assertEquals(array.length(), candle.candles.size());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            CandleMid actual = candle.candles.get(i);
+
+            assertEquals(object.getString("time"), actual.time);
+            assertEquals((float) object.getDouble("openMid"), actual.openMid, 0f);
+            assertEquals((float) object.getDouble("closeMid"), actual.closeMid, 0f);
+            assertEquals(object.getLong("volume"), actual.volume);
+        }
+    }
+
+    @Test
+    public void testDecodeSeries() throws Exception {
+        byte[] body = Payloads.candlesBidAsk(700);
+
+        CandleSeries series = new CandleSeries(OandaTypes.CandleFormat.bidask, 16);
+        CandleDecoder.decode(new ByteArrayInputStream(body), series);
+
+        JSONArray array = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("candles");
+
+        assertEquals("EUR_USD", series.instrument);
+        assertEquals(array.length(), series.size);
+        assertNull(series.openMid);
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+
+            assertEquals(new DateTime(object.getString("time")).getMillis() * 1000L, series.time[i]);
+            assertEquals((float) object.getDouble("openBid"), series.openBid[i], 0f);
+            assertEquals((float) object.getDouble("closeAsk"), series.closeAsk[i], 0f);
+            assertEquals(object.getLong("volume"), series.volume[i]);
+            assertEquals(object.getBoolean("complete"), series.complete.get(i));
+        }
+    }
+
+    @Test
+    public void testSkipsUnknownMembers() throws Exception {
+        String body = "{\"instrument\":\"USD_JPY\",\"extra\":{\"a\":[1,2,{\"b\":null}],\"c\":\"x\\\"y\"},"
+                + "\"granularity\":\"D\",\"candles\":[{\"time\":\"2015-01-05T00:00:00.000000Z\",\"openMid\":1.5e2,\"unknown\":true,"
+                + "\"highMid\":-0.25,\"lowMid\":3,\"closeMid\":\"4.5\",\"volume\":7,\"complete\":false}]}";
+
+        Candle<CandleMid> candle = new Candle<>();
+        CandleDecoder.decode(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                OandaTypes.CandleFormat.midpoint, candle);
+
+        assertEquals("USD_JPY", candle.instrument);
+        assertEquals(OandaTypes.GranularityType.D, candle.granularity);
+        assertEquals(1, candle.candles.size());
+
+        CandleMid mid = candle.candles.get(0);
+        assertEquals(1420416000000000L, mid.timeMicros);
+        assertEquals(150f, mid.openMid, 0f);
+        assertEquals(-0.25f, mid.highMid, 0f);
+        assertEquals(3f, mid.lowMid, 0f);
+        assertEquals(4.5f, mid.closeMid, 0f);
+        assertEquals(7, mid.volume);
+        assertFalse(mid.complete);
+    }
+}
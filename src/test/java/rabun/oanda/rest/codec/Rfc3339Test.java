@@ -0,0 +1,58 @@
+package rabun.oanda.rest.codec;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Rfc3339Test {
+
+    @Test
+    public void testParseOandaFormat() throws Exception {
+        assertEquals(1404273600000000L, Rfc3339.parseMicros("2014-07-02T04:00:00.000000Z"));
+        assertEquals(1404273600123456L, Rfc3339.parseMicros("2014-07-02T04:00:00.123456Z"));
+        assertEquals(1404273600000000L, Rfc3339.parseMicros("2014-07-02T04:00:00Z"));
+        assertEquals(1404273600500000L, Rfc3339.parseMicros("2014-07-02T04:00:00.5Z"));
+    }
+
+    @Test
+    public void testParseOffsets() throws Exception {
+        assertEquals(1404273600000000L, Rfc3339.parseMicros("2014-07-02T06:00:00.000+02:00"));
+        assertEquals(1404273600000000L, Rfc3339.parseMicros("2014-07-01T23:30:00-04:30"));
+    }
+
+    @Test
+    public void testParseUnix() throws Exception {
+        assertEquals(1404273600000000L, Rfc3339.parseMicros("1404273600000000"));
+        assertEquals(1404273600250000L, Rfc3339.parseMicros("1404273600.250000"));
+    }
+
+    @Test
+    public void testMatchesJoda() throws Exception {
+        Random random = new Random(7);
+
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) (random.nextDouble() * 4102444800000L);
+            DateTime time = new DateTime(millis, DateTimeZone.UTC);
+
+            assertEquals(millis * 1000L, Rfc3339.parseMicros(time.toString()));
+            assertEquals(time.toString().replace("Z", "000Z"), Rfc3339.format(millis * 1000L));
+        }
+    }
+
+    @Test
+    public void testFormatRoundTrip() throws Exception {
+        long micros = 1448964000123456L;
+        assertEquals("2015-12-01T10:00:00.123456Z", Rfc3339.format(micros));
+        assertEquals(micros, Rfc3339.parseMicros(Rfc3339.format(micros)));
+        assertEquals("1970-01-01T00:00:00.000000Z", Rfc3339.format(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsGarbage() throws Exception {
+        Rfc3339.parseMicros("2014-07-02 at noon, roughly");
+    }
+}
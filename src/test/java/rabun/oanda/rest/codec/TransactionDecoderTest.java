@@ -0,0 +1,75 @@
+package rabun.oanda.rest.codec;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import rabun.oanda.rest.benchmarks.Payloads;
+import rabun.oanda.rest.models.*;
+import rabun.oanda.rest.models.OandaTypes.TransactionType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TransactionDecoderTest {
+
+    @Test
+    public void testEveryTypeDecodesToItsModel() {
+        JSONObject body = new JSONObject(new String(Payloads.transactions(3000), StandardCharsets.UTF_8));
+        List<Transaction> transactions = TransactionDecoder.decode(body.getJSONArray("transactions"));
+
+        assertEquals(3000, transactions.size());
+
+        Set<TransactionType> seen = EnumSet.noneOf(TransactionType.class);
+        for (Transaction transaction : transactions) {
+            assertNotNull(transaction.type);
+            assertTrue(transaction.id > 0);
+            assertEquals(6531071, transaction.accountId);
+            assertTrue(transaction.timeMicros > 0);
+            seen.add(transaction.type);
+
+            if (transaction.type == TransactionType.TRADE_CLOSE)
+                assertTrue(transaction instanceof TransactionTradeClose);
+            if (transaction.type == TransactionType.DAILY_INTEREST)
+                assertTrue(transaction instanceof TransactionDailyInterest);
+            if (transaction.type == TransactionType.FEE)
+                assertTrue(transaction instanceof TransactionFee);
+        }
+        assertEquals(EnumSet.allOf(TransactionType.class), seen);
+    }
+
+    @Test
+    public void testFields() {
+        TransactionOrderFilled filled = (TransactionOrderFilled) TransactionDecoder.decode(new JSONObject(
+                "{\"id\":176403886,\"accountId\":6765103,\"time\":\"2014-04-07T18:31:05Z\",\"type\":\"ORDER_FILLED\","
+                        + "\"instrument\":\"EUR_USD\",\"units\":2,\"side\":\"buy\",\"price\":1.25,\"pl\":-12.34,\"interest\":0.57,"
+                        + "\"accountBalance\":100000,\"orderId\":176403885,\"tradeOpened\":{\"id\":176403886,\"units\":2}}"));
+
+        assertEquals(TransactionType.ORDER_FILLED, filled.type);
+        assertEquals("EUR_USD", filled.instrument);
+        assertEquals(OandaTypes.Side.buy, filled.side);
+        assertEquals(1.25f, filled.price, 0);
+        assertEquals(176403885, filled.orderId);
+        assertEquals(176403886, filled.tradeOpened.id);
+        assertNull(filled.stopLossPrice);
+        assertEquals(-12.34f, filled.pl, 0);
+        assertEquals(0.57f, filled.interest, 0);
+
+        TransactionTradeClose close = (TransactionTradeClose) TransactionDecoder.decode(new JSONObject(
+                "{\"id\":4,\"type\":\"TRADE_CLOSE\",\"pl\":3.21,\"interest\":-0.05,\"tradeId\":1}"));
+        assertEquals(3.21f, close.pl, 0);
+        assertEquals(-0.05f, close.interest, 0);
+
+        TransactionOrderCancel cancel = (TransactionOrderCancel) TransactionDecoder.decode(new JSONObject(
+                "{\"id\":2,\"type\":\"ORDER_CANCEL\",\"orderId\":1,\"reason\":\"SOMETHING_NEW\"}"));
+        assertEquals(1, cancel.orderId);
+        assertNull(cancel.reason);
+
+        Transaction unknown = TransactionDecoder.decode(new JSONObject("{\"id\":3,\"type\":\"NEW_TYPE\"}"));
+        assertEquals(Transaction.class, unknown.getClass());
+        assertEquals(3, unknown.id);
+        assertNull(unknown.type);
+    }
+}
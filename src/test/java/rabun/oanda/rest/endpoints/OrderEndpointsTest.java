@@ -68,6 +68,17 @@ public class OrderEndpointsTest {
         assertNotNull(o);
     }
 
+    @Test
+    public void testCreateOrderAsync() throws Exception {
+        DateTime d = new DateTime(1448964000000L, DateTimeZone.UTC);
+        Order order = orderEndpoints.CreateOrderAsync(accountId, "EUR_USD", 100, OandaTypes.Side.buy, OandaTypes.OrderType.marketIfTouched, d, 1.09f, 1.06f, 1.08f, null, null).get();
+
+        assertNotNull(order);
+
+        Order o = orderEndpoints.GetOrderAsync(accountId, order.id).get();
+        assertNotNull(o);
+    }
+
     @Test
     public void testUpdateOrder() throws Exception {
         DateTime d = new DateTime(1429804625000L, DateTimeZone.UTC);
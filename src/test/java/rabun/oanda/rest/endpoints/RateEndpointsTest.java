@@ -43,12 +43,27 @@ public class RateEndpointsTest {
         assertTrue(prices.size() > 0);
     }
 
+    @Test
+    public void testGetPricesAsync() throws Exception {
+        List<Price> prices = rateEndpoints.GetPricesAsync("EUR_USD,USD_JPY").get();
+        assertNotNull(prices);
+        assertTrue(prices.size() > 0);
+    }
+
     @Test
     public void testGetCandles() throws Exception {
         Candle candle = rateEndpoints.GetCandles("EUR_USD", OandaTypes.GranularityType.D, 100, null, null, null, null, null, null);
         assertNotNull(candle);
     }
 
+    @Test
+    public void testGetCandleSeries() throws Exception {
+        CandleSeries series = rateEndpoints.GetCandleSeries("EUR_USD", OandaTypes.GranularityType.H1, 100L, null, null,
+                null, null, null, new CandleSeries(OandaTypes.CandleFormat.midpoint));
+        assertNotNull(series);
+        assertTrue(series.size > 0);
+    }
+
     @Test
     public void testGetCandlesMid() throws Exception {
         Candle<CandleMid> candleMidCandle = rateEndpoints.GetCandlesMid("EUR_USD");
@@ -0,0 +1,74 @@
+package rabun.oanda.rest.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.GetCount());
+        assertEquals(0, histogram.GetPercentile(99));
+        assertEquals(0, histogram.GetMean(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        assertEquals(100, histogram.GetCount());
+        assertEquals(50, histogram.GetPercentile(50));
+        assertEquals(99, histogram.GetPercentile(99));
+        assertEquals(100, histogram.GetPercentile(100));
+        assertEquals(50.5, histogram.GetMean(), 1e-9);
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform from 10 us to 10 s
+            values[i] = (long) Math.pow(10, 4 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.GetPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " < " + exact, reported >= exact);
+            assertTrue(percentile + ": " + reported + " > " + exact, reported <= exact + exact / 64);
+        }
+        assertEquals(values[values.length - 1], histogram.GetPercentile(100));
+        assertEquals(values[values.length - 1], histogram.GetMax());
+    }
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(1000);
+        b.record(5000000);
+        b.record(-1);
+
+        a.add(b);
+        assertEquals(3, a.GetCount());
+        assertEquals(5000000, a.GetMax());
+        assertEquals(0, a.GetPercentile(0));
+
+        a.reset();
+        assertEquals(0, a.GetCount());
+        assertEquals(0, a.GetMax());
+        assertEquals(2, b.GetCount());
+    }
+}
@@ -0,0 +1,136 @@
+package rabun.oanda.rest.metrics;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.base.OandaClient;
+import rabun.oanda.rest.endpoints.OrderEndpoints;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.mock.MockRestServer;
+import rabun.oanda.rest.models.OandaTypes;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+
+    private static final long accountId = 1234;
+    private static final String ordersRoute = "/v1/accounts/{account_id}/orders";
+
+    private MockRestServer server;
+    private RequestMetrics metrics;
+    private OandaClient client;
+    private OrderEndpoints orders;
+    private RateEndpoints rates;
+
+    @Before
+    public void setUp() throws Exception {
+        server = MockRestServer.start();
+        metrics = new RequestMetrics();
+        client = OandaClient.builder().metrics(metrics).build();
+
+        orders = new OrderEndpoints("key", Endpoint.AccountType.practice, client);
+        rates = new RateEndpoints("key", Endpoint.AccountType.practice, client);
+        orders.SetUrl(server.GetUrl());
+        rates.SetUrl(server.GetUrl());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        metrics.UnregisterMBeans();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testRoutes() throws Exception {
+        server.SetLatency(20, 0);
+
+        for (int i = 0; i < 3; i++) {
+            orders.CreateOrder(accountId, "EUR_USD", 1000, OandaTypes.Side.buy, OandaTypes.OrderType.market,
+                    null, null, null, null, null, null);
+        }
+        orders.GetOrders(accountId);
+        rates.GetPrices("EUR_USD");
+
+        server.FailNext(500, 1);
+        try {
+            orders.GetOrders(accountId);
+            fail();
+        } catch (UnirestException expected) {
+        }
+
+        RouteMetrics created = metrics.GetRoute(ordersRoute, HttpMethod.POST);
+        assertEquals(3, created.GetRequests());
+        assertEquals(0, created.GetErrors());
+        assertEquals(0, created.GetInFlight());
+        assertEquals(3, created.GetNetwork(200).GetCount());
+        assertTrue(created.GetNetwork(200).GetPercentile(99) >= 20000000);
+        assertEquals(3, created.GetDecode().GetCount());
+        assertEquals(3, created.GetParse().GetCount());
+        assertTrue(created.GetBytesOut() > 0);
+        assertTrue(created.GetBytesIn() > 0);
+
+        RouteMetrics listed = metrics.GetRoute(ordersRoute, HttpMethod.GET);
+        assertEquals(2, listed.GetRequests());
+        assertEquals(1, listed.GetErrors());
+        assertEquals(1, listed.GetNetwork(500).GetCount());
+        assertEquals(1, listed.GetDecode().GetCount());
+        assertEquals(2, listed.GetNetwork().GetCount());
+
+        assertEquals(1, metrics.GetRoute("/v1/prices", HttpMethod.GET).GetRequests());
+        assertNull(metrics.GetRoute("/v1/candles", HttpMethod.GET));
+        assertEquals(3, metrics.GetRoutes().size());
+
+        metrics.Reset();
+        assertEquals(0, created.GetRequests());
+        assertEquals(0, created.GetBytesIn());
+    }
+
+    @Test
+    public void testConnectionFailure() throws Exception {
+        server.close();
+
+        try {
+            rates.GetPrices("EUR_USD");
+            fail();
+        } catch (UnirestException expected) {
+        }
+
+        RouteMetrics prices = metrics.GetRoute("/v1/prices", HttpMethod.GET);
+        assertEquals(1, prices.GetErrors());
+        assertEquals(1, prices.GetNetwork(0).GetCount());
+        assertEquals(0, prices.GetInFlight());
+        assertEquals(0, prices.GetDecode().GetCount());
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        rates.GetPrices("EUR_USD");
+        metrics.RegisterMBeans("test");
+
+        // routes first used after registration are registered too
+        orders.GetOrders(accountId);
+
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName prices = new ObjectName("rabun.oanda.rest:type=RequestMetrics,name=\"test\",route=\"/v1/prices\",method=GET");
+        ObjectName listed = new ObjectName("rabun.oanda.rest:type=RequestMetrics,name=\"test\",route="
+                + ObjectName.quote(ordersRoute) + ",method=GET");
+
+        assertEquals(1L, mbeans.getAttribute(prices, "Requests"));
+        assertEquals("200=1", mbeans.getAttribute(listed, "Statuses"));
+        assertTrue((Double) mbeans.getAttribute(listed, "NetworkP99Millis") > 0);
+
+        mbeans.invoke(listed, "reset", null, null);
+        assertEquals(0L, mbeans.getAttribute(listed, "Requests"));
+
+        metrics.UnregisterMBeans();
+        assertFalse(mbeans.isRegistered(prices));
+    }
+}
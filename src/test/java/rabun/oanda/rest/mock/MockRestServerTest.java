@@ -0,0 +1,190 @@
+package rabun.oanda.rest.mock;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.OrderEndpoints;
+import rabun.oanda.rest.endpoints.PositionEndpoints;
+import rabun.oanda.rest.endpoints.RateEndpoints;
+import rabun.oanda.rest.endpoints.TradeEndpoints;
+import rabun.oanda.rest.endpoints.TransactionEndpoints;
+import rabun.oanda.rest.models.*;
+import rabun.oanda.rest.models.OandaTypes.CandleFormat;
+import rabun.oanda.rest.models.OandaTypes.GranularityType;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+public class MockRestServerTest {
+
+    private static final long accountId = 1234;
+
+    private MockRestServer server;
+    private RateEndpoints rates;
+    private OrderEndpoints orders;
+    private TradeEndpoints trades;
+    private PositionEndpoints positions;
+    private TransactionEndpoints transactions;
+
+    @Before
+    public void setUp() throws Exception {
+        server = MockRestServer.start();
+        server.SetVolatility(0);
+
+        rates = new RateEndpoints("key", Endpoint.AccountType.practice);
+        orders = new OrderEndpoints("key", Endpoint.AccountType.practice);
+        trades = new TradeEndpoints("key", Endpoint.AccountType.practice);
+        positions = new PositionEndpoints("key", Endpoint.AccountType.practice);
+        transactions = new TransactionEndpoints("key", Endpoint.AccountType.practice);
+        for (Endpoint endpoint : new Endpoint[]{rates, orders, trades, positions, transactions})
+            endpoint.SetUrl(server.GetUrl());
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testRates() throws Exception {
+        server.SetPrice("EUR_USD", 1.1012, 1.1014);
+
+        List<Price> prices = rates.GetPrices("EUR_USD,USD_JPY");
+        assertEquals(2, prices.size());
+        assertEquals(1.1012f, prices.get(0).bid, 0f);
+        assertEquals(1.1014f, prices.get(0).ask, 0f);
+        assertTrue(prices.get(0).timeMicros > 0);
+        assertEquals("Bearer key", server.GetLastAuthorization());
+
+        List<Instrument> instruments = rates.GetInstruments(accountId, null, "EUR_USD");
+        assertEquals(1, instruments.size());
+        assertEquals(0.0001f, instruments.get(0).pip, 0f);
+
+        DateTime start = new DateTime(2015, 1, 5, 0, 0, 0);
+        CandleSeries minutes = rates.GetCandleSeries("EUR_USD", GranularityType.M1, null, start, start.plusHours(2),
+                null, null, null, new CandleSeries(CandleFormat.midpoint, 16));
+        assertEquals(120, minutes.size);
+        assertEquals(start.getMillis() * 1000, minutes.time[0]);
+        assertEquals(60000000, minutes.time[1] - minutes.time[0]);
+        assertTrue(minutes.complete.get(119));
+
+        // the same request gets the same candles
+        CandleSeries again = rates.GetCandleSeries("EUR_USD", GranularityType.M1, null, start, start.plusHours(2),
+                null, null, null, new CandleSeries(CandleFormat.midpoint, 16));
+        assertEquals(minutes.closeMid[119], again.closeMid[119], 0f);
+
+        Candle latest = rates.GetCandles("USD_JPY", GranularityType.H1, 50, null, null, CandleFormat.bidask,
+                null, null, null);
+        assertEquals(50, latest.candles.size());
+        assertFalse(((CandleBidAsk) latest.candles.get(49)).complete);
+    }
+
+    @Test
+    public void testTrading() throws Exception {
+        server.SetPrice("EUR_USD", 1.1012, 1.1014);
+
+        Order market = orders.CreateOrder(accountId, "EUR_USD", 1000, OandaTypes.Side.buy, OandaTypes.OrderType.market,
+                null, null, null, null, null, null);
+        assertEquals(1.1014f, market.price, 0f);
+
+        Order limit = orders.CreateOrder(accountId, "EUR_USD", 2000, OandaTypes.Side.sell, OandaTypes.OrderType.limit,
+                DateTime.now().plusDays(1), 1.12f, null, null, null, null);
+        assertEquals(1, orders.GetOrders(accountId).size());
+        assertEquals(1.12f, orders.GetOrder(accountId, limit.id).price, 1e-6f);
+
+        List<Trade> open = trades.GetTrades(accountId, null, null, null, null);
+        assertEquals(1, open.size());
+        assertEquals(market.id, open.get(0).id);
+
+        Position position = positions.GetPosition(accountId, "EUR_USD");
+        assertEquals(1000, position.units);
+        assertEquals(OandaTypes.Side.buy, position.side);
+
+        server.SetPrice("EUR_USD", 1.1112, 1.1114);
+        TradeClosed closed = trades.CloseTrade(accountId, market.id);
+        assertEquals(9.8f, closed.profit, 1e-3f);
+        assertTrue(positions.GetPositions(accountId).isEmpty());
+
+        orders.CloseOrder(accountId, limit.id);
+        assertTrue(orders.GetOrders(accountId).isEmpty());
+
+        List<Transaction> history = transactions.GetTransactions(accountId, 0, 0, 0, null, null);
+        assertEquals(4, history.size());
+        assertEquals(OandaTypes.TransactionType.ORDER_CANCEL, history.get(0).type);
+        assertEquals(OandaTypes.TransactionType.TRADE_CLOSE, history.get(1).type);
+        assertEquals(OandaTypes.TransactionType.LIMIT_ORDER_CREATE, history.get(2).type);
+        assertEquals(OandaTypes.TransactionType.MARKET_ORDER_CREATE, history.get(3).type);
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        server.Generate(accountId, 120, 30);
+
+        int count = 0;
+        long previous = Long.MAX_VALUE;
+        for (Order order : orders.IterateOrders(accountId, null, 50)) {
+            assertTrue(order.id < previous);
+            previous = order.id;
+            count++;
+        }
+        assertEquals(120, count);
+        assertEquals(30, trades.IterateTrades(accountId, null, 50).stream().count());
+        assertEquals(150, transactions.IterateTransactions(accountId, 0, null).stream().count());
+    }
+
+    @Test
+    public void testFaults() throws Exception {
+        server.FailNext(429, 1);
+        try {
+            rates.GetPrices("EUR_USD");
+            fail();
+        } catch (UnirestException e) {
+            assertTrue(e.getMessage().contains("Rate limit"));
+        }
+        assertEquals(1, rates.GetPrices("EUR_USD").size());
+
+        server.SetLatency(100, 0);
+        long start = System.nanoTime();
+        rates.GetPrices("EUR_USD");
+        assertTrue(System.nanoTime() - start >= 100000000);
+
+        server.ClearFaults();
+        server.SetErrorRate(1);
+        try {
+            rates.GetPrices("EUR_USD");
+            fail();
+        } catch (UnirestException e) {
+            assertEquals(4, server.GetRequests());
+        }
+    }
+
+    @Test
+    public void testTransactionFaults() throws Exception {
+        orders.CreateOrder(accountId, "EUR_USD", 100, OandaTypes.Side.buy, OandaTypes.OrderType.market,
+                null, null, null, null, null, null);
+
+        server.FailNext(429, 1);
+        try {
+            transactions.GetTransactionsAsync(accountId, 0, 0, 0, null, null).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof UnirestException);
+            assertTrue(e.getCause().getMessage().contains("Rate limit"));
+        }
+
+        server.FailNext(429, 1);
+        try {
+            transactions.GetTransactions(accountId, 0, 0, 0, null, null);
+            fail();
+        } catch (UnirestException e) {
+            assertTrue(e.getMessage().contains("Rate limit"));
+        }
+
+        assertFalse(transactions.GetTransactions(accountId, 0, 0, 0, null, null).isEmpty());
+    }
+}
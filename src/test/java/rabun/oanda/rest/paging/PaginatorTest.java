@@ -0,0 +1,125 @@
+package rabun.oanda.rest.paging;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.junit.Test;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.TradeEndpoints;
+import rabun.oanda.rest.models.Trade;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PaginatorTest {
+
+    /**
+     * Account with trades 1 to total, pages answered from memory
+     */
+    private static class FakeTrades extends TradeEndpoints {
+        final long total;
+        final List<Long> maxIds = new ArrayList<>();
+        Long failAt;
+
+        FakeTrades(long total) {
+            super("key", Endpoint.AccountType.practice);
+            this.total = total;
+        }
+
+        @Override
+        public synchronized CompletableFuture<List<Trade>> GetTradesAsync(long accountId, Long maxId, Long count,
+                                                                          String instrument, String ids) {
+            maxIds.add(maxId);
+
+            CompletableFuture<List<Trade>> page = new CompletableFuture<>();
+            if (failAt != null && failAt.equals(maxId)) {
+                page.completeExceptionally(new UnirestException("rate limited"));
+                return page;
+            }
+
+            List<Trade> trades = new ArrayList<>();
+            for (long id = maxId == null ? total : maxId; id > 0 && trades.size() < count; id--) {
+                Trade trade = new Trade();
+                trade.id = id;
+                trades.add(trade);
+            }
+            page.complete(trades);
+            return page;
+        }
+    }
+
+    @Test
+    public void testFollowsMaxIdAcrossPages() {
+        FakeTrades trades = new FakeTrades(120);
+
+        List<Long> ids = new ArrayList<>();
+        for (Trade trade : trades.IterateTrades(1, null, 50))
+            ids.add(trade.id);
+
+        assertEquals(120, ids.size());
+        assertEquals(120L, (long) ids.get(0));
+        assertEquals(1L, (long) ids.get(119));
+        assertEquals(3, trades.maxIds.size());
+        assertNull(trades.maxIds.get(0));
+        assertEquals(70L, (long) trades.maxIds.get(1));
+        assertEquals(20L, (long) trades.maxIds.get(2));
+    }
+
+    @Test
+    public void testFetchesLazilyOnePageAhead() {
+        FakeTrades trades = new FakeTrades(1000);
+
+        Iterator<Trade> iterator = trades.IterateTrades(1, null, 100).iterator();
+        assertEquals(1, trades.maxIds.size());
+
+        // taking the first item prefetches the second page
+        assertEquals(1000, iterator.next().id);
+        assertEquals(2, trades.maxIds.size());
+
+        List<Long> first = trades.IterateTrades(1, null, 100).stream().limit(150).map(t -> t.id).collect(Collectors.toList());
+        assertEquals(150, first.size());
+        assertEquals(851L, (long) first.get(149));
+        assertEquals(2 + 3, trades.maxIds.size());
+    }
+
+    @Test
+    public void testEmptyAndExactPages() {
+        assertFalse(new FakeTrades(0).IterateTrades(1, null, 50).iterator().hasNext());
+
+        FakeTrades trades = new FakeTrades(100);
+        assertEquals(100, trades.IterateTrades(1, null, 50).stream().count());
+        // the second page ends at id 1, there is nothing below it to ask for
+        assertEquals(2, trades.maxIds.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageSizeAboveServerMaximumRejected() {
+        new FakeTrades(1000).IterateTrades(1, null, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPageSizeRejected() {
+        new FakeTrades(1000).IterateTrades(1, null, 0);
+    }
+
+    @Test
+    public void testFailedPageEndsIteration() {
+        FakeTrades trades = new FakeTrades(120);
+        trades.failAt = 70L;
+
+        Iterator<Trade> iterator = trades.IterateTrades(1, null, 50).iterator();
+        for (int i = 0; i < 50; i++)
+            iterator.next();
+
+        try {
+            iterator.hasNext();
+            fail();
+        } catch (PagingException e) {
+            assertEquals("rate limited", e.getCause().getMessage());
+        }
+        assertFalse(iterator.hasNext());
+    }
+}
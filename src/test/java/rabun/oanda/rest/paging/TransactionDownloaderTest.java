@@ -0,0 +1,170 @@
+package rabun.oanda.rest.paging;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rabun.oanda.rest.base.Endpoint;
+import rabun.oanda.rest.endpoints.TransactionEndpoints;
+import rabun.oanda.rest.models.Transaction;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TransactionDownloaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Account with every third id from base + 3 to base + 3 * total, pages answered after a random delay
+     */
+    private static class FakeTransactions extends TransactionEndpoints {
+        final long base;
+        final long total;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        volatile long failRange = -1;
+
+        FakeTransactions(long total) {
+            this(0, total);
+        }
+
+        FakeTransactions(long base, long total) {
+            super("key", Endpoint.AccountType.practice);
+            this.base = base;
+            this.total = total;
+        }
+
+        @Override
+        public CompletableFuture<List<Transaction>> GetTransactionsAsync(long accountId, long maxId, long minId, long count,
+                                                                         String instrument, String ids) {
+            final long high = maxId == 0 ? base + 3 * total : Math.min(maxId, base + 3 * total);
+            final long low = minId;
+            requests.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+            CompletableFuture<List<Transaction>> page = new CompletableFuture<>();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(3));
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+
+                if (low == failRange) {
+                    page.completeExceptionally(new UnirestException("connection reset"));
+                    return;
+                }
+
+                List<Transaction> transactions = new ArrayList<>();
+                for (long id = high - (high - base) % 3; id >= Math.max(low, base + 3) && transactions.size() < 50; id -= 3) {
+                    Transaction transaction = new Transaction();
+                    transaction.id = id;
+                    transactions.add(transaction);
+                }
+                page.complete(transactions);
+            });
+            return page;
+        }
+    }
+
+    @Test
+    public void testDownloadsInIdOrder() throws Exception {
+        FakeTransactions transactions = new FakeTransactions(2000);
+        TransactionDownloader downloader = TransactionDownloader.builder(transactions, 1)
+                .rangeSize(500)
+                .parallelism(3)
+                .build();
+
+        final List<Long> ids = new ArrayList<>();
+        long count = downloader.Download(transaction -> ids.add(transaction.id));
+
+        assertEquals(2000, count);
+        assertEquals(2000, ids.size());
+        for (int i = 0; i < ids.size(); i++)
+            assertEquals(3L * (i + 1), (long) ids.get(i));
+
+        assertTrue(transactions.maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testSingleRangeAtATime() throws Exception {
+        // the slot of a range is freed on the completing thread, the next range must not wait for it
+        for (int run = 0; run < 200; run++) {
+            FakeTransactions transactions = new FakeTransactions(300);
+            TransactionDownloader downloader = TransactionDownloader.builder(transactions, 1)
+                    .rangeSize(90)
+                    .parallelism(1)
+                    .bufferedRanges(1)
+                    .build();
+
+            final List<Long> ids = new ArrayList<>();
+            assertEquals(300, downloader.Download(transaction -> ids.add(transaction.id)));
+            for (int i = 0; i < ids.size(); i++)
+                assertEquals(3L * (i + 1), (long) ids.get(i));
+            assertEquals(1, transactions.maxRunning.get());
+        }
+    }
+
+    @Test
+    public void testStartsAtOldestTransaction() throws Exception {
+        // ids are global to all accounts, an account's history starts far above 1
+        FakeTransactions transactions = new FakeTransactions(175000000, 2000);
+        TransactionDownloader downloader = TransactionDownloader.builder(transactions, 1)
+                .rangeSize(1000)
+                .build();
+
+        final List<Long> ids = new ArrayList<>();
+        assertEquals(2000, downloader.Download(transaction -> ids.add(transaction.id)));
+        assertEquals(175000003L, (long) ids.get(0));
+        assertEquals(175006000L, (long) ids.get(ids.size() - 1));
+
+        // newest id, bisecting 175 million ids, then 6 ranges of at most 7 pages
+        assertTrue(String.valueOf(transactions.requests.get()), transactions.requests.get() < 100);
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("account.checkpoint");
+        FakeTransactions transactions = new FakeTransactions(1000);
+        // the ranges start at the oldest transaction, id 3
+        transactions.failRange = 1803;
+
+        TransactionDownloader downloader = TransactionDownloader.builder(transactions, 1)
+                .rangeSize(600)
+                .parallelism(2)
+                .checkpoint(checkpoint)
+                .build();
+
+        final List<Long> ids = new ArrayList<>();
+        try {
+            downloader.Download(transaction -> ids.add(transaction.id));
+            fail();
+        } catch (UnirestException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+
+        // the ranges up to 1802 were handled before the failing one
+        assertEquals(1802, downloader.GetCheckpoint());
+        assertEquals(600, ids.size());
+
+        transactions.failRange = -1;
+        downloader.Download(transaction -> ids.add(transaction.id));
+
+        assertEquals(1000, ids.size());
+        for (int i = 0; i < ids.size(); i++)
+            assertEquals(3L * (i + 1), (long) ids.get(i));
+        assertEquals(3000, downloader.GetCheckpoint());
+
+        assertEquals(0, downloader.Download(transaction -> fail()));
+    }
+}
@@ -0,0 +1,150 @@
+package rabun.oanda.rest.streaming;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rabun.oanda.rest.codec.JsonReader;
+import rabun.oanda.rest.codec.TickDecoder;
+import rabun.oanda.rest.mock.MockStreamServer;
+import rabun.oanda.rest.models.Price;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PriceStreamTest {
+
+    private MockStreamServer server;
+    private PriceStream stream;
+    private final BlockingQueue<Price> prices = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = MockStreamServer.start();
+        stream = new PriceStream("key", server.GetUrl(), 1234, "EUR_USD,USD_JPY");
+        stream.Subscribe(prices::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stream.close();
+        server.close();
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        String body = "{\"tick\":{\"instrument\":\"EUR_USD\",\"time\":\"2015-01-05T10:00:00.123456Z\",\"bid\":1.1985,\"ask\":1.19865}}\n"
+                + "{\"heartbeat\":{\"time\":\"2015-01-05T10:00:05.000000Z\"}}\n";
+        JsonReader reader = new JsonReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        Price price = new Price();
+        assertEquals(TickDecoder.TICK, TickDecoder.next(reader, price));
+        assertEquals("EUR_USD", price.instrument);
+        assertEquals(1.19865f, price.ask, 0f);
+        assertEquals(123456, price.timeMicros % 1000000);
+
+        Price heartbeat = new Price();
+        assertEquals(TickDecoder.HEARTBEAT, TickDecoder.next(reader, heartbeat));
+        assertEquals(price.timeMicros + 4876544, heartbeat.timeMicros);
+
+        assertEquals(TickDecoder.END, TickDecoder.next(reader, new Price()));
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        stream.Start();
+        assertTrue(server.AwaitConnections(1, 5, TimeUnit.SECONDS));
+        assertEquals("Bearer key", server.GetLastAuthorization());
+
+        server.Publish("EUR_USD", 1.1, 1.1002);
+        server.Publish("GBP_USD", 1.5, 1.5002);
+        server.Publish("USD_JPY", 120.1, 120.12);
+
+        Price eur = prices.poll(5, TimeUnit.SECONDS);
+        Price jpy = prices.poll(5, TimeUnit.SECONDS);
+        assertEquals("EUR_USD", eur.instrument);
+        assertEquals(1.1002f, eur.ask, 0f);
+        assertTrue(eur.timeMicros > 0);
+        assertEquals("USD_JPY", jpy.instrument);
+        assertEquals(2, stream.GetTicks());
+    }
+
+    @Test
+    public void testHeartbeatAndReconnect() throws Exception {
+        server.SetHeartbeatInterval(50);
+        stream.Start();
+        assertTrue(server.AwaitConnections(1, 5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 200 && stream.GetHeartbeats() == 0; i++)
+            Thread.sleep(10);
+        assertTrue(stream.GetHeartbeats() > 0);
+
+        server.Disconnect();
+        for (int i = 0; i < 500 && stream.GetConnects() < 2; i++)
+            Thread.sleep(10);
+        assertEquals(2, stream.GetConnects());
+
+        assertTrue(server.AwaitConnections(1, 5, TimeUnit.SECONDS));
+        server.Publish("EUR_USD", 1.1, 1.1002);
+        assertEquals("EUR_USD", prices.poll(5, TimeUnit.SECONDS).instrument);
+    }
+
+    @Test
+    public void testThrowingListenerIsolated() throws Exception {
+        final BlockingQueue<Price> healthy = new LinkedBlockingQueue<>();
+        PriceStream stream = new PriceStream("key", server.GetUrl(), 1234, "EUR_USD");
+        // subscribed first, so a throw that escaped would skip the healthy listener
+        stream.Subscribe(price -> {
+            throw new IllegalStateException("listener failed");
+        });
+        stream.Subscribe(healthy::add);
+
+        try {
+            stream.Start();
+            assertTrue(server.AwaitConnections(1, 5, TimeUnit.SECONDS));
+
+            server.Publish("EUR_USD", 1.1, 1.1002);
+            server.Publish("EUR_USD", 1.2, 1.2002);
+
+            assertEquals(1.1002f, healthy.poll(5, TimeUnit.SECONDS).ask, 0f);
+            assertEquals(1.2002f, healthy.poll(5, TimeUnit.SECONDS).ask, 0f);
+            assertEquals(2, stream.GetListenerErrors());
+            assertEquals(1, stream.GetConnects());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testBacksOffWhenClosedWithoutMessages() throws Exception {
+        // accepts every connection and closes it at once, as a server over its connection limit may
+        final AtomicInteger requests = new AtomicInteger();
+        HttpServer closing = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        closing.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        closing.start();
+
+        PriceStream stream = new PriceStream("key", "http://127.0.0.1:" + closing.getAddress().getPort(), 1234, "EUR_USD");
+        try {
+            stream.Start();
+            Thread.sleep(1200);
+        } finally {
+            stream.close();
+            closing.stop(0);
+        }
+
+        // immediately, then after 500 ms and 1 s, instead of a tight reconnect loop
+        assertTrue(requests.get() >= 2);
+        assertTrue(String.valueOf(requests.get()), requests.get() <= 3);
+    }
+}
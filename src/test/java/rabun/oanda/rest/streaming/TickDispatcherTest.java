@@ -0,0 +1,127 @@
+package rabun.oanda.rest.streaming;
+
+import org.junit.Test;
+import rabun.oanda.rest.models.Price;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TickDispatcherTest {
+
+    @Test
+    public void testAllConsumersSeeAllTicksInOrder() throws Exception {
+        final int count = 100000;
+        TickDispatcher dispatcher = new TickDispatcher(1000, WaitStrategy.yielding, 0, TimeUnit.SECONDS);
+        assertEquals(1024, dispatcher.GetCapacity());
+
+        final CountDownLatch done = new CountDownLatch(3);
+        final AtomicLong errors = new AtomicLong();
+        for (int c = 0; c < 3; c++) {
+            dispatcher.Subscribe(new TickHandler() {
+                long expected = 0;
+
+                @Override
+                public void onTick(Price price, long sequence, boolean endOfBatch) {
+                    if (sequence != expected || price.timeMicros != expected)
+                        errors.incrementAndGet();
+                    if (++expected == count)
+                        done.countDown();
+                }
+            });
+        }
+
+        for (int i = 0; i < count; i++)
+            dispatcher.Publish("EUR_USD", i, 1.1f, 1.1002f);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertEquals(count - 1, dispatcher.GetCursor());
+        dispatcher.close();
+    }
+
+    @Test
+    public void testSlowConsumerEvicted() throws Exception {
+        TickDispatcher dispatcher = new TickDispatcher(16, WaitStrategy.parking, 50, TimeUnit.MILLISECONDS);
+
+        final CountDownLatch evicted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        TickDispatcher.Consumer slow = dispatcher.Subscribe(new TickHandler() {
+            @Override
+            public void onTick(Price price, long sequence, boolean endOfBatch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onEvicted(long lag) {
+                evicted.countDown();
+            }
+        });
+
+        final AtomicLong fast = new AtomicLong();
+        dispatcher.Subscribe((price, sequence, endOfBatch) -> fast.incrementAndGet());
+
+        // the slow consumer blocks on the first tick, so the ring fills up after 16 ticks
+        for (int i = 0; i < 100; i++)
+            dispatcher.Publish("EUR_USD", i, 1.1f, 1.1002f);
+
+        assertTrue(slow.GetLag() > 0);
+        assertEquals(1, dispatcher.GetConsumerCount());
+        release.countDown();
+
+        assertTrue(evicted.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.IsEvicted());
+
+        dispatcher.close();
+        assertEquals(100, fast.get());
+    }
+
+    @Test
+    public void testThrowingConsumerEvicted() throws Exception {
+        // no slow consumer timeout: a consumer that died holding its sequence would block the producer for good
+        TickDispatcher dispatcher = new TickDispatcher(16, WaitStrategy.parking, 0, TimeUnit.MILLISECONDS);
+
+        final CountDownLatch evicted = new CountDownLatch(1);
+        final AtomicLong lag = new AtomicLong();
+        TickDispatcher.Consumer failing = dispatcher.Subscribe(new TickHandler() {
+            @Override
+            public void onTick(Price price, long sequence, boolean endOfBatch) {
+                if (sequence == 5)
+                    throw new IllegalStateException("handler failed");
+            }
+
+            @Override
+            public void onEvicted(long lagged) {
+                lag.set(lagged);
+                evicted.countDown();
+            }
+        });
+
+        final AtomicLong fast = new AtomicLong();
+        dispatcher.Subscribe((price, sequence, endOfBatch) -> fast.incrementAndGet());
+
+        // publish from another thread, so a blocked producer fails the test instead of hanging it
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++)
+                dispatcher.Publish("EUR_USD", i, 1.1f, 1.1002f);
+        });
+        producer.setDaemon(true);
+        producer.start();
+        producer.join(5000);
+
+        assertFalse(producer.isAlive());
+        assertTrue(evicted.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.IsEvicted());
+        assertTrue(lag.get() > 0);
+        assertEquals(1, dispatcher.GetConsumerCount());
+
+        dispatcher.close();
+        assertEquals(100, fast.get());
+    }
+}